@@ -31,16 +31,27 @@ package io.miti.nemo.app;
 import com.l2fprod.common.swing.JDirectoryChooser;
 
 import io.miti.nemo.common.FileTransferable;
+import io.miti.nemo.common.FoldedNames;
+import io.miti.nemo.common.Indexer;
+import io.miti.nemo.common.NameDictionary;
+import io.miti.nemo.common.NameDirectory;
 import io.miti.nemo.common.SearchResult;
 import io.miti.nemo.common.Store;
+import io.miti.nemo.common.StoreCache;
 import io.miti.nemo.common.StoreInfo;
+import io.miti.nemo.common.StoreWatcher;
 import io.miti.nemo.common.SystemInfo;
+import io.miti.nemo.common.TrigramIndex;
 import io.miti.nemo.common.Utility;
 import io.miti.nemo.filter.ContainsAllFilter;
 import io.miti.nemo.filter.ContainsFilter;
+import io.miti.nemo.filter.EndsWithFilter;
+import io.miti.nemo.filter.ExactMatchFilter;
+import io.miti.nemo.filter.QueryFilter;
 import io.miti.nemo.filter.RegexFilter;
 import io.miti.nemo.filter.SimilarFilter;
 import io.miti.nemo.filter.SoundFilter;
+import io.miti.nemo.filter.StartsWithFilter;
 import io.miti.nemo.filter.TermFilter;
 import io.miti.nemo.filter.WildcardFilter;
 
@@ -61,12 +72,15 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import javax.swing.Box;
@@ -74,6 +88,7 @@ import javax.swing.BoxLayout;
 import javax.swing.DefaultListSelectionModel;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
@@ -90,10 +105,16 @@ import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableColumnModel;
 
@@ -110,6 +131,12 @@ public final class App
    */
   private static final String PROP_FILE_NAME = "nemo.xml";
   
+  /**
+   * The number of milliseconds to wait after a key is typed
+   * before searching.
+   */
+  private static final int TYPING_DELAY = 150;
+  
   /**
    * The application frame.
    */
@@ -150,6 +177,36 @@ public final class App
    */
   private JCheckBox checkCase = null;
   
+  /**
+   * The checkbox to search while the term is being typed.
+   */
+  private JCheckBox checkTyping = null;
+  
+  /**
+   * The timer that starts a search when typing stops.
+   */
+  private Timer typingTimer = null;
+  
+  /**
+   * The search started while typing, if one is running.
+   */
+  private SearchTask liveTask = null;
+  
+  /**
+   * The results of the last search, if it found every match.
+   */
+  private List<SearchResult> lastResults = null;
+  
+  /**
+   * The options used for the last search.
+   */
+  private String lastSearchKey = null;
+  
+  /**
+   * The term used for the last search.
+   */
+  private String lastTerm = null;
+  
   /**
    * The checkbox for the max number of results.
    */
@@ -241,6 +298,11 @@ public final class App
    */
   private JMenuItem searchExploreParent = null;
   
+  /**
+   * The watchers for the watched stores, keyed on the store name.
+   */
+  private Map<String, StoreWatcher> watchers = new HashMap<String, StoreWatcher>(10);
+  
   /**
    * Default constructor.
    */
@@ -360,6 +422,15 @@ public final class App
     indexDir = dirName;
     Utility.setIndexDirectoryName(indexDir);
     
+    // Set the memory budget for cached stores
+    StoreCache.setMemoryBudget(appData.getCacheSize() * 1024L * 1024L);
+    
+    // Set the number of threads used for indexing
+    Indexer.setCrawlerThreads(appData.getIndexThreads());
+    
+    // Set whether to use trigram indexes
+    Indexer.setTrigramIndex(appData.getIndexTrigrams());
+    
     // Get the list of stores
     listStores = appData.getStoresInfo();
     
@@ -369,6 +440,15 @@ public final class App
       storeModel.setRowData(listStores);
     }
     
+    // Start watching the stores that are watched
+    for (StoreInfo info : listStores)
+    {
+      if (info.isWatched())
+      {
+        startWatching(info);
+      }
+    }
+    
     // Add the past searches here, select the first one, if there is one
     List<String> searches = appData.getSearches();
     if ((searches != null) && (searches.size() > 0))
@@ -397,6 +477,9 @@ public final class App
    */
   public void exitApp()
   {
+    // Stop the watchers, saving any changes to the stores
+    stopAllWatchers();
+    
     // Save the application data
     saveApplicationData();
     
@@ -657,12 +740,75 @@ public final class App
             // Delete the store (without confirmation), and then regenerate
             int foundIndex = deleteStore(info, false);
             generateStore(info.getStoreFilename(), info.getStoreName(), foundIndex);
+            
+            // Keep watching the new store, if the old one was watched
+            if ((info.isWatched()) && (foundIndex >= 0) && (foundIndex < listStores.size()))
+            {
+              StoreInfo newInfo = listStores.get(foundIndex);
+              if (newInfo.getStoreName().equals(info.getStoreName()))
+              {
+                newInfo.setWatched(true);
+                startWatching(newInfo);
+                saveApplicationData();
+              }
+            }
           }
         }
       }
     });
     storesMenu.add(storesRefresh);
     
+    // Create the Refresh Changes menu item
+    final JMenuItem storesRefreshChanges = new JMenuItem("Refresh changes");
+    storesRefreshChanges.addActionListener(new ActionListener()
+    {
+      public void actionPerformed(final ActionEvent e)
+      {
+        // Refresh the changed directories in the selected store
+        int row = storeTable.getSelectedRow();
+        if (row >= 0)
+        {
+          StoreInfo info = storeModel.getRow(row);
+          if (info != null)
+          {
+            refreshChangedStore(info);
+          }
+        }
+      }
+    });
+    storesMenu.add(storesRefreshChanges);
+    
+    // Create the Watch For Changes menu item
+    final JCheckBoxMenuItem storesWatch = new JCheckBoxMenuItem("Watch for changes");
+    storesWatch.addActionListener(new ActionListener()
+    {
+      public void actionPerformed(final ActionEvent e)
+      {
+        // Start or stop watching the selected store
+        int row = storeTable.getSelectedRow();
+        if (row >= 0)
+        {
+          StoreInfo info = storeModel.getRow(row);
+          if (info != null)
+          {
+            info.setWatched(storesWatch.isSelected());
+            if (info.isWatched())
+            {
+              startWatching(info);
+            }
+            else
+            {
+              stopWatching(info);
+            }
+            
+            // Save the app data
+            saveApplicationData();
+          }
+        }
+      }
+    });
+    storesMenu.add(storesWatch);
+    
     // Create the Delete menu item
     JMenuItem storesDelete = new JMenuItem("Delete");
     storesDelete.addActionListener(new ActionListener()
@@ -682,6 +828,25 @@ public final class App
       }
     });
     storesMenu.add(storesDelete);
+    
+    // Show whether the selected store is watched when the menu opens
+    storesMenu.addPopupMenuListener(new PopupMenuListener()
+    {
+      public void popupMenuWillBecomeVisible(final PopupMenuEvent e)
+      {
+        int row = storeTable.getSelectedRow();
+        StoreInfo info = ((row >= 0) ? storeModel.getRow(row) : null);
+        storesWatch.setSelected((info != null) && (info.isWatched()));
+      }
+      
+      public void popupMenuWillBecomeInvisible(final PopupMenuEvent e)
+      {
+      }
+      
+      public void popupMenuCanceled(final PopupMenuEvent e)
+      {
+      }
+    });
   }
   
   
@@ -804,9 +969,19 @@ public final class App
       StoreInfo si = listStores.get(i);
       if (si.getStoreName().equals(info.getStoreName()))
       {
-        // Delete the .ser file
+        // Stop watching the store, so it doesn't write the file again
+        stopWatching(si);
+        
+        // Delete the .ser file, its trigram index, its names
+        // in upper case and its sorted names, and drop it from
+        // the cache and the directory of names
         File file = Utility.getIndexedDataFile(indexDir, info);
         Utility.deleteFile(file);
+        Utility.deleteFile(TrigramIndex.getFile(file));
+        Utility.deleteFile(FoldedNames.getFile(file));
+        Utility.deleteFile(NameDictionary.getFile(file));
+        StoreCache.invalidate(file);
+        NameDirectory.remove(file);
         
         // We have a match, so remove it
         listStores.remove(i);
@@ -825,6 +1000,104 @@ public final class App
   }
   
   
+  /**
+   * Update the specified store, only re-reading the directories
+   * that changed since it was indexed.
+   * 
+   * @param info the store to update
+   */
+  private void refreshChangedStore(final StoreInfo info)
+  {
+    // Verify the directory exists
+    File volume = new File(info.getStoreFilename());
+    if ((!volume.exists()) || (!volume.isDirectory()))
+    {
+      JOptionPane.showMessageDialog(frame,
+                          "The volume does not exist or is not a directory",
+                          "Error", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    
+    // Tell the BrowsePanel that we're refreshing this store, in case it's
+    // the cached (displayed) store
+    browsePanel.refreshingStore(info);
+    
+    // Stop watching the store while it's updated
+    stopWatching(info);
+    
+    // Update the index in a different thread
+    final String filename = Store.computeNameFromDirectory(info.getStoreName());
+    ProgressDialog progDlg = new ProgressDialog(frame, info.getStoreName(),
+                                    info.getStoreFilename(), indexDir, filename, true);
+    
+    // Check if it completed
+    if (progDlg.completed())
+    {
+      // Update the time in the store table
+      info.setLastModified(System.currentTimeMillis());
+      storeModel.fireTableDataChanged();
+      
+      // Save the app data
+      saveApplicationData();
+    }
+    
+    // Start watching the store again
+    if (info.isWatched())
+    {
+      startWatching(info);
+    }
+  }
+  
+  
+  /**
+   * Start watching a store for changes.
+   * 
+   * @param info the store to watch
+   */
+  private void startWatching(final StoreInfo info)
+  {
+    // Check if it's already watched
+    if (watchers.containsKey(info.getStoreName()))
+    {
+      return;
+    }
+    
+    // Start the watcher
+    StoreWatcher watcher = new StoreWatcher(Utility.getIndexedDataFile(indexDir, info));
+    watchers.put(info.getStoreName(), watcher);
+    watcher.start();
+  }
+  
+  
+  /**
+   * Stop watching a store, saving any changes.
+   * 
+   * @param info the store to stop watching
+   */
+  private void stopWatching(final StoreInfo info)
+  {
+    StoreWatcher watcher = watchers.remove(info.getStoreName());
+    if (watcher != null)
+    {
+      watcher.stop();
+    }
+  }
+  
+  
+  /**
+   * Stop all of the watchers, saving any changes.
+   */
+  private void stopAllWatchers()
+  {
+    for (StoreWatcher watcher : watchers.values())
+    {
+      watcher.stop();
+    }
+    
+    watchers.clear();
+  }
+  
+  
   /**
    * Build the Search tabbed pane.
    * 
@@ -908,6 +1181,10 @@ public final class App
     vFilters.add("Sounds Like");
     vFilters.add("Similar");
     vFilters.add("Regex");
+    vFilters.add("Starts With");
+    vFilters.add("Ends With");
+    vFilters.add("Exact Match");
+    vFilters.add("Query");
     comboFilters = new JComboBox<String>(vFilters);
     optPanel.add(comboFilters);
     optPanel.add(Box.createRigidArea(new Dimension(40, 0)));
@@ -917,6 +1194,40 @@ public final class App
     optPanel.add(checkCase);
     optPanel.add(Box.createRigidArea(new Dimension(32, 0)));
     
+    // The checkbox to search while typing
+    checkTyping = new JCheckBox("Search as you type?");
+    optPanel.add(checkTyping);
+    optPanel.add(Box.createRigidArea(new Dimension(32, 0)));
+    
+    // Search when typing stops for a moment.  Each key
+    // restarts the timer.
+    typingTimer = new Timer(TYPING_DELAY, new ActionListener()
+    {
+      public void actionPerformed(final ActionEvent e)
+      {
+        searchAsYouType();
+      }
+    });
+    typingTimer.setRepeats(false);
+    ((JTextField) queryField.getEditor().getEditorComponent()).getDocument().
+      addDocumentListener(new DocumentListener()
+    {
+      public void insertUpdate(final DocumentEvent e)
+      {
+        termChanged();
+      }
+      
+      public void removeUpdate(final DocumentEvent e)
+      {
+        termChanged();
+      }
+      
+      public void changedUpdate(final DocumentEvent e)
+      {
+        // Only the attributes changed
+      }
+    });
+    
     // The checkbox for max results
     checkMaxResults = new JCheckBox("Limit results?");
     optPanel.add(checkMaxResults);
@@ -1174,6 +1485,10 @@ public final class App
    */
   private void searchForTerm()
   {
+    // Stop any search started while typing
+    typingTimer.stop();
+    cancelLiveSearch();
+    
     // Check that there is a search term in the combo box
     String searchTerm = (String) queryField.getSelectedItem();
     if (searchTerm == null)
@@ -1198,70 +1513,114 @@ public final class App
       queryField.insertItemAt(searchTerm, 0);
     }
     
-    // Check whether to only search the selected folder(s)
-    final boolean searchSelected = ((checkSelected.isEnabled()) &&
-                                    (checkSelected.isSelected()));
-    
     // Save the search options
     int selOption = searchCombo.getSelectedIndex();
     final boolean includeFiles = ((selOption == 0) || (selOption == 1));
     final boolean includeDirs = ((selOption == 0) || (selOption == 2));
     final int maxResultSize = getMaxResults();
     
-    // Save the list of results
-    List<SearchResult> results = new ArrayList<SearchResult>(100);
-    
-    // Build the filter
-    TermFilter filter = getTermFilter(searchTerm);
-    
-    // Check if only selected stores should be searched
-    SearchProgressDialog searchProgDlg = null;
-    if (searchSelected)
+    // Build the filter, and tell the user if the term isn't valid
+    TermFilter filter = null;
+    try
     {
-      // Check the number of selected row
-      int[] rows = storeTable.getSelectedRows();
-      if (rows.length > 0)
-      {
-        // Build the list of stores to search
-        List<StoreInfo> infos = new ArrayList<StoreInfo>(rows.length);
-        for (int i = 0; i < rows.length; ++i)
-        {
-          // Add the selected row to our temporary array
-          infos.add(listStores.get(rows[i]));
-        }
-        
-        // Now search all of the selected stores
-        searchProgDlg = new SearchProgressDialog(frame, filter, infos, includeFiles,
-                                                 includeDirs, results, maxResultSize);
-      }
+      filter = getTermFilter(searchTerm);
     }
-    else
+    catch (IllegalArgumentException iae)
     {
-      // Search all stores
-      searchProgDlg = new SearchProgressDialog(frame, filter, listStores, includeFiles,
-                                               includeDirs, results, maxResultSize);
+      JOptionPane.showMessageDialog(frame, iae.getMessage(),
+          "Invalid Search Term", JOptionPane.ERROR_MESSAGE);
+      return;
     }
     
-    // If we created the dialog, start processing
-    if (searchProgDlg != null)
+    // Empty the results table.  The results are added as
+    // they are found, and at the end they are replaced by the
+    // best results in the order of the current sort column.
+    clearResults();
+    
+    // Get the stores to search, and search them
+    List<StoreInfo> stores = getStoresToSearch();
+    if (stores != null)
     {
+      SearchProgressDialog searchProgDlg =
+        new SearchProgressDialog(frame, filter, stores, includeFiles,
+                                 includeDirs, resultsModel, maxResultSize);
       searchProgDlg.start();
+      showSearchError(searchProgDlg.getTask());
       if (!searchProgDlg.completed())
       {
         // The search was interrupted, so empty the results list
-        results.clear();
+        resultsModel.setRowData(null);
+      }
+      else
+      {
+        // Save the results, so searching as you type can check them
+        saveLastSearch(searchProgDlg.getTask(),
+                       getSearchKey(stores, maxResultSize), searchTerm);
       }
     }
     
-    // Sort the results
-    Utility.resetSortParameters();
-    Collections.sort(results);
+    // Show the results
+    showResults();
+  }
+  
+  
+  /**
+   * Return the stores to search.
+   * 
+   * @return the stores to search, or null if only the selected
+   *         stores should be searched and none are selected
+   */
+  private List<StoreInfo> getStoresToSearch()
+  {
+    // Check whether to only search the selected folder(s)
+    final boolean searchSelected = ((checkSelected.isEnabled()) &&
+                                    (checkSelected.isSelected()));
+    if (!searchSelected)
+    {
+      // Search all stores
+      return listStores;
+    }
+    
+    // Check the number of selected row
+    int[] rows = storeTable.getSelectedRows();
+    if (rows.length < 1)
+    {
+      return null;
+    }
+    
+    // Build the list of stores to search
+    List<StoreInfo> infos = new ArrayList<StoreInfo>(rows.length);
+    for (int i = 0; i < rows.length; ++i)
+    {
+      infos.add(listStores.get(rows[i]));
+    }
     
+    return infos;
+  }
+  
+  
+  /**
+   * Empty the results table.
+   */
+  private void clearResults()
+  {
+    resultsRenderer.setNumberOfDirectories(0);
+    resultsModel.setRowData(null);
+    resultsModel.fireTableDataChanged();
+  }
+  
+  
+  /**
+   * Sort and show the results in the table, after a search.
+   */
+  private void showResults()
+  {
     // Save the number of directories in the list
+    final int numRows = resultsModel.getRowCount();
     int numDirs = 0;
-    for (SearchResult result : results)
+    for (int i = 0; i < numRows; ++i)
     {
-      if (result.isDirectory())
+      if (resultsModel.getRow(i).isDirectory())
       {
         ++numDirs;
       }
@@ -1270,8 +1629,8 @@ public final class App
     // Save the number of directories for the display
     resultsRenderer.setNumberOfDirectories(numDirs);
     
-    // Show the results
-    resultsModel.setRowData(results);
+    // Sort and show the results
+    resultsModel.sortData();
     resultsModel.fireTableDataChanged();
     
     // Fix results column widths
@@ -1279,11 +1638,258 @@ public final class App
   }
   
   
+  /**
+   * Search for the term in the query field while it is being
+   * typed.  This is called when typing stops for a moment.  If
+   * the new term only narrows the last search, and that search
+   * found every match, its results are checked instead of
+   * searching the stores again.
+   */
+  private void searchAsYouType()
+  {
+    // Cancel the search that's still running
+    cancelLiveSearch();
+    
+    // Get the search term, and check for an empty term
+    final String searchTerm =
+      ((JTextField) queryField.getEditor().getEditorComponent()).getText();
+    if (searchTerm.length() == 0)
+    {
+      clearResults();
+      return;
+    }
+    
+    // Get the stores to search
+    List<StoreInfo> stores = getStoresToSearch();
+    if (stores == null)
+    {
+      return;
+    }
+    
+    // Save the search options
+    int selOption = searchCombo.getSelectedIndex();
+    final boolean includeFiles = ((selOption == 0) || (selOption == 1));
+    final boolean includeDirs = ((selOption == 0) || (selOption == 2));
+    final int maxResultSize = getMaxResults();
+    final String searchKey = getSearchKey(stores, maxResultSize);
+    
+    // Check if the last results can be used
+    List<SearchResult> previous = null;
+    if ((lastResults != null) && searchKey.equals(lastSearchKey) &&
+        isNarrower(lastTerm, searchTerm))
+    {
+      previous = lastResults;
+      stores = null;
+    }
+    
+    // Build the filter.  A term that isn't valid may still be
+    // being typed, so it just shows no results.
+    clearResults();
+    TermFilter filter = null;
+    try
+    {
+      filter = getTermFilter(searchTerm);
+    }
+    catch (IllegalArgumentException iae)
+    {
+      return;
+    }
+    
+    // Start the search.  The results are added to the table
+    // as they are found.
+    final SearchTask task = new SearchTask(filter, stores,
+                                           previous, includeFiles, includeDirs,
+                                           resultsModel, maxResultSize);
+    task.addPropertyChangeListener(new PropertyChangeListener()
+    {
+      public void propertyChange(final PropertyChangeEvent evt)
+      {
+        if ("state".equals(evt.getPropertyName()) &&
+            (evt.getNewValue() == SwingWorker.StateValue.DONE) &&
+            !task.isCancelled())
+        {
+          // Show the results, and save them for the next search
+          saveLastSearch(task, searchKey, searchTerm);
+          showResults();
+          showSearchError(task);
+        }
+      }
+    });
+    
+    liveTask = task;
+    task.execute();
+  }
+  
+  
+  /**
+   * Handle the search term being changed, by starting the
+   * timer to search if searching while typing is turned on.
+   */
+  private void termChanged()
+  {
+    if (checkTyping.isSelected())
+    {
+      typingTimer.restart();
+    }
+  }
+  
+  
+  /**
+   * Tell the user if an error stopped a search from checking
+   * every store.
+   * 
+   * @param task the search task
+   */
+  private void showSearchError(final SearchTask task)
+  {
+    if ((task != null) && !task.isCancelled() && (task.getError() != null))
+    {
+      JOptionPane.showMessageDialog(frame, task.getError(),
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+  
+  
+  /**
+   * Cancel the search started while typing, if it's running.
+   */
+  private void cancelLiveSearch()
+  {
+    if (liveTask != null)
+    {
+      liveTask.cancel(true);
+      liveTask = null;
+    }
+  }
+  
+  
+  /**
+   * Save the results of a search, if it found every match, so
+   * a later search that narrows it can check these results
+   * instead of searching the stores.
+   * 
+   * @param task the search task
+   * @param searchKey the options used for the search
+   * @param searchTerm the search term
+   */
+  private void saveLastSearch(final SearchTask task,
+                              final String searchKey,
+                              final String searchTerm)
+  {
+    // Check if the search found every match
+    if (!task.isComplete())
+    {
+      lastResults = null;
+      return;
+    }
+    
+    // Save the results and the search
+    final int numRows = resultsModel.getRowCount();
+    lastResults = new ArrayList<SearchResult>(numRows);
+    for (int i = 0; i < numRows; ++i)
+    {
+      lastResults.add(resultsModel.getRow(i));
+    }
+    
+    lastSearchKey = searchKey;
+    lastTerm = searchTerm;
+  }
+  
+  
+  /**
+   * Return a string with the search options, other than the
+   * term, so a search can tell if it uses the same options as
+   * the last one.  It includes the time each index file was
+   * last changed, so the results of a store that has been
+   * updated since then aren't used.
+   * 
+   * @param stores the stores to search
+   * @param maxResultSize the maximum number of results
+   * @return the search options
+   */
+  private String getSearchKey(final List<StoreInfo> stores,
+                              final int maxResultSize)
+  {
+    StringBuilder sb = new StringBuilder(100);
+    sb.append(comboFilters.getSelectedIndex()).append('|')
+      .append(checkCase.isSelected()).append('|')
+      .append(searchCombo.getSelectedIndex()).append('|')
+      .append(maxResultSize);
+    
+    final String dir = Utility.getIndexDirectoryName();
+    for (StoreInfo info : stores)
+    {
+      File file = Utility.getIndexedDataFile(dir, info);
+      sb.append('|').append(info.getStoreName()).append('|').append(file.lastModified());
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Return whether every name accepted by the filter for the
+   * new term is also accepted by the filter for the old term,
+   * using the current filter type.  This is only known for
+   * Contains, when the new term contains the old one, for
+   * Contains All, when phrases are added to the end of the
+   * old term, for Starts With and Ends With, when the new
+   * term starts or ends with the old one, and for Query, when
+   * conditions are added to the end of the old query.
+   * 
+   * @param oldTerm the term of the last search
+   * @param newTerm the new search term
+   * @return whether the new term narrows the old one
+   */
+  private boolean isNarrower(final String oldTerm, final String newTerm)
+  {
+    switch (comboFilters.getSelectedIndex())
+    {
+      case 0:
+        // Contains: the same comparison as ContainsFilter
+        if (checkCase.isSelected())
+        {
+          return (newTerm.indexOf(oldTerm) >= 0);
+        }
+        return (newTerm.toUpperCase().indexOf(oldTerm.toUpperCase()) >= 0);
+      
+      case 1:
+      case 9:
+        // Contains All and Query: the old phrases must be
+        // complete, and have no open quote
+        return (newTerm.startsWith(oldTerm + " ") &&
+                ((oldTerm.length() - oldTerm.replace("\"", "").length()) % 2 == 0));
+      
+      case 6:
+        // Starts With: the same comparison as StartsWithFilter
+        if (checkCase.isSelected())
+        {
+          return newTerm.startsWith(oldTerm);
+        }
+        return newTerm.toUpperCase().startsWith(oldTerm.toUpperCase());
+      
+      case 7:
+        // Ends With: the same comparison as EndsWithFilter
+        if (checkCase.isSelected())
+        {
+          return newTerm.endsWith(oldTerm);
+        }
+        return newTerm.toUpperCase().endsWith(oldTerm.toUpperCase());
+      
+      default:
+        return false;
+    }
+  }
+  
+  
+  
   /**
    * Return the term filter for the search.
    * 
    * @param searchTerm the term to search for
    * @return the term filter for the search
+   * @throws IllegalArgumentException if the term isn't valid
+   *         for the selected filter
    */
   private TermFilter getTermFilter(final String searchTerm)
   {
@@ -1300,6 +1906,10 @@ public final class App
       case 3: return new SoundFilter(searchTerm, ignoreCase);
       case 4: return new SimilarFilter(searchTerm, ignoreCase, 3);
       case 5: return new RegexFilter(searchTerm, ignoreCase);
+      case 6: return new StartsWithFilter(searchTerm, ignoreCase);
+      case 7: return new EndsWithFilter(searchTerm, ignoreCase);
+      case 8: return new ExactMatchFilter(searchTerm, ignoreCase);
+      case 9: return new QueryFilter(searchTerm, ignoreCase);
       default: return null;
     }
   }
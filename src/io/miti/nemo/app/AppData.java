@@ -103,6 +103,23 @@ public final class AppData
    */
   private int searchMax = 200;
   
+  /**
+   * The memory budget for cached stores, in megabytes.  Zero
+   * means use the default.
+   */
+  private int cacheSize = 0;
+  
+  /**
+   * The number of threads used to index directories.  Zero
+   * means one per processor.
+   */
+  private int indexThreads = 0;
+  
+  /**
+   * Whether to build and use trigram indexes of the names.
+   */
+  private boolean indexTrigrams = true;
+  
   /**
    * Default constructor.
    */
@@ -374,7 +391,7 @@ public final class AppData
    */
   public void setSearchFilter(final int nSearchFilter)
   {
-    searchFilter = Math.max(0, Math.min(nSearchFilter, 5));
+    searchFilter = Math.max(0, Math.min(nSearchFilter, 9));
   }
   
   
@@ -455,6 +472,73 @@ public final class AppData
   }
   
   
+  /**
+   * Set the memory budget for cached stores, in megabytes.
+   * 
+   * @param nCacheSize the memory budget, in megabytes
+   */
+  public void setCacheSize(final int nCacheSize)
+  {
+    cacheSize = Math.max(0, nCacheSize);
+  }
+  
+  
+  /**
+   * Return the memory budget for cached stores, in megabytes.
+   * 
+   * @return the memory budget, in megabytes
+   */
+  public int getCacheSize()
+  {
+    return cacheSize;
+  }
+  
+  
+  /**
+   * Set the number of threads used to index directories.
+   * 
+   * @param nIndexThreads the number of threads, or zero for one
+   *                      per processor
+   */
+  public void setIndexThreads(final int nIndexThreads)
+  {
+    indexThreads = Math.max(0, nIndexThreads);
+  }
+  
+  
+  /**
+   * Return the number of threads used to index directories.
+   * 
+   * @return the number of threads, or zero for one per processor
+   */
+  public int getIndexThreads()
+  {
+    return indexThreads;
+  }
+  
+  
+  /**
+   * Set whether to build and use trigram indexes of the names.
+   * 
+   * @param bIndexTrigrams whether to use trigram indexes
+   */
+  public void setIndexTrigrams(final boolean bIndexTrigrams)
+  {
+    indexTrigrams = bIndexTrigrams;
+  }
+  
+  
+  /**
+   * Return whether to build and use trigram indexes of the names.
+   * 
+   * @return whether to use trigram indexes
+   */
+  public boolean getIndexTrigrams()
+  {
+    return indexTrigrams;
+  }
+  
+  
   /**
    * Add the store to the list.
    * 
@@ -590,6 +674,9 @@ public final class AppData
       writeBool(out, "search.case", searchCase);
       writeBool(out, "search.limit", searchLimit);
       writeInt(out, "search.max", searchMax);
+      writeInt(out, "cache.size", cacheSize);
+      writeInt(out, "index.threads", indexThreads);
+      writeBool(out, "index.trigrams", indexTrigrams);
       
       // Check the list of stores
       if (stores != null)
@@ -613,6 +700,12 @@ public final class AppData
           out.write("</name>");
           out.write(Utility.getLineSep());
           
+          if (info.isWatched())
+          {
+            out.write("    <watch>1</watch>");
+            out.write(Utility.getLineSep());
+          }
+          
           out.write("  </store>");
           out.write(Utility.getLineSep());
         }
@@ -258,6 +258,25 @@ public final class AppDataImporter extends DefaultHandler
         appData.setSearchMax(Utility.getStringAsInteger(word, 100));
         break;
         
+      case 15:
+        appData.setCacheSize(Utility.getStringAsInteger(word, 0));
+        break;
+      
+      case 16:
+        appData.setIndexThreads(Utility.getStringAsInteger(word, 0));
+        break;
+      
+      case 17:
+        if (storeInfo != null)
+        {
+          storeInfo.setWatched(Utility.getStringAsBoolean(word));
+        }
+        break;
+      
+      case 18:
+        appData.setIndexTrigrams(Utility.getStringAsBoolean(word));
+        break;
+      
       default:
         break;
     }
@@ -353,6 +372,22 @@ public final class AppDataImporter extends DefaultHandler
     {
       mode = 14;
     }
+    else if (name.equals("cache.size"))
+    {
+      mode = 15;
+    }
+    else if (name.equals("index.threads"))
+    {
+      mode = 16;
+    }
+    else if (name.equals("watch"))
+    {
+      mode = 17;
+    }
+    else if (name.equals("index.trigrams"))
+    {
+      mode = 18;
+    }
     else
     {
       mode = 0;
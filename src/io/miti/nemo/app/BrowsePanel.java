@@ -32,6 +32,7 @@ import io.miti.nemo.common.FileTransferable;
 import io.miti.nemo.common.Indexer;
 import io.miti.nemo.common.SearchResult;
 import io.miti.nemo.common.Store;
+import io.miti.nemo.common.StoreCache;
 import io.miti.nemo.common.StoreInfo;
 import io.miti.nemo.common.Utility;
 
@@ -211,14 +212,14 @@ public final class BrowsePanel extends JPanel
     Cursor cursor = frame.getCursor();
     frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
     
-    // Get the store
-    final Store store = indexer.loadFromFile(file);
+    // Get the store, from the cache if it's already loaded
+    final Store store = StoreCache.getStore(file);
     
     // Restore the cursor
     frame.setCursor(cursor);
     
     // Populate the tree root node using the store variable
-    indexer.buildTree(store.getDataStore(), root);
+    indexer.buildTree(store, root);
     
     // Create the tree based on the root node
     tree = new JTree(root);
@@ -30,6 +30,7 @@ package io.miti.nemo.app;
 
 import io.miti.nemo.common.Indexer;
 import io.miti.nemo.common.Store;
+import io.miti.nemo.common.StoreCache;
 
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
@@ -79,6 +80,12 @@ public final class ProgressDialog extends JDialog
    */
   private String filename = null;
   
+  /**
+   * Whether to update the existing index instead of
+   * indexing the whole directory.
+   */
+  private boolean refresh = false;
+  
   /**
    * Whether the indexing completed.
    */
@@ -118,6 +125,28 @@ public final class ProgressDialog extends JDialog
                         final String sDir,
                         final String sIndexDir,
                         final String sFilename)
+  {
+    this(frame, sName, sDir, sIndexDir, sFilename, false);
+  }
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param frame the parent frame
+   * @param sName the store name
+   * @param sDir the store directory
+   * @param sIndexDir the directory to save indices to
+   * @param sFilename the output filename
+   * @param bRefresh whether to only re-read the directories that
+   *                 changed since the existing index was saved
+   */
+  public ProgressDialog(final JFrame frame,
+                        final String sName,
+                        final String sDir,
+                        final String sIndexDir,
+                        final String sFilename,
+                        final boolean bRefresh)
   {
     // Create the dialog.  Make it modal.
     super(frame, "Indexing", true);
@@ -125,6 +154,7 @@ public final class ProgressDialog extends JDialog
     dir = sDir;
     indexDir = sIndexDir;
     filename = sFilename;
+    refresh = bRefresh;
     
     // Build the dialog
     buildDialog(frame);
@@ -149,7 +179,7 @@ public final class ProgressDialog extends JDialog
     panel.setBorder(padding);
     
     // Add the status label
-    JLabel lblStatus = new JLabel("Indexing " + dir + "...",
+    JLabel lblStatus = new JLabel((refresh ? "Refreshing " : "Indexing ") + dir + "...",
                                   SwingConstants.CENTER);
     panel.add(lblStatus);
     
@@ -231,15 +261,31 @@ public final class ProgressDialog extends JDialog
     @Override
     public Void doInBackground()
     {
-      // Index the directory
+      // Get the existing index, if we're refreshing it
+      File file = new File(indexDir, filename + ".ser");
+      Store previous = null;
+      if (refresh && file.isFile())
+      {
+        previous = StoreCache.getStore(file);
+      }
+      
+      // Index the directory, or update the existing index
       Indexer indexer = new Indexer();
-      Store store = indexer.indexDirectory(name, dir);
+      Store store = null;
+      if (previous == null)
+      {
+        store = indexer.indexDirectory(name, dir);
+      }
+      else
+      {
+        store = indexer.refreshDirectory(previous);
+      }
       
       // Check the result
       if (store != null)
       {
         // Serialize the data to a file in the output directory
-        indexer.saveToFile(new File(indexDir, filename + ".ser"), store);
+        indexer.saveToFile(file, store);
       }
       
       return null;
@@ -34,6 +34,7 @@ import io.miti.nemo.common.Utility;
 import javax.swing.table.AbstractTableModel;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -202,6 +203,35 @@ public final class ResultsTableModel extends AbstractTableModel
   }
   
   
+  /**
+   * Add rows to the end of the table, and tell the table about
+   * the new rows.  This is used to show search results as they
+   * are found.  If there is already row data, the rows are
+   * added to that list.  This must be called on the event thread.
+   * 
+   * @param rows the rows to add
+   */
+  public void addRows(final List<SearchResult> rows)
+  {
+    if ((rows == null) || rows.isEmpty())
+    {
+      return;
+    }
+    
+    // Create the list of rows, if there aren't any yet
+    if (rowData == null)
+    {
+      rowData = new ArrayList<SearchResult>(Math.max(100, rows.size()));
+    }
+    
+    // Add the rows
+    final int firstRow = rowData.size();
+    rowData.addAll(rows);
+    nRowCount = rowData.size();
+    fireTableRowsInserted(firstRow, nRowCount - 1);
+  }
+  
+  
   /**
    * Return the next row starting with the specified character,
    * after the specified row.
@@ -28,17 +28,14 @@
 
 package io.miti.nemo.app;
 
-import io.miti.nemo.common.Indexer;
-import io.miti.nemo.common.SearchResult;
-import io.miti.nemo.common.Store;
 import io.miti.nemo.common.StoreInfo;
-import io.miti.nemo.common.Utility;
 import io.miti.nemo.filter.TermFilter;
 
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.File;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.List;
 
 import javax.swing.BorderFactory;
@@ -64,36 +61,6 @@ public final class SearchProgressDialog extends JDialog
    */
   private static final long serialVersionUID = 1L;
   
-  /**
-   * The search term.
-   */
-  private TermFilter filter = null;
-  
-  /**
-   * The list of stores to search.
-   */
-  private List<StoreInfo> listStores = null;
-  
-  /**
-   * Whether to include files.
-   */
-  private boolean includeFiles = false;
-  
-  /**
-   * Whether to include directories.
-   */
-  private boolean includeDirs = false;
-  
-  /**
-   * The search results.
-   */
-  private List<SearchResult> results = null;
-  
-  /**
-   * The maximum number of search results to return.
-   */
-  private int maxResultSize = 0;
-  
   /**
    * Whether the indexing completed.
    */
@@ -107,7 +74,7 @@ public final class SearchProgressDialog extends JDialog
   /**
    * The indexing task.
    */
-  private Task task = null;
+  private SearchTask task = null;
   
   
   /**
@@ -127,7 +94,7 @@ public final class SearchProgressDialog extends JDialog
    * @param lListStores the list of stores to search
    * @param bIncludeFiles whether to include files
    * @param bIncludeDirs whether to include directories
-   * @param lResults the result set
+   * @param pResultsModel the table model the results are added to
    * @param nMaxResultSize the maximum number of results to search
    */
   public SearchProgressDialog(final JFrame frame,
@@ -135,19 +102,15 @@ public final class SearchProgressDialog extends JDialog
                               final List<StoreInfo> lListStores,
                               final boolean bIncludeFiles,
                               final boolean bIncludeDirs,
-                              final List<SearchResult> lResults,
+                              final ResultsTableModel pResultsModel,
                               final int nMaxResultSize)
   {
     // Create the dialog.  Make it modal.
     super(frame, "Searching", true);
     
-    // Save the arguments
-    filter = pFilter;
-    listStores = lListStores;
-    includeFiles = bIncludeFiles;
-    includeDirs = bIncludeDirs;
-    results = lResults;
-    maxResultSize = nMaxResultSize;
+    // Save the task
+    task = new SearchTask(pFilter, lListStores, bIncludeFiles, bIncludeDirs,
+                          pResultsModel, nMaxResultSize);
     
     // Build the dialog
     buildDialog(frame);
@@ -233,75 +196,41 @@ public final class SearchProgressDialog extends JDialog
   
   
   /**
-   * Start the thread processing.
+   * Return the search task.
+   * 
+   * @return the search task
    */
-  public void startProcessing()
+  public SearchTask getTask()
   {
-    // Start the indexing
-    task = new Task();
-    task.execute();
-    
-    // Show this modal dialog
-    setVisible(true);
+    return task;
   }
   
   
   /**
-   * The indexing task.
-   * 
-   * @author mwallace
+   * Start the thread processing.
    */
-  class Task extends SwingWorker<Void, Void>
+  public void startProcessing()
   {
-    /**
-     * Execute this task in the background.
-     * 
-     * @return the return value
-     */
-    @Override
-    public Void doInBackground()
+    // Close the dialog when the task is done.  This is called
+    // after the task has shown its results.
+    task.addPropertyChangeListener(new PropertyChangeListener()
     {
-      // Iterate over the list of stores to search
-      for (StoreInfo info : listStores)
+      public void propertyChange(final PropertyChangeEvent evt)
       {
-        // Handle this thread getting interrupted
-        if (Thread.currentThread().isInterrupted())
+        if ("state".equals(evt.getPropertyName()) &&
+            (evt.getNewValue() == SwingWorker.StateValue.DONE))
         {
-          break;
+          // This is called whether the task was cancelled or not
+          completed = !task.isCancelled();
+          dispose();
         }
-        
-        // Perform the search.  First build an indexer.
-        Indexer indexer = new Indexer();
-        
-        // Generate the file name for the data store file
-        File file = Utility.getIndexedDataFile(Utility.getIndexDirectoryName(), info);
-        
-        // Get the store
-        Store store = indexer.loadFromFile(file);
-        
-        // Handle this thread getting interrupted
-        if (Thread.currentThread().isInterrupted())
-        {
-          break;
-        }
-        
-        // Perform the search
-        indexer.searchStore(store, maxResultSize, includeFiles,
-                            includeDirs, filter, results);
       }
-      
-      return null;
-    }
+    });
     
-    /**
-     * Signal that the process completed.
-     */
-    @Override
-    public void done()
-    {
-      // This is called whether the task was cancelled or not
-      completed = !isCancelled();
-      dispose();
-    }
+    // Start the search
+    task.execute();
+    
+    // Show this modal dialog
+    setVisible(true);
   }
 }
@@ -0,0 +1,655 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.app;
+
+import io.miti.nemo.common.IndexFile;
+import io.miti.nemo.common.Indexer;
+import io.miti.nemo.common.MappedIndex;
+import io.miti.nemo.common.NameDirectory;
+import io.miti.nemo.common.ResultSink;
+import io.miti.nemo.common.SearchResult;
+import io.miti.nemo.common.Store;
+import io.miti.nemo.common.StoreCache;
+import io.miti.nemo.common.StoreInfo;
+import io.miti.nemo.common.TopResults;
+import io.miti.nemo.common.Utility;
+import io.miti.nemo.filter.AttributeFilter;
+import io.miti.nemo.filter.TermFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingWorker;
+
+/**
+ * The task that searches the stores, or the results of an
+ * earlier search, and adds the results to the results table.
+ * The first results found are added to the table right away.
+ * When the search completes, they are replaced by the best
+ * results, in the order of the current sort column.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class SearchTask extends SwingWorker<Void, Void>
+{
+  /**
+   * The pool of threads used to search the stores, shared by
+   * all searches and created when first needed.
+   */
+  private static ExecutorService searchPool = null;
+  
+  /**
+   * The search term.
+   */
+  private final TermFilter filter;
+  
+  /**
+   * The list of stores to search, or null to search the
+   * earlier results.
+   */
+  private final List<StoreInfo> listStores;
+  
+  /**
+   * The results of an earlier search to check, or null to
+   * search the stores.
+   */
+  private final List<SearchResult> previous;
+  
+  /**
+   * Whether to include files.
+   */
+  private final boolean includeFiles;
+  
+  /**
+   * Whether to include directories.
+   */
+  private final boolean includeDirs;
+  
+  /**
+   * The table model that shows the search results.
+   */
+  private final ResultsTableModel resultsModel;
+  
+  /**
+   * The maximum number of search results to return.
+   */
+  private final int maxResultSize;
+  
+  /**
+   * The best results found, in the order of the active sort
+   * column.  These replace the results shown while searching
+   * when the search completes.
+   */
+  private final TopResults bestResults;
+  
+  /**
+   * The results found but not yet added to the table model.
+   * This is used as the lock for itself.
+   */
+  private final List<SearchResult> pending = new ArrayList<SearchResult>(100);
+  
+  /**
+   * The number of results passed to the table model while
+   * searching.
+   */
+  private final AtomicInteger numShown = new AtomicInteger(0);
+  
+  /**
+   * The number of results found.
+   */
+  private final AtomicInteger numFound = new AtomicInteger(0);
+  
+  /**
+   * The message for the first error found while searching, or
+   * null if there wasn't one.
+   */
+  private volatile String error = null;
+  
+  
+  /**
+   * Constructor, to search stores.
+   * 
+   * @param pFilter the term filter
+   * @param lListStores the list of stores to search
+   * @param bIncludeFiles whether to include files
+   * @param bIncludeDirs whether to include directories
+   * @param pResultsModel the table model the results are added to
+   * @param nMaxResultSize the maximum number of results to search
+   */
+  public SearchTask(final TermFilter pFilter,
+                    final List<StoreInfo> lListStores,
+                    final boolean bIncludeFiles,
+                    final boolean bIncludeDirs,
+                    final ResultsTableModel pResultsModel,
+                    final int nMaxResultSize)
+  {
+    this(pFilter, lListStores, null, bIncludeFiles, bIncludeDirs,
+         pResultsModel, nMaxResultSize);
+  }
+  
+  
+  /**
+   * Constructor.  Exactly one of the list of stores and the
+   * list of earlier results should be null.
+   * 
+   * @param pFilter the term filter
+   * @param lListStores the list of stores to search
+   * @param lPrevious the results of an earlier search to check
+   * @param bIncludeFiles whether to include files
+   * @param bIncludeDirs whether to include directories
+   * @param pResultsModel the table model the results are added to
+   * @param nMaxResultSize the maximum number of results to search
+   */
+  public SearchTask(final TermFilter pFilter,
+                    final List<StoreInfo> lListStores,
+                    final List<SearchResult> lPrevious,
+                    final boolean bIncludeFiles,
+                    final boolean bIncludeDirs,
+                    final ResultsTableModel pResultsModel,
+                    final int nMaxResultSize)
+  {
+    super();
+    filter = pFilter;
+    listStores = lListStores;
+    previous = lPrevious;
+    includeFiles = bIncludeFiles;
+    includeDirs = bIncludeDirs;
+    resultsModel = pResultsModel;
+    maxResultSize = nMaxResultSize;
+    bestResults = new TopResults(maxResultSize);
+  }
+  
+  
+  /**
+   * Return the pool of threads used to search the stores.
+   * There is one thread per processor, and the threads don't
+   * keep the application from exiting.
+   * 
+   * @return the thread pool
+   */
+  private static synchronized ExecutorService getSearchPool()
+  {
+    if (searchPool == null)
+    {
+      final int numThreads = Runtime.getRuntime().availableProcessors();
+      searchPool = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+      {
+        public Thread newThread(final Runnable r)
+        {
+          Thread thread = new Thread(r, "store-search");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    
+    return searchPool;
+  }
+  
+  
+  /**
+   * Return whether the search finished and every result found
+   * is in the table, so none were dropped by the limit or lost
+   * to an error.  Only valid after the task is done.
+   * 
+   * @return whether all of the matches are in the results
+   */
+  public boolean isComplete()
+  {
+    return (isDone() && !isCancelled() && (error == null) &&
+            (numFound.get() <= maxResultSize));
+  }
+  
+  
+  /**
+   * Return the message for the first error found while
+   * searching.  Only valid after the task is done.
+   * 
+   * @return the error message, or null if there was no error
+   */
+  public String getError()
+  {
+    return error;
+  }
+  
+  
+  /**
+   * Save the message for an error found searching a store, if
+   * it's the first one.  This is called by the search thread.
+   * 
+   * @param ee the exception thrown by the store's search
+   */
+  private void setError(final ExecutionException ee)
+  {
+    // Get the error thrown by the search, which may be missing
+    final Throwable cause = ((ee.getCause() == null) ? ee : ee.getCause());
+    final String msg = ((cause.getMessage() == null) ? cause.toString()
+                                                     : cause.getMessage());
+    System.err.println("Error searching a store: " + msg);
+    if (error == null)
+    {
+      error = "Error searching the stores: " + msg;
+    }
+  }
+  
+  
+  /**
+   * Save a search result.  It's kept if it's one of the best
+   * results so far, and it's added to the table model if the
+   * table isn't full yet, so the first results show up right
+   * away.  This is called by the threads searching the stores.
+   * 
+   * @param result the search result
+   * @return whether the result is the first one waiting to be shown
+   */
+  private boolean addPending(final SearchResult result)
+  {
+    // Keep the result if it's one of the best
+    numFound.incrementAndGet();
+    if (!bestResults.offer(result) ||
+        (numShown.getAndIncrement() >= maxResultSize))
+    {
+      return false;
+    }
+    
+    // Save it to be shown
+    synchronized (pending)
+    {
+      pending.add(result);
+      return (pending.size() == 1);
+    }
+  }
+  
+  
+  /**
+   * Add the waiting search results to the table model.  This
+   * must be called on the event thread.
+   */
+  private void flushPending()
+  {
+    // Take the waiting results
+    List<SearchResult> rows = null;
+    synchronized (pending)
+    {
+      if (pending.isEmpty())
+      {
+        return;
+      }
+      
+      rows = new ArrayList<SearchResult>(pending);
+      pending.clear();
+    }
+    
+    // Add them to the table
+    resultsModel.addRows(rows);
+  }
+  
+  
+  /**
+   * Replace the results in the table model with the best
+   * results found.  This must be called on the event thread.
+   */
+  private void showBestResults()
+  {
+    synchronized (pending)
+    {
+      pending.clear();
+    }
+    
+    resultsModel.setRowData(bestResults.toList());
+    resultsModel.fireTableDataChanged();
+  }
+  
+  
+  /**
+   * A sink that passes each search result of one store to
+   * the task as it's found.  The results aren't kept here.
+   */
+  private final class StoreSink implements ResultSink
+  {
+    /**
+     * The number of results found in the store.
+     */
+    private int count = 0;
+    
+    
+    /**
+     * Default constructor.
+     */
+    public StoreSink()
+    {
+      super();
+    }
+    
+    
+    /**
+     * Save a search result, and wake up the event thread if
+     * it's the first result waiting to be shown.  A large
+     * store may be searched on several threads, so this
+     * is synchronized.
+     * 
+     * @param result the search result
+     */
+    @Override
+    public synchronized void add(final SearchResult result)
+    {
+      ++count;
+      if (addPending(result))
+      {
+        // The results are taken from the pending list, so
+        // this only wakes up process()
+        publish();
+      }
+    }
+    
+    
+    /**
+     * Return whether the search should stop, because the
+     * task was cancelled.
+     * 
+     * @return whether the task was cancelled
+     */
+    @Override
+    public boolean isFull()
+    {
+      return isCancelled();
+    }
+    
+    
+    /**
+     * Return the number of search results.
+     * 
+     * @return the number of results
+     */
+    public synchronized int getCount()
+    {
+      return count;
+    }
+  }
+  
+  
+  /**
+   * Add the search results found so far to the table model.
+   * This is called on the event thread.
+   * 
+   * @param chunks not used
+   */
+  @Override
+  protected void process(final List<Void> chunks)
+  {
+    if (!isCancelled())
+    {
+      flushPending();
+    }
+  }
+  
+  
+  /**
+   * Execute this task in the background.
+   * 
+   * @return the return value
+   */
+  @Override
+  public Void doInBackground()
+  {
+    // Check if any results are wanted
+    if (maxResultSize < 1)
+    {
+      return null;
+    }
+    
+    // Check the earlier results, if there are any
+    if (previous != null)
+    {
+      searchPrevious();
+      return null;
+    }
+    
+    // Look up an exact name once in the directory of names, so
+    // the stores without it can be skipped
+    final NameDirectory.Lookup lookup =
+      NameDirectory.find(new File(Utility.getIndexDirectoryName()), filter);
+    
+    // Search each store in the pool.  Every store is searched
+    // to the end, and the sink keeps the best results, not just
+    // the first ones found.  The results are passed to the table
+    // model as they are found.
+    ExecutorService pool = getSearchPool();
+    List<Future<?>> futures = new ArrayList<Future<?>>(listStores.size());
+    try
+    {
+      for (final StoreInfo info : listStores)
+      {
+        futures.add(pool.submit(new Runnable()
+        {
+          public void run()
+          {
+            searchStore(info, lookup);
+          }
+        }));
+      }
+      
+      // Wait for the stores
+      for (Future<?> future : futures)
+      {
+        try
+        {
+          future.get();
+        }
+        catch (ExecutionException ee)
+        {
+          setError(ee);
+        }
+      }
+    }
+    catch (InterruptedException ie)
+    {
+      // The search was cancelled
+      Thread.currentThread().interrupt();
+    }
+    finally
+    {
+      // Stop any stores still being searched
+      for (Future<?> future : futures)
+      {
+        future.cancel(true);
+      }
+    }
+    
+    return null;
+  }
+  
+  
+  /**
+   * Check the results of an earlier search with the filter.
+   * This is used when the filter only accepts names that the
+   * earlier filter accepted, so the stores don't need to be
+   * searched again.
+   */
+  private void searchPrevious()
+  {
+    ResultSink sink = new StoreSink();
+    final AttributeFilter attributes = ((filter instanceof AttributeFilter)
+                                        ? (AttributeFilter) filter : null);
+    for (SearchResult result : previous)
+    {
+      // Handle this thread getting interrupted
+      if (Thread.currentThread().isInterrupted())
+      {
+        break;
+      }
+      
+      // Check if this should be included
+      final boolean bIsDirectory = result.isDirectory();
+      if ((bIsDirectory && !includeDirs) || (!bIsDirectory && !includeFiles))
+      {
+        continue;
+      }
+      
+      // Check the size and time before the name
+      if ((attributes != null) &&
+          !attributes.acceptAttributes(result.getFileSize(), result.getLastModified()))
+      {
+        continue;
+      }
+      
+      // Check the name, and then the path of the folder
+      if (filter.accept(result.getName()) &&
+          ((attributes == null) || attributes.acceptPath(result.getPath())))
+      {
+        sink.add(result);
+      }
+    }
+  }
+  
+  
+  /**
+   * Search one store.  This is run by the thread pool.
+   * 
+   * @param info the store to search
+   * @param lookup the name found in the directory of names, or null
+   */
+  private void searchStore(final StoreInfo info,
+                           final NameDirectory.Lookup lookup)
+  {
+    StoreSink sink = new StoreSink();
+    
+    // Generate the file name for the data store file
+    File file = Utility.getIndexedDataFile(Utility.getIndexDirectoryName(), info);
+    
+    // Search for an exact name in the directory of names, so
+    // the store isn't read, if the directory is current for it
+    if ((lookup != null) &&
+        lookup.search(file, includeFiles, includeDirs, filter, sink))
+    {
+      return;
+    }
+    
+    // Search stores too large for the cache straight from the
+    // file.  The file is unmapped as soon as the search is done,
+    // so it can be replaced when the store is saved.
+    MappedIndex mapped = openMappedIndex(file);
+    if (mapped != null)
+    {
+      try
+      {
+        mapped.search(includeFiles, includeDirs, filter, sink);
+        return;
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("IOException searching the file: " + ioe.getMessage());
+        
+        // The results already found have been shown, so only
+        // search the store again if there weren't any
+        if (sink.getCount() > 0)
+        {
+          return;
+        }
+      }
+      finally
+      {
+        mapped.close();
+      }
+    }
+    
+    // Get the store, from the cache if it's already loaded
+    Store store = StoreCache.getStore(file);
+    
+    // Handle this thread getting interrupted
+    if (Thread.currentThread().isInterrupted())
+    {
+      return;
+    }
+    
+    // Perform the search
+    new Indexer().searchStore(store, includeFiles,
+                              includeDirs, filter, sink);
+  }
+  
+  
+  /**
+   * Map the index file, if it is in the binary format and
+   * the store is not cached and is too large for the cache.
+   * 
+   * @param file the index file
+   * @return the mapped index, or null if the store should be loaded
+   */
+  private static MappedIndex openMappedIndex(final File file)
+  {
+    // Check if the store is cached or can't be mapped
+    if (StoreCache.isCached(file) || !IndexFile.isBinary(file))
+    {
+      return null;
+    }
+    
+    // Check the size of the store from the header, and only
+    // map the file if the store won't fit
+    MappedIndex mapped = null;
+    try
+    {
+      if (!StoreCache.wouldFit(IndexFile.readNodeCount(file)))
+      {
+        mapped = MappedIndex.open(file);
+      }
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("IOException mapping the file: " + ioe.getMessage());
+      mapped = null;
+    }
+    
+    return mapped;
+  }
+  
+  
+  /**
+   * Signal that the process completed.  This is called on the
+   * event thread, whether the task was cancelled or not, before
+   * the listeners hear that the state is DONE.
+   */
+  @Override
+  public void done()
+  {
+    // Show the best results in place of the first ones found
+    if (!isCancelled())
+    {
+      showBestResults();
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A directory or file found while crawling, with its attributes.
+ * The attributes are read with a single call when the entry is
+ * created, instead of a separate call for the size, the time
+ * and the type, which matters on network drives.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class CrawlEntry
+{
+  /**
+   * Sorts entries on their names, ignoring case.
+   */
+  private static final Comparator<CrawlEntry> NAME_ORDER = new Comparator<CrawlEntry>()
+  {
+    public int compare(final CrawlEntry o1, final CrawlEntry o2)
+    {
+      return (o1.name.toLowerCase().compareTo(o2.name.toLowerCase()));
+    }
+  };
+  
+  /**
+   * The name of the entry.
+   */
+  private final String name;
+  
+  /**
+   * The path of the entry.
+   */
+  private final Path path;
+  
+  /**
+   * Whether the entry is a directory.
+   */
+  private final boolean directory;
+  
+  /**
+   * The size of the entry.
+   */
+  private final long size;
+  
+  /**
+   * The last-modified time of the entry.
+   */
+  private final long lastModified;
+  
+  
+  /**
+   * Constructor.  If the attributes can't be read (such as for
+   * a broken link), the entry is a file with a size and time of
+   * zero, the same values java.io.File returns.
+   * 
+   * @param sName the name of the entry
+   * @param pPath the path of the entry
+   */
+  public CrawlEntry(final String sName, final Path pPath)
+  {
+    super();
+    name = sName;
+    path = pPath;
+    
+    // Read the attributes, following links
+    BasicFileAttributes attrs = null;
+    try
+    {
+      attrs = Files.readAttributes(path, BasicFileAttributes.class);
+    }
+    catch (IOException ioe)
+    {
+      attrs = null;
+    }
+    
+    if (attrs == null)
+    {
+      directory = false;
+      size = 0L;
+      lastModified = 0L;
+    }
+    else
+    {
+      directory = attrs.isDirectory();
+      size = attrs.size();
+      lastModified = attrs.lastModifiedTime().toMillis();
+    }
+  }
+  
+  
+  /**
+   * Return the name of the entry.
+   * 
+   * @return the name
+   */
+  public String getName()
+  {
+    return name;
+  }
+  
+  
+  /**
+   * Return the path of the entry.
+   * 
+   * @return the path
+   */
+  public Path getPath()
+  {
+    return path;
+  }
+  
+  
+  /**
+   * Return whether the entry is a directory.
+   * 
+   * @return whether the entry is a directory
+   */
+  public boolean isDirectory()
+  {
+    return directory;
+  }
+  
+  
+  /**
+   * Return the size of the entry.
+   * 
+   * @return the size
+   */
+  public long getSize()
+  {
+    return size;
+  }
+  
+  
+  /**
+   * Return the last-modified time of the entry.
+   * 
+   * @return the last-modified time
+   */
+  public long getLastModified()
+  {
+    return lastModified;
+  }
+  
+  
+  /**
+   * Return the children of this directory, sorted on their
+   * names, ignoring case.
+   * 
+   * @return the children, or null if the directory can't be read
+   */
+  public List<CrawlEntry> list()
+  {
+    List<CrawlEntry> children = new ArrayList<CrawlEntry>(20);
+    DirectoryStream<Path> stream = null;
+    try
+    {
+      // Read the entries and their attributes
+      stream = Files.newDirectoryStream(path);
+      for (Path child : stream)
+      {
+        children.add(new CrawlEntry(child.getFileName().toString(), child));
+      }
+      
+      stream.close();
+      stream = null;
+    }
+    catch (IOException ioe)
+    {
+      // We must not have permission to browse this directory
+      return null;
+    }
+    catch (DirectoryIteratorException die)
+    {
+      // There was an error reading the next entry
+      return null;
+    }
+    finally
+    {
+      if (stream != null)
+      {
+        try
+        {
+          stream.close();
+        }
+        catch (IOException ioe)
+        {
+          System.err.println("IOException: " + ioe.getMessage());
+        }
+        
+        stream = null;
+      }
+    }
+    
+    // Sort the children, ignoring case
+    Collections.sort(children, NAME_ORDER);
+    return children;
+  }
+}
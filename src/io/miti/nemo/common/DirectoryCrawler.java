@@ -0,0 +1,204 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Crawls a directory tree in parallel, using a fork/join pool.
+ * Each subdirectory is handled by its own task, so idle threads
+ * steal work from busy ones.  The children of each directory
+ * are added in the same order as the sequential crawler in
+ * Indexer, so the generated tree is identical.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class DirectoryCrawler
+{
+  /**
+   * The pool that runs the tasks.
+   */
+  private final ForkJoinPool pool;
+  
+  /**
+   * Whether the crawl has been cancelled.
+   */
+  private volatile boolean cancelled = false;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param pPool the pool that runs the tasks
+   */
+  public DirectoryCrawler(final ForkJoinPool pPool)
+  {
+    super();
+    pool = pPool;
+  }
+  
+  
+  /**
+   * Crawl the directory.  If the calling thread is interrupted,
+   * the crawl is cancelled and this returns null.
+   * 
+   * @param dir the root directory
+   * @return the root node, or null if the crawl was cancelled
+   */
+  public Node crawl(final CrawlEntry dir)
+  {
+    // Start the crawl
+    Future<Node> future = pool.submit(new CrawlTask(dir, null));
+    
+    // Wait for the result.  Unlike ForkJoinPool.invoke(), this
+    // can be interrupted.
+    Node root = null;
+    try
+    {
+      root = future.get();
+    }
+    catch (InterruptedException ie)
+    {
+      // Stop the tasks, and keep the interrupted status
+      cancelled = true;
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException ee)
+    {
+      cancelled = true;
+      ee.getCause().printStackTrace();
+    }
+    
+    return (cancelled ? null : root);
+  }
+  
+  
+  /**
+   * The task to crawl one directory.
+   */
+  private final class CrawlTask extends RecursiveTask<Node>
+  {
+    /**
+     * Default serial version ID.
+     */
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * The directory.
+     */
+    private final CrawlEntry dir;
+    
+    /**
+     * The parent node.
+     */
+    private final Node parent;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param pDir the directory
+     * @param pParent the parent node
+     */
+    public CrawlTask(final CrawlEntry pDir,
+                     final Node pParent)
+    {
+      super();
+      dir = pDir;
+      parent = pParent;
+    }
+    
+    
+    /**
+     * Build the node for the directory and its children.
+     * 
+     * @return the node
+     */
+    @Override
+    protected Node compute()
+    {
+      if (cancelled)
+      {
+        return null;
+      }
+      
+      // Create the node that will get returned
+      Node root = Indexer.createNode(dir, parent);
+      
+      // Get the children for this directory and check if they're null
+      List<CrawlEntry> children = Indexer.listChildren(dir);
+      if (children == null)
+      {
+        return root;
+      }
+      
+      // Create the nodes for the files, and start a task for
+      // each subdirectory
+      final int numKids = children.size();
+      Node[] nodes = new Node[numKids];
+      CrawlTask[] tasks = new CrawlTask[numKids];
+      for (int i = 0; (i < numKids) && !cancelled; i++)
+      {
+        CrawlEntry child = children.get(i);
+        if (child.isDirectory())
+        {
+          tasks[i] = new CrawlTask(child, root);
+          tasks[i].fork();
+        }
+        else
+        {
+          nodes[i] = Indexer.createNode(child, root);
+        }
+      }
+      
+      // Add the children in order, waiting for the subdirectories
+      for (int i = 0; i < numKids; i++)
+      {
+        if (tasks[i] != null)
+        {
+          nodes[i] = tasks[i].join();
+        }
+        
+        if (nodes[i] != null)
+        {
+          root.addChild(nodes[i]);
+        }
+      }
+      
+      // Return the node
+      return root;
+    }
+  }
+}
@@ -0,0 +1,379 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The distinct names of a store in upper case, so filters that
+ * ignore case can compare the names without converting each one
+ * on every search.  The names are converted with
+ * String.toUpperCase(), the same as the filters convert their
+ * terms.  The column is saved in a file next to the store's
+ * index file; since most names don't change when converted
+ * (or only change in a few characters), the file flags the
+ * names that are already in upper case, and only saves the
+ * converted form of the others.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class FoldedNames
+{
+  /**
+   * The extension of the file.
+   */
+  public static final String EXTENSION = ".upc";
+  
+  /**
+   * The magic number at the start and end of the file ("NUPC").
+   */
+  private static final int MAGIC = 0x4E555043;
+  
+  /**
+   * The current format version.
+   */
+  private static final int VERSION = 1;
+  
+  /**
+   * The number of nodes in the store.
+   */
+  private final int nodeCount;
+  
+  /**
+   * The characters of the names in upper case.
+   */
+  private final char[] chars;
+  
+  /**
+   * The offset of each name in chars, plus the end offset.
+   */
+  private final int[] offsets;
+  
+  /**
+   * The names that changed when converted, in ascending order.
+   */
+  private final int[] changed;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param nNodeCount the number of nodes
+   * @param pChars the characters of the names in upper case
+   * @param pOffsets the offset of each name, plus the end offset
+   * @param pChanged the names that changed when converted
+   */
+  private FoldedNames(final int nNodeCount,
+                      final char[] pChars,
+                      final int[] pOffsets,
+                      final int[] pChanged)
+  {
+    super();
+    nodeCount = nNodeCount;
+    chars = pChars;
+    offsets = pOffsets;
+    changed = pChanged;
+  }
+  
+  
+  /**
+   * Return the file for a store's index file.
+   * 
+   * @param indexFile the store's index file
+   * @return the file of names in upper case
+   */
+  public static File getFile(final File indexFile)
+  {
+    return Utility.getSidecarFile(indexFile, EXTENSION);
+  }
+  
+  
+  /**
+   * Convert the names in a table of nodes.
+   * 
+   * @param table the table of nodes
+   * @return the names in upper case
+   */
+  public static FoldedNames build(final NodeTable table)
+  {
+    final int nameCount = table.getNameCount();
+    String[] names = new String[nameCount];
+    int[] changed = new int[16];
+    int numChanged = 0;
+    for (int i = 0; i < nameCount; ++i)
+    {
+      final String name = table.getName(i);
+      names[i] = name.toUpperCase();
+      if (!names[i].equals(name))
+      {
+        if (numChanged == changed.length)
+        {
+          changed = Arrays.copyOf(changed, numChanged * 2);
+        }
+        changed[numChanged++] = i;
+      }
+    }
+    
+    return create(table.getNodeCount(), names, Arrays.copyOf(changed, numChanged));
+  }
+  
+  
+  /**
+   * Save the names in one array.
+   * 
+   * @param nNodeCount the number of nodes
+   * @param names the names in upper case
+   * @param changed the names that changed when converted
+   * @return the names in upper case
+   */
+  private static FoldedNames create(final int nNodeCount,
+                                    final String[] names,
+                                    final int[] changed)
+  {
+    int[] offsets = new int[names.length + 1];
+    for (int i = 0; i < names.length; ++i)
+    {
+      offsets[i + 1] = offsets[i] + names[i].length();
+    }
+    
+    char[] chars = new char[offsets[names.length]];
+    for (int i = 0; i < names.length; ++i)
+    {
+      names[i].getChars(0, names[i].length(), chars, offsets[i]);
+    }
+    
+    return new FoldedNames(nNodeCount, chars, offsets, changed);
+  }
+  
+  
+  /**
+   * Return a name in upper case.
+   * 
+   * @param nameIndex the index of the name
+   * @return the name in upper case
+   */
+  public String getName(final int nameIndex)
+  {
+    final int start = offsets[nameIndex];
+    return new String(chars, start, offsets[nameIndex + 1] - start);
+  }
+  
+  
+  /**
+   * Return the number of names.
+   * 
+   * @return the number of names
+   */
+  public int getNameCount()
+  {
+    return (offsets.length - 1);
+  }
+  
+  
+  /**
+   * Estimate the number of bytes used by this column.
+   * 
+   * @return the estimated size, in bytes
+   */
+  public long estimateSize()
+  {
+    return ((2L * chars.length) + (4L * offsets.length) + (4L * changed.length));
+  }
+  
+  
+  /**
+   * Write the names to a file.  The language of the default
+   * locale is saved, since the upper case of some letters
+   * depends on it.
+   * 
+   * @param file the output file
+   * @throws IOException error writing the file
+   */
+  public void write(final File file) throws IOException
+  {
+    FileOutputStream out = null;
+    try
+    {
+      out = new FileOutputStream(Utility.getTempFile(file));
+      IndexOutput output = new IndexOutput(out.getChannel());
+      
+      // Write the header
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeString(Locale.getDefault().getLanguage());
+      output.writeVarInt(getNameCount());
+      output.writeVarInt(nodeCount);
+      
+      // Write the names that changed, as differences from the
+      // previous name, and their upper case
+      output.writeVarInt(changed.length);
+      int prev = 0;
+      for (int name : changed)
+      {
+        output.writeVarInt(name - prev);
+        prev = name;
+        output.writeString(getName(name));
+      }
+      
+      // Write the footer
+      output.writeInt(MAGIC);
+      output.flush();
+      
+      Utility.replaceFile(out, file);
+      out = null;
+    }
+    finally
+    {
+      Utility.discardTempFile(out, file);
+    }
+  }
+  
+  
+  /**
+   * Read the names from a file.  The names that didn't change
+   * are copied from the table.
+   * 
+   * @param file the input file
+   * @param table the table of nodes
+   * @return the names in upper case, or null if the file was
+   *         written for a different table or locale
+   * @throws IOException error reading the file
+   */
+  public static FoldedNames read(final File file,
+                                 final NodeTable table) throws IOException
+  {
+    FileInputStream in = null;
+    FoldedNames folded = null;
+    try
+    {
+      in = new FileInputStream(file);
+      IndexInput input = new IndexInput(in.getChannel());
+      
+      // Read the header
+      if (input.readInt() != MAGIC)
+      {
+        throw new IOException("Not an upper case names file: " + file.getName());
+      }
+      final int version = input.readInt();
+      if (version > VERSION)
+      {
+        throw new IOException("Unsupported upper case names version: " + version);
+      }
+      final String language = input.readString();
+      final int nameCount = input.readVarInt();
+      final int nodes = input.readVarInt();
+      
+      // Check that the file matches the table and the locale
+      if ((nameCount != table.getNameCount()) || (nodes != table.getNodeCount()) ||
+          (!language.equals(Locale.getDefault().getLanguage())))
+      {
+        in.close();
+        in = null;
+        return null;
+      }
+      
+      // Read the names that changed
+      String[] names = new String[nameCount];
+      int[] changed = new int[input.readVarInt()];
+      int prev = 0;
+      for (int i = 0; i < changed.length; ++i)
+      {
+        prev += input.readVarInt();
+        changed[i] = prev;
+        names[prev] = input.readString();
+      }
+      
+      // Check the footer
+      if (input.readInt() != MAGIC)
+      {
+        throw new IOException("The upper case names file is incomplete");
+      }
+      
+      // Copy the rest of the names from the table
+      for (int i = 0; i < nameCount; ++i)
+      {
+        if (names[i] == null)
+        {
+          names[i] = table.getName(i);
+        }
+      }
+      
+      folded = create(nodes, names, changed);
+      in.close();
+      in = null;
+    }
+    finally
+    {
+      Utility.closeQuietly(in);
+    }
+    
+    return folded;
+  }
+  
+  
+  /**
+   * Load the names in upper case for a store's index file.
+   * The file is only used if it was written after the store's
+   * index file, for the same table and locale.
+   * 
+   * @param indexFile the store's index file
+   * @param table the table of nodes
+   * @return the names in upper case, or null if the file is
+   *         missing or out of date
+   */
+  public static FoldedNames load(final File indexFile, final NodeTable table)
+  {
+    // Check the file
+    File file = Utility.getCurrentSidecarFile(indexFile, EXTENSION);
+    if (file == null)
+    {
+      return null;
+    }
+    
+    // Read the file
+    FoldedNames folded = null;
+    try
+    {
+      folded = read(file, table);
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("IOException reading the upper case names: " + ioe.getMessage());
+      folded = null;
+    }
+    
+    return folded;
+  }
+}
@@ -0,0 +1,417 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.FilterUtility;
+import io.miti.nemo.filter.FuzzyFilter;
+import io.miti.nemo.filter.Levenshtein;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A BK-tree of the distinct names in a node table, used to find
+ * the names within a Levenshtein distance of a term without
+ * comparing the term to every name.  Each name is a node of the
+ * tree, and the edge to each child is the distance between the
+ * two names.  By the triangle inequality, a search for names
+ * within k of a term only needs to follow the edges within k of
+ * the distance to the current node.
+ * 
+ * The names are saved in upper case, so one tree handles both
+ * case-sensitive and case-insensitive searches.  The distance in
+ * upper case is never more than the case-sensitive distance, so
+ * the names found for a case-sensitive search include every
+ * match, and the filter checks them.  Names whose upper case
+ * isn't one character for each character (such as the German
+ * sharp s) aren't in the tree, and are always returned.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class FuzzyIndex
+{
+  /**
+   * The characters of the names in the tree, in upper case.
+   */
+  private final char[] chars;
+  
+  /**
+   * The offset of each name in chars, plus the end offset.
+   */
+  private final int[] offsets;
+  
+  /**
+   * The first child of each name, or NodeTable.NONE.
+   */
+  private final int[] firstChild;
+  
+  /**
+   * The next sibling of each name, or NodeTable.NONE.
+   */
+  private final int[] nextSibling;
+  
+  /**
+   * The distance between each name and its parent.
+   */
+  private final int[] edge;
+  
+  /**
+   * The root of the tree, or NodeTable.NONE if it's empty.
+   */
+  private final int root;
+  
+  /**
+   * The names that aren't in the tree.
+   */
+  private final int[] irregular;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param pChars the characters of the names
+   * @param pOffsets the offset of each name, plus the end offset
+   * @param pFirstChild the first child of each name
+   * @param pNextSibling the next sibling of each name
+   * @param pEdge the distance between each name and its parent
+   * @param nRoot the root of the tree
+   * @param pIrregular the names that aren't in the tree
+   */
+  private FuzzyIndex(final char[] pChars,
+                     final int[] pOffsets,
+                     final int[] pFirstChild,
+                     final int[] pNextSibling,
+                     final int[] pEdge,
+                     final int nRoot,
+                     final int[] pIrregular)
+  {
+    super();
+    chars = pChars;
+    offsets = pOffsets;
+    firstChild = pFirstChild;
+    nextSibling = pNextSibling;
+    edge = pEdge;
+    root = nRoot;
+    irregular = pIrregular;
+  }
+  
+  
+  /**
+   * Build the tree for the names in a node table.
+   * 
+   * @param table the node table
+   * @return the tree
+   */
+  public static FuzzyIndex build(final NodeTable table)
+  {
+    // Save the names in upper case
+    final int nameCount = table.getNameCount();
+    int[] offsets = new int[nameCount + 1];
+    char[] chars = new char[Math.max(16, nameCount * 12)];
+    int[] irregular = new int[16];
+    int numIrregular = 0;
+    for (int i = 0; i < nameCount; ++i)
+    {
+      final String name = table.getName(i);
+      final int len = name.length();
+      if (!FilterUtility.hasSimpleUpperCase(name))
+      {
+        // Leave this name out of the tree
+        if (numIrregular == irregular.length)
+        {
+          irregular = Arrays.copyOf(irregular, numIrregular * 2);
+        }
+        irregular[numIrregular++] = i;
+        offsets[i + 1] = offsets[i];
+        continue;
+      }
+      
+      if ((offsets[i] + len) > chars.length)
+      {
+        chars = Arrays.copyOf(chars, Math.max(chars.length * 2, offsets[i] + len));
+      }
+      for (int j = 0; j < len; ++j)
+      {
+        chars[offsets[i] + j] = Character.toUpperCase(name.charAt(j));
+      }
+      offsets[i + 1] = offsets[i] + len;
+    }
+    
+    // Build the tree
+    int[] firstChild = new int[nameCount];
+    int[] nextSibling = new int[nameCount];
+    int[] edge = new int[nameCount];
+    Arrays.fill(firstChild, NodeTable.NONE);
+    Arrays.fill(nextSibling, NodeTable.NONE);
+    int root = NodeTable.NONE;
+    
+    Levenshtein matcher = new Levenshtein("");
+    NameView view = new NameView(chars, offsets);
+    int next = 0;
+    for (int i = 0; i < nameCount; ++i)
+    {
+      // Skip the names not in the tree
+      if ((next < numIrregular) && (irregular[next] == i))
+      {
+        ++next;
+        continue;
+      }
+      else if (root == NodeTable.NONE)
+      {
+        root = i;
+        continue;
+      }
+      
+      // Follow the edges with the same distance as this name,
+      // and add it where there isn't one
+      matcher.setPattern(new String(chars, offsets[i], offsets[i + 1] - offsets[i]));
+      int node = root;
+      while (true)
+      {
+        final int dist = matcher.distance(view.setName(node), false, Integer.MAX_VALUE);
+        int child = firstChild[node];
+        while ((child != NodeTable.NONE) && (edge[child] != dist))
+        {
+          child = nextSibling[child];
+        }
+        
+        if (child == NodeTable.NONE)
+        {
+          edge[i] = dist;
+          nextSibling[i] = firstChild[node];
+          firstChild[node] = i;
+          break;
+        }
+        
+        node = child;
+      }
+    }
+    
+    return new FuzzyIndex(Arrays.copyOf(chars, offsets[nameCount]), offsets,
+                          firstChild, nextSibling, edge, root,
+                          Arrays.copyOf(irregular, numIrregular));
+  }
+  
+  
+  /**
+   * Return the names that might be accepted by the filter: the
+   * names within the filter's distance of its term in upper
+   * case, and the names that aren't in the tree.
+   * 
+   * @param filter the filter
+   * @return the index of each name that might match
+   */
+  public BitSet findCandidates(final FuzzyFilter filter)
+  {
+    BitSet candidates = new BitSet(firstChild.length);
+    final String term = filter.getTerm();
+    if (term == null)
+    {
+      return candidates;
+    }
+    
+    // Names that aren't in the tree are always candidates
+    for (int name : irregular)
+    {
+      candidates.set(name);
+    }
+    
+    // For a case-sensitive search, convert each character, so
+    // the distance can't be more than the case-sensitive one
+    String key = null;
+    if (filter.isIgnoreCase())
+    {
+      key = term.toUpperCase();
+    }
+    else
+    {
+      char[] upper = term.toCharArray();
+      for (int i = 0; i < upper.length; ++i)
+      {
+        upper[i] = Character.toUpperCase(upper[i]);
+      }
+      key = new String(upper);
+    }
+    
+    // Search the tree
+    final int maxDistance = filter.getMaxDistance();
+    if ((root == NodeTable.NONE) || (maxDistance < 0))
+    {
+      return candidates;
+    }
+    
+    Levenshtein matcher = new Levenshtein(key);
+    NameView view = new NameView(chars, offsets);
+    int[] stack = new int[64];
+    int depth = 0;
+    stack[depth++] = root;
+    while (depth > 0)
+    {
+      // Check the name
+      final int node = stack[--depth];
+      final int dist = matcher.distance(view.setName(node), false, Integer.MAX_VALUE);
+      if (dist <= maxDistance)
+      {
+        candidates.set(node);
+      }
+      
+      // Visit the children whose edges are within the maximum
+      // distance of this one
+      for (int child = firstChild[node]; child != NodeTable.NONE; child = nextSibling[child])
+      {
+        if (Math.abs(edge[child] - dist) <= maxDistance)
+        {
+          if (depth == stack.length)
+          {
+            stack = Arrays.copyOf(stack, depth * 2);
+          }
+          stack[depth++] = child;
+        }
+      }
+    }
+    
+    return candidates;
+  }
+  
+  
+  /**
+   * Estimate the number of bytes used by this index.
+   * 
+   * @return the estimated size, in bytes
+   */
+  public long estimateSize()
+  {
+    return ((2L * chars.length) + (16L * firstChild.length) + (4L * irregular.length));
+  }
+  
+  
+  /**
+   * A view of one of the names in the tree, so they can be
+   * compared without creating a string for each one.
+   */
+  private static final class NameView implements CharSequence
+  {
+    /**
+     * The characters of the names.
+     */
+    private final char[] chars;
+    
+    /**
+     * The offset of each name, plus the end offset.
+     */
+    private final int[] offsets;
+    
+    /**
+     * The offset of the current name.
+     */
+    private int start = 0;
+    
+    /**
+     * The length of the current name.
+     */
+    private int length = 0;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param pChars the characters of the names
+     * @param pOffsets the offset of each name, plus the end offset
+     */
+    public NameView(final char[] pChars, final int[] pOffsets)
+    {
+      super();
+      chars = pChars;
+      offsets = pOffsets;
+    }
+    
+    
+    /**
+     * Show one of the names.
+     * 
+     * @param name the index of the name
+     * @return this view
+     */
+    public NameView setName(final int name)
+    {
+      start = offsets[name];
+      length = offsets[name + 1] - start;
+      return this;
+    }
+    
+    
+    /**
+     * Return the length of the name.
+     * 
+     * @return the length
+     */
+    public int length()
+    {
+      return length;
+    }
+    
+    
+    /**
+     * Return a character of the name.
+     * 
+     * @param index the index of the character
+     * @return the character
+     */
+    public char charAt(final int index)
+    {
+      return chars[start + index];
+    }
+    
+    
+    /**
+     * Return part of the name.
+     * 
+     * @param from the index of the first character
+     * @param to the index after the last character
+     * @return the part of the name
+     */
+    public CharSequence subSequence(final int from, final int to)
+    {
+      return new String(chars, start + from, to - from);
+    }
+    
+    
+    /**
+     * Return the name.
+     * 
+     * @return the name
+     */
+    @Override
+    public String toString()
+    {
+      return new String(chars, start, length);
+    }
+  }
+}
@@ -0,0 +1,467 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the binary index file format.
+ * 
+ * <p>The file starts with a header (the magic number, the
+ * format version, the store name and directory, and the
+ * number of nodes and distinct names), followed by the
+ * sections, and ends with a directory of the sections and
+ * a fixed-size footer pointing to that directory.  The
+ * sections are:
+ * <ul>
+ * <li>names: each distinct file name, as a byte count
+ *     and the UTF-8 bytes</li>
+ * <li>nodes: each node in depth-first order, as the index
+ *     of its name, a flags byte, the number of children
+ *     (directories only), the size and the difference
+ *     between its last-modified time and that of the
+ *     previous node</li>
+ * </ul>
+ * Integers in the sections are variable-length.  Readers
+ * skip sections they don't recognize, so sections can be
+ * added without changing the version number.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class IndexFile
+{
+  /**
+   * The magic number at the start and end of the file ("NEMO").
+   */
+  public static final int MAGIC = 0x4E454D4F;
+  
+  /**
+   * The current format version.
+   */
+  public static final int VERSION = 1;
+  
+  /**
+   * The ID of the section holding the distinct names.
+   */
+  public static final int SECTION_NAMES = 1;
+  
+  /**
+   * The ID of the section holding the nodes.
+   */
+  public static final int SECTION_NODES = 2;
+  
+  /**
+   * The flag set on directory nodes.
+   */
+  public static final int FLAG_DIRECTORY = 0x01;
+  
+  /**
+   * The size of the footer (the directory offset and the magic number).
+   */
+  private static final int FOOTER_SIZE = 12;
+  
+  /**
+   * The character set used for strings in the file.
+   */
+  public static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  
+  /**
+   * Default constructor.
+   */
+  private IndexFile()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Return whether the file is in the binary index format.
+   * 
+   * @param file the file to check
+   * @return whether the file is a binary index
+   */
+  public static boolean isBinary(final File file)
+  {
+    // Check the file
+    if ((file == null) || (!file.isFile()) || (file.length() < FOOTER_SIZE))
+    {
+      return false;
+    }
+    
+    // Check the magic number at the start of the file
+    FileInputStream in = null;
+    boolean result = false;
+    try
+    {
+      in = new FileInputStream(file);
+      IndexInput input = new IndexInput(in.getChannel());
+      result = (input.readInt() == MAGIC);
+    }
+    catch (IOException ioe)
+    {
+      result = false;
+    }
+    finally
+    {
+      Utility.closeQuietly(in);
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * Return the number of nodes in a binary index file, read
+   * from the header without reading the rest of the file.
+   * 
+   * @param file the index file
+   * @return the number of nodes
+   * @throws IOException error reading the file
+   */
+  public static int readNodeCount(final File file) throws IOException
+  {
+    FileInputStream in = null;
+    int count = 0;
+    try
+    {
+      in = new FileInputStream(file);
+      IndexInput input = new IndexInput(in.getChannel());
+      
+      // Read the header, up to the number of nodes
+      if (input.readInt() != MAGIC)
+      {
+        throw new IOException("Not a Nemo index file: " + file.getName());
+      }
+      input.readInt();
+      input.readString();
+      input.readString();
+      count = input.readVarInt();
+    }
+    finally
+    {
+      Utility.closeQuietly(in);
+    }
+    
+    return count;
+  }
+  
+  
+  /**
+   * Write the store to a file.
+   * 
+   * @param file the output file
+   * @param store the store to write
+   * @throws IOException error writing the file
+   */
+  public static void write(final File file, final Store store)
+    throws IOException
+  {
+    // Get the nodes as a table
+    NodeTable table = store.getNodeTable();
+    if (table == null)
+    {
+      table = NodeTable.fromNode(store.getDataStore());
+    }
+    final int nodeCount = table.getNodeCount();
+    final int nameCount = table.getNameCount();
+    
+    FileOutputStream out = null;
+    try
+    {
+      out = new FileOutputStream(Utility.getTempFile(file));
+      IndexOutput output = new IndexOutput(out.getChannel());
+      
+      // Write the header
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeString(store.getName());
+      output.writeString(store.getDirectory());
+      output.writeVarInt(nodeCount);
+      output.writeVarInt(nameCount);
+      
+      // Write the names
+      final long namesOffset = output.getOffset();
+      for (int i = 0; i < nameCount; ++i)
+      {
+        table.writeName(output, i);
+      }
+      
+      // Write the nodes
+      final long nodesOffset = output.getOffset();
+      long lastMod = 0L;
+      for (int i = 0; i < nodeCount; ++i)
+      {
+        final boolean isDir = table.isDirectory(i);
+        output.writeVarInt(table.getNameId(i));
+        output.writeByte(isDir ? FLAG_DIRECTORY : 0);
+        if (isDir)
+        {
+          output.writeVarInt(table.getNumChildren(i));
+        }
+        
+        output.writeSignedVarLong(table.getFileSize(i));
+        output.writeSignedVarLong(table.getLastModified(i) - lastMod);
+        lastMod = table.getLastModified(i);
+      }
+      
+      // Write the directory of sections
+      final long dirOffset = output.getOffset();
+      output.writeVarInt(2);
+      writeSection(output, SECTION_NAMES, namesOffset, nodesOffset);
+      writeSection(output, SECTION_NODES, nodesOffset, dirOffset);
+      
+      // Write the footer
+      output.writeLong(dirOffset);
+      output.writeInt(MAGIC);
+      output.flush();
+      
+      Utility.replaceFile(out, file);
+      out = null;
+    }
+    finally
+    {
+      Utility.discardTempFile(out, file);
+    }
+  }
+  
+  
+  /**
+   * Write an entry in the directory of sections.
+   * 
+   * @param output the output file
+   * @param id the section ID
+   * @param start the offset of the start of the section
+   * @param end the offset of the end of the section
+   * @throws IOException error writing the file
+   */
+  private static void writeSection(final IndexOutput output,
+                                   final int id,
+                                   final long start,
+                                   final long end) throws IOException
+  {
+    output.writeVarInt(id);
+    output.writeVarLong(start);
+    output.writeVarLong(end - start);
+  }
+  
+  
+  /**
+   * Read the store from a file.
+   * 
+   * @param file the input file
+   * @return the store
+   * @throws IOException error reading the file
+   */
+  public static Store read(final File file) throws IOException
+  {
+    FileInputStream in = null;
+    Store store = null;
+    try
+    {
+      in = new FileInputStream(file);
+      FileChannel channel = in.getChannel();
+      IndexInput input = new IndexInput(channel);
+      
+      // Read the header
+      if (input.readInt() != MAGIC)
+      {
+        throw new IOException("Not a Nemo index file: " + file.getName());
+      }
+      final int version = input.readInt();
+      if (version > VERSION)
+      {
+        throw new IOException("Unsupported index version: " + version);
+      }
+      store = new Store(input.readString(), input.readString());
+      final int nodeCount = input.readVarInt();
+      final int nameCount = input.readVarInt();
+      
+      // Find the sections
+      Map<Integer, long[]> sections = readSections(input, channel.size());
+      
+      // Read the names into one array.  The section is a little
+      // larger than the names, since it includes their lengths.
+      long[] namesSection = seekSection(input, sections, SECTION_NAMES);
+      byte[] nameData = new byte[(int) namesSection[1]];
+      int[] nameOffsets = new int[nameCount + 1];
+      for (int i = 0; i < nameCount; ++i)
+      {
+        final int len = input.readVarInt();
+        input.readBytes(nameData, nameOffsets[i], len);
+        nameOffsets[i + 1] = nameOffsets[i] + len;
+      }
+      nameData = Arrays.copyOf(nameData, nameOffsets[nameCount]);
+      
+      // Read the nodes
+      seekSection(input, sections, SECTION_NODES);
+      NodeTable table = new NodeTable(nodeCount, nameData, nameOffsets);
+      readNodes(input, table, nodeCount);
+      table.link();
+      store.setNodeTable(table);
+      
+      in.close();
+      in = null;
+    }
+    finally
+    {
+      Utility.closeQuietly(in);
+    }
+    
+    return store;
+  }
+  
+  
+  /**
+   * Read the directory of sections.
+   * 
+   * @param input the input file
+   * @param fileSize the size of the file
+   * @return a map of section ID to the section offset and length
+   * @throws IOException error reading the file
+   */
+  static Map<Integer, long[]> readSections(final IndexInput input,
+                                           final long fileSize) throws IOException
+  {
+    // Read the footer
+    input.seek(fileSize - FOOTER_SIZE);
+    final long dirOffset = input.readLong();
+    if (input.readInt() != MAGIC)
+    {
+      throw new IOException("The index file is incomplete");
+    }
+    
+    // Read the directory
+    input.seek(dirOffset);
+    final int count = input.readVarInt();
+    Map<Integer, long[]> sections = new HashMap<Integer, long[]>(count * 2);
+    for (int i = 0; i < count; ++i)
+    {
+      final int id = input.readVarInt();
+      final long offset = input.readVarLong();
+      final long length = input.readVarLong();
+      sections.put(Integer.valueOf(id), new long[] {offset, length});
+    }
+    
+    return sections;
+  }
+  
+  
+  /**
+   * Move to the start of a section.
+   * 
+   * @param input the input file
+   * @param sections the directory of sections
+   * @param id the section ID
+   * @return the offset and length of the section
+   * @throws IOException the section is missing
+   */
+  static long[] seekSection(final IndexInput input,
+                          final Map<Integer, long[]> sections,
+                          final int id) throws IOException
+  {
+    long[] section = sections.get(Integer.valueOf(id));
+    if (section == null)
+    {
+      throw new IOException("The index file is missing section " + id);
+    }
+    
+    input.seek(section[0]);
+    return section;
+  }
+  
+  
+  /**
+   * Read the nodes into the table.
+   * 
+   * @param input the input file
+   * @param table the node table
+   * @param nodeCount the number of nodes
+   * @throws IOException error reading the file
+   */
+  private static void readNodes(final IndexInput input,
+                                final NodeTable table,
+                                final int nodeCount) throws IOException
+  {
+    // For each directory being read, save its index and the
+    // number of children left to read
+    int[] dirs = new int[32];
+    int[] remaining = new int[32];
+    int depth = -1;
+    long lastMod = 0L;
+    for (int i = 0; i < nodeCount; ++i)
+    {
+      // Find the parent of this node
+      while ((depth >= 0) && (remaining[depth] == 0))
+      {
+        --depth;
+      }
+      if ((depth < 0) && (i > 0))
+      {
+        throw new IOException("The index file has more than one root");
+      }
+      
+      final int parent = ((depth < 0) ? NodeTable.NONE : dirs[depth]);
+      if (depth >= 0)
+      {
+        --remaining[depth];
+      }
+      
+      // Read the fields and add the node
+      final int nameId = input.readVarInt();
+      final boolean isDir = ((input.readByte() & FLAG_DIRECTORY) != 0);
+      final int numKids = (isDir ? input.readVarInt() : 0);
+      final long size = input.readSignedVarLong();
+      lastMod += input.readSignedVarLong();
+      table.add(parent, nameId, isDir, size, lastMod);
+      
+      // Save the directory, if it has children
+      if (numKids > 0)
+      {
+        ++depth;
+        if (depth == dirs.length)
+        {
+          dirs = Arrays.copyOf(dirs, depth * 2);
+          remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+        dirs[depth] = i;
+        remaining[depth] = numKids;
+      }
+    }
+  }
+}
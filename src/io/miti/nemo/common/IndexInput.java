@@ -0,0 +1,314 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reader for the binary index file.  This reads either from
+ * a file channel (through a buffer that gets refilled as
+ * needed) or directly from a buffer holding the whole file,
+ * such as a memory-mapped file.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class IndexInput
+{
+  /**
+   * The size of the read buffer, when reading from a channel.
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+  
+  /**
+   * The channel to read from, or null if the buffer holds the file.
+   */
+  private final FileChannel channel;
+  
+  /**
+   * The buffer holding the bytes being read.
+   */
+  private ByteBuffer buffer;
+  
+  /**
+   * The file offset of the start of the buffer.
+   */
+  private long bufferOffset = 0L;
+  
+  
+  /**
+   * Constructor for reading from a file channel.
+   * 
+   * @param pChannel the channel to read from
+   */
+  public IndexInput(final FileChannel pChannel)
+  {
+    super();
+    channel = pChannel;
+    buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    buffer.limit(0);
+  }
+  
+  
+  /**
+   * Constructor for reading from a buffer holding the whole file.
+   * 
+   * @param pBuffer the buffer to read from
+   */
+  public IndexInput(final ByteBuffer pBuffer)
+  {
+    super();
+    channel = null;
+    buffer = pBuffer;
+  }
+  
+  
+  /**
+   * Move to the specified file offset.
+   * 
+   * @param offset the file offset
+   * @throws IOException error reading the channel
+   */
+  public void seek(final long offset) throws IOException
+  {
+    if (channel == null)
+    {
+      buffer.position((int) offset);
+    }
+    else
+    {
+      channel.position(offset);
+      bufferOffset = offset;
+      buffer.clear();
+      buffer.limit(0);
+    }
+  }
+  
+  
+  /**
+   * Return the offset of the next byte to get read.
+   * 
+   * @return the current file offset
+   */
+  public long getOffset()
+  {
+    return bufferOffset + buffer.position();
+  }
+  
+  
+  /**
+   * Make sure the buffer holds at least one unread byte.
+   * 
+   * @throws IOException error reading the channel
+   */
+  private void fill() throws IOException
+  {
+    if (buffer.hasRemaining())
+    {
+      return;
+    }
+    else if (channel == null)
+    {
+      throw new EOFException("Unexpected end of the index");
+    }
+    
+    // Refill the buffer from the channel
+    bufferOffset += buffer.position();
+    buffer.clear();
+    int count = 0;
+    while (count == 0)
+    {
+      count = channel.read(buffer);
+    }
+    buffer.flip();
+    
+    if (count < 0)
+    {
+      throw new EOFException("Unexpected end of the index file");
+    }
+  }
+  
+  
+  /**
+   * Read a single byte.
+   * 
+   * @return the byte, as an unsigned value
+   * @throws IOException error reading the channel
+   */
+  public int readByte() throws IOException
+  {
+    fill();
+    return (buffer.get() & 0xFF);
+  }
+  
+  
+  /**
+   * Read a fixed-size (four byte) integer.
+   * 
+   * @return the value
+   * @throws IOException error reading the channel
+   */
+  public int readInt() throws IOException
+  {
+    if (buffer.remaining() >= 4)
+    {
+      return buffer.getInt();
+    }
+    
+    int value = 0;
+    for (int i = 0; i < 4; ++i)
+    {
+      value = (value << 8) | readByte();
+    }
+    return value;
+  }
+  
+  
+  /**
+   * Read a fixed-size (eight byte) long.
+   * 
+   * @return the value
+   * @throws IOException error reading the channel
+   */
+  public long readLong() throws IOException
+  {
+    if (buffer.remaining() >= 8)
+    {
+      return buffer.getLong();
+    }
+    
+    long value = 0L;
+    for (int i = 0; i < 8; ++i)
+    {
+      value = (value << 8) | readByte();
+    }
+    return value;
+  }
+  
+  
+  /**
+   * Read a non-negative variable-length integer.
+   * 
+   * @return the value
+   * @throws IOException error reading the channel
+   */
+  public int readVarInt() throws IOException
+  {
+    return (int) readVarLong();
+  }
+  
+  
+  /**
+   * Read a variable-length long.
+   * 
+   * @return the value
+   * @throws IOException error reading the channel
+   */
+  public long readVarLong() throws IOException
+  {
+    long value = 0L;
+    int shift = 0;
+    while (true)
+    {
+      fill();
+      final int b = buffer.get();
+      value |= ((long) (b & 0x7F)) << shift;
+      if ((b & 0x80) == 0)
+      {
+        return value;
+      }
+      shift += 7;
+    }
+  }
+  
+  
+  /**
+   * Read a zig-zag encoded variable-length long.
+   * 
+   * @return the value
+   * @throws IOException error reading the channel
+   */
+  public long readSignedVarLong() throws IOException
+  {
+    final long value = readVarLong();
+    return ((value >>> 1) ^ -(value & 1L));
+  }
+  
+  
+  /**
+   * Read bytes into an array.
+   * 
+   * @param data the array to fill
+   * @param offset the offset of the first byte in data
+   * @param length the number of bytes to read
+   * @throws IOException error reading the channel
+   */
+  public void readBytes(final byte[] data,
+                        final int offset,
+                        final int length) throws IOException
+  {
+    int off = offset;
+    int len = length;
+    while (len > 0)
+    {
+      fill();
+      final int count = Math.min(len, buffer.remaining());
+      buffer.get(data, off, count);
+      off += count;
+      len -= count;
+    }
+  }
+  
+  
+  /**
+   * Read a string written by IndexOutput.writeString().
+   * 
+   * @return the string
+   * @throws IOException error reading the channel
+   */
+  public String readString() throws IOException
+  {
+    final int len = readVarInt();
+    if ((channel == null) && (buffer.hasArray()))
+    {
+      // Decode straight out of the buffer
+      final int pos = buffer.position();
+      buffer.position(pos + len);
+      return new String(buffer.array(), buffer.arrayOffset() + pos,
+                        len, IndexFile.UTF8);
+    }
+    
+    final byte[] data = new byte[len];
+    readBytes(data, 0, len);
+    return new String(data, IndexFile.UTF8);
+  }
+}
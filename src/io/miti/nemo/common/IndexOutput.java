@@ -0,0 +1,243 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered writer for the binary index file.  Besides the
+ * fixed-size values, this writes variable-length integers
+ * (7 bits per byte, low bits first) and keeps track of the
+ * current file offset so sections can be located later.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class IndexOutput
+{
+  /**
+   * The size of the write buffer.
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+  
+  /**
+   * The channel to write to.
+   */
+  private final FileChannel channel;
+  
+  /**
+   * The write buffer.
+   */
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  
+  /**
+   * The number of bytes flushed to the channel.
+   */
+  private long flushed = 0L;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param pChannel the channel to write to
+   */
+  public IndexOutput(final FileChannel pChannel)
+  {
+    super();
+    channel = pChannel;
+  }
+  
+  
+  /**
+   * Return the offset of the next byte to get written.
+   * 
+   * @return the current file offset
+   */
+  public long getOffset()
+  {
+    return flushed + buffer.position();
+  }
+  
+  
+  /**
+   * Make sure the buffer has room for the specified number of bytes.
+   * 
+   * @param count the number of bytes needed
+   * @throws IOException error writing to the channel
+   */
+  private void ensure(final int count) throws IOException
+  {
+    if (buffer.remaining() < count)
+    {
+      flush();
+    }
+  }
+  
+  
+  /**
+   * Write the contents of the buffer to the channel.
+   * 
+   * @throws IOException error writing to the channel
+   */
+  public void flush() throws IOException
+  {
+    buffer.flip();
+    while (buffer.hasRemaining())
+    {
+      flushed += channel.write(buffer);
+    }
+    buffer.clear();
+  }
+  
+  
+  /**
+   * Write a single byte.
+   * 
+   * @param value the byte to write
+   * @throws IOException error writing to the channel
+   */
+  public void writeByte(final int value) throws IOException
+  {
+    ensure(1);
+    buffer.put((byte) value);
+  }
+  
+  
+  /**
+   * Write a fixed-size (four byte) integer.
+   * 
+   * @param value the value to write
+   * @throws IOException error writing to the channel
+   */
+  public void writeInt(final int value) throws IOException
+  {
+    ensure(4);
+    buffer.putInt(value);
+  }
+  
+  
+  /**
+   * Write a fixed-size (eight byte) long.
+   * 
+   * @param value the value to write
+   * @throws IOException error writing to the channel
+   */
+  public void writeLong(final long value) throws IOException
+  {
+    ensure(8);
+    buffer.putLong(value);
+  }
+  
+  
+  /**
+   * Write a non-negative variable-length integer.
+   * 
+   * @param value the value to write
+   * @throws IOException error writing to the channel
+   */
+  public void writeVarInt(final int value) throws IOException
+  {
+    writeVarLong(value & 0xFFFFFFFFL);
+  }
+  
+  
+  /**
+   * Write a variable-length long.  Negative values take
+   * ten bytes, so use writeSignedVarLong() for those.
+   * 
+   * @param value the value to write
+   * @throws IOException error writing to the channel
+   */
+  public void writeVarLong(final long value) throws IOException
+  {
+    ensure(10);
+    long v = value;
+    while ((v & ~0x7FL) != 0L)
+    {
+      buffer.put((byte) ((v & 0x7FL) | 0x80L));
+      v >>>= 7;
+    }
+    buffer.put((byte) v);
+  }
+  
+  
+  /**
+   * Write a variable-length long that may be negative, using
+   * zig-zag encoding so small negative values stay short.
+   * 
+   * @param value the value to write
+   * @throws IOException error writing to the channel
+   */
+  public void writeSignedVarLong(final long value) throws IOException
+  {
+    writeVarLong((value << 1) ^ (value >> 63));
+  }
+  
+  
+  /**
+   * Write an array of bytes.
+   * 
+   * @param data the bytes to write
+   * @param offset the offset of the first byte in data
+   * @param length the number of bytes to write
+   * @throws IOException error writing to the channel
+   */
+  public void writeBytes(final byte[] data,
+                         final int offset,
+                         final int length) throws IOException
+  {
+    int off = offset;
+    int len = length;
+    while (len > 0)
+    {
+      ensure(1);
+      final int count = Math.min(len, buffer.remaining());
+      buffer.put(data, off, count);
+      off += count;
+      len -= count;
+    }
+  }
+  
+  
+  /**
+   * Write a string as a variable-length byte count followed
+   * by the UTF-8 bytes.
+   * 
+   * @param str the string to write
+   * @throws IOException error writing to the channel
+   */
+  public void writeString(final String str) throws IOException
+  {
+    final byte[] data = str.getBytes(IndexFile.UTF8);
+    writeVarInt(data.length);
+    writeBytes(data, 0, data.length);
+  }
+}
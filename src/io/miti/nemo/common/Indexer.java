@@ -28,6 +28,11 @@
 
 package io.miti.nemo.common;
 
+import io.miti.nemo.filter.AttributeFilter;
+import io.miti.nemo.filter.DictionaryFilter;
+import io.miti.nemo.filter.FoldedFilter;
+import io.miti.nemo.filter.FuzzyFilter;
+import io.miti.nemo.filter.PhoneticFilter;
 import io.miti.nemo.filter.TermFilter;
 
 import java.io.BufferedReader;
@@ -37,12 +42,16 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.Comparator;
+import java.io.OutputStreamWriter;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 
@@ -60,9 +69,66 @@ public final class Indexer
   private boolean bInterrupted = false;
   
   /**
-   * Whether to load/save the data in the text format.
+   * Save the data using Java serialization.
    */
-  private static final boolean USE_TEXT = true;
+  private static final int FORMAT_SERIALIZED = 0;
+  
+  /**
+   * Save the data in the text format (one line per node).
+   */
+  private static final int FORMAT_TEXT = 1;
+  
+  /**
+   * Save the data in the binary format (see IndexFile).
+   */
+  private static final int FORMAT_BINARY = 2;
+  
+  /**
+   * The format used to save the data.
+   */
+  private static final int SAVE_FORMAT = FORMAT_BINARY;
+  
+  /**
+   * The number of threads used to crawl directories.  Zero
+   * means one per processor.
+   */
+  private static int crawlerThreads = 0;
+  
+  /**
+   * The pool used to crawl directories in parallel.
+   */
+  private static ForkJoinPool crawlerPool = null;
+  
+  /**
+   * Whether to build a trigram index when a store is saved,
+   * and use it when the store is searched.
+   */
+  private static boolean trigramIndex = true;
+  
+  /**
+   * The state of a name that hasn't been passed to the filter.
+   */
+  static final byte NAME_UNCHECKED = 0;
+  
+  /**
+   * The state of a name that was accepted by the filter.
+   */
+  static final byte NAME_MATCHED = 1;
+  
+  /**
+   * The state of a name that was rejected by the filter.
+   */
+  static final byte NAME_REJECTED = 2;
+  
+  /**
+   * The smallest store that gets searched in parallel.
+   */
+  private static final int PARALLEL_SEARCH_SIZE = 100000;
+  
+  /**
+   * The pool used to search large stores in parallel.
+   */
+  private static ForkJoinPool searchPool = null;
   
   
   /**
@@ -74,6 +140,108 @@ public final class Indexer
   }
   
   
+  /**
+   * Set the number of threads used to crawl directories.  A
+   * value less than one uses one thread per processor, and a
+   * value of one crawls on the calling thread.  Directories on
+   * network drives can benefit from more threads than there
+   * are processors.
+   * 
+   * @param nThreads the number of threads
+   */
+  public static synchronized void setCrawlerThreads(final int nThreads)
+  {
+    final int num = Math.max(0, nThreads);
+    if (num != crawlerThreads)
+    {
+      // Replace the pool the next time it's needed
+      crawlerThreads = num;
+      if (crawlerPool != null)
+      {
+        crawlerPool.shutdown();
+        crawlerPool = null;
+      }
+    }
+  }
+  
+  
+  /**
+   * Return the number of threads used to crawl directories.
+   * 
+   * @return the number of threads, or zero for one per processor
+   */
+  public static synchronized int getCrawlerThreads()
+  {
+    return crawlerThreads;
+  }
+  
+  
+  /**
+   * Set whether to build a trigram index when a store is
+   * saved, and use it when the store is searched.
+   * 
+   * @param bTrigramIndex whether to use trigram indexes
+   */
+  public static synchronized void setTrigramIndex(final boolean bTrigramIndex)
+  {
+    trigramIndex = bTrigramIndex;
+  }
+  
+  
+  /**
+   * Return whether to use trigram indexes.
+   * 
+   * @return whether to use trigram indexes
+   */
+  public static synchronized boolean isTrigramIndex()
+  {
+    return trigramIndex;
+  }
+  
+  
+  /**
+   * Return the pool used to crawl directories, or null if
+   * crawling is done on the calling thread.
+   * 
+   * @return the pool
+   */
+  private static synchronized ForkJoinPool getCrawlerPool()
+  {
+    if (crawlerThreads == 1)
+    {
+      return null;
+    }
+    else if (crawlerPool == null)
+    {
+      crawlerPool = ((crawlerThreads < 1) ? new ForkJoinPool()
+                                          : new ForkJoinPool(crawlerThreads));
+    }
+    
+    return crawlerPool;
+  }
+  
+  
+  /**
+   * Return the pool used to search large stores, or null if
+   * there is only one processor.
+   * 
+   * @return the pool
+   */
+  private static synchronized ForkJoinPool getSearchPool()
+  {
+    if (Runtime.getRuntime().availableProcessors() < 2)
+    {
+      return null;
+    }
+    else if (searchPool == null)
+    {
+      searchPool = new ForkJoinPool();
+    }
+    
+    return searchPool;
+  }
+  
+  
   /**
    * Write a message to standard error.
    * 
@@ -88,88 +256,111 @@ public final class Indexer
   /**
    * Visit the directories and files under this node.
    * 
-   * @param dirName the name of the parent directory
-   * @param dir the parent directory (as a File)
+   * @param dir the parent directory
    * @param parent the parent node
    * @return the child node that was created
    */
-  private Node visitDirectories(final String dirName,
-                                final File dir,
-                                final Node parent)
+  Node visitDirectories(final CrawlEntry dir,
+                        final Node parent)
   {
     if (bInterrupted)
     {
       return null;
     }
     
+    // Create the node that will get returned
+    Node root = createNode(dir, parent);
+    
+    // Get the children for this directory and check if they're null
+    List<CrawlEntry> children = listChildren(dir);
+    if (children == null)
+    {
+      return root;
+    }
+    
+    // Iterate over each subdirectory, and add it as a child node
+    for (CrawlEntry child : children)
+    {
+      // Check if the thread has been cancelled
+      if (Thread.currentThread().isInterrupted())
+      {
+        bInterrupted = true;
+      }
+      
+      // Add the subdirectory as a child of this node
+      root.addChild(visitDirectories(child, root));
+    }
+    
+    // Return the node
+    return root;
+  }
+  
+  
+  /**
+   * Create the node for a directory or file.  This does not
+   * add the children.
+   * 
+   * @param dir the directory or file
+   * @param parent the parent node
+   * @return the new node
+   */
+  static Node createNode(final CrawlEntry dir,
+                         final Node parent)
+  {
     // Create the node that will get returned
     Node root = new Node();
     
     // Save the directory name (just the current name, not the full path)
-    root.setName(dirName);
+    root.setName(dir.getName());
     
     // Save the parent
     root.setParent(parent);
     
     // Save more info
-    root.setFileSize(dir.length());
-    root.setLastModified(dir.lastModified());
+    root.setFileSize(dir.getSize());
+    root.setLastModified(dir.getLastModified());
     root.setDirectory(dir.isDirectory());
     
-    // Check if this is a directory
-    if (dir.isDirectory())
+    // Return the node
+    return root;
+  }
+  
+  
+  /**
+   * Return the included children of a directory, sorted on
+   * their names.
+   * 
+   * @param dir the directory
+   * @return the children, or null if this is not an included
+   *         directory or it can't be read
+   */
+  static List<CrawlEntry> listChildren(final CrawlEntry dir)
+  {
+    // Check if this is a directory we should include
+    if (!dir.isDirectory() || !includeFile(dir))
+    {
+      return null;
+    }
+    
+    // Get the children for this directory and check if they're null
+    List<CrawlEntry> children = dir.list();
+    if (children == null)
     {
-      // See if we should include this directory
-      if (includeFile(dir))
+      // We must not have permission to browse this directory
+      return null;
+    }
+    
+    // Remove the files and directories we don't include
+    Iterator<CrawlEntry> iter = children.iterator();
+    while (iter.hasNext())
+    {
+      if (!includeFile(iter.next()))
       {
-        // Get the children for this directory and check if they're null
-        String[] children = dir.list();
-        if (children == null)
-        {
-          // We must not have permission to browse this directory
-          return root;
-        }
-        
-        // Iterate over each subdirectory, and add it as a child node
-        java.util.Arrays.sort(children, new Comparator<String>()
-        {
-          /**
-           * Compare the two file names as case-insensitive.
-           * 
-           * @param o1 the first filename
-           * @param o2 the second filename
-           * @return how o1 compares to o2
-           */
-          public int compare(final String o1, final String o2)
-          {
-            return (o1.toLowerCase().compareTo(o2.toLowerCase()));
-          }
-        });
-        for (int i = 0; i < children.length; i++)
-        {
-          // Create a file object for this child
-          File child = new File(dir, children[i]);
-          
-          // If it's a file, see if it should be included
-          if (!includeFile(child))
-          {
-            continue;
-          }
-          
-          // Check if the thread has been cancelled
-          if (Thread.currentThread().isInterrupted())
-          {
-            bInterrupted = true;
-          }
-          
-          // Add the subdirectory as a child of this node
-          root.addChild(visitDirectories(children[i], child, root));
-        }
+        iter.remove();
       }
     }
     
-    // Return the node
-    return root;
+    return children;
   }
   
   
@@ -180,7 +371,7 @@ public final class Indexer
    * @param dir the directory or file to process
    * @return whether to include it in the search results
    */
-  private boolean includeFile(final File dir)
+  static boolean includeFile(final CrawlEntry dir)
   {
     // Save the name
     String name = dir.getName();
@@ -225,9 +416,63 @@ public final class Indexer
     // Create the Store
     Store store = new Store(name, dir);
     
-    // Traverse the directory
-    File file = new File(dir);
-    Node root = visitDirectories(dir, file, null);
+    // Traverse the directory, in parallel if there's a pool
+    CrawlEntry entry = new CrawlEntry(dir, new File(dir).toPath());
+    Node root = null;
+    ForkJoinPool pool = getCrawlerPool();
+    if (pool == null)
+    {
+      root = visitDirectories(entry, null);
+    }
+    else
+    {
+      root = new DirectoryCrawler(pool).crawl(entry);
+      bInterrupted = (root == null);
+    }
+    
+    // Check if it was interrupted
+    if (bInterrupted)
+    {
+      return null;
+    }
+    
+    // Save the node
+    store.setDataStore(root);
+    
+    // Return the store
+    return store;
+  }
+  
+  
+  /**
+   * Index the directory of a store again, only reading the
+   * directories that changed since the store was built.  A
+   * directory's last-modified time changes when an entry is
+   * added, removed or renamed, so for each directory with the
+   * same time as in the store, the saved children are reused
+   * and only its subdirectories are checked.  Changes to the
+   * size or time of a file in an unchanged directory are not
+   * picked up; use indexDirectory() for that.
+   * 
+   * @param previous the store to update
+   * @return the updated store, or null if interrupted
+   */
+  public Store refreshDirectory(final Store previous)
+  {
+    // Without any saved nodes, index the whole directory
+    NodeTable table = previous.getNodeTable();
+    if ((table == null) || (table.getNodeCount() < 1))
+    {
+      return indexDirectory(previous.getName(), previous.getDirectory());
+    }
+    
+    // Create the Store
+    final String dir = previous.getDirectory();
+    Store store = new Store(previous.getName(), dir);
+    
+    // Traverse the directory, comparing it to the saved nodes
+    CrawlEntry entry = new CrawlEntry(dir, new File(dir).toPath());
+    Node root = refreshDirectories(table, 0, entry, null);
     
     // Check if it was interrupted
     if (bInterrupted)
@@ -244,21 +489,132 @@ public final class Indexer
   
   
   /**
-   * Search a data store and return the search results.
+   * Visit the directories and files under this node, reusing
+   * the saved children of directories that haven't changed.
+   * 
+   * @param table the saved nodes
+   * @param saved the index of the saved node for the directory
+   * @param dir the directory
+   * @param parent the parent node
+   * @return the node that was created
+   */
+  Node refreshDirectories(final NodeTable table,
+                          final int saved,
+                          final CrawlEntry dir,
+                          final Node parent)
+  {
+    if (bInterrupted)
+    {
+      return null;
+    }
+    
+    // Anything that wasn't a directory before gets indexed normally
+    if (!table.isDirectory(saved))
+    {
+      return visitDirectories(dir, parent);
+    }
+    
+    // Create the node that will get returned
+    Node root = createNode(dir, parent);
+    if (!dir.isDirectory() || !includeFile(dir))
+    {
+      return root;
+    }
+    
+    // Check if the directory has changed
+    if (dir.getLastModified() != table.getLastModified(saved))
+    {
+      // Get the children for this directory and check if they're null
+      List<CrawlEntry> children = listChildren(dir);
+      if (children == null)
+      {
+        return root;
+      }
+      
+      // Find the saved subdirectories
+      Map<String, Integer> savedDirs = new HashMap<String, Integer>(20);
+      for (int i = table.getFirstChild(saved); i != NodeTable.NONE;
+           i = table.getNextSibling(i))
+      {
+        if (table.isDirectory(i))
+        {
+          savedDirs.put(table.getNodeName(i), Integer.valueOf(i));
+        }
+      }
+      
+      // Add the children, checking the subdirectories that were saved
+      for (CrawlEntry child : children)
+      {
+        // Check if the thread has been cancelled
+        if (Thread.currentThread().isInterrupted())
+        {
+          bInterrupted = true;
+        }
+        
+        Integer index = (child.isDirectory() ? savedDirs.get(child.getName()) : null);
+        if (index == null)
+        {
+          root.addChild(visitDirectories(child, root));
+        }
+        else
+        {
+          root.addChild(refreshDirectories(table, index.intValue(), child, root));
+        }
+      }
+      
+      return root;
+    }
+    
+    // The directory hasn't changed, so reuse the saved children
+    for (int i = table.getFirstChild(saved); i != NodeTable.NONE;
+         i = table.getNextSibling(i))
+    {
+      // Check if the thread has been cancelled
+      if (Thread.currentThread().isInterrupted())
+      {
+        bInterrupted = true;
+      }
+      
+      final String name = table.getNodeName(i);
+      if (table.isDirectory(i))
+      {
+        // Check the subdirectory
+        CrawlEntry child = new CrawlEntry(name, dir.getPath().resolve(name));
+        root.addChild(refreshDirectories(table, i, child, root));
+      }
+      else
+      {
+        // Copy the saved file
+        Node node = new Node();
+        node.setName(name);
+        node.setParent(root);
+        node.setFileSize(table.getFileSize(i));
+        node.setLastModified(table.getLastModified(i));
+        node.setDirectory(false);
+        root.addChild(node);
+      }
+    }
+    
+    // Return the node
+    return root;
+  }
+  
+  
+  /**
+   * Search a data store and pass the search results to the
+   * sink.  The search stops early if the sink is full.
    * 
    * @param store the data store to search
-   * @param maxResults the maximum number of results
    * @param includeFiles whether to include files in the results
    * @param includeDirectories whether to include directories in the results
    * @param termFilter the term filter
-   * @param list the search results
+   * @param sink receives the search results
    */
   public void searchStore(final Store store,
-                          final int maxResults,
                           final boolean includeFiles,
                           final boolean includeDirectories,
                           final TermFilter termFilter,
-                          final List<SearchResult> list)
+                          final ResultSink sink)
   {
     // Check what to include
     if (!includeFiles && !includeDirectories)
@@ -272,111 +628,437 @@ public final class Indexer
       System.err.println("The store is null");
       return;
     }
-    else if (maxResults < 1)
+    else if (sink.isFull())
     {
       // Nothing to do - no results wanted
       return;
     }
     
     // Search the data for a match
-    Node root = store.getDataStore();
-    if (root == null)
+    NodeTable table = store.getNodeTable();
+    if (table == null)
     {
       return;
     }
     
-    // See if this node has any children
-    if (root.getNumChildren() > 0)
+    // Charge the cache for any indexes built by the search,
+    // such as the zones of the table or its nodes grouped by name
+    try
     {
-      // Search the children
-      for (Node node : root.getChildren())
-      {
-        searchDataStoreChildren(list, node, maxResults, includeFiles,
-                                includeDirectories, store.getName(), termFilter);
-      }
+      searchTable(store, table, includeFiles, includeDirectories, termFilter, sink);
+    }
+    finally
+    {
+      StoreCache.recharge(store);
     }
   }
   
   
   /**
-   * Search a data store and save the results.
+   * Search the table of a data store, using the indexes for
+   * the filter, and pass the search results to the sink.
    * 
-   * @param list the list of search results to add to
-   * @param root the root node
-   * @param maxResults the maximum number of results
-   * @param includeFiles whether to include files
-   * @param includeDirectories whether to include directories
-   * @param volumeName the name of the volume
-   * @param termFilter the filter used to check for matches
+   * @param store the data store to search
+   * @param table the table of nodes of the store
+   * @param includeFiles whether to include files in the results
+   * @param includeDirectories whether to include directories in the results
+   * @param termFilter the term filter
+   * @param sink receives the search results
    */
-  private void searchDataStoreChildren(final List<SearchResult> list,
-                                       final Node root,
-                                       final int maxResults,
-                                       final boolean includeFiles,
-                                       final boolean includeDirectories,
-                                       final String volumeName,
-                                       final TermFilter termFilter)
+  private void searchTable(final Store store,
+                           final NodeTable table,
+                           final boolean includeFiles,
+                           final boolean includeDirectories,
+                           final TermFilter termFilter,
+                           final ResultSink sink)
   {
-    // Check if this should be included
-    boolean bCheck = true;
-    boolean bIsDirectory = root.isDirectory();
-    if (bIsDirectory && !includeDirectories)
+    // If the filter ignores case, give it the names in upper
+    // case, so it doesn't convert each one
+    FoldedNames folded = null;
+    if ((termFilter instanceof FoldedFilter) && ((FoldedFilter) termFilter).isIgnoreCase())
+    {
+      folded = store.getFoldedNames();
+    }
+    
+    // Use the tree of names for similar searches, the codes
+    // of the names for sounds-like searches, the sorted names
+    // for searches on the start, end or whole name, or the
+    // trigram index, to find the names that might match
+    BitSet candidates = null;
+    if (termFilter instanceof FuzzyFilter)
+    {
+      FuzzyIndex fuzzy = store.getFuzzyIndex();
+      candidates = ((fuzzy == null) ? null : fuzzy.findCandidates((FuzzyFilter) termFilter));
+    }
+    else if (termFilter instanceof PhoneticFilter)
+    {
+      PhoneticFilter filter = (PhoneticFilter) termFilter;
+      PhoneticIndex codes = store.getPhoneticIndex(filter.getEncoder());
+      candidates = ((codes == null) ? null : codes.findCandidates(filter));
+    }
+    else if (termFilter instanceof DictionaryFilter)
     {
-      // Don't include directories
-      bCheck = false;
+      NameDictionary dictionary = store.getNameDictionary();
+      candidates = ((dictionary == null) ? null
+                    : dictionary.findCandidates((DictionaryFilter) termFilter));
     }
-    else if (!bIsDirectory && !includeFiles)
+    else
     {
-      // Don't include files
-      bCheck = false;
+      TrigramIndex trigrams = store.getTrigramIndex();
+      candidates = ((trigrams == null) ? null : trigrams.findCandidates(termFilter));
     }
-    else if (list.size() >= maxResults)
+    if (candidates != null)
     {
+      searchCandidates(sink, table, candidates, includeFiles,
+                       includeDirectories, store.getName(), termFilter, folded);
       return;
     }
     
-    // See if we're checking for a match
-    if (bCheck)
+    // Search the children of the root, in parallel if the
+    // store is large
+    final int count = table.getNodeCount();
+    ForkJoinPool pool = getSearchPool();
+    if ((pool != null) && (count >= PARALLEL_SEARCH_SIZE))
+    {
+      ParallelSearch search = new ParallelSearch(pool, table, includeFiles,
+                                                 includeDirectories, store.getName(),
+                                                 termFilter, folded);
+      search.search(sink);
+      return;
+    }
+    
+    searchDataStoreChildren(sink, table, 1, count, new byte[table.getNameCount()],
+                            includeFiles, includeDirectories,
+                            store.getName(), termFilter, folded);
+  }
+  
+  
+  /**
+   * Search a range of the nodes in a data store and save the
+   * results.  The nodes are in depth-first order, so this
+   * visits them in index order.
+   * 
+   * @param sink receives the search results
+   * @param table the table of nodes
+   * @param from the index of the first node to search
+   * @param to the index after the last node to search
+   * @param nameStates whether each name was checked and matched
+   * @param includeFiles whether to include files
+   * @param includeDirectories whether to include directories
+   * @param volumeName the name of the volume
+   * @param termFilter the filter used to check for matches
+   * @param folded the names in upper case, or null to pass the
+   *        names to the filter as they are
+   */
+  static void searchDataStoreChildren(final ResultSink sink,
+                                      final NodeTable table,
+                                      final int from,
+                                      final int to,
+                                      final byte[] nameStates,
+                                      final boolean includeFiles,
+                                      final boolean includeDirectories,
+                                      final String volumeName,
+                                      final TermFilter termFilter,
+                                      final FoldedNames folded)
+  {
+    // Save the path of the last parent, since siblings are
+    // usually next to each other
+    int lastParent = NodeTable.NONE;
+    String lastPath = null;
+    final AttributeFilter attributes = getAttributeFilter(termFilter);
+    final ZoneMap zones = ((attributes == null) ? null : table.getZoneMap());
+    
+    // Visit the nodes in the range, starting after any subtree
+    // the range starts in that can't match
+    int next = (((zones == null) || (from >= to)) ? from : zones.first(table, from, attributes));
+    for (int index = next; index < to; index = next)
     {
-      // Check if the name is a match
-      if (termFilter.accept(root.getName()))
+      // Check if this thread has been interrupted, or the
+      // search has been cancelled
+      if (Thread.currentThread().isInterrupted() || sink.isFull())
       {
-        // We have a match.  Create the search result.
-        SearchResult sr = new SearchResult();
+        break;
+      }
+      
+      // If the filter checks the size and time, skip the nodes
+      // under a directory when none of them can match
+      next = ((zones == null) ? (index + 1) : zones.next(index, attributes));
+      
+      // Check if this should be included
+      final boolean bIsDirectory = table.isDirectory(index);
+      if ((bIsDirectory && !includeDirectories) ||
+          (!bIsDirectory && !includeFiles))
+      {
+        continue;
+      }
+      
+      // Check the size and time, which is cheaper than the name
+      if ((attributes != null) &&
+          !attributes.acceptAttributes(table.getFileSize(index), table.getLastModified(index)))
+      {
+        continue;
+      }
+      
+      // Check if the name is a match.  Each distinct name only
+      // gets passed to the filter once, unless two threads
+      // check it at the same time.
+      final int nameId = table.getNameId(index);
+      byte state = nameStates[nameId];
+      if (state == NAME_UNCHECKED)
+      {
+        state = (acceptName(termFilter, table, folded, nameId) ? NAME_MATCHED
+                                                                : NAME_REJECTED);
+        nameStates[nameId] = state;
+      }
+      
+      if (state == NAME_MATCHED)
+      {
+        // Get the path of the parent
+        final int parent = table.getParent(index);
+        if (parent != lastParent)
+        {
+          lastParent = parent;
+          lastPath = table.getPath(parent);
+        }
         
-        // Fill in the values
-        sr.setFileSize(root.getFileSize());
-        sr.setLastModified(root.getLastModified());
-        sr.setName(root.getName());
-        sr.setPath(root.getParentPath());
-        sr.setVolume(volumeName);
-        sr.setDirectory(root.isDirectory());
+        // Check the path of the folder last, since it's built
+        if ((attributes != null) && !attributes.acceptPath(lastPath))
+        {
+          continue;
+        }
         
-        // Add the search result to our list
-        list.add(sr);
+        // We have a match.  Pass the search result to the sink.
+        sink.add(createResult(table, index, lastPath, volumeName));
       }
     }
+  }
+  
+  
+  /**
+   * Return the filter as an AttributeFilter, if it checks the
+   * size and time of the files.
+   * 
+   * @param termFilter the filter used to check for matches
+   * @return the filter, or null if it only checks the names
+   */
+  static AttributeFilter getAttributeFilter(final TermFilter termFilter)
+  {
+    return ((termFilter instanceof AttributeFilter) ? (AttributeFilter) termFilter : null);
+  }
+  
+  
+  /**
+   * Return whether a name is accepted by the filter.  If the
+   * names in upper case are given, the filter must be a
+   * FoldedFilter that ignores case, and it gets the name in
+   * upper case.
+   * 
+   * @param termFilter the filter used to check for matches
+   * @param table the table of nodes
+   * @param folded the names in upper case, or null
+   * @param nameId the index of the name
+   * @return whether the name matches
+   */
+  static boolean acceptName(final TermFilter termFilter,
+                            final NodeTable table,
+                            final FoldedNames folded,
+                            final int nameId)
+  {
+    if (folded != null)
+    {
+      return ((FoldedFilter) termFilter).acceptFolded(folded.getName(nameId));
+    }
     
-    // See if this node has any children
-    if (root.getNumChildren() > 0)
+    return termFilter.accept(table.getName(nameId));
+  }
+  
+  
+  /**
+   * Search the nodes whose names were found in the trigram
+   * index, and save the results.  Only the candidate names
+   * get passed to the filter, and only the nodes with a
+   * matching name are visited.  The results are in the same
+   * order as searchDataStoreChildren().
+   * 
+   * @param sink receives the search results
+   * @param table the table of nodes
+   * @param candidates the names that might match
+   * @param includeFiles whether to include files
+   * @param includeDirectories whether to include directories
+   * @param volumeName the name of the volume
+   * @param termFilter the filter used to check for matches
+   * @param folded the names in upper case, or null
+   */
+  private void searchCandidates(final ResultSink sink,
+                                final NodeTable table,
+                                final BitSet candidates,
+                                final boolean includeFiles,
+                                final boolean includeDirectories,
+                                final String volumeName,
+                                final TermFilter termFilter,
+                                final FoldedNames folded)
+  {
+    // Check the candidate names, unless the filter checks the
+    // size and time.  Then the names are checked as the nodes
+    // are visited, after the size and time.
+    final AttributeFilter attributes = getAttributeFilter(termFilter);
+    BitSet matched = candidates;
+    byte[] nameStates = null;
+    if (attributes == null)
     {
-      // Iterate over the children of this node
-      for (Node node : root.getChildren())
+      matched = new BitSet(table.getNameCount());
+      for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
       {
-        // Check if this thread has been interrupted
-        if (Thread.currentThread().isInterrupted())
+        // Check if this thread has been interrupted, or the
+        // search has been cancelled
+        if (Thread.currentThread().isInterrupted() || sink.isFull())
         {
-          break;
+          return;
         }
         
-        // Search the child store
-        searchDataStoreChildren(list, node, maxResults, includeFiles,
-                                includeDirectories, volumeName, termFilter);
+        if (acceptName(termFilter, table, folded, i))
+        {
+          matched.set(i);
+        }
+      }
+    }
+    else
+    {
+      nameStates = new byte[table.getNameCount()];
+    }
+    
+    // Visit the nodes with a matching name, in index order
+    searchNodes(sink, table, table.findNodes(matched), nameStates, includeFiles,
+                includeDirectories, volumeName, termFilter, folded);
+  }
+  
+  
+  /**
+   * Search a list of nodes, and save the results.  Nodes
+   * outside the table are skipped.
+   * 
+   * @param sink receives the search results
+   * @param table the table of nodes
+   * @param nodes the nodes to check, in ascending order
+   * @param nameStates whether each name was checked and matched,
+   *        or null if the names of the nodes already matched
+   * @param includeFiles whether to include files
+   * @param includeDirectories whether to include directories
+   * @param volumeName the name of the volume
+   * @param termFilter the filter used to check for matches
+   * @param folded the names in upper case, or null
+   */
+  private static void searchNodes(final ResultSink sink,
+                                  final NodeTable table,
+                                  final int[] nodes,
+                                  final byte[] nameStates,
+                                  final boolean includeFiles,
+                                  final boolean includeDirectories,
+                                  final String volumeName,
+                                  final TermFilter termFilter,
+                                  final FoldedNames folded)
+  {
+    // Save the path of the last parent, since siblings are
+    // usually next to each other
+    int lastParent = NodeTable.NONE;
+    String lastPath = null;
+    final AttributeFilter attributes = getAttributeFilter(termFilter);
+    final int count = table.getNodeCount();
+    for (int i = 0; i < nodes.length; ++i)
+    {
+      // Check if this thread has been interrupted, or the
+      // search has been cancelled
+      if (Thread.currentThread().isInterrupted() || sink.isFull())
+      {
+        break;
+      }
+      
+      // Skip the root node, and any node outside the table
+      final int index = nodes[i];
+      if ((index < 1) || (index >= count))
+      {
+        continue;
+      }
+      
+      // Check if this should be included
+      final boolean bIsDirectory = table.isDirectory(index);
+      if ((bIsDirectory && !includeDirectories) ||
+          (!bIsDirectory && !includeFiles))
+      {
+        continue;
+      }
+      
+      // Check the size and time, and then the name
+      if ((attributes != null) &&
+          !attributes.acceptAttributes(table.getFileSize(index),
+                                       table.getLastModified(index)))
+      {
+        continue;
+      }
+      
+      if (nameStates != null)
+      {
+        final int nameId = table.getNameId(index);
+        if (nameStates[nameId] == NAME_UNCHECKED)
+        {
+          nameStates[nameId] = (acceptName(termFilter, table, folded, nameId) ? NAME_MATCHED
+                                                                               : NAME_REJECTED);
+        }
+        if (nameStates[nameId] != NAME_MATCHED)
+        {
+          continue;
+        }
+      }
+      
+      // Get the path of the parent
+      final int parent = table.getParent(index);
+      if (parent != lastParent)
+      {
+        lastParent = parent;
+        lastPath = table.getPath(parent);
       }
+      
+      // Check the path of the folder last, since it's built
+      if ((attributes != null) && !attributes.acceptPath(lastPath))
+      {
+        continue;
+      }
+      
+      // Pass the search result to the sink
+      sink.add(createResult(table, index, lastPath, volumeName));
     }
   }
   
   
+  /**
+   * Create the search result for a node.
+   * 
+   * @param table the table of nodes
+   * @param index the index of the node
+   * @param path the path of the node's parent
+   * @param volumeName the name of the volume
+   * @return the search result
+   */
+  private static SearchResult createResult(final NodeTable table,
+                                           final int index,
+                                           final String path,
+                                           final String volumeName)
+  {
+    // Create the search result
+    SearchResult sr = new SearchResult();
+    
+    // Fill in the values
+    sr.setFileSize(table.getFileSize(index));
+    sr.setLastModified(table.getLastModified(index));
+    sr.setName(table.getNodeName(index));
+    sr.setPath(path);
+    sr.setVolume(volumeName);
+    sr.setDirectory(table.isDirectory(index));
+    
+    return sr;
+  }
+  
+  
   /**
    * Save the current contents to a file.
    * 
@@ -385,26 +1067,49 @@ public final class Indexer
    */
   public void saveToFile(final File outFile, final Store store)
   {
-    // See if to save the data as a text file
-    if (USE_TEXT)
+    // See if to save the data as a binary, text or object file
+    if (SAVE_FORMAT == FORMAT_BINARY)
+    {
+      saveToBinaryFile(outFile, store);
+    }
+    else if (SAVE_FORMAT == FORMAT_TEXT)
     {
       saveToTextFile(outFile, store);
-      return;
+    }
+    else
+    {
+      saveToObjectFile(outFile, store);
     }
     
-    // Write the file
-    ObjectOutputStream oos = null;
+    // Save the names in the directory for the index folder,
+    // for exact searches across the stores
+    NameDirectory.update(outFile, store);
+  }
+  
+  
+  /**
+   * Save the current contents to a serialized object file.
+   * 
+   * @param outFile the output File object
+   * @param store the data store
+   */
+  private void saveToObjectFile(final File outFile, final Store store)
+  {
+    // Write the file, to a temporary file that replaces it
+    FileOutputStream out = null;
     try
     {
       // Create the output stream
-      oos = new ObjectOutputStream(new FileOutputStream(outFile));
+      out = new FileOutputStream(Utility.getTempFile(outFile));
+      ObjectOutputStream oos = new ObjectOutputStream(out);
       
       // Write the data
       oos.writeObject(store);
       
       // Clear the stream
-      oos.close();
-      oos = null;
+      oos.flush();
+      Utility.replaceFile(out, outFile);
+      out = null;
     }
     catch (FileNotFoundException fnfe)
     {
@@ -416,24 +1121,60 @@ public final class Indexer
     }
     finally
     {
-      if (oos != null)
+      Utility.discardTempFile(out, outFile);
+    }
+  }
+  
+  
+  
+  /**
+   * Save the current contents to a binary file.
+   * 
+   * @param outFile the output File object
+   * @param store the data store
+   */
+  private void saveToBinaryFile(final File outFile, final Store store)
+  {
+    try
+    {
+      IndexFile.write(outFile, store);
+      
+      // Build the trigram index, or remove an old one
+      File triFile = TrigramIndex.getFile(outFile);
+      NodeTable table = store.getNodeTable();
+      if ((isTrigramIndex()) && (table != null))
       {
-        try
-        {
-          oos.close();
-        }
-        catch (IOException ioe)
-        {
-          writeErr("IOException: " + ioe.getMessage());
-        }
+        TrigramIndex trigrams = TrigramIndex.build(table);
+        trigrams.write(triFile);
+        store.setTrigramIndex(trigrams);
+      }
+      else if (triFile.exists())
+      {
+        Utility.deleteFile(triFile);
+      }
+      
+      // Save the names in upper case, for searches that
+      // ignore case
+      if (table != null)
+      {
+        FoldedNames folded = FoldedNames.build(table);
+        folded.write(FoldedNames.getFile(outFile));
+        store.setIndexFile(outFile);
+        store.setFoldedNames(folded);
         
-        oos = null;
+        // Save the sorted names
+        NameDictionary dictionary = NameDictionary.build(table);
+        dictionary.write(NameDictionary.getFile(outFile));
+        store.setNameDictionary(dictionary);
       }
     }
+    catch (IOException e)
+    {
+      writeErr("IOException writing the file: " + e.getMessage());
+    }
   }
   
   
-  
   /**
    * Save the current contents to a file.
    * 
@@ -442,12 +1183,14 @@ public final class Indexer
    */
   private void saveToTextFile(final File outFile, final Store store)
   {
-    // Declare the writer we use to save store to a file
-    BufferedWriter out = null;
+    // Declare the stream we use to save store to a temporary
+    // file, which then replaces the file
+    FileOutputStream stream = null;
     try
     {
       // Open the writer
-      out = new BufferedWriter(new FileWriter(outFile));
+      stream = new FileOutputStream(Utility.getTempFile(outFile));
+      BufferedWriter out = new BufferedWriter(new OutputStreamWriter(stream));
       StringBuilder sb = new StringBuilder(200);
       
       // Write the contents of store
@@ -457,9 +1200,10 @@ public final class Indexer
       // Write the node and its children
       writeChildren(sb, store.getDataStore(), out);
       
-      // Close the writer
-      out.close();
-      out = null;
+      // Flush the writer, and replace the file
+      out.flush();
+      Utility.replaceFile(stream, outFile);
+      stream = null;
     }
     catch (IOException e)
     {
@@ -467,19 +1211,8 @@ public final class Indexer
     }
     finally
     {
-      // Make sure we close the file
-      if (out != null)
-      {
-        try
-        {
-          out.close();
-        }
-        catch (IOException e)
-        {
-          e.printStackTrace();
-        }
-        out = null;
-      }
+      // Make sure we close and remove the temporary file
+      Utility.discardTempFile(stream, outFile);
     }
   }
   
@@ -528,8 +1261,13 @@ public final class Indexer
    */
   public Store loadFromFile(final File inFile)
   {
-    // See if to save the data as a text file
-    if (USE_TEXT)
+    // Check for the binary format.  Otherwise, files saved
+    // before the binary format was added are in the text format.
+    if (IndexFile.isBinary(inFile))
+    {
+      return loadFromBinaryFile(inFile);
+    }
+    else if (SAVE_FORMAT != FORMAT_SERIALIZED)
     {
       return loadFromTextFile(inFile);
     }
@@ -588,6 +1326,40 @@ public final class Indexer
   }
   
   
+  /**
+   * Read the contents of a binary file.
+   * 
+   * @param inFile the input File object
+   * @return the loaded data store
+   */
+  private Store loadFromBinaryFile(final File inFile)
+  {
+    Store store = null;
+    try
+    {
+      store = IndexFile.read(inFile);
+      
+      // Load the trigram index, if it's up to date
+      NodeTable table = store.getNodeTable();
+      if ((isTrigramIndex()) && (table != null))
+      {
+        store.setTrigramIndex(TrigramIndex.load(inFile, table.getNameCount(),
+                                                table.getNodeCount()));
+      }
+      
+      // The names in upper case are loaded from the file
+      // when they're needed
+      store.setIndexFile(inFile);
+    }
+    catch (IOException e)
+    {
+      writeErr("IOException reading the file: " + e.getMessage());
+    }
+    
+    return store;
+  }
+  
+  
   /**
    * Read the contents of a file.
    * 
@@ -686,37 +1458,47 @@ public final class Indexer
   /**
    * Build a tree of the data in the specified store.
    * 
-   * @param root the current store root node
+   * @param store the store
    * @param tree the root tree node
    */
-  public void buildTree(final Node root,
+  public void buildTree(final Store store,
                         final DefaultMutableTreeNode tree)
   {
-    // Check for a null root or no children
-    if (root == null)
-    {
-      return;
-    }
-    else if (root.getNumChildren() < 1)
+    // Check for a null store
+    NodeTable table = ((store == null) ? null : store.getNodeTable());
+    if ((table == null) || (table.getNodeCount() < 1))
     {
       return;
     }
     
+    // Start with the root node
+    buildTree(table, 0, tree);
+  }
+  
+  
+  /**
+   * Build a tree of the children of the specified node.
+   * 
+   * @param table the table of nodes
+   * @param root the index of the current root node
+   * @param tree the root tree node
+   */
+  private void buildTree(final NodeTable table,
+                         final int root,
+                         final DefaultMutableTreeNode tree)
+  {
     // Traverse over the children
-    for (Node node : root.getChildren())
+    for (int node = table.getFirstChild(root); node != NodeTable.NONE;
+         node = table.getNextSibling(node))
     {
       // Only grab directories
-      if (node.isDirectory())
+      if (table.isDirectory(node))
       {
         // Build a node for the child, then build the subtree for the
         // child (recursively), and then add the child to the tree
-        DefaultMutableTreeNode child = new DefaultMutableTreeNode(node.getName());
-        
-        // Only build the subtree if this is a directory
-        if (node.isDirectory())
-        {
-          buildTree(node, child);
-        }
+        DefaultMutableTreeNode child =
+          new DefaultMutableTreeNode(table.getNodeName(node));
+        buildTree(table, node, child);
         
         // Now add the child node to the tree
         tree.add(child);
@@ -747,34 +1529,24 @@ public final class Indexer
     }
     
     // Search the data for a match
-    Node root = store.getDataStore();
-    if (root == null)
+    NodeTable table = store.getNodeTable();
+    if ((table == null) || (table.getNodeCount() < 1))
     {
       return results;
     }
     
-    // Handle null paths
-    if (paths == null)
+    // Find the directory, one name at a time, starting at the root
+    int root = 0;
+    final int numPaths = ((paths == null) ? 0 : paths.size());
+    for (int index = 0; (index < numPaths) && (root != NodeTable.NONE); ++index)
     {
-      saveFileChildren(root, results);
-      
-      // Return the results
-      return results;
+      root = findChildDirectory(table, root, paths.get(index));
     }
     
-    // Search the children
-    // See if this node has any children
-    if (root.getNumChildren() > 0)
+    // Get the files in the directory
+    if (root != NodeTable.NONE)
     {
-      int index = 0;
-      for (Node node : root.getChildren())
-      {
-        if (node.isDirectory() && (node.getName().equals(paths.get(index))))
-        {
-          searchFileChildren(results, node, paths, index);
-          break;
-        }
-      }
+      saveFileChildren(table, root, results);
     }
     
     // Return the search results
@@ -783,74 +1555,64 @@ public final class Indexer
   
   
   /**
-   * Search the children for a match on the entries in paths.
+   * Find the child directory with the specified name.
    * 
-   * @param results the search results
-   * @param root the parent node
-   * @param paths the list of parent nodes
-   * @param index the current index into paths
+   * @param table the table of nodes
+   * @param root the index of the parent node
+   * @param name the name of the directory
+   * @return the index of the child, or NodeTable.NONE if not found
    */
-  private void searchFileChildren(final List<SearchResult> results,
-                                  final Node root,
-                                  final List<String> paths,
-                                  final int index)
+  private int findChildDirectory(final NodeTable table,
+                                 final int root,
+                                 final String name)
   {
-    // Check if we've hit the index end
-    int currIndex = index + 1;
-    if (currIndex == paths.size())
+    for (int node = table.getFirstChild(root); node != NodeTable.NONE;
+         node = table.getNextSibling(node))
     {
-      // Get the files in this node
-      saveFileChildren(root, results);
-      return;
-    }
-    
-    // See if this node has any children
-    if (root.getNumChildren() > 0)
-    {
-      // Find the next child, matching on the current index of paths
-      for (Node node : root.getChildren())
+      if (table.isDirectory(node) && (table.getNodeName(node).equals(name)))
       {
-        if (node.isDirectory() && (node.getName().equals(paths.get(currIndex))))
-        {
-          // Call this method recursively, to search children directories
-          searchFileChildren(results, node, paths, currIndex);
-          break;
-        }
+        return node;
       }
     }
+    
+    return NodeTable.NONE;
   }
   
   
   /**
-   * Save the file children to our list of search results.
+   * Save the file children of root into results.
    * 
-   * @param root the root node
-   * @param results the list of search results
+   * @param table the table of nodes
+   * @param root the index of the node with the children
+   * @param results the list of results to add to
    */
-  private void saveFileChildren(final Node root, final List<SearchResult> results)
+  private void saveFileChildren(final NodeTable table,
+                                final int root,
+                                final List<SearchResult> results)
   {
-    // Check for no children
-    if (root.getNumChildren() < 1)
-    {
-      // No children
-      return;
-    }
-    
     // Iterate over the children
-    for (Node node : root.getChildren())
+    String path = null;
+    for (int node = table.getFirstChild(root); node != NodeTable.NONE;
+         node = table.getNextSibling(node))
     {
       // Skip directories
-      if (!node.isDirectory())
+      if (!table.isDirectory(node))
       {
+        // Build the path the first time it's needed
+        if (path == null)
+        {
+          path = table.getPath(root);
+        }
+        
         // Create the result object
         SearchResult sr = new SearchResult();
         
         // Fill in the values
-        sr.setFileSize(node.getFileSize());
-        sr.setLastModified(node.getLastModified());
-        sr.setName(node.getName());
-        sr.setPath(node.getParentPath());
-        sr.setDirectory(node.isDirectory());
+        sr.setFileSize(table.getFileSize(node));
+        sr.setLastModified(table.getLastModified(node));
+        sr.setName(table.getNodeName(node));
+        sr.setPath(path);
+        sr.setDirectory(false);
         
         // Add the result to our list
         results.add(sr);
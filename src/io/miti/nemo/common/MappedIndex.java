@@ -0,0 +1,501 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.AttributeFilter;
+import io.miti.nemo.filter.TermFilter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * A binary index file that is memory-mapped and searched in
+ * place, without building the tree of nodes.  Only the names
+ * that get checked by the filter are decoded, and search
+ * results are only created for matches, so the heap used by
+ * a search doesn't depend on the size of the store.  The
+ * mapped pages are shared with the operating system's file
+ * cache.  Searches don't change the state of this object, so
+ * more than one thread can search the same index.  The index
+ * must be closed once the searches are done, which unmaps the
+ * file so it can be replaced.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class MappedIndex
+{
+  /**
+   * The mapped contents of the file.
+   */
+  private final ByteBuffer buffer;
+  
+  /**
+   * The name of the store.
+   */
+  private final String name;
+  
+  /**
+   * The indexed directory.
+   */
+  private final String directory;
+  
+  /**
+   * The number of nodes in the store.
+   */
+  private final int nodeCount;
+  
+  /**
+   * The file offset of each distinct name.
+   */
+  private final int[] nameOffsets;
+  
+  /**
+   * The file offset of the nodes section.
+   */
+  private final int nodesOffset;
+  
+  /**
+   * The trigram index for the names, if there is one.
+   */
+  private TrigramIndex trigrams = null;
+  
+  /**
+   * Whether the file has been unmapped.
+   */
+  private volatile boolean closed = false;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param pBuffer the mapped file
+   * @throws IOException error reading the file
+   */
+  private MappedIndex(final ByteBuffer pBuffer) throws IOException
+  {
+    super();
+    buffer = pBuffer;
+    
+    // Read the header
+    IndexInput input = new IndexInput(buffer.duplicate());
+    if (input.readInt() != IndexFile.MAGIC)
+    {
+      throw new IOException("Not a Nemo index file");
+    }
+    final int version = input.readInt();
+    if (version > IndexFile.VERSION)
+    {
+      throw new IOException("Unsupported index version: " + version);
+    }
+    name = input.readString();
+    directory = input.readString();
+    nodeCount = input.readVarInt();
+    final int nameCount = input.readVarInt();
+    
+    // Find the sections
+    Map<Integer, long[]> sections = IndexFile.readSections(input, buffer.capacity());
+    
+    // Save the offset of each name
+    IndexFile.seekSection(input, sections, IndexFile.SECTION_NAMES);
+    nameOffsets = new int[nameCount];
+    for (int i = 0; i < nameCount; ++i)
+    {
+      nameOffsets[i] = (int) input.getOffset();
+      final int len = input.readVarInt();
+      input.seek(input.getOffset() + len);
+    }
+    
+    // Save the start of the nodes
+    IndexFile.seekSection(input, sections, IndexFile.SECTION_NODES);
+    nodesOffset = (int) input.getOffset();
+  }
+  
+  
+  /**
+   * Map an index file.  The file must be in the binary format.
+   * 
+   * @param file the index file
+   * @return the mapped index
+   * @throws IOException error mapping the file
+   */
+  public static MappedIndex open(final File file) throws IOException
+  {
+    FileInputStream in = null;
+    MappedIndex index = null;
+    try
+    {
+      // Map the file.  The mapping stays valid after the channel is closed.
+      in = new FileInputStream(file);
+      FileChannel channel = in.getChannel();
+      if (channel.size() > Integer.MAX_VALUE)
+      {
+        throw new IOException("The index file is too large to map: " + file.getName());
+      }
+      
+      MappedByteBuffer mbb = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+      index = new MappedIndex(mbb);
+      
+      // Load the trigram index, if it's up to date
+      if (Indexer.isTrigramIndex())
+      {
+        index.trigrams = TrigramIndex.load(file, index.nameOffsets.length, index.nodeCount);
+      }
+      
+      in.close();
+      in = null;
+    }
+    finally
+    {
+      Utility.closeQuietly(in);
+    }
+    
+    return index;
+  }
+  
+  
+  /**
+   * Return the name of the store.
+   * 
+   * @return the store name
+   */
+  public String getName()
+  {
+    return name;
+  }
+  
+  
+  /**
+   * Return the indexed directory.
+   * 
+   * @return the directory
+   */
+  public String getDirectory()
+  {
+    return directory;
+  }
+  
+  
+  /**
+   * Return the number of nodes in the store.
+   * 
+   * @return the number of nodes
+   */
+  public int getNodeCount()
+  {
+    return nodeCount;
+  }
+  
+  
+  /**
+   * Search the index for files and directories with a name
+   * accepted by the filter, and pass the results to the sink.
+   * The search stops early if the sink is full.  The results
+   * are in the same order as Indexer.searchStore().
+   * 
+   * @param includeFiles whether to include files
+   * @param includeDirectories whether to include directories
+   * @param termFilter the filter
+   * @param sink receives the search results
+   * @throws IOException error reading the index
+   */
+  public void search(final boolean includeFiles,
+                     final boolean includeDirectories,
+                     final TermFilter termFilter,
+                     final ResultSink sink) throws IOException
+  {
+    // Check the index is still mapped, and what to include
+    if (closed)
+    {
+      throw new IOException("The index has been closed: " + name);
+    }
+    else if ((!includeFiles && !includeDirectories) || sink.isFull() || (nodeCount < 1))
+    {
+      return;
+    }
+    
+    // Create separate readers for the names and the nodes
+    IndexInput names = new IndexInput(buffer.duplicate());
+    IndexInput nodes = new IndexInput(buffer.duplicate());
+    nodes.seek(nodesOffset);
+    
+    // The names that have been checked, and the ones that matched
+    BitSet checked = new BitSet(nameOffsets.length);
+    BitSet matched = new BitSet(nameOffsets.length);
+    
+    // The names found in the trigram index, if it can be used.
+    // Other names are never read.
+    BitSet candidates = ((trigrams == null) ? null : trigrams.findCandidates(termFilter));
+    
+    // The filter for the size and time, checked before the name
+    final AttributeFilter attributes = Indexer.getAttributeFilter(termFilter);
+    
+    // For each directory being visited, save the name, the number
+    // of children left to read and the path (built when needed)
+    int[] dirNames = new int[32];
+    int[] childrenLeft = new int[32];
+    String[] paths = new String[32];
+    
+    // Read the root node.  Only its children get searched.
+    dirNames[0] = nodes.readVarInt();
+    final boolean rootIsDir = ((nodes.readByte() & IndexFile.FLAG_DIRECTORY) != 0);
+    childrenLeft[0] = (rootIsDir ? nodes.readVarInt() : 0);
+    nodes.readSignedVarLong();
+    long lastMod = nodes.readSignedVarLong();
+    int depth = 0;
+    
+    // Iterate over the rest of the nodes, in depth-first order
+    while (depth >= 0)
+    {
+      // Check if we're done with the current directory
+      if (childrenLeft[depth] == 0)
+      {
+        --depth;
+        continue;
+      }
+      
+      // Check if this thread has been interrupted, or the
+      // search has been cancelled
+      if (Thread.currentThread().isInterrupted() || sink.isFull())
+      {
+        break;
+      }
+      
+      // Read the node
+      --childrenLeft[depth];
+      final int nameId = nodes.readVarInt();
+      final boolean isDir = ((nodes.readByte() & IndexFile.FLAG_DIRECTORY) != 0);
+      final int numKids = (isDir ? nodes.readVarInt() : 0);
+      final long size = nodes.readSignedVarLong();
+      lastMod += nodes.readSignedVarLong();
+      
+      // Check the size and time, then the name, and then the
+      // path of the folder, if this type of node is included
+      if ((isDir ? includeDirectories : includeFiles) &&
+          ((attributes == null) || attributes.acceptAttributes(size, lastMod)) &&
+          accept(nameId, names, termFilter, candidates, checked, matched) &&
+          ((attributes == null) ||
+           attributes.acceptPath(getPath(names, dirNames, paths, depth))))
+      {
+        // We have a match.  Create the search result.
+        SearchResult sr = new SearchResult();
+        sr.setFileSize(size);
+        sr.setLastModified(lastMod);
+        sr.setName(readName(names, nameId));
+        sr.setPath(getPath(names, dirNames, paths, depth));
+        sr.setVolume(name);
+        sr.setDirectory(isDir);
+        sink.add(sr);
+      }
+      
+      // Visit the children of a directory
+      if (isDir)
+      {
+        ++depth;
+        if (depth == dirNames.length)
+        {
+          dirNames = Arrays.copyOf(dirNames, depth * 2);
+          childrenLeft = Arrays.copyOf(childrenLeft, depth * 2);
+          paths = Arrays.copyOf(paths, depth * 2);
+        }
+        
+        dirNames[depth] = nameId;
+        childrenLeft[depth] = numKids;
+        paths[depth] = null;
+      }
+    }
+  }
+  
+  
+  /**
+   * Return whether the filter accepts a name, checking each
+   * distinct name only once.
+   * 
+   * @param nameId the index of the name
+   * @param names the reader for the names
+   * @param termFilter the filter
+   * @param candidates the names that might match, or null for all names
+   * @param checked the names that have been checked
+   * @param matched the names that were accepted
+   * @return whether the name is accepted
+   * @throws IOException error reading the index
+   */
+  private boolean accept(final int nameId,
+                         final IndexInput names,
+                         final TermFilter termFilter,
+                         final BitSet candidates,
+                         final BitSet checked,
+                         final BitSet matched) throws IOException
+  {
+    if ((candidates != null) && (!candidates.get(nameId)))
+    {
+      return false;
+    }
+    else if (!checked.get(nameId))
+    {
+      checked.set(nameId);
+      if (termFilter.accept(readName(names, nameId)))
+      {
+        matched.set(nameId);
+      }
+    }
+    
+    return matched.get(nameId);
+  }
+  
+  
+  /**
+   * Read a name from the index.
+   * 
+   * @param names the reader for the names
+   * @param nameId the index of the name
+   * @return the name
+   * @throws IOException error reading the index
+   */
+  private String readName(final IndexInput names,
+                          final int nameId) throws IOException
+  {
+    names.seek(nameOffsets[nameId]);
+    return names.readString();
+  }
+  
+  
+  /**
+   * Return the path of the directory at the specified depth,
+   * in the same form as Node.getParentPath().
+   * 
+   * @param names the reader for the names
+   * @param dirNames the name of each directory being visited
+   * @param paths the paths built so far
+   * @param depth the depth of the directory
+   * @return the path of the directory
+   * @throws IOException error reading the index
+   */
+  private String getPath(final IndexInput names,
+                         final int[] dirNames,
+                         final String[] paths,
+                         final int depth) throws IOException
+  {
+    if (paths[depth] == null)
+    {
+      if (depth == 0)
+      {
+        paths[0] = readName(names, dirNames[0]);
+      }
+      else
+      {
+        // Build a File object, to get the separators right
+        File f = new File(getPath(names, dirNames, paths, depth - 1),
+                          readName(names, dirNames[depth]));
+        paths[depth] = f.getPath();
+      }
+    }
+    
+    return paths[depth];
+  }
+  
+  
+  /**
+   * Unmap the file.  The index can't be searched after this,
+   * so this must not be called while a search is running.
+   */
+  public void close()
+  {
+    if (!closed)
+    {
+      closed = true;
+      trigrams = null;
+      unmap(buffer);
+    }
+  }
+  
+  
+  /**
+   * Unmap a mapped buffer now, instead of when it is garbage
+   * collected.  Until then the file can't be replaced on some
+   * systems, such as Windows.  There is no public method for
+   * this, so it uses Unsafe.invokeCleaner() where it exists
+   * (Java 9 and later), and the buffer's cleaner otherwise.
+   * If neither works, the buffer is left for the garbage
+   * collector.
+   * 
+   * @param buf the buffer to unmap
+   */
+  private static void unmap(final ByteBuffer buf)
+  {
+    if (!buf.isDirect())
+    {
+      return;
+    }
+    
+    try
+    {
+      Method invokeCleaner = null;
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      try
+      {
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      }
+      catch (NoSuchMethodException nsme)
+      {
+        invokeCleaner = null;
+      }
+      
+      if (invokeCleaner != null)
+      {
+        Field field = unsafeClass.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        invokeCleaner.invoke(field.get(null), buf);
+      }
+      else
+      {
+        Method getCleaner = buf.getClass().getMethod("cleaner");
+        getCleaner.setAccessible(true);
+        Object cleaner = getCleaner.invoke(buf);
+        if (cleaner != null)
+        {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      }
+    }
+    catch (Exception e)
+    {
+      System.err.println("Unable to unmap the index: " + e.getMessage());
+    }
+  }
+}
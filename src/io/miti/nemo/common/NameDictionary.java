@@ -0,0 +1,590 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.DictionaryFilter;
+import io.miti.nemo.filter.FilterUtility;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * The distinct names of a store, sorted, so the names that
+ * start with a term, end with it or equal it can be found with
+ * a binary search instead of checking every name.  The names
+ * are sorted four ways: as they are and with the characters
+ * read from the end, each with and without case.  The dictionary
+ * is saved in a file next to the store's index file.
+ * 
+ * When the case is ignored, each character is compared in lower
+ * case after converting it to upper case, the same way
+ * String.equalsIgnoreCase() compares them.  Names with a
+ * character whose upper case isn't one character (such as the
+ * German sharp s) aren't in the sorted lists that ignore case,
+ * and are always returned for searches that ignore case.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class NameDictionary
+{
+  /**
+   * The extension of the dictionary file.
+   */
+  public static final String EXTENSION = ".dic";
+  
+  /**
+   * The magic number at the start and end of the file ("NDIC").
+   */
+  private static final int MAGIC = 0x4E444943;
+  
+  /**
+   * The current format version.
+   */
+  private static final int VERSION = 1;
+  
+  /**
+   * The table of nodes.
+   */
+  private final NodeTable table;
+  
+  /**
+   * The names, sorted.
+   */
+  private final int[] forward;
+  
+  /**
+   * The names, sorted from the last character.
+   */
+  private final int[] backward;
+  
+  /**
+   * The names without irregular characters, sorted ignoring case.
+   */
+  private final int[] foldedForward;
+  
+  /**
+   * The names without irregular characters, sorted from the
+   * last character, ignoring case.
+   */
+  private final int[] foldedBackward;
+  
+  /**
+   * The names with irregular characters, in ascending order.
+   */
+  private final int[] irregular;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param pTable the table of nodes
+   * @param pForward the names, sorted
+   * @param pBackward the names, sorted from the last character
+   * @param pFoldedForward the names, sorted ignoring case
+   * @param pFoldedBackward the names, sorted from the last
+   *        character, ignoring case
+   * @param pIrregular the names with irregular characters
+   */
+  private NameDictionary(final NodeTable pTable,
+                         final int[] pForward,
+                         final int[] pBackward,
+                         final int[] pFoldedForward,
+                         final int[] pFoldedBackward,
+                         final int[] pIrregular)
+  {
+    super();
+    table = pTable;
+    forward = pForward;
+    backward = pBackward;
+    foldedForward = pFoldedForward;
+    foldedBackward = pFoldedBackward;
+    irregular = pIrregular;
+  }
+  
+  
+  /**
+   * Return the dictionary file for a store's index file.
+   * 
+   * @param indexFile the store's index file
+   * @return the dictionary file
+   */
+  public static File getFile(final File indexFile)
+  {
+    return Utility.getSidecarFile(indexFile, EXTENSION);
+  }
+  
+  
+  /**
+   * Build the dictionary for a table of nodes.
+   * 
+   * @param table the table of nodes
+   * @return the dictionary
+   */
+  public static NameDictionary build(final NodeTable table)
+  {
+    // Get the names, and the names ignoring case
+    final int nameCount = table.getNameCount();
+    String[] names = new String[nameCount];
+    String[] folded = new String[nameCount];
+    int numSimple = 0;
+    for (int i = 0; i < nameCount; ++i)
+    {
+      names[i] = table.getName(i);
+      if (FilterUtility.hasSimpleUpperCase(names[i]))
+      {
+        folded[i] = foldCase(names[i]);
+        ++numSimple;
+      }
+    }
+    
+    // Save the names that can't be folded
+    int[] irregular = new int[nameCount - numSimple];
+    Integer[] all = new Integer[nameCount];
+    Integer[] simple = new Integer[numSimple];
+    int nextSimple = 0;
+    int nextIrregular = 0;
+    for (int i = 0; i < nameCount; ++i)
+    {
+      all[i] = Integer.valueOf(i);
+      if (folded[i] == null)
+      {
+        irregular[nextIrregular++] = i;
+      }
+      else
+      {
+        simple[nextSimple++] = all[i];
+      }
+    }
+    
+    return new NameDictionary(table, sort(all, names, false), sort(all, names, true),
+                              sort(simple, folded, false), sort(simple, folded, true),
+                              irregular);
+  }
+  
+  
+  /**
+   * Sort names.
+   * 
+   * @param ids the indexes of the names to sort
+   * @param keys the strings to sort on, by name index
+   * @param backwards whether to compare from the last character
+   * @return the sorted name indexes
+   */
+  private static int[] sort(final Integer[] ids,
+                            final String[] keys,
+                            final boolean backwards)
+  {
+    Integer[] sorted = Arrays.copyOf(ids, ids.length);
+    Arrays.sort(sorted, new Comparator<Integer>()
+    {
+      public int compare(final Integer o1, final Integer o2)
+      {
+        return NameDictionary.compare(keys[o1.intValue()], keys[o2.intValue()],
+                                      backwards, false);
+      }
+    });
+    
+    int[] result = new int[sorted.length];
+    for (int i = 0; i < sorted.length; ++i)
+    {
+      result[i] = sorted[i].intValue();
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * Fold the case of a string, one character at a time, so
+   * strings that String.equalsIgnoreCase() finds equal are
+   * the same.
+   * 
+   * @param str the string
+   * @return the string with its case folded
+   */
+  private static String foldCase(final String str)
+  {
+    char[] chars = str.toCharArray();
+    for (int i = 0; i < chars.length; ++i)
+    {
+      chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+    }
+    
+    return new String(chars);
+  }
+  
+  
+  /**
+   * Compare a name to a key, one character at a time.  If
+   * prefix is set, a name that starts with the key (or ends
+   * with it, when comparing backwards) is equal to it.
+   * 
+   * @param name the name
+   * @param key the key
+   * @param backwards whether to compare from the last character
+   * @param prefix whether to compare only the length of the key
+   * @return a negative number, zero or a positive number if the
+   *         name is before, equal to or after the key
+   */
+  private static int compare(final String name,
+                             final String key,
+                             final boolean backwards,
+                             final boolean prefix)
+  {
+    final int nameLen = name.length();
+    final int keyLen = key.length();
+    final int len = Math.min(nameLen, keyLen);
+    for (int i = 0; i < len; ++i)
+    {
+      final char c1 = name.charAt(backwards ? (nameLen - 1 - i) : i);
+      final char c2 = key.charAt(backwards ? (keyLen - 1 - i) : i);
+      if (c1 != c2)
+      {
+        return (c1 - c2);
+      }
+    }
+    
+    if (prefix && (nameLen >= keyLen))
+    {
+      return 0;
+    }
+    
+    return (nameLen - keyLen);
+  }
+  
+  
+  /**
+   * Return the names that might be accepted by the filter.
+   * 
+   * @param filter the filter
+   * @return the index of each name that might match
+   */
+  public BitSet findCandidates(final DictionaryFilter filter)
+  {
+    BitSet candidates = new BitSet(table.getNameCount());
+    final String term = filter.getTerm();
+    if (term == null)
+    {
+      return candidates;
+    }
+    
+    // Work out how to compare the names.  An exact match
+    // compares whole names; otherwise, only the start (or end)
+    // of each name.
+    final boolean ignoreCase = filter.isIgnoreCase();
+    final boolean exact = (filter.isPrefix() && filter.isSuffix());
+    final boolean backwards = (filter.isSuffix() && !exact);
+    int[] order = null;
+    String key = null;
+    if (ignoreCase)
+    {
+      // Names that can't be folded are always candidates
+      for (int name : irregular)
+      {
+        candidates.set(name);
+      }
+      
+      // An exact match compares like String.equalsIgnoreCase(),
+      // and the others compare in upper case
+      key = foldCase(exact ? term : term.toUpperCase());
+      order = (backwards ? foldedBackward : foldedForward);
+    }
+    else
+    {
+      key = term;
+      order = (backwards ? backward : forward);
+    }
+    
+    // Find the range of names that match the key
+    final int start = search(order, key, ignoreCase, backwards, !exact, false);
+    final int end = search(order, key, ignoreCase, backwards, !exact, true);
+    for (int i = start; i < end; ++i)
+    {
+      candidates.set(order[i]);
+    }
+    
+    return candidates;
+  }
+  
+  
+  /**
+   * Find the first name in a sorted list that is after the
+   * key, or equal to it if after is false.
+   * 
+   * @param order the sorted names
+   * @param key the key
+   * @param ignoreCase whether the case is ignored
+   * @param backwards whether to compare from the last character
+   * @param prefix whether to compare only the length of the key
+   * @param after whether to skip the names equal to the key
+   * @return the position of the name in the list
+   */
+  private int search(final int[] order,
+                     final String key,
+                     final boolean ignoreCase,
+                     final boolean backwards,
+                     final boolean prefix,
+                     final boolean after)
+  {
+    int low = 0;
+    int high = order.length;
+    while (low < high)
+    {
+      final int mid = (low + high) >>> 1;
+      final String name = (ignoreCase ? foldCase(table.getName(order[mid]))
+                                      : table.getName(order[mid]));
+      final int cmp = compare(name, key, backwards, prefix);
+      if ((cmp < 0) || (after && (cmp == 0)))
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    
+    return low;
+  }
+  
+  
+  /**
+   * Estimate the number of bytes used by this dictionary.
+   * 
+   * @return the estimated size, in bytes
+   */
+  public long estimateSize()
+  {
+    return (4L * (forward.length + backward.length + foldedForward.length +
+                  foldedBackward.length + irregular.length));
+  }
+  
+  
+  /**
+   * Write the dictionary to a file.  The language of the
+   * default locale is saved, since the upper case of some
+   * letters depends on it.
+   * 
+   * @param file the output file
+   * @throws IOException error writing the file
+   */
+  public void write(final File file) throws IOException
+  {
+    FileOutputStream out = null;
+    try
+    {
+      out = new FileOutputStream(Utility.getTempFile(file));
+      IndexOutput output = new IndexOutput(out.getChannel());
+      
+      // Write the header
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeString(Locale.getDefault().getLanguage());
+      output.writeVarInt(table.getNameCount());
+      output.writeVarInt(table.getNodeCount());
+      
+      // Write the sorted lists
+      writeList(output, forward);
+      writeList(output, backward);
+      writeList(output, foldedForward);
+      writeList(output, foldedBackward);
+      writeList(output, irregular);
+      
+      // Write the footer
+      output.writeInt(MAGIC);
+      output.flush();
+      
+      Utility.replaceFile(out, file);
+      out = null;
+    }
+    finally
+    {
+      Utility.discardTempFile(out, file);
+    }
+  }
+  
+  
+  /**
+   * Write a list of names.
+   * 
+   * @param output the output file
+   * @param names the names
+   * @throws IOException error writing the file
+   */
+  private static void writeList(final IndexOutput output,
+                                final int[] names) throws IOException
+  {
+    output.writeVarInt(names.length);
+    for (int name : names)
+    {
+      output.writeVarInt(name);
+    }
+  }
+  
+  
+  /**
+   * Read a list of names.
+   * 
+   * @param input the input file
+   * @param nameCount the number of names in the table
+   * @return the names
+   * @throws IOException error reading the file
+   */
+  private static int[] readList(final IndexInput input,
+                                final int nameCount) throws IOException
+  {
+    final int len = input.readVarInt();
+    if ((len < 0) || (len > nameCount))
+    {
+      throw new IOException("The dictionary file is corrupt");
+    }
+    
+    int[] names = new int[len];
+    for (int i = 0; i < len; ++i)
+    {
+      names[i] = input.readVarInt();
+      if ((names[i] < 0) || (names[i] >= nameCount))
+      {
+        throw new IOException("The dictionary file is corrupt");
+      }
+    }
+    
+    return names;
+  }
+  
+  
+  /**
+   * Read a dictionary from a file.
+   * 
+   * @param file the input file
+   * @param table the table of nodes
+   * @return the dictionary, or null if the file was written
+   *         for a different table or locale
+   * @throws IOException error reading the file
+   */
+  public static NameDictionary read(final File file,
+                                    final NodeTable table) throws IOException
+  {
+    FileInputStream in = null;
+    NameDictionary dictionary = null;
+    try
+    {
+      in = new FileInputStream(file);
+      IndexInput input = new IndexInput(in.getChannel());
+      
+      // Read the header
+      if (input.readInt() != MAGIC)
+      {
+        throw new IOException("Not a dictionary file: " + file.getName());
+      }
+      final int version = input.readInt();
+      if (version > VERSION)
+      {
+        throw new IOException("Unsupported dictionary version: " + version);
+      }
+      final String language = input.readString();
+      final int nameCount = input.readVarInt();
+      final int nodeCount = input.readVarInt();
+      
+      // Check that the file matches the table and the locale
+      if ((nameCount != table.getNameCount()) || (nodeCount != table.getNodeCount()) ||
+          (!language.equals(Locale.getDefault().getLanguage())))
+      {
+        in.close();
+        in = null;
+        return null;
+      }
+      
+      // Read the sorted lists
+      int[] forward = readList(input, nameCount);
+      int[] backward = readList(input, nameCount);
+      int[] foldedForward = readList(input, nameCount);
+      int[] foldedBackward = readList(input, nameCount);
+      int[] irregular = readList(input, nameCount);
+      
+      // Check the footer
+      if (input.readInt() != MAGIC)
+      {
+        throw new IOException("The dictionary file is incomplete");
+      }
+      
+      dictionary = new NameDictionary(table, forward, backward, foldedForward,
+                                      foldedBackward, irregular);
+      in.close();
+      in = null;
+    }
+    finally
+    {
+      Utility.closeQuietly(in);
+    }
+    
+    return dictionary;
+  }
+  
+  
+  /**
+   * Load the dictionary for a store's index file.  The file is
+   * only used if it was written after the store's index file,
+   * for the same table and locale.
+   * 
+   * @param indexFile the store's index file
+   * @param table the table of nodes
+   * @return the dictionary, or null if it is missing or out of date
+   */
+  public static NameDictionary load(final File indexFile, final NodeTable table)
+  {
+    // Check the file
+    File file = Utility.getCurrentSidecarFile(indexFile, EXTENSION);
+    if (file == null)
+    {
+      return null;
+    }
+    
+    // Read the file
+    NameDictionary dictionary = null;
+    try
+    {
+      dictionary = read(file, table);
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("IOException reading the dictionary: " + ioe.getMessage());
+      dictionary = null;
+    }
+    
+    return dictionary;
+  }
+}
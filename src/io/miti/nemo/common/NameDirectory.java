@@ -0,0 +1,923 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.AttributeFilter;
+import io.miti.nemo.filter.DictionaryFilter;
+import io.miti.nemo.filter.TermFilter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A directory of the names in every store in the index
+ * folder, so a search for an exact name is answered without
+ * loading the stores.  Each store has its own section, saved
+ * in a file next to its index file, which maps each name,
+ * with its case folded, to the nodes with that name.  Saving
+ * a store only replaces its own section.
+ * 
+ * Only the hashes of the names, and where the nodes for each
+ * hash start in the file, are kept in memory, so a section
+ * takes about 16 bytes for each name.  The nodes are read
+ * from the section file when their name is searched for.
+ * Each node has its name, size and time, and the path of its
+ * folder, so the results are built from the section file
+ * alone.  The sections are counted against the memory budget
+ * of the StoreCache.
+ * 
+ * A store's section is only used while its index file has
+ * the same time and size as when the section was saved, so
+ * stores changed some other way are searched as usual.  All
+ * methods are thread-safe.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class NameDirectory
+{
+  /**
+   * The extension of the section files.
+   */
+  public static final String EXTENSION = ".nam";
+  
+  /**
+   * The magic number at the start and end of the file ("NDIR").
+   */
+  private static final int MAGIC = 0x4E444952;
+  
+  /**
+   * The current format version.
+   */
+  private static final int VERSION = 2;
+  
+  /**
+   * The flag for a node that is a directory.
+   */
+  private static final int FLAG_DIRECTORY = 1;
+  
+  /**
+   * The number of bytes in the footer.
+   */
+  private static final int FOOTER_SIZE = 20;
+  
+  /**
+   * The offset basis of the FNV-1a hash.
+   */
+  private static final long HASH_BASIS = 0xCBF29CE484222325L;
+  
+  /**
+   * The prime of the FNV-1a hash.
+   */
+  private static final long HASH_PRIME = 0x100000001B3L;
+  
+  /**
+   * The folder of the loaded sections, or null if none have
+   * been loaded.
+   */
+  private static File folder = null;
+  
+  /**
+   * The section for each store, keyed on the name of its index
+   * file.  Sections aren't changed once they're built, so a
+   * lookup can keep a copy of this map.
+   */
+  private static final Map<String, Section> sections =
+    new HashMap<String, Section>(20);
+  
+  
+  /**
+   * Default constructor.
+   */
+  private NameDirectory()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Return the section file for a store's index file.
+   * 
+   * @param indexFile the store's index file
+   * @return the section file
+   */
+  public static File getFile(final File indexFile)
+  {
+    return Utility.getSidecarFile(indexFile, EXTENSION);
+  }
+  
+  
+  /**
+   * Save the names of a store, after it is written to its
+   * index file.  Only the store's section file is written,
+   * and the loaded sections are only changed if they are for
+   * the same folder.
+   * 
+   * @param indexFile the store's index file
+   * @param store the store
+   */
+  public static void update(final File indexFile, final Store store)
+  {
+    // Write the section, and read back the part kept in memory
+    File file = getFile(indexFile);
+    NodeTable table = store.getNodeTable();
+    Section section = null;
+    if ((table != null) && indexFile.isFile())
+    {
+      try
+      {
+        Section.write(file, indexFile, store.getName(), table);
+        section = Section.read(file);
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("IOException writing the name directory: " + ioe.getMessage());
+        section = null;
+      }
+    }
+    
+    if (section == null)
+    {
+      Utility.deleteFile(file);
+    }
+    
+    // Replace the section, if the folder is loaded
+    synchronized (NameDirectory.class)
+    {
+      if (isLoaded(indexFile))
+      {
+        if (section == null)
+        {
+          sections.remove(indexFile.getName());
+        }
+        else
+        {
+          sections.put(indexFile.getName(), section);
+        }
+        
+        reserveMemory();
+      }
+    }
+  }
+  
+  
+  /**
+   * Drop a store from the directory, when it is deleted.
+   * 
+   * @param indexFile the store's index file
+   */
+  public static void remove(final File indexFile)
+  {
+    Utility.deleteFile(getFile(indexFile));
+    synchronized (NameDirectory.class)
+    {
+      if (isLoaded(indexFile) && (sections.remove(indexFile.getName()) != null))
+      {
+        reserveMemory();
+      }
+    }
+  }
+  
+  
+  /**
+   * Look up a name in the sections of the stores in an index
+   * folder, if the filter looks for an exact name.  This is
+   * done once for each search, and the result is used for
+   * each store.
+   * 
+   * @param dir the index folder
+   * @param termFilter the filter used to check for matches
+   * @return the lookup, or null if the filter doesn't look for
+   *         an exact name
+   */
+  public static Lookup find(final File dir, final TermFilter termFilter)
+  {
+    // Check that the filter looks for an exact name
+    if (!(termFilter instanceof DictionaryFilter))
+    {
+      return null;
+    }
+    DictionaryFilter filter = (DictionaryFilter) termFilter;
+    if (!filter.isPrefix() || !filter.isSuffix() || (filter.getTerm() == null))
+    {
+      return null;
+    }
+    
+    // Take a copy of the sections for the folder
+    Map<String, Section> current = null;
+    synchronized (NameDirectory.class)
+    {
+      load(dir.getAbsoluteFile());
+      current = new HashMap<String, Section>(sections);
+    }
+    
+    return new Lookup(current, hash(filter.getTerm()));
+  }
+  
+  
+  /**
+   * Return whether the sections are loaded for the folder of
+   * an index file.
+   * 
+   * @param indexFile the store's index file
+   * @return whether the folder is loaded
+   */
+  private static boolean isLoaded(final File indexFile)
+  {
+    return ((folder != null) && folder.equals(indexFile.getAbsoluteFile().getParentFile()));
+  }
+  
+  
+  /**
+   * Return the hash of a name, with its case folded one
+   * character at a time, so names that
+   * String.equalsIgnoreCase() finds equal have the same hash.
+   * 
+   * @param name the name
+   * @return the hash of the name
+   */
+  private static long hash(final String name)
+  {
+    long hash = HASH_BASIS;
+    final int len = name.length();
+    for (int i = 0; i < len; ++i)
+    {
+      hash ^= Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+      hash *= HASH_PRIME;
+    }
+    
+    return hash;
+  }
+  
+  
+  /**
+   * Load the sections for an index folder, if it isn't the
+   * one already loaded.  A missing or unreadable section
+   * file leaves its store out of the directory.
+   * 
+   * @param dir the index folder
+   */
+  private static void load(final File dir)
+  {
+    // Check if the folder is already loaded
+    if (dir.equals(folder))
+    {
+      return;
+    }
+    
+    folder = dir;
+    sections.clear();
+    File[] files = dir.listFiles();
+    if (files != null)
+    {
+      for (File file : files)
+      {
+        if (!file.getName().endsWith(EXTENSION) || !file.isFile())
+        {
+          continue;
+        }
+        
+        try
+        {
+          Section section = Section.read(file);
+          if (section != null)
+          {
+            sections.put(section.fileName, section);
+          }
+        }
+        catch (IOException ioe)
+        {
+          System.err.println("IOException reading the name directory: " + ioe.getMessage());
+        }
+      }
+    }
+    
+    reserveMemory();
+  }
+  
+  
+  /**
+   * Take the memory used by the loaded sections from the
+   * memory budget of the StoreCache.
+   */
+  private static void reserveMemory()
+  {
+    long size = 0L;
+    for (Section section : sections.values())
+    {
+      size += section.estimateSize();
+    }
+    
+    StoreCache.setReservedMemory(size);
+  }
+  
+  
+  /**
+   * The result of looking up a name for one search.
+   */
+  public static final class Lookup
+  {
+    /**
+     * The sections when the lookup was made.
+     */
+    private final Map<String, Section> sections;
+    
+    /**
+     * The hash of the name.
+     */
+    private final long hash;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param pSections the sections
+     * @param lHash the hash of the name
+     */
+    private Lookup(final Map<String, Section> pSections,
+                   final long lHash)
+    {
+      super();
+      sections = pSections;
+      hash = lHash;
+    }
+    
+    
+    /**
+     * Search a store for the name, using only its section, and
+     * pass the results to the sink.  The store isn't read.  If
+     * the directory doesn't have a current section for the
+     * store, or the section file can't be read, nothing is
+     * passed to the sink and the store must be searched as
+     * usual.
+     * 
+     * @param indexFile the store's index file
+     * @param includeFiles whether to include files in the results
+     * @param includeDirectories whether to include directories in the results
+     * @param termFilter the filter used to check for matches
+     * @param sink receives the search results
+     * @return whether the store was searched
+     */
+    public boolean search(final File indexFile,
+                          final boolean includeFiles,
+                          final boolean includeDirectories,
+                          final TermFilter termFilter,
+                          final ResultSink sink)
+    {
+      // Check the section is current for the store
+      Section section = sections.get(indexFile.getName());
+      if ((section == null) || !section.isCurrent(indexFile))
+      {
+        return false;
+      }
+      
+      // Check if the store has the name at all
+      final int index = section.indexOf(hash);
+      if ((index < 0) || (!includeFiles && !includeDirectories) || sink.isFull())
+      {
+        return true;
+      }
+      
+      // Read the matching nodes before passing any to the sink,
+      // so a read error doesn't leave the results half done
+      List<SearchResult> results = null;
+      try
+      {
+        results = section.search(getFile(indexFile), index, includeFiles,
+                                 includeDirectories, termFilter);
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("IOException reading the name directory: " + ioe.getMessage());
+        return false;
+      }
+      
+      if (results == null)
+      {
+        return false;
+      }
+      
+      for (SearchResult result : results)
+      {
+        // Check if this thread has been interrupted, or the
+        // search has been cancelled
+        if (Thread.currentThread().isInterrupted() || sink.isFull())
+        {
+          break;
+        }
+        
+        sink.add(result);
+      }
+      
+      return true;
+    }
+  }
+  
+  
+  /**
+   * The section for one store.  The file has a header, then
+   * the nodes for each hash, then the path of each folder
+   * holding any of the nodes, then the offsets of those
+   * paths, then the hashes with the offsets of their nodes,
+   * and a footer with the offsets of the last two tables.
+   * Only the hashes and the offsets of their nodes are kept
+   * in memory.
+   */
+  private static final class Section
+  {
+    /**
+     * The name of the store's index file.
+     */
+    private final String fileName;
+    
+    /**
+     * The last-modified time of the index file.
+     */
+    private final long fileTime;
+    
+    /**
+     * The size of the index file.
+     */
+    private final long fileLength;
+    
+    /**
+     * The name of the store.
+     */
+    private final String volumeName;
+    
+    /**
+     * The number of folder paths.
+     */
+    private final int pathCount;
+    
+    /**
+     * The file offset of the table of path offsets.
+     */
+    private final long pathTableOffset;
+    
+    /**
+     * The distinct hashes of the names, in ascending order.
+     */
+    private final long[] hashes;
+    
+    /**
+     * The file offset of the nodes for each hash.
+     */
+    private final long[] offsets;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param sFileName the name of the store's index file
+     * @param lFileTime the last-modified time of the index file
+     * @param lFileLength the size of the index file
+     * @param sVolumeName the name of the store
+     * @param nPathCount the number of folder paths
+     * @param lPathTableOffset the file offset of the path offsets
+     * @param pHashes the distinct hashes of the names
+     * @param pOffsets the file offset of the nodes for each hash
+     */
+    private Section(final String sFileName,
+                    final long lFileTime,
+                    final long lFileLength,
+                    final String sVolumeName,
+                    final int nPathCount,
+                    final long lPathTableOffset,
+                    final long[] pHashes,
+                    final long[] pOffsets)
+    {
+      super();
+      fileName = sFileName;
+      fileTime = lFileTime;
+      fileLength = lFileLength;
+      volumeName = sVolumeName;
+      pathCount = nPathCount;
+      pathTableOffset = lPathTableOffset;
+      hashes = pHashes;
+      offsets = pOffsets;
+    }
+    
+    
+    /**
+     * Return whether the store's index file hasn't changed
+     * since the section was saved.
+     * 
+     * @param indexFile the store's index file
+     * @return whether the section is current
+     */
+    public boolean isCurrent(final File indexFile)
+    {
+      return ((indexFile.lastModified() == fileTime) && (indexFile.length() == fileLength));
+    }
+    
+    
+    /**
+     * Return the position of a hash.
+     * 
+     * @param hash the hash of the name
+     * @return the position of the hash, or a negative number
+     *         if the store doesn't have it
+     */
+    public int indexOf(final long hash)
+    {
+      return Arrays.binarySearch(hashes, hash);
+    }
+    
+    
+    /**
+     * Read the nodes for a hash from the section file, and
+     * return the ones accepted by the filter.  The names are
+     * checked, since only the hashes are compared.
+     * 
+     * @param file the section file
+     * @param index the position of the hash
+     * @param includeFiles whether to include files
+     * @param includeDirectories whether to include directories
+     * @param termFilter the filter used to check for matches
+     * @return the results, in index order, or null if the file
+     *         was replaced since the section was read
+     * @throws IOException error reading the file
+     */
+    public List<SearchResult> search(final File file,
+                                     final int index,
+                                     final boolean includeFiles,
+                                     final boolean includeDirectories,
+                                     final TermFilter termFilter)
+      throws IOException
+    {
+      final AttributeFilter attributes = Indexer.getAttributeFilter(termFilter);
+      List<SearchResult> results = new ArrayList<SearchResult>(4);
+      FileInputStream in = null;
+      try
+      {
+        in = new FileInputStream(file);
+        IndexInput input = new IndexInput(in.getChannel());
+        
+        // Check the file is still for the same index file
+        if ((input.readInt() != MAGIC) || (input.readInt() != VERSION) ||
+            !fileName.equals(input.readString()) ||
+            (input.readLong() != fileTime) || (input.readLong() != fileLength))
+        {
+          return null;
+        }
+        
+        // Read the nodes, keeping the ones that match
+        input.seek(offsets[index]);
+        final int count = input.readVarInt();
+        if (count < 0)
+        {
+          throw new IOException("The name directory file is corrupt");
+        }
+        
+        int[] pathIds = new int[count];
+        for (int i = 0; i < count; ++i)
+        {
+          final String name = input.readString();
+          final boolean bIsDirectory = ((input.readByte() & FLAG_DIRECTORY) != 0);
+          final long size = input.readSignedVarLong();
+          final long time = input.readSignedVarLong();
+          final int pathId = input.readVarInt();
+          if ((pathId < 0) || (pathId >= pathCount))
+          {
+            throw new IOException("The name directory file is corrupt");
+          }
+          
+          // Check the type, then the size and time, then the name
+          if ((bIsDirectory && !includeDirectories) || (!bIsDirectory && !includeFiles))
+          {
+            continue;
+          }
+          if ((attributes != null) && !attributes.acceptAttributes(size, time))
+          {
+            continue;
+          }
+          if (!termFilter.accept(name))
+          {
+            continue;
+          }
+          
+          SearchResult sr = new SearchResult();
+          sr.setFileSize(size);
+          sr.setLastModified(time);
+          sr.setName(name);
+          sr.setVolume(volumeName);
+          sr.setDirectory(bIsDirectory);
+          pathIds[results.size()] = pathId;
+          results.add(sr);
+        }
+        
+        // Read the path of the folder of each match, and check it
+        List<SearchResult> accepted = new ArrayList<SearchResult>(results.size());
+        for (int i = 0; i < results.size(); ++i)
+        {
+          input.seek(pathTableOffset + (pathIds[i] * 8L));
+          input.seek(input.readLong());
+          final String path = input.readString();
+          if ((attributes == null) || attributes.acceptPath(path))
+          {
+            SearchResult sr = results.get(i);
+            sr.setPath(path);
+            accepted.add(sr);
+          }
+        }
+        results = accepted;
+        
+        in.close();
+        in = null;
+      }
+      finally
+      {
+        Utility.closeQuietly(in);
+      }
+      
+      return results;
+    }
+    
+    
+    /**
+     * Estimate the number of bytes used by the section.
+     * 
+     * @return the estimated size, in bytes
+     */
+    public long estimateSize()
+    {
+      return (96L + (hashes.length * 16L) + (volumeName.length() * 2L));
+    }
+    
+    
+    /**
+     * Write the section for a store to a file.
+     * 
+     * @param file the output file
+     * @param indexFile the store's index file
+     * @param volumeName the name of the store
+     * @param table the table of nodes
+     * @throws IOException error writing the file
+     */
+    public static void write(final File file,
+                             final File indexFile,
+                             final String volumeName,
+                             final NodeTable table)
+      throws IOException
+    {
+      // Hash each name, and sort the distinct hashes
+      final int nameCount = table.getNameCount();
+      long[] nameHashes = new long[nameCount];
+      for (int i = 0; i < nameCount; ++i)
+      {
+        nameHashes[i] = hash(table.getName(i));
+      }
+      
+      long[] hashes = nameHashes.clone();
+      Arrays.sort(hashes);
+      int count = 0;
+      for (int i = 0; i < hashes.length; ++i)
+      {
+        if ((count == 0) || (hashes[i] != hashes[count - 1]))
+        {
+          hashes[count++] = hashes[i];
+        }
+      }
+      hashes = Arrays.copyOf(hashes, count);
+      
+      // Find the position of the hash of each name
+      int[] slots = new int[nameCount];
+      for (int i = 0; i < nameCount; ++i)
+      {
+        slots[i] = Arrays.binarySearch(hashes, nameHashes[i]);
+      }
+      
+      // Count the nodes for each hash, skipping the root node,
+      // and number the folders holding the nodes
+      final int nodeCount = table.getNodeCount();
+      int[] starts = new int[count + 1];
+      int[] pathIds = new int[nodeCount];
+      Arrays.fill(pathIds, -1);
+      int[] folders = new int[nodeCount];
+      int pathCount = 0;
+      for (int node = 1; node < nodeCount; ++node)
+      {
+        ++starts[slots[table.getNameId(node)] + 1];
+        final int parent = table.getParent(node);
+        if (pathIds[parent] < 0)
+        {
+          pathIds[parent] = pathCount;
+          folders[pathCount++] = parent;
+        }
+      }
+      for (int i = 0; i < count; ++i)
+      {
+        starts[i + 1] += starts[i];
+      }
+      
+      // Save the nodes for each hash, in ascending order
+      int[] next = Arrays.copyOf(starts, count);
+      int[] nodes = new int[starts[count]];
+      for (int node = 1; node < nodeCount; ++node)
+      {
+        nodes[next[slots[table.getNameId(node)]]++] = node;
+      }
+      
+      FileOutputStream out = null;
+      try
+      {
+        out = new FileOutputStream(Utility.getTempFile(file));
+        IndexOutput output = new IndexOutput(out.getChannel());
+        
+        // Write the header
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeString(indexFile.getName());
+        output.writeLong(indexFile.lastModified());
+        output.writeLong(indexFile.length());
+        output.writeString(volumeName);
+        output.writeVarInt(count);
+        output.writeVarInt(pathCount);
+        
+        // Write the nodes for each hash
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; ++i)
+        {
+          offsets[i] = output.getOffset();
+          output.writeVarInt(starts[i + 1] - starts[i]);
+          for (int j = starts[i]; j < starts[i + 1]; ++j)
+          {
+            final int node = nodes[j];
+            output.writeString(table.getNodeName(node));
+            output.writeByte(table.isDirectory(node) ? FLAG_DIRECTORY : 0);
+            output.writeSignedVarLong(table.getFileSize(node));
+            output.writeSignedVarLong(table.getLastModified(node));
+            output.writeVarInt(pathIds[table.getParent(node)]);
+          }
+        }
+        
+        // Write the path of each folder, and then their offsets
+        long[] pathOffsets = new long[pathCount];
+        for (int i = 0; i < pathCount; ++i)
+        {
+          pathOffsets[i] = output.getOffset();
+          output.writeString(table.getPath(folders[i]));
+        }
+        
+        final long pathTableOffset = output.getOffset();
+        for (int i = 0; i < pathCount; ++i)
+        {
+          output.writeLong(pathOffsets[i]);
+        }
+        
+        // Write each hash, with the gap to the offset of its nodes
+        final long hashTableOffset = output.getOffset();
+        long last = 0L;
+        for (int i = 0; i < count; ++i)
+        {
+          output.writeLong(hashes[i]);
+          output.writeVarLong(offsets[i] - last);
+          last = offsets[i];
+        }
+        
+        // Write the footer
+        output.writeLong(pathTableOffset);
+        output.writeLong(hashTableOffset);
+        output.writeInt(MAGIC);
+        output.flush();
+        
+        Utility.replaceFile(out, file);
+        out = null;
+      }
+      finally
+      {
+        Utility.discardTempFile(out, file);
+      }
+    }
+    
+    
+    /**
+     * Read the part of a section kept in memory from a file.
+     * 
+     * @param file the input file
+     * @return the section, or null if the file has an older
+     *         format and needs to be saved again
+     * @throws IOException error reading the file
+     */
+    public static Section read(final File file) throws IOException
+    {
+      FileInputStream in = null;
+      Section section = null;
+      try
+      {
+        in = new FileInputStream(file);
+        IndexInput input = new IndexInput(in.getChannel());
+        
+        // Read the header
+        if (input.readInt() != MAGIC)
+        {
+          throw new IOException("Not a name directory file: " + file.getName());
+        }
+        final int version = input.readInt();
+        if (version > VERSION)
+        {
+          throw new IOException("Unsupported name directory version: " + version);
+        }
+        else if (version < VERSION)
+        {
+          // The store gets searched as usual until it's saved
+          return null;
+        }
+        final String fileName = input.readString();
+        final long fileTime = input.readLong();
+        final long fileLength = input.readLong();
+        final String volumeName = input.readString();
+        final int hashCount = input.readVarInt();
+        final int pathCount = input.readVarInt();
+        final long headerSize = input.getOffset();
+        
+        // Read the footer
+        final long size = in.getChannel().size();
+        if ((hashCount < 0) || (pathCount < 0) || (size < headerSize + FOOTER_SIZE))
+        {
+          throw new IOException("The name directory file is corrupt");
+        }
+        input.seek(size - FOOTER_SIZE);
+        final long pathTableOffset = input.readLong();
+        final long hashTableOffset = input.readLong();
+        if (input.readInt() != MAGIC)
+        {
+          throw new IOException("The name directory file is incomplete");
+        }
+        if ((pathTableOffset < headerSize) ||
+            (pathTableOffset + (pathCount * 8L) != hashTableOffset) ||
+            (hashTableOffset > size - FOOTER_SIZE))
+        {
+          throw new IOException("The name directory file is corrupt");
+        }
+        
+        // Read each hash and the offset of its nodes
+        input.seek(hashTableOffset);
+        long[] hashes = new long[hashCount];
+        long[] offsets = new long[hashCount];
+        long last = 0L;
+        for (int i = 0; i < hashCount; ++i)
+        {
+          hashes[i] = input.readLong();
+          last += input.readVarLong();
+          offsets[i] = last;
+          if ((last < headerSize) || (last >= pathTableOffset) ||
+              ((i > 0) && ((hashes[i] <= hashes[i - 1]) || (last <= offsets[i - 1]))))
+          {
+            throw new IOException("The name directory file is corrupt");
+          }
+        }
+        
+        if (input.getOffset() != size - FOOTER_SIZE)
+        {
+          throw new IOException("The name directory file is corrupt");
+        }
+        
+        section = new Section(fileName, fileTime, fileLength, volumeName,
+                              pathCount, pathTableOffset, hashes, offsets);
+        in.close();
+        in = null;
+      }
+      finally
+      {
+        Utility.closeQuietly(in);
+      }
+      
+      return section;
+    }
+  }
+}
@@ -91,6 +91,32 @@ public final class Node implements Serializable
   }
   
   
+  /**
+   * Constructor taking the node's attributes.  The children
+   * get added with saveChild().
+   * 
+   * @param sName the name of this file or directory
+   * @param lLastModified the last modified time
+   * @param lFileSize the file size
+   * @param bIsDirectory whether this is a directory
+   * @param nNumChildren the number of children
+   */
+  Node(final String sName,
+       final long lLastModified,
+       final long lFileSize,
+       final boolean bIsDirectory,
+       final int nNumChildren)
+  {
+    super();
+    name = sName;
+    lastModified = lLastModified;
+    fileSize = lFileSize;
+    isDirectory = bIsDirectory;
+    numChildren = nNumChildren;
+    children = new ArrayList<Node>(nNumChildren);
+  }
+  
+  
   /**
    * Return the children for this node.
    * 
@@ -135,6 +161,46 @@ public final class Node implements Serializable
   }
   
   
+  /**
+   * Insert a child at the specified position.
+   * 
+   * @param index the position of the new child
+   * @param node the child to insert
+   */
+  public void insertChild(final int index, final Node node)
+  {
+    // See if we've created a list yet
+    if (children == null)
+    {
+      children = new ArrayList<Node>(10);
+    }
+    
+    // Insert the child
+    children.add(index, node);
+    
+    // Increment the number of children
+    ++numChildren;
+  }
+  
+  
+  /**
+   * Remove the child at the specified position.
+   * 
+   * @param index the position of the child
+   * @return the child that was removed
+   */
+  public Node removeChild(final int index)
+  {
+    // Remove the child
+    Node node = children.remove(index);
+    
+    // Decrement the number of children
+    --numChildren;
+    
+    return node;
+  }
+  
+  
   /**
    * Return the size for this file.
    * 
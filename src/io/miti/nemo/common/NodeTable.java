@@ -0,0 +1,663 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The nodes of a store, saved in columns of primitive arrays
+ * instead of one Node object per file.  The nodes are in
+ * depth-first order with the root at index zero, so visiting
+ * the nodes in index order gives the same order as walking
+ * the tree.  The names are stored once each, as UTF-8 bytes
+ * in a shared array, and each node saves the index of its
+ * name.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class NodeTable implements Serializable
+{
+  /**
+   * The serial version number.
+   */
+  private static final long serialVersionUID = 1L;
+  
+  /**
+   * The value used for a missing parent, child or sibling.
+   */
+  public static final int NONE = -1;
+  
+  /**
+   * The number of bytes used by each node, not counting the names.
+   */
+  static final long BYTES_PER_NODE = 32L;
+  
+  /**
+   * The number of nodes.
+   */
+  private int count = 0;
+  
+  /**
+   * The index of the parent of each node.
+   */
+  private final int[] parent;
+  
+  /**
+   * The index of the first child of each node.
+   */
+  private final int[] firstChild;
+  
+  /**
+   * The index of the next sibling of each node.
+   */
+  private final int[] nextSibling;
+  
+  /**
+   * The index of the name of each node.
+   */
+  private final int[] nameId;
+  
+  /**
+   * The size of each node.
+   */
+  private final long[] size;
+  
+  /**
+   * The last-modified time of each node.
+   */
+  private final long[] mtime;
+  
+  /**
+   * The nodes that are directories.
+   */
+  private final BitSet directories;
+  
+  /**
+   * The UTF-8 bytes of the distinct names.
+   */
+  private final byte[] nameData;
+  
+  /**
+   * The offset of each name in nameData, plus the end offset.
+   */
+  private final int[] nameOffsets;
+  
+  /**
+   * The nodes grouped by name, built when first needed.
+   */
+  private transient int[] nodesByName = null;
+  
+  /**
+   * The start of each name's nodes in nodesByName, plus the end.
+   */
+  private transient int[] nameStarts = null;
+  
+  /**
+   * The range of sizes and times under each directory.
+   */
+  private transient ZoneMap zones = null;
+  
+  
+  /**
+   * Constructor.  The nodes are added with add(), and then
+   * link() must be called.
+   * 
+   * @param nodeCount the number of nodes
+   * @param pNameData the UTF-8 bytes of the distinct names
+   * @param pNameOffsets the offset of each name, plus the end offset
+   */
+  NodeTable(final int nodeCount,
+            final byte[] pNameData,
+            final int[] pNameOffsets)
+  {
+    super();
+    parent = new int[nodeCount];
+    firstChild = new int[nodeCount];
+    nextSibling = new int[nodeCount];
+    nameId = new int[nodeCount];
+    size = new long[nodeCount];
+    mtime = new long[nodeCount];
+    directories = new BitSet(nodeCount);
+    nameData = pNameData;
+    nameOffsets = pNameOffsets;
+  }
+  
+  
+  /**
+   * Build a node table from a tree of nodes.
+   * 
+   * @param root the root of the tree
+   * @return the node table
+   */
+  public static NodeTable fromNode(final Node root)
+  {
+    // Assign an index to each distinct name, and count the nodes
+    Map<String, Integer> ids = new HashMap<String, Integer>(1024);
+    List<byte[]> names = new ArrayList<byte[]>(1024);
+    final int nodeCount = collectNames(root, ids, names);
+    
+    // Copy the names into one array
+    int[] offsets = new int[names.size() + 1];
+    for (int i = 0; i < names.size(); ++i)
+    {
+      offsets[i + 1] = offsets[i] + names.get(i).length;
+    }
+    byte[] data = new byte[offsets[names.size()]];
+    for (int i = 0; i < names.size(); ++i)
+    {
+      System.arraycopy(names.get(i), 0, data, offsets[i], names.get(i).length);
+    }
+    
+    // Add the nodes
+    NodeTable table = new NodeTable(nodeCount, data, offsets);
+    if (root != null)
+    {
+      table.addNode(root, NONE, ids);
+    }
+    table.link();
+    
+    return table;
+  }
+  
+  
+  /**
+   * Save the names of this node and its children, and
+   * return the number of nodes.
+   * 
+   * @param node the node
+   * @param ids the map of names to their index
+   * @param names the UTF-8 bytes of each distinct name
+   * @return the number of nodes
+   */
+  private static int collectNames(final Node node,
+                                  final Map<String, Integer> ids,
+                                  final List<byte[]> names)
+  {
+    // Check the node
+    if (node == null)
+    {
+      return 0;
+    }
+    
+    // Save the name if we haven't seen it yet
+    if (!ids.containsKey(node.getName()))
+    {
+      ids.put(node.getName(), Integer.valueOf(names.size()));
+      names.add(node.getName().getBytes(IndexFile.UTF8));
+    }
+    
+    // Handle the children
+    int total = 1;
+    List<Node> children = node.getChildren();
+    if (children != null)
+    {
+      for (Node child : children)
+      {
+        total += collectNames(child, ids, names);
+      }
+    }
+    
+    return total;
+  }
+  
+  
+  /**
+   * Add a node and its children.
+   * 
+   * @param node the node to add
+   * @param parentIndex the index of the parent node
+   * @param ids the map of names to their index
+   */
+  private void addNode(final Node node,
+                       final int parentIndex,
+                       final Map<String, Integer> ids)
+  {
+    final int index = add(parentIndex, ids.get(node.getName()).intValue(),
+                          node.isDirectory(), node.getFileSize(),
+                          node.getLastModified());
+    
+    List<Node> children = node.getChildren();
+    if (children != null)
+    {
+      for (Node child : children)
+      {
+        addNode(child, index, ids);
+      }
+    }
+  }
+  
+  
+  /**
+   * Add the next node.  Nodes must be added in depth-first order.
+   * 
+   * @param parentIndex the index of the parent node
+   * @param nameIndex the index of the name
+   * @param isDirectory whether the node is a directory
+   * @param fileSize the size
+   * @param lastModified the last-modified time
+   * @return the index of the new node
+   */
+  int add(final int parentIndex,
+          final int nameIndex,
+          final boolean isDirectory,
+          final long fileSize,
+          final long lastModified)
+  {
+    final int index = count++;
+    parent[index] = parentIndex;
+    nameId[index] = nameIndex;
+    size[index] = fileSize;
+    mtime[index] = lastModified;
+    if (isDirectory)
+    {
+      directories.set(index);
+    }
+    
+    return index;
+  }
+  
+  
+  /**
+   * Fill in the first child and next sibling of each node,
+   * after all nodes have been added.
+   */
+  void link()
+  {
+    Arrays.fill(firstChild, NONE);
+    Arrays.fill(nextSibling, NONE);
+    
+    // Since the nodes are in depth-first order, each node's
+    // siblings come after it in the arrays
+    int[] lastChild = new int[count];
+    Arrays.fill(lastChild, NONE);
+    for (int i = 1; i < count; ++i)
+    {
+      final int p = parent[i];
+      if (lastChild[p] == NONE)
+      {
+        firstChild[p] = i;
+      }
+      else
+      {
+        nextSibling[lastChild[p]] = i;
+      }
+      lastChild[p] = i;
+    }
+    
+    // Save the range of sizes and times under each directory
+    zones = ZoneMap.build(this);
+  }
+  
+  
+  /**
+   * Return the number of nodes.
+   * 
+   * @return the number of nodes
+   */
+  public int getNodeCount()
+  {
+    return count;
+  }
+  
+  
+  /**
+   * Return the number of distinct names.
+   * 
+   * @return the number of distinct names
+   */
+  public int getNameCount()
+  {
+    return (nameOffsets.length - 1);
+  }
+  
+  
+  /**
+   * Return a name.
+   * 
+   * @param nameIndex the index of the name
+   * @return the name
+   */
+  public String getName(final int nameIndex)
+  {
+    final int start = nameOffsets[nameIndex];
+    return new String(nameData, start, nameOffsets[nameIndex + 1] - start,
+                      IndexFile.UTF8);
+  }
+  
+  
+  /**
+   * Write a name in the form read by IndexInput.readString().
+   * 
+   * @param output the output file
+   * @param nameIndex the index of the name
+   * @throws IOException error writing the file
+   */
+  void writeName(final IndexOutput output,
+                 final int nameIndex) throws IOException
+  {
+    final int start = nameOffsets[nameIndex];
+    final int len = nameOffsets[nameIndex + 1] - start;
+    output.writeVarInt(len);
+    output.writeBytes(nameData, start, len);
+  }
+  
+  
+  /**
+   * Return the index of the name of a node.
+   * 
+   * @param index the node index
+   * @return the index of the node's name
+   */
+  public int getNameId(final int index)
+  {
+    return nameId[index];
+  }
+  
+  
+  /**
+   * Return the name of a node.
+   * 
+   * @param index the node index
+   * @return the node's name
+   */
+  public String getNodeName(final int index)
+  {
+    return getName(nameId[index]);
+  }
+  
+  
+  /**
+   * Return the parent of a node.
+   * 
+   * @param index the node index
+   * @return the index of the parent, or NONE for the root
+   */
+  public int getParent(final int index)
+  {
+    return parent[index];
+  }
+  
+  
+  /**
+   * Return the first child of a node.
+   * 
+   * @param index the node index
+   * @return the index of the first child, or NONE
+   */
+  public int getFirstChild(final int index)
+  {
+    return firstChild[index];
+  }
+  
+  
+  /**
+   * Return the next sibling of a node.
+   * 
+   * @param index the node index
+   * @return the index of the next sibling, or NONE
+   */
+  public int getNextSibling(final int index)
+  {
+    return nextSibling[index];
+  }
+  
+  
+  /**
+   * Return the size of a node.
+   * 
+   * @param index the node index
+   * @return the file size
+   */
+  public long getFileSize(final int index)
+  {
+    return size[index];
+  }
+  
+  
+  /**
+   * Return the last-modified time of a node.
+   * 
+   * @param index the node index
+   * @return the last-modified time
+   */
+  public long getLastModified(final int index)
+  {
+    return mtime[index];
+  }
+  
+  
+  /**
+   * Return whether a node is a directory.
+   * 
+   * @param index the node index
+   * @return whether the node is a directory
+   */
+  public boolean isDirectory(final int index)
+  {
+    return directories.get(index);
+  }
+  
+  
+  /**
+   * Return the number of children of a node.
+   * 
+   * @param index the node index
+   * @return the number of children
+   */
+  public int getNumChildren(final int index)
+  {
+    int num = 0;
+    for (int i = firstChild[index]; i != NONE; i = nextSibling[i])
+    {
+      ++num;
+    }
+    
+    return num;
+  }
+  
+  
+  /**
+   * Return the full path of a node, in the same form as
+   * Node.getParentPath() returns for the node's children.
+   * 
+   * @param index the node index
+   * @return the path of the node
+   */
+  public String getPath(final int index)
+  {
+    if (parent[index] == NONE)
+    {
+      return getNodeName(index);
+    }
+    
+    // Build a File object, to get the separators right
+    File f = new File(getPath(parent[index]), getNodeName(index));
+    return f.getPath();
+  }
+  
+  
+  /**
+   * Return the path of the parent of a node, the same as
+   * Node.getParentPath().
+   * 
+   * @param index the node index
+   * @return the path of the node's parent
+   */
+  public String getParentPath(final int index)
+  {
+    return ((parent[index] == NONE) ? "" : getPath(parent[index]));
+  }
+  
+  
+  /**
+   * Return the nodes with any of the specified names, in
+   * index order.
+   * 
+   * @param names the indexes of the names
+   * @return the indexes of the nodes
+   */
+  public int[] findNodes(final BitSet names)
+  {
+    // Get the nodes for each name
+    int[][] groups = getNodesByName();
+    final int[] starts = groups[0];
+    final int[] nodes = groups[1];
+    
+    // Copy the nodes for the names, and sort them
+    int total = 0;
+    for (int i = names.nextSetBit(0); i >= 0; i = names.nextSetBit(i + 1))
+    {
+      total += starts[i + 1] - starts[i];
+    }
+    
+    int[] result = new int[total];
+    int pos = 0;
+    for (int i = names.nextSetBit(0); i >= 0; i = names.nextSetBit(i + 1))
+    {
+      final int len = starts[i + 1] - starts[i];
+      System.arraycopy(nodes, starts[i], result, pos, len);
+      pos += len;
+    }
+    
+    Arrays.sort(result);
+    return result;
+  }
+  
+  
+  /**
+   * Return the range of sizes and times under each directory.
+   * They are saved when the table is built, or when first
+   * needed if the table was deserialized.
+   * 
+   * @return the zones
+   */
+  synchronized ZoneMap getZoneMap()
+  {
+    if (zones == null)
+    {
+      zones = ZoneMap.build(this);
+    }
+    
+    return zones;
+  }
+  
+  
+  /**
+   * Return the nodes grouped by name, building the groups
+   * the first time this is called.
+   * 
+   * @return the start of each name's nodes, and the nodes
+   */
+  private synchronized int[][] getNodesByName()
+  {
+    if (nodesByName == null)
+    {
+      // Count the nodes with each name
+      final int names = getNameCount();
+      int[] starts = new int[names + 1];
+      for (int i = 0; i < count; ++i)
+      {
+        ++starts[nameId[i] + 1];
+      }
+      for (int i = 0; i < names; ++i)
+      {
+        starts[i + 1] += starts[i];
+      }
+      
+      // Save the nodes, which leaves each group in index order
+      int[] next = Arrays.copyOf(starts, names);
+      int[] nodes = new int[count];
+      for (int i = 0; i < count; ++i)
+      {
+        nodes[next[nameId[i]]++] = i;
+      }
+      
+      nameStarts = starts;
+      nodesByName = nodes;
+    }
+    
+    return new int[][] {nameStarts, nodesByName};
+  }
+  
+  
+  /**
+   * Estimate the number of bytes used by this table, including
+   * the zones and the nodes grouped by name, if they're built.
+   * 
+   * @return the estimated size, in bytes
+   */
+  public synchronized long estimateSize()
+  {
+    return (BYTES_PER_NODE * parent.length) + (parent.length / 8) +
+      nameData.length + (4L * nameOffsets.length) +
+      ((zones == null) ? 0L : zones.estimateSize()) +
+      ((nodesByName == null) ? 0L : (4L * (nodesByName.length + nameStarts.length)));
+  }
+  
+  
+  /**
+   * Build a tree of nodes from this table.
+   * 
+   * @return the root node, or null if the table is empty
+   */
+  public Node toNode()
+  {
+    return ((count == 0) ? null : toNode(0, null));
+  }
+  
+  
+  /**
+   * Build the node and its children.
+   * 
+   * @param index the node index
+   * @param parentNode the parent node
+   * @return the node
+   */
+  private Node toNode(final int index, final Node parentNode)
+  {
+    Node node = new Node(getNodeName(index), mtime[index], size[index],
+                         isDirectory(index), getNumChildren(index));
+    node.setParent(parentNode);
+    for (int i = firstChild[index]; i != NONE; i = nextSibling[i])
+    {
+      node.saveChild(toNode(i, node));
+    }
+    
+    return node;
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.TermFilter;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Searches one large store in parallel, using a fork/join pool.
+ * The nodes are in depth-first order, so the node table is split
+ * into contiguous ranges of nodes, and each range is searched
+ * by its own task.  Each task passes its results straight to
+ * the sink as it finds them, so nothing is collected per range
+ * and the results arrive in no particular order.  The sink
+ * keeps the best results, such as with TopResults.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class ParallelSearch
+{
+  /**
+   * The most nodes searched by one task.
+   */
+  private static final int RANGE_SIZE = 32768;
+  
+  /**
+   * The pool that runs the tasks.
+   */
+  private final ForkJoinPool pool;
+  
+  /**
+   * The table of nodes.
+   */
+  private final NodeTable table;
+  
+  /**
+   * Whether to include files.
+   */
+  private final boolean includeFiles;
+  
+  /**
+   * Whether to include directories.
+   */
+  private final boolean includeDirectories;
+  
+  /**
+   * The name of the volume.
+   */
+  private final String volumeName;
+  
+  /**
+   * The filter used to check for matches.
+   */
+  private final TermFilter termFilter;
+  
+  /**
+   * The names in upper case, or null to pass the names to the
+   * filter as they are.
+   */
+  private final FoldedNames folded;
+  
+  /**
+   * Whether each name was checked and matched, shared by all
+   * of the tasks.  A task that reads a stale value just checks
+   * the name again.
+   */
+  private final byte[] nameStates;
+  
+  /**
+   * Whether the search has been cancelled.
+   */
+  private volatile boolean cancelled = false;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param pPool the pool that runs the tasks
+   * @param pTable the table of nodes
+   * @param bIncludeFiles whether to include files
+   * @param bIncludeDirectories whether to include directories
+   * @param sVolumeName the name of the volume
+   * @param pTermFilter the filter used to check for matches
+   * @param pFolded the names in upper case, or null
+   */
+  public ParallelSearch(final ForkJoinPool pPool,
+                        final NodeTable pTable,
+                        final boolean bIncludeFiles,
+                        final boolean bIncludeDirectories,
+                        final String sVolumeName,
+                        final TermFilter pTermFilter,
+                        final FoldedNames pFolded)
+  {
+    super();
+    pool = pPool;
+    table = pTable;
+    includeFiles = bIncludeFiles;
+    includeDirectories = bIncludeDirectories;
+    volumeName = sVolumeName;
+    termFilter = pTermFilter;
+    folded = pFolded;
+    nameStates = new byte[table.getNameCount()];
+  }
+  
+  
+  /**
+   * Search the children of the root and pass the results to the
+   * sink.  The search stops early if the sink is full.  If the
+   * calling thread is interrupted, the search is cancelled, and
+   * the tasks stop at the next node they visit.  An error in a
+   * task is thrown again on the calling thread.
+   * 
+   * @param sink receives the search results
+   */
+  public void search(final ResultSink sink)
+  {
+    // Start the search, skipping the root node
+    Future<Void> future =
+      pool.submit(new SearchTask(1, table.getNodeCount(), new CancelSink(sink)));
+    
+    // Wait for the tasks.  Unlike ForkJoinPool.invoke(), this
+    // can be interrupted.
+    try
+    {
+      future.get();
+    }
+    catch (InterruptedException ie)
+    {
+      // Stop the tasks, and keep the interrupted status
+      cancelled = true;
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException ee)
+    {
+      // Pass the error on to the caller, so it can be reported
+      cancelled = true;
+      final Throwable cause = ((ee.getCause() == null) ? ee : ee.getCause());
+      if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      else if (cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+      
+      throw new IllegalStateException(cause);
+    }
+  }
+  
+  
+  /**
+   * The task to search a range of nodes.
+   */
+  private final class SearchTask extends RecursiveAction
+  {
+    /**
+     * Default serial version ID.
+     */
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * The index of the first node to search.
+     */
+    private final int from;
+    
+    /**
+     * The index after the last node to search.
+     */
+    private final int to;
+    
+    /**
+     * Receives the search results.
+     */
+    private final ResultSink sink;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param nFrom the index of the first node to search
+     * @param nTo the index after the last node to search
+     * @param pSink receives the search results
+     */
+    public SearchTask(final int nFrom,
+                      final int nTo,
+                      final ResultSink pSink)
+    {
+      super();
+      from = nFrom;
+      to = nTo;
+      sink = pSink;
+    }
+    
+    
+    /**
+     * Search the range, splitting it if it's too large.
+     */
+    @Override
+    protected void compute()
+    {
+      // Check if the search was cancelled
+      if (sink.isFull())
+      {
+        return;
+      }
+      
+      // Search a small range on this thread
+      if ((to - from) <= RANGE_SIZE)
+      {
+        Indexer.searchDataStoreChildren(sink, table, from, to, nameStates,
+                                        includeFiles, includeDirectories,
+                                        volumeName, termFilter, folded);
+        return;
+      }
+      
+      // Split the range in two
+      final int middle = (from + to) >>> 1;
+      invokeAll(new SearchTask(from, middle, sink),
+                new SearchTask(middle, to, sink));
+    }
+  }
+  
+  
+  /**
+   * The sink passed to the tasks.  It stops the tasks when the
+   * search is cancelled, since the threads of a fork/join pool
+   * aren't interrupted.
+   */
+  private final class CancelSink implements ResultSink
+  {
+    /**
+     * Receives the search results.
+     */
+    private final ResultSink sink;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param pSink receives the search results
+     */
+    public CancelSink(final ResultSink pSink)
+    {
+      super();
+      sink = pSink;
+    }
+    
+    
+    /**
+     * Add a search result.
+     * 
+     * @param result the search result
+     */
+    @Override
+    public void add(final SearchResult result)
+    {
+      sink.add(result);
+    }
+    
+    
+    /**
+     * Return whether the search was cancelled, or the sink
+     * doesn't want any more results.
+     * 
+     * @return whether the tasks should stop
+     */
+    @Override
+    public boolean isFull()
+    {
+      return (cancelled || sink.isFull());
+    }
+  }
+}
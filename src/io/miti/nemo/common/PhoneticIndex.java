@@ -0,0 +1,221 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.PhoneticEncoder;
+import io.miti.nemo.filter.PhoneticFilter;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An index of the phonetic codes of the distinct names in a node
+ * table, so a sounds-like search is a hash lookup instead of
+ * encoding every name.  Each code is saved with its case folded,
+ * so one index handles both case-sensitive and case-insensitive
+ * searches; the filter checks the names that are found.  The
+ * names with the same code are saved together in one array.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class PhoneticIndex
+{
+  /**
+   * The encoder used for the codes.
+   */
+  private final PhoneticEncoder encoder;
+  
+  /**
+   * The group number for each code.
+   */
+  private final Map<String, Integer> groups;
+  
+  /**
+   * The offset of each group in names, plus the end offset.
+   */
+  private final int[] starts;
+  
+  /**
+   * The name indexes, sorted by group.
+   */
+  private final int[] names;
+  
+  /**
+   * The number of distinct names.
+   */
+  private final int nameCount;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param pEncoder the encoder used for the codes
+   * @param pGroups the group number for each code
+   * @param pStarts the offset of each group, plus the end offset
+   * @param pNames the name indexes, sorted by group
+   */
+  private PhoneticIndex(final PhoneticEncoder pEncoder,
+                        final Map<String, Integer> pGroups,
+                        final int[] pStarts,
+                        final int[] pNames)
+  {
+    super();
+    encoder = pEncoder;
+    groups = pGroups;
+    starts = pStarts;
+    names = pNames;
+    nameCount = pNames.length;
+  }
+  
+  
+  /**
+   * Build the index of the codes for the names in a node table.
+   * 
+   * @param table the node table
+   * @param encoder the encoder for the codes
+   * @return the index
+   */
+  public static PhoneticIndex build(final NodeTable table,
+                                    final PhoneticEncoder encoder)
+  {
+    // Find the group of each name
+    final int count = table.getNameCount();
+    Map<String, Integer> groups = new HashMap<String, Integer>(1024);
+    int[] groupOf = new int[count];
+    for (int i = 0; i < count; ++i)
+    {
+      final String key = foldCase(encoder.encode(table.getName(i)));
+      Integer group = groups.get(key);
+      if (group == null)
+      {
+        group = Integer.valueOf(groups.size());
+        groups.put(key, group);
+      }
+      groupOf[i] = group.intValue();
+    }
+    
+    // Count the names in each group
+    int[] starts = new int[groups.size() + 1];
+    for (int i = 0; i < count; ++i)
+    {
+      ++starts[groupOf[i] + 1];
+    }
+    for (int i = 1; i < starts.length; ++i)
+    {
+      starts[i] += starts[i - 1];
+    }
+    
+    // Save the names by group, in index order
+    int[] next = new int[groups.size()];
+    System.arraycopy(starts, 0, next, 0, next.length);
+    int[] names = new int[count];
+    for (int i = 0; i < count; ++i)
+    {
+      names[next[groupOf[i]]++] = i;
+    }
+    
+    return new PhoneticIndex(encoder, groups, starts, names);
+  }
+  
+  
+  /**
+   * Fold the case of a code, so codes that are equal when the
+   * case is ignored (as String.equalsIgnoreCase() compares
+   * them) get the same key.
+   * 
+   * @param code the code
+   * @return the code with its case folded
+   */
+  private static String foldCase(final String code)
+  {
+    char[] chars = code.toCharArray();
+    for (int i = 0; i < chars.length; ++i)
+    {
+      chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+    }
+    
+    return new String(chars);
+  }
+  
+  
+  /**
+   * Return the encoder used for the codes.
+   * 
+   * @return the encoder
+   */
+  public PhoneticEncoder getEncoder()
+  {
+    return encoder;
+  }
+  
+  
+  /**
+   * Return the names that might be accepted by the filter,
+   * or null if the filter uses a different encoder.
+   * 
+   * @param filter the filter
+   * @return the index of each name that might match, or null
+   */
+  public BitSet findCandidates(final PhoneticFilter filter)
+  {
+    // Check the encoder
+    if (!encoder.getName().equals(filter.getEncoder().getName()))
+    {
+      return null;
+    }
+    
+    // Look up the names with the term's code
+    BitSet candidates = new BitSet(nameCount);
+    final String code = filter.getTermCode();
+    Integer group = ((code == null) ? null : groups.get(foldCase(code)));
+    if (group != null)
+    {
+      final int end = starts[group.intValue() + 1];
+      for (int i = starts[group.intValue()]; i < end; ++i)
+      {
+        candidates.set(names[i]);
+      }
+    }
+    
+    return candidates;
+  }
+  
+  
+  /**
+   * Estimate the number of bytes used by this index.
+   * 
+   * @return the estimated size, in bytes
+   */
+  public long estimateSize()
+  {
+    return ((64L * groups.size()) + (4L * starts.length) + (4L * names.length));
+  }
+}
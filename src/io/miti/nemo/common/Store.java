@@ -28,7 +28,12 @@
 
 package io.miti.nemo.common;
 
+import io.miti.nemo.filter.PhoneticEncoder;
+
+import java.io.File;
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Class to encapsulate a data store.
@@ -58,6 +63,44 @@ public final class Store implements Serializable
    */
   private Node data = null;
   
+  /**
+   * The data for this directory, as a table.  Only one of
+   * data and table is set.
+   */
+  private NodeTable table = null;
+  
+  /**
+   * The trigram index for the names, if one was loaded.
+   */
+  private transient TrigramIndex trigrams = null;
+  
+  /**
+   * The tree of names for similar searches, built when needed.
+   */
+  private transient FuzzyIndex fuzzy = null;
+  
+  /**
+   * The indexes of the phonetic codes of the names, by the
+   * name of the encoder, built when needed.
+   */
+  private transient Map<String, PhoneticIndex> phonetic = null;
+  
+  /**
+   * The names in upper case, loaded when needed.
+   */
+  private transient FoldedNames folded = null;
+  
+  /**
+   * The sorted names, loaded when needed.
+   */
+  private transient NameDictionary dictionary = null;
+  
+  /**
+   * The binary index file the data was read from or saved to,
+   * if the data hasn't changed since.
+   */
+  private transient File indexFile = null;
+  
   
   /**
    * Default constructor.
@@ -152,23 +195,335 @@ public final class Store implements Serializable
    * 
    * @param dataStore the data store to save
    */
-  public void setDataStore(final Node dataStore)
+  public synchronized void setDataStore(final Node dataStore)
   {
     data = dataStore;
+    table = null;
+    trigrams = null;
+    fuzzy = null;
+    phonetic = null;
+    folded = null;
+    dictionary = null;
+    indexFile = null;
   }
   
   
   /**
-   * Return the data store for this object.
+   * Return the data store for this object.  If the data is
+   * saved as a table, a new tree is built from the table.
    * 
    * @return the data store for this object
    */
-  public Node getDataStore()
+  public synchronized Node getDataStore()
   {
+    if ((data == null) && (table != null))
+    {
+      return table.toNode();
+    }
+    
     return data;
   }
   
   
+  /**
+   * Set the data for this object as a table.
+   * 
+   * @param nodeTable the table of nodes
+   */
+  public synchronized void setNodeTable(final NodeTable nodeTable)
+  {
+    table = nodeTable;
+    data = null;
+    trigrams = null;
+    fuzzy = null;
+    phonetic = null;
+    folded = null;
+    dictionary = null;
+    indexFile = null;
+  }
+  
+  
+  /**
+   * Return the data for this object as a table.  If the data
+   * is saved as a tree, it is converted to a table and the
+   * tree is released.
+   * 
+   * @return the table of nodes, or null if there is no data
+   */
+  public synchronized NodeTable getNodeTable()
+  {
+    if ((table == null) && (data != null))
+    {
+      table = NodeTable.fromNode(data);
+      data = null;
+    }
+    
+    return table;
+  }
+  
+  
+  /**
+   * Set the trigram index for the names in this store.
+   * 
+   * @param index the trigram index
+   */
+  public synchronized void setTrigramIndex(final TrigramIndex index)
+  {
+    trigrams = index;
+  }
+  
+  
+  /**
+   * Return the trigram index for the names in this store.
+   * 
+   * @return the trigram index, or null if there isn't one
+   */
+  public synchronized TrigramIndex getTrigramIndex()
+  {
+    return trigrams;
+  }
+  
+  
+  /**
+   * Return the tree of names for similar searches.  The tree
+   * is built the first time it's needed, without holding the
+   * lock, so other threads can still use the store.
+   * 
+   * @return the tree of names, or null if there is no data
+   */
+  public FuzzyIndex getFuzzyIndex()
+  {
+    // Check for a saved tree
+    NodeTable nodeTable = null;
+    synchronized (this)
+    {
+      if (fuzzy != null)
+      {
+        return fuzzy;
+      }
+      
+      nodeTable = getNodeTable();
+      if (nodeTable == null)
+      {
+        return null;
+      }
+    }
+    
+    // Build the tree, and save it if the data hasn't changed
+    FuzzyIndex index = FuzzyIndex.build(nodeTable);
+    synchronized (this)
+    {
+      if (table == nodeTable)
+      {
+        fuzzy = index;
+      }
+    }
+    
+    StoreCache.recharge(this);
+    return index;
+  }
+  
+  
+  /**
+   * Set the binary index file for this store, after the data
+   * is read from it or saved to it.
+   * 
+   * @param file the index file
+   */
+  public synchronized void setIndexFile(final File file)
+  {
+    indexFile = file;
+  }
+  
+  
+  /**
+   * Set the names in upper case.
+   * 
+   * @param names the names in upper case
+   */
+  public synchronized void setFoldedNames(final FoldedNames names)
+  {
+    folded = names;
+  }
+  
+  
+  /**
+   * Return the names in upper case.  They are read from the
+   * file saved with the index file if it's up to date, or
+   * else converted, the first time they're needed.
+   * 
+   * @return the names in upper case, or null if there is no data
+   */
+  public FoldedNames getFoldedNames()
+  {
+    // Check for saved names
+    NodeTable nodeTable = null;
+    File file = null;
+    synchronized (this)
+    {
+      if (folded != null)
+      {
+        return folded;
+      }
+      
+      nodeTable = getNodeTable();
+      if (nodeTable == null)
+      {
+        return null;
+      }
+      file = indexFile;
+    }
+    
+    // Load or convert the names, and save them if the data
+    // hasn't changed
+    FoldedNames names = ((file == null) ? null : FoldedNames.load(file, nodeTable));
+    if (names == null)
+    {
+      names = FoldedNames.build(nodeTable);
+    }
+    
+    synchronized (this)
+    {
+      if (table == nodeTable)
+      {
+        folded = names;
+      }
+    }
+    
+    StoreCache.recharge(this);
+    return names;
+  }
+  
+  
+  /**
+   * Set the sorted names.
+   * 
+   * @param names the sorted names
+   */
+  public synchronized void setNameDictionary(final NameDictionary names)
+  {
+    dictionary = names;
+  }
+  
+  
+  /**
+   * Return the sorted names.  They are read from the file saved
+   * with the index file if it's up to date, or else sorted, the
+   * first time they're needed.
+   * 
+   * @return the sorted names, or null if there is no data
+   */
+  public NameDictionary getNameDictionary()
+  {
+    // Check for saved names
+    NodeTable nodeTable = null;
+    File file = null;
+    synchronized (this)
+    {
+      if (dictionary != null)
+      {
+        return dictionary;
+      }
+      
+      nodeTable = getNodeTable();
+      if (nodeTable == null)
+      {
+        return null;
+      }
+      file = indexFile;
+    }
+    
+    // Load or sort the names, and save them if the data
+    // hasn't changed
+    NameDictionary names = ((file == null) ? null : NameDictionary.load(file, nodeTable));
+    if (names == null)
+    {
+      names = NameDictionary.build(nodeTable);
+    }
+    
+    synchronized (this)
+    {
+      if (table == nodeTable)
+      {
+        dictionary = names;
+      }
+    }
+    
+    StoreCache.recharge(this);
+    return names;
+  }
+  
+  
+  /**
+   * Return the index of the phonetic codes of the names, for
+   * an encoder.  The index is built the first time it's needed,
+   * without holding the lock.
+   * 
+   * @param encoder the encoder for the codes
+   * @return the index of the codes, or null if there is no data
+   */
+  public PhoneticIndex getPhoneticIndex(final PhoneticEncoder encoder)
+  {
+    // Check for a saved index
+    NodeTable nodeTable = null;
+    synchronized (this)
+    {
+      if ((phonetic != null) && phonetic.containsKey(encoder.getName()))
+      {
+        return phonetic.get(encoder.getName());
+      }
+      
+      nodeTable = getNodeTable();
+      if (nodeTable == null)
+      {
+        return null;
+      }
+    }
+    
+    // Build the index, and save it if the data hasn't changed
+    PhoneticIndex index = PhoneticIndex.build(nodeTable, encoder);
+    synchronized (this)
+    {
+      if (table == nodeTable)
+      {
+        if (phonetic == null)
+        {
+          phonetic = new HashMap<String, PhoneticIndex>(4);
+        }
+        phonetic.put(encoder.getName(), index);
+      }
+    }
+    
+    StoreCache.recharge(this);
+    return index;
+  }
+  
+  
+  /**
+   * Estimate the number of bytes used by the data and by the
+   * indexes built or loaded for it.
+   * 
+   * @return the estimated size, in bytes
+   */
+  public synchronized long estimateSize()
+  {
+    long size = ((table == null) ? 0L : table.estimateSize());
+    size += ((trigrams == null) ? 0L : trigrams.estimateSize());
+    size += ((fuzzy == null) ? 0L : fuzzy.estimateSize());
+    size += ((folded == null) ? 0L : folded.estimateSize());
+    size += ((dictionary == null) ? 0L : dictionary.estimateSize());
+    if (phonetic != null)
+    {
+      for (PhoneticIndex index : phonetic.values())
+      {
+        size += index.estimateSize();
+      }
+    }
+    
+    return size;
+  }
+  
+  
   /**
    * Return this object as a text string, for saving to a file.
    * 
@@ -234,6 +589,7 @@ public final class Store implements Serializable
     store.dir = line.substring(commaIndex);
     
     store.data = null;
+    store.table = null;
     
     // Return the store
     return store;
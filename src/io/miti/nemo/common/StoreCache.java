@@ -0,0 +1,419 @@
+/**
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the stores loaded from the index files, so that
+ * repeated searches and browsing don't re-read the index
+ * file every time.  Entries are keyed on the index file and
+ * are discarded when the file's last-modified time or size
+ * changes.  When the estimated size of the cached stores
+ * exceeds the memory budget, the least-recently used stores
+ * are evicted.  Indexes that a store builds or loads after it
+ * is cached are charged through recharge().  All methods are
+ * thread-safe.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class StoreCache
+{
+  /**
+   * The cached entries, in access order (least-recently used first).
+   */
+  private static final LinkedHashMap<String, Entry> cache =
+    new LinkedHashMap<String, Entry>(32, 0.75f, true);
+  
+  /**
+   * The maximum number of bytes to use for cached stores.
+   */
+  private static long memoryBudget = Runtime.getRuntime().maxMemory() / 4L;
+  
+  /**
+   * The estimated number of bytes used by the cached stores.
+   */
+  private static long memoryUsed = 0L;
+  
+  /**
+   * The number of bytes of the budget used outside the cache,
+   * such as by the NameDirectory.
+   */
+  private static long memoryReserved = 0L;
+  
+  
+  /**
+   * Default constructor.
+   */
+  private StoreCache()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Set the memory budget for the cache, in bytes.  A
+   * value less than one uses the default (one quarter of the
+   * maximum heap size).
+   * 
+   * @param lBudget the memory budget, in bytes
+   */
+  public static synchronized void setMemoryBudget(final long lBudget)
+  {
+    if (lBudget < 1L)
+    {
+      memoryBudget = Runtime.getRuntime().maxMemory() / 4L;
+    }
+    else
+    {
+      memoryBudget = lBudget;
+    }
+    
+    // Evict entries until we fit the new budget
+    evict(0L);
+  }
+  
+  
+  /**
+   * Set the number of bytes of the memory budget used outside
+   * the cache, such as by the NameDirectory, so the cached
+   * stores and those bytes fit in the budget together.
+   * 
+   * @param lReserved the number of bytes used outside the cache
+   */
+  public static synchronized void setReservedMemory(final long lReserved)
+  {
+    memoryReserved = Math.max(0L, lReserved);
+    
+    // Evict entries until we fit the budget that's left
+    evict(0L);
+  }
+  
+  
+  /**
+   * Return the memory budget for the cache, in bytes.
+   * 
+   * @return the memory budget
+   */
+  public static synchronized long getMemoryBudget()
+  {
+    return memoryBudget;
+  }
+  
+  
+  /**
+   * Return the store saved in the index file, loading it
+   * if it is not cached or the cached copy is out of date.
+   * 
+   * @param file the index file
+   * @return the store, or null if it could not be loaded
+   */
+  public static Store getStore(final File file)
+  {
+    // Check the input
+    if (file == null)
+    {
+      return null;
+    }
+    
+    // Save the key and the current state of the file
+    final String key = file.getAbsolutePath();
+    final long lastMod = file.lastModified();
+    final long length = file.length();
+    
+    // See if we have a current copy of the store
+    synchronized (StoreCache.class)
+    {
+      Entry entry = cache.get(key);
+      if (entry != null)
+      {
+        if ((entry.lastModified == lastMod) && (entry.fileLength == length))
+        {
+          return entry.store;
+        }
+        
+        // The file has changed since it was cached
+        removeEntry(key);
+      }
+    }
+    
+    // Load the store.  This is done outside the lock so that
+    // stores can be loaded by more than one thread at a time.
+    Store store = new Indexer().loadFromFile(file);
+    if (store == null)
+    {
+      return null;
+    }
+    
+    // Save the store, if it fits in the budget
+    putStore(key, lastMod, length, store);
+    
+    // Return the store
+    return store;
+  }
+  
+  
+  /**
+   * Save a store that was just written to the index file, so
+   * the next search doesn't have to read the file again.
+   * 
+   * @param file the index file
+   * @param store the store saved in the file
+   */
+  public static void replace(final File file, final Store store)
+  {
+    // Check the input
+    if ((file == null) || (store == null))
+    {
+      return;
+    }
+    
+    // Save the store with the current state of the file
+    putStore(file.getAbsolutePath(), file.lastModified(), file.length(), store);
+  }
+  
+  
+  /**
+   * Return whether the store for the index file is in the cache.
+   * 
+   * @param file the index file
+   * @return whether the store is cached
+   */
+  public static synchronized boolean isCached(final File file)
+  {
+    return ((file != null) && (cache.containsKey(file.getAbsolutePath())));
+  }
+  
+  
+  /**
+   * Return whether a store with the specified number of nodes
+   * would fit in the memory budget.  This is a rough estimate,
+   * since it doesn't count the characters in the names.
+   * 
+   * @param nodeCount the number of nodes in the store
+   * @return whether the store would fit in the cache
+   */
+  public static synchronized boolean wouldFit(final long nodeCount)
+  {
+    return (((nodeCount * NodeTable.BYTES_PER_NODE) + memoryReserved) <= memoryBudget);
+  }
+  
+  
+  /**
+   * Update the estimated size of a cached store, after it
+   * builds or loads an index for its data, and evict the
+   * least-recently used stores if the cache is now over the
+   * budget.  The store itself is evicted if it no longer fits
+   * on its own.  Stores that aren't cached are ignored.
+   * 
+   * @param store the store
+   */
+  public static synchronized void recharge(final Store store)
+  {
+    // Find the entry for the store
+    Iterator<Map.Entry<String, Entry>> iter = cache.entrySet().iterator();
+    while (iter.hasNext())
+    {
+      Map.Entry<String, Entry> item = iter.next();
+      Entry entry = item.getValue();
+      if (entry.store != store)
+      {
+        continue;
+      }
+      
+      // Update the size
+      final long size = estimateSize(store);
+      memoryUsed += (size - entry.size);
+      entry.size = size;
+      
+      // Make room
+      if ((size + memoryReserved) > memoryBudget)
+      {
+        removeEntry(item.getKey());
+      }
+      else
+      {
+        evict(0L);
+      }
+      
+      return;
+    }
+  }
+  
+  
+  /**
+   * Remove the store for the index file from the cache.
+   * 
+   * @param file the index file
+   */
+  public static synchronized void invalidate(final File file)
+  {
+    if (file != null)
+    {
+      removeEntry(file.getAbsolutePath());
+    }
+  }
+  
+  
+  /**
+   * Remove all stores from the cache.
+   */
+  public static synchronized void clear()
+  {
+    cache.clear();
+    memoryUsed = 0L;
+  }
+  
+  
+  /**
+   * Save the store in the cache.
+   * 
+   * @param key the cache key
+   * @param lastMod the last-modified time of the index file
+   * @param length the size of the index file
+   * @param store the store
+   */
+  private static synchronized void putStore(final String key,
+                                            final long lastMod,
+                                            final long length,
+                                            final Store store)
+  {
+    // Check if the store would ever fit in the cache
+    final long size = estimateSize(store);
+    if ((size + memoryReserved) > memoryBudget)
+    {
+      return;
+    }
+    
+    // Another thread may have loaded the same store
+    removeEntry(key);
+    
+    // Make room and save the store
+    evict(size);
+    cache.put(key, new Entry(store, lastMod, length, size));
+    memoryUsed += size;
+  }
+  
+  
+  /**
+   * Evict the least-recently used entries until there is
+   * room for the specified number of bytes.
+   * 
+   * @param needed the number of bytes needed
+   */
+  private static void evict(final long needed)
+  {
+    Iterator<Map.Entry<String, Entry>> iter = cache.entrySet().iterator();
+    while (((memoryUsed + memoryReserved + needed) > memoryBudget) && (iter.hasNext()))
+    {
+      memoryUsed -= iter.next().getValue().size;
+      iter.remove();
+    }
+  }
+  
+  
+  /**
+   * Remove an entry from the cache.
+   * 
+   * @param key the cache key
+   */
+  private static void removeEntry(final String key)
+  {
+    Entry entry = cache.remove(key);
+    if (entry != null)
+    {
+      memoryUsed -= entry.size;
+    }
+  }
+  
+  
+  /**
+   * Estimate the number of bytes used by a store.
+   * 
+   * @param store the store
+   * @return the estimated size of the store, in bytes
+   */
+  private static long estimateSize(final Store store)
+  {
+    // Cached stores keep their data as a table
+    store.getNodeTable();
+    return store.estimateSize();
+  }
+  
+  
+  /**
+   * An entry in the cache.
+   */
+  private static final class Entry
+  {
+    /**
+     * The cached store.
+     */
+    private final Store store;
+    
+    /**
+     * The last-modified time of the index file.
+     */
+    private final long lastModified;
+    
+    /**
+     * The size of the index file.
+     */
+    private final long fileLength;
+    
+    /**
+     * The estimated size of the store, in bytes.
+     */
+    private long size;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param pStore the store
+     * @param lLastMod the last-modified time of the index file
+     * @param lLength the size of the index file
+     * @param lSize the estimated size of the store
+     */
+    public Entry(final Store pStore,
+                 final long lLastMod,
+                 final long lLength,
+                 final long lSize)
+    {
+      store = pStore;
+      lastModified = lLastMod;
+      fileLength = lLength;
+      size = lSize;
+    }
+  }
+}
@@ -53,6 +53,11 @@ public final class StoreInfo
    */
   private long lastModified = 0L;
   
+  /**
+   * Whether to watch the store's directory for changes.
+   */
+  private boolean watched = false;
+  
   
   /**
    * Default constructor.
@@ -147,6 +152,28 @@ public final class StoreInfo
   }
   
   
+  /**
+   * Return whether to watch the store's directory for changes.
+   * 
+   * @return whether the store is watched
+   */
+  public boolean isWatched()
+  {
+    return watched;
+  }
+  
+  
+  /**
+   * Set whether to watch the store's directory for changes.
+   * 
+   * @param bWatched whether the store is watched
+   */
+  public void setWatched(final boolean bWatched)
+  {
+    watched = bWatched;
+  }
+  
+  
   /**
    * Return a string representation of this object.
    * 
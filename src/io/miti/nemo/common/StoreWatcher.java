@@ -0,0 +1,1054 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the index file of a store up to date while the
+ * application runs, by watching each directory in the store
+ * with a WatchService.  Events are collected for a short time
+ * and applied together, so a burst of changes (such as
+ * unpacking an archive) is handled as one batch, and the
+ * index file is only written every few seconds.  If the
+ * operating system drops events, the store is checked again
+ * in the same way as Indexer.refreshDirectory().  The store
+ * is only changed by the watcher's thread.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class StoreWatcher implements Runnable
+{
+  /**
+   * How long to wait for more events before applying a
+   * batch, in milliseconds.
+   */
+  private static final long BATCH_DELAY = 500L;
+  
+  /**
+   * The maximum number of events in one batch.
+   */
+  private static final int MAX_BATCH = 10000;
+  
+  /**
+   * How often to check if the watcher has been stopped, in
+   * milliseconds.
+   */
+  private static final long POLL_TIMEOUT = 1000L;
+  
+  /**
+   * The default time between saves of the index file, in
+   * milliseconds.
+   */
+  private static final long DEFAULT_SAVE_INTERVAL = 30000L;
+  
+  /**
+   * How long stop() waits for the watcher's thread to finish,
+   * in milliseconds.
+   */
+  private static final long STOP_TIMEOUT = 5000L;
+  
+  /**
+   * The index file.
+   */
+  private final File indexFile;
+  
+  /**
+   * The name of the store.
+   */
+  private String storeName = null;
+  
+  /**
+   * The indexed directory.
+   */
+  private String directory = null;
+  
+  /**
+   * The path of the indexed directory.
+   */
+  private Path rootPath = null;
+  
+  /**
+   * The root node of the store.
+   */
+  private Node root = null;
+  
+  /**
+   * The watch service.
+   */
+  private WatchService service = null;
+  
+  /**
+   * The directory watched by each key.
+   */
+  private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>(256);
+  
+  /**
+   * The key for each watched directory.
+   */
+  private final Map<Path, WatchKey> dirs = new HashMap<Path, WatchKey>(256);
+  
+  /**
+   * The thread applying the changes.
+   */
+  private Thread thread = null;
+  
+  /**
+   * Whether the watcher is running.
+   */
+  private volatile boolean running = false;
+  
+  /**
+   * The time between saves of the index file, in milliseconds.
+   */
+  private volatile long saveInterval = DEFAULT_SAVE_INTERVAL;
+  
+  /**
+   * Whether the store has changed since it was saved.
+   */
+  private boolean dirty = false;
+  
+  /**
+   * The time the index file was last saved.
+   */
+  private long lastSave = 0L;
+  
+  /**
+   * Whether an error registering a directory has been reported.
+   */
+  private boolean registerFailed = false;
+  
+  /**
+   * The lock for the state of saving the index file.
+   */
+  private final Object saveLock = new Object();
+  
+  /**
+   * Whether the index file is being saved.  Guarded by saveLock.
+   */
+  private boolean saving = false;
+  
+  /**
+   * Whether the watcher's thread has finished.  Guarded by saveLock.
+   */
+  private boolean finished = false;
+  
+  /**
+   * Whether stop() gave up waiting for the watcher's thread, so
+   * the thread must not save the index file.  Guarded by saveLock.
+   */
+  private boolean abandoned = false;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param pIndexFile the index file of the store to watch
+   */
+  public StoreWatcher(final File pIndexFile)
+  {
+    super();
+    indexFile = pIndexFile;
+  }
+  
+  
+  /**
+   * Write a message to standard error.
+   * 
+   * @param msg the message to write
+   */
+  private static void writeErr(final String msg)
+  {
+    System.err.println(msg);
+  }
+  
+  
+  /**
+   * Return the index file.
+   * 
+   * @return the index file
+   */
+  public File getIndexFile()
+  {
+    return indexFile;
+  }
+  
+  
+  /**
+   * Set the time between saves of the index file.
+   * 
+   * @param lInterval the time between saves, in milliseconds
+   */
+  public void setSaveInterval(final long lInterval)
+  {
+    saveInterval = lInterval;
+  }
+  
+  
+  /**
+   * Return whether the watcher is running.
+   * 
+   * @return whether the watcher is running
+   */
+  public boolean isRunning()
+  {
+    return running;
+  }
+  
+  
+  /**
+   * Start watching the store.  The store is loaded and
+   * brought up to date by the watcher's thread, so this
+   * returns right away.
+   */
+  public synchronized void start()
+  {
+    // Check if we're already running
+    if (thread != null)
+    {
+      return;
+    }
+    
+    running = true;
+    thread = new Thread(this, "Watcher for " + indexFile.getName());
+    thread.setDaemon(true);
+    thread.start();
+  }
+  
+  
+  /**
+   * Stop watching the store.  The watcher's thread saves any
+   * changes that haven't been written to the index file before
+   * it finishes.  This is called on the event thread, so it
+   * only waits a few seconds for the thread, including any save
+   * in progress.  If the thread is still busy after that, such
+   * as reading a slow disk or saving a large store, it's
+   * interrupted and left to finish on its own without saving,
+   * since the caller may replace the index file.  A save that
+   * is stopped this way leaves the old index file, since the
+   * files are written to temporary files first.
+   */
+  public void stop()
+  {
+    // Get the thread
+    Thread t = null;
+    synchronized (this)
+    {
+      t = thread;
+      thread = null;
+    }
+    
+    if (t == null)
+    {
+      return;
+    }
+    
+    // Stop the thread.  It's interrupted so it stops crawling,
+    // unless it's saving, since that would close the index file.
+    running = false;
+    synchronized (saveLock)
+    {
+      if (!saving)
+      {
+        t.interrupt();
+      }
+    }
+    
+    try
+    {
+      // Wait for the thread, and for any save in progress, for
+      // no longer than the timeout in all
+      final long end = System.currentTimeMillis() + STOP_TIMEOUT;
+      t.join(STOP_TIMEOUT);
+      synchronized (saveLock)
+      {
+        long left = end - System.currentTimeMillis();
+        while (saving && (left > 0L))
+        {
+          saveLock.wait(left);
+          left = end - System.currentTimeMillis();
+        }
+        
+        // Abandon the thread, and stop any save it's doing
+        if (!finished)
+        {
+          abandoned = true;
+          t.interrupt();
+          writeErr("The watcher did not stop in time: " + indexFile.getName());
+        }
+      }
+    }
+    catch (InterruptedException ie)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+  
+  
+  /**
+   * Watch the store until the watcher is stopped.
+   */
+  public void run()
+  {
+    try
+    {
+      // Load the store and bring it up to date
+      if (load())
+      {
+        watch();
+      }
+    }
+    finally
+    {
+      running = false;
+      finish();
+    }
+  }
+  
+  
+  /**
+   * Apply the changes to the store until the watcher is stopped.
+   */
+  private void watch()
+  {
+    while (running)
+    {
+      // Wait for the next event
+      WatchKey key = null;
+      try
+      {
+        key = service.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException ie)
+      {
+        break;
+      }
+      catch (ClosedWatchServiceException cwse)
+      {
+        break;
+      }
+      
+      if ((key != null) && running)
+      {
+        // Collect the events, and apply them
+        Map<Path, Set<String>> changes = new LinkedHashMap<Path, Set<String>>(20);
+        if (collectBatch(key, changes))
+        {
+          // Events were lost, so check the whole store
+          rescan();
+        }
+        else
+        {
+          applyChanges(changes);
+        }
+      }
+      
+      // Save the store if it's been long enough
+      if (dirty && (System.currentTimeMillis() - lastSave >= saveInterval))
+      {
+        save(false);
+      }
+    }
+  }
+  
+  
+  /**
+   * Stop watching the directories, and save any changes that
+   * haven't been written to the index file.  This is called by
+   * the watcher's thread when it finishes.
+   */
+  private void finish()
+  {
+    // Close the watch service
+    if (service != null)
+    {
+      try
+      {
+        service.close();
+      }
+      catch (IOException ioe)
+      {
+        writeErr("IOException: " + ioe.getMessage());
+      }
+      
+      service = null;
+    }
+    
+    keys.clear();
+    dirs.clear();
+    
+    // Save the last changes
+    if (dirty)
+    {
+      save(true);
+    }
+    
+    synchronized (saveLock)
+    {
+      finished = true;
+    }
+  }
+  
+  
+  /**
+   * Return whether the watcher is being stopped, so long
+   * checks of the store should stop early.
+   * 
+   * @return whether the watcher is being stopped
+   */
+  private boolean isStopping()
+  {
+    return (!running || Thread.currentThread().isInterrupted());
+  }
+  
+  
+  /**
+   * Load the store, start watching its directories, and
+   * check for changes made since the index file was saved.
+   * 
+   * @return whether the store was loaded
+   */
+  private boolean load()
+  {
+    // Load the store
+    Store store = new Indexer().loadFromFile(indexFile);
+    Node node = ((store == null) ? null : store.getDataStore());
+    if (isStopping())
+    {
+      return false;
+    }
+    else if (node == null)
+    {
+      writeErr("Unable to load the store to watch: " + indexFile.getName());
+      return false;
+    }
+    
+    storeName = store.getName();
+    directory = store.getDirectory();
+    rootPath = new File(directory).toPath();
+    root = node;
+    lastSave = System.currentTimeMillis();
+    
+    // Create the watch service
+    try
+    {
+      service = FileSystems.getDefault().newWatchService();
+    }
+    catch (IOException ioe)
+    {
+      writeErr("Unable to watch the store: " + ioe.getMessage());
+      return false;
+    }
+    
+    // Watch the directories before checking them, so changes
+    // made during the check aren't missed
+    registerAll(rootPath, root, null);
+    rescan();
+    
+    return !isStopping();
+  }
+  
+  
+  /**
+   * Collect the events for the key, and for any other keys
+   * signalled during the batch delay.
+   * 
+   * @param first the first key with events
+   * @param changes the changed names in each directory
+   * @return whether events were lost
+   */
+  private boolean collectBatch(final WatchKey first,
+                               final Map<Path, Set<String>> changes)
+  {
+    final long deadline = System.currentTimeMillis() + BATCH_DELAY;
+    boolean overflow = false;
+    int count = 0;
+    WatchKey key = first;
+    while (key != null)
+    {
+      // Save the name in each event
+      Path dir = keys.get(key);
+      for (WatchEvent<?> event : key.pollEvents())
+      {
+        ++count;
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+        {
+          overflow = true;
+        }
+        else if (dir != null)
+        {
+          Set<String> names = changes.get(dir);
+          if (names == null)
+          {
+            names = new LinkedHashSet<String>(10);
+            changes.put(dir, names);
+          }
+          names.add(event.context().toString());
+        }
+      }
+      
+      // Keep receiving events for this key, unless the
+      // directory is gone
+      if (!key.reset())
+      {
+        forget(key);
+      }
+      
+      // Wait a little for more events, unless the batch is full
+      final long wait = deadline - System.currentTimeMillis();
+      if (overflow || (count >= MAX_BATCH) || (wait <= 0L))
+      {
+        break;
+      }
+      
+      try
+      {
+        key = service.poll(wait, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException ie)
+      {
+        // Apply what we have, and let run() see the interrupt
+        Thread.currentThread().interrupt();
+        key = null;
+      }
+    }
+    
+    return overflow;
+  }
+  
+  
+  /**
+   * Apply the changes collected in a batch.
+   * 
+   * @param changes the changed names in each directory
+   */
+  private void applyChanges(final Map<Path, Set<String>> changes)
+  {
+    // Read the entries, and remove the ones that are gone
+    // first, so the watches of a renamed directory are
+    // cancelled before it gets registered under the new name
+    List<CrawlEntry> entries = new ArrayList<CrawlEntry>(changes.size() * 2);
+    for (Map.Entry<Path, Set<String>> change : changes.entrySet())
+    {
+      if (isStopping())
+      {
+        return;
+      }
+      
+      Node dirNode = findNode(change.getKey());
+      if ((dirNode == null) || (!dirNode.isDirectory()))
+      {
+        continue;
+      }
+      
+      for (String name : change.getValue())
+      {
+        CrawlEntry entry = new CrawlEntry(name, change.getKey().resolve(name));
+        if (Files.exists(entry.getPath(), LinkOption.NOFOLLOW_LINKS) &&
+            Indexer.includeFile(entry))
+        {
+          entries.add(entry);
+        }
+        else
+        {
+          removeChild(dirNode, change.getKey(), name);
+        }
+      }
+    }
+    
+    // Add or update the rest
+    for (CrawlEntry entry : entries)
+    {
+      if (isStopping())
+      {
+        return;
+      }
+      
+      Node dirNode = findNode(entry.getPath().getParent());
+      if (dirNode != null)
+      {
+        updateChild(dirNode, entry);
+      }
+    }
+    
+    // Update the times of the changed directories
+    for (Path dir : changes.keySet())
+    {
+      Node dirNode = findNode(dir);
+      if (dirNode != null)
+      {
+        updateNode(dirNode, new CrawlEntry(dirNode.getName(), dir));
+      }
+    }
+  }
+  
+  
+  /**
+   * Remove a child from a directory.
+   * 
+   * @param dirNode the directory
+   * @param dir the path of the directory
+   * @param name the name of the child
+   */
+  private void removeChild(final Node dirNode,
+                           final Path dir,
+                           final String name)
+  {
+    final int index = findChild(dirNode, name);
+    if (index < 0)
+    {
+      return;
+    }
+    
+    Node node = dirNode.removeChild(index);
+    if (node.isDirectory())
+    {
+      cancelAll(dir.resolve(name));
+    }
+    
+    dirty = true;
+  }
+  
+  
+  /**
+   * Add a new child to a directory, or update an existing one.
+   * 
+   * @param dirNode the directory
+   * @param entry the child
+   */
+  private void updateChild(final Node dirNode,
+                           final CrawlEntry entry)
+  {
+    final Path path = entry.getPath();
+    int index = findChild(dirNode, entry.getName());
+    if (index >= 0)
+    {
+      Node node = dirNode.getChildren().get(index);
+      if (node.isDirectory() != entry.isDirectory())
+      {
+        // The type changed, so replace the node
+        removeChild(dirNode, path.getParent(), entry.getName());
+      }
+      else if (!node.isDirectory())
+      {
+        updateNode(node, entry);
+        return;
+      }
+      else
+      {
+        // The children of a watched directory get their own
+        // events.  If the watch is gone (the directory was
+        // deleted and created again), check its contents.
+        WatchKey key = dirs.get(path);
+        if ((key != null) && (key.isValid()))
+        {
+          updateNode(node, entry);
+          return;
+        }
+        
+        Node updated = new Indexer().refreshDirectories(NodeTable.fromNode(node),
+                                                        0, entry, dirNode);
+        if (isStopping())
+        {
+          return;
+        }
+        
+        cancelAll(path);
+        dirNode.getChildren().set(index, updated);
+        registerAll(path, updated, null);
+        dirty = true;
+        return;
+      }
+    }
+    
+    // Index the new file or directory
+    Node node = new Indexer().visitDirectories(entry, dirNode);
+    if (isStopping())
+    {
+      return;
+    }
+    
+    dirNode.insertChild(findPosition(dirNode, entry.getName()), node);
+    registerAll(path, node, null);
+    dirty = true;
+  }
+  
+  
+  /**
+   * Update the size and time of a node.
+   * 
+   * @param node the node
+   * @param entry the file or directory
+   */
+  private void updateNode(final Node node,
+                          final CrawlEntry entry)
+  {
+    if ((node.getFileSize() != entry.getSize()) ||
+        (node.getLastModified() != entry.getLastModified()))
+    {
+      node.setFileSize(entry.getSize());
+      node.setLastModified(entry.getLastModified());
+      dirty = true;
+    }
+  }
+  
+  
+  /**
+   * Check the whole store for changes, only reading the
+   * directories that changed, and watch any new directories.
+   */
+  private void rescan()
+  {
+    CrawlEntry entry = new CrawlEntry(directory, rootPath);
+    Node node = new Indexer().refreshDirectories(NodeTable.fromNode(root),
+                                                 0, entry, null);
+    if ((node == null) || isStopping())
+    {
+      return;
+    }
+    
+    if (!sameTree(root, node))
+    {
+      root = node;
+      dirty = true;
+    }
+    
+    // Watch the directories in the store, and stop watching
+    // any that are gone
+    Set<Path> seen = new HashSet<Path>(dirs.size() * 2);
+    registerAll(rootPath, root, seen);
+    Iterator<Map.Entry<Path, WatchKey>> iter = dirs.entrySet().iterator();
+    while (iter.hasNext())
+    {
+      Map.Entry<Path, WatchKey> dir = iter.next();
+      if (!seen.contains(dir.getKey()))
+      {
+        dir.getValue().cancel();
+        keys.remove(dir.getValue());
+        iter.remove();
+      }
+    }
+  }
+  
+  
+  /**
+   * Watch a directory and its subdirectories.
+   * 
+   * @param path the path of the directory
+   * @param node the directory
+   * @param seen if not null, the directories that were registered
+   */
+  private void registerAll(final Path path,
+                           final Node node,
+                           final Set<Path> seen)
+  {
+    if ((node == null) || (!node.isDirectory()) || isStopping())
+    {
+      return;
+    }
+    
+    try
+    {
+      // If the directory is already watched, this returns
+      // the same key
+      WatchKey key = path.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                   StandardWatchEventKinds.ENTRY_DELETE,
+                                   StandardWatchEventKinds.ENTRY_MODIFY);
+      keys.put(key, path);
+      dirs.put(path, key);
+      if (seen != null)
+      {
+        seen.add(path);
+      }
+    }
+    catch (IOException ioe)
+    {
+      // Only report the first error, since running out of
+      // watches would fail for every directory
+      if (!registerFailed)
+      {
+        registerFailed = true;
+        writeErr("Unable to watch " + path + ": " + ioe.getMessage());
+      }
+    }
+    
+    List<Node> children = node.getChildren();
+    if (children != null)
+    {
+      for (Node child : children)
+      {
+        if (child.isDirectory())
+        {
+          registerAll(path.resolve(child.getName()), child, seen);
+        }
+      }
+    }
+  }
+  
+  
+  /**
+   * Stop watching a directory and its subdirectories.
+   * 
+   * @param path the path of the directory
+   */
+  private void cancelAll(final Path path)
+  {
+    Iterator<Map.Entry<Path, WatchKey>> iter = dirs.entrySet().iterator();
+    while (iter.hasNext())
+    {
+      Map.Entry<Path, WatchKey> dir = iter.next();
+      if (dir.getKey().startsWith(path))
+      {
+        dir.getValue().cancel();
+        keys.remove(dir.getValue());
+        iter.remove();
+      }
+    }
+  }
+  
+  
+  /**
+   * Forget a key that is no longer valid.
+   * 
+   * @param key the key
+   */
+  private void forget(final WatchKey key)
+  {
+    Path path = keys.remove(key);
+    if ((path != null) && (dirs.get(path) == key))
+    {
+      dirs.remove(path);
+    }
+  }
+  
+  
+  /**
+   * Find the node for a path.
+   * 
+   * @param path the path
+   * @return the node, or null if it's not in the store
+   */
+  private Node findNode(final Path path)
+  {
+    if ((path == null) || (!path.startsWith(rootPath)))
+    {
+      return null;
+    }
+    else if (path.equals(rootPath))
+    {
+      return root;
+    }
+    
+    // Walk down from the root
+    Node node = root;
+    for (Path name : rootPath.relativize(path))
+    {
+      final int index = findChild(node, name.toString());
+      if (index < 0)
+      {
+        return null;
+      }
+      
+      node = node.getChildren().get(index);
+    }
+    
+    return node;
+  }
+  
+  
+  /**
+   * Find the position of a child.
+   * 
+   * @param node the directory
+   * @param name the name of the child
+   * @return the position of the child, or -1 if not found
+   */
+  private static int findChild(final Node node,
+                               final String name)
+  {
+    List<Node> children = node.getChildren();
+    if (children != null)
+    {
+      for (int i = 0; i < children.size(); ++i)
+      {
+        if (children.get(i).getName().equals(name))
+        {
+          return i;
+        }
+      }
+    }
+    
+    return -1;
+  }
+  
+  
+  /**
+   * Find the position to insert a child, so the children
+   * stay sorted on their names, ignoring case.
+   * 
+   * @param node the directory
+   * @param name the name of the new child
+   * @return the position of the new child
+   */
+  private static int findPosition(final Node node,
+                                  final String name)
+  {
+    List<Node> children = node.getChildren();
+    if (children == null)
+    {
+      return 0;
+    }
+    
+    final String lower = name.toLowerCase();
+    for (int i = 0; i < children.size(); ++i)
+    {
+      if (children.get(i).getName().toLowerCase().compareTo(lower) > 0)
+      {
+        return i;
+      }
+    }
+    
+    return children.size();
+  }
+  
+  
+  /**
+   * Return whether two trees have the same nodes.
+   * 
+   * @param node1 the first tree
+   * @param node2 the second tree
+   * @return whether the trees are the same
+   */
+  private static boolean sameTree(final Node node1, final Node node2)
+  {
+    if ((!node1.getName().equals(node2.getName())) ||
+        (node1.isDirectory() != node2.isDirectory()) ||
+        (node1.getFileSize() != node2.getFileSize()) ||
+        (node1.getLastModified() != node2.getLastModified()))
+    {
+      return false;
+    }
+    
+    List<Node> kids1 = node1.getChildren();
+    List<Node> kids2 = node2.getChildren();
+    final int num1 = ((kids1 == null) ? 0 : kids1.size());
+    final int num2 = ((kids2 == null) ? 0 : kids2.size());
+    if (num1 != num2)
+    {
+      return false;
+    }
+    
+    for (int i = 0; i < num1; ++i)
+    {
+      if (!sameTree(kids1.get(i), kids2.get(i)))
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Write the store to the index file, and save it in the cache.
+   * Once the watcher is being stopped, only the last save is
+   * done, and not at all if stop() gave up waiting for it.
+   * 
+   * @param bLast whether this is the last save, as the thread finishes
+   */
+  private void save(final boolean bLast)
+  {
+    // Check if the index file should be saved, and stop the
+    // thread from being interrupted while it is
+    synchronized (saveLock)
+    {
+      if (abandoned || (!running && !bLast))
+      {
+        return;
+      }
+      
+      saving = true;
+    }
+    
+    try
+    {
+      // Clear an interrupt from stop(), so it doesn't close
+      // the index file
+      Thread.interrupted();
+      write();
+    }
+    finally
+    {
+      synchronized (saveLock)
+      {
+        saving = false;
+        saveLock.notifyAll();
+      }
+    }
+  }
+  
+  
+  /**
+   * Write the store to the index file, and save it in the cache.
+   */
+  private void write()
+  {
+    // The store converts the tree to a table when it's
+    // written, so the cached copy doesn't share our nodes
+    Store store = new Store(storeName, directory);
+    store.setDataStore(root);
+    new Indexer().saveToFile(indexFile, store);
+    StoreCache.replace(indexFile, store);
+    
+    lastSave = System.currentTimeMillis();
+    dirty = false;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best search results, in the order used to sort the
+ * results table, up to a maximum number of results.  The results
+ * are saved in a priority queue with the worst result at the
+ * head, so each new result is only compared to the worst one
+ * kept so far.  Adding n results takes O(n log k) time and
+ * O(k) memory, where k is the maximum.  All methods are
+ * thread-safe.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class TopResults
+{
+  /**
+   * The maximum number of results to keep.
+   */
+  private final int capacity;
+  
+  /**
+   * The results kept so far, with the worst one at the head.
+   */
+  private final PriorityQueue<SearchResult> heap;
+  
+  
+  /**
+   * Constructor.  The results are compared with
+   * SearchResult.compareTo(), which uses the current sort
+   * column and direction, so these must not change while
+   * results are being added.
+   * 
+   * @param nCapacity the maximum number of results to keep
+   */
+  public TopResults(final int nCapacity)
+  {
+    super();
+    capacity = Math.max(0, nCapacity);
+    heap = new PriorityQueue<SearchResult>(Math.min(capacity, 1024) + 1,
+                                           Collections.<SearchResult>reverseOrder());
+  }
+  
+  
+  /**
+   * Add a result, if it's better than the worst result kept
+   * so far or there is still room.  If there is no room, the
+   * worst result is removed.
+   * 
+   * @param result the search result
+   * @return whether the result was kept
+   */
+  public synchronized boolean offer(final SearchResult result)
+  {
+    if (heap.size() < capacity)
+    {
+      heap.add(result);
+      return true;
+    }
+    else if ((capacity == 0) || (result.compareTo(heap.peek()) >= 0))
+    {
+      // The result isn't better than the worst one
+      return false;
+    }
+    
+    // Replace the worst result
+    heap.poll();
+    heap.add(result);
+    return true;
+  }
+  
+  
+  /**
+   * Return the number of results kept.
+   * 
+   * @return the number of results
+   */
+  public synchronized int size()
+  {
+    return heap.size();
+  }
+  
+  
+  /**
+   * Return the maximum number of results to keep.
+   * 
+   * @return the maximum number of results
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+  
+  
+  /**
+   * Return the results kept, sorted from best to worst.
+   * 
+   * @return a new list of the results
+   */
+  public synchronized List<SearchResult> toList()
+  {
+    List<SearchResult> list = new ArrayList<SearchResult>(heap);
+    Collections.sort(list);
+    return list;
+  }
+}
@@ -0,0 +1,712 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.LiteralFilter;
+import io.miti.nemo.filter.TermFilter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the trigrams (runs of three characters) in the
+ * distinct names of a store, saved in a file next to the
+ * store's index file.  For each trigram, the index lists the
+ * names that contain it, so a search for names containing a
+ * string only has to check the names that contain all of the
+ * string's trigrams.  Case is ignored, so the same index
+ * works for case-sensitive searches.  Names that can't be
+ * folded one character at a time (such as names with a
+ * character whose upper case is two characters) are not
+ * indexed, and are always checked.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class TrigramIndex
+{
+  /**
+   * The extension of the trigram index file.
+   */
+  public static final String EXTENSION = ".tri";
+  
+  /**
+   * The magic number at the start and end of the file ("NTRI").
+   */
+  private static final int MAGIC = 0x4E545249;
+  
+  /**
+   * The current format version.
+   */
+  private static final int VERSION = 1;
+  
+  /**
+   * Characters below this value fit in ten bits of a key.
+   */
+  private static final int EXACT_LIMIT = 1024;
+  
+  /**
+   * The bit set on keys that are hashed, because one of the
+   * characters doesn't fit in ten bits.
+   */
+  private static final int HASHED = 0x40000000;
+  
+  /**
+   * The number of distinct names in the store.
+   */
+  private final int nameCount;
+  
+  /**
+   * The number of nodes in the store.
+   */
+  private final int nodeCount;
+  
+  /**
+   * The trigram keys, in ascending order.
+   */
+  private final int[] keys;
+  
+  /**
+   * The start of each key's names in postings, plus the end.
+   */
+  private final int[] starts;
+  
+  /**
+   * The names containing each trigram, in ascending order.
+   */
+  private final int[] postings;
+  
+  /**
+   * The names that are not indexed, in ascending order.
+   */
+  private final int[] irregular;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param nNameCount the number of distinct names
+   * @param nNodeCount the number of nodes
+   * @param pKeys the trigram keys
+   * @param pStarts the start of each key's names
+   * @param pPostings the names containing each trigram
+   * @param pIrregular the names that are not indexed
+   */
+  private TrigramIndex(final int nNameCount,
+                       final int nNodeCount,
+                       final int[] pKeys,
+                       final int[] pStarts,
+                       final int[] pPostings,
+                       final int[] pIrregular)
+  {
+    super();
+    nameCount = nNameCount;
+    nodeCount = nNodeCount;
+    keys = pKeys;
+    starts = pStarts;
+    postings = pPostings;
+    irregular = pIrregular;
+  }
+  
+  
+  /**
+   * Return the trigram index file for a store's index file.
+   * 
+   * @param indexFile the store's index file
+   * @return the trigram index file
+   */
+  public static File getFile(final File indexFile)
+  {
+    return Utility.getSidecarFile(indexFile, EXTENSION);
+  }
+  
+  
+  /**
+   * Build the trigram index for a table of nodes.
+   * 
+   * @param table the table of nodes
+   * @return the trigram index
+   */
+  public static TrigramIndex build(final NodeTable table)
+  {
+    // Count the names containing each trigram.  The value
+    // holds the count and then the position of the key.
+    final int count = table.getNameCount();
+    Map<Integer, int[]> counts = new HashMap<Integer, int[]>(4096);
+    List<Integer> irregularList = new ArrayList<Integer>(16);
+    for (int i = 0; i < count; ++i)
+    {
+      int[] grams = getTrigrams(table.getName(i));
+      if (grams == null)
+      {
+        irregularList.add(Integer.valueOf(i));
+        continue;
+      }
+      
+      for (int gram : grams)
+      {
+        int[] value = counts.get(Integer.valueOf(gram));
+        if (value == null)
+        {
+          value = new int[2];
+          counts.put(Integer.valueOf(gram), value);
+        }
+        ++value[0];
+      }
+    }
+    
+    // Sort the keys, and find where the names for each one start
+    int[] keys = new int[counts.size()];
+    int k = 0;
+    for (Integer key : counts.keySet())
+    {
+      keys[k++] = key.intValue();
+    }
+    Arrays.sort(keys);
+    
+    int[] starts = new int[keys.length + 1];
+    for (int i = 0; i < keys.length; ++i)
+    {
+      int[] value = counts.get(Integer.valueOf(keys[i]));
+      value[1] = i;
+      starts[i + 1] = starts[i] + value[0];
+    }
+    
+    // Save the names for each key.  The names are visited in
+    // order, so each list is sorted.
+    int[] postings = new int[starts[keys.length]];
+    int[] next = Arrays.copyOf(starts, keys.length);
+    for (int i = 0; i < count; ++i)
+    {
+      int[] grams = getTrigrams(table.getName(i));
+      if (grams != null)
+      {
+        for (int gram : grams)
+        {
+          final int pos = counts.get(Integer.valueOf(gram))[1];
+          postings[next[pos]++] = i;
+        }
+      }
+    }
+    
+    int[] irregular = new int[irregularList.size()];
+    for (int i = 0; i < irregular.length; ++i)
+    {
+      irregular[i] = irregularList.get(i).intValue();
+    }
+    
+    return new TrigramIndex(count, table.getNodeCount(), keys, starts,
+                            postings, irregular);
+  }
+  
+  
+  /**
+   * Return the distinct trigram keys in a string, in ascending
+   * order, or null if the string can't be folded one character
+   * at a time.
+   * 
+   * @param str the string
+   * @return the trigram keys, or null
+   */
+  private static int[] getTrigrams(final String str)
+  {
+    // Check that each character folds to one character
+    final int len = str.length();
+    boolean ascii = true;
+    for (int i = 0; i < len; ++i)
+    {
+      final char ch = str.charAt(i);
+      if (Character.isSurrogate(ch))
+      {
+        return null;
+      }
+      else if (ch > 127)
+      {
+        ascii = false;
+      }
+    }
+    
+    if ((!ascii) &&
+        ((str.toUpperCase().length() != len) || (str.toLowerCase().length() != len)))
+    {
+      return null;
+    }
+    
+    // Build the keys
+    if (len < 3)
+    {
+      return new int[0];
+    }
+    
+    int[] grams = new int[len - 2];
+    char c1 = fold(str.charAt(0));
+    char c2 = fold(str.charAt(1));
+    for (int i = 2; i < len; ++i)
+    {
+      final char c3 = fold(str.charAt(i));
+      grams[i - 2] = getKey(c1, c2, c3);
+      c1 = c2;
+      c2 = c3;
+    }
+    
+    // Sort the keys and remove duplicates
+    Arrays.sort(grams);
+    int num = 1;
+    for (int i = 1; i < grams.length; ++i)
+    {
+      if (grams[i] != grams[num - 1])
+      {
+        grams[num++] = grams[i];
+      }
+    }
+    
+    return ((num == grams.length) ? grams : Arrays.copyOf(grams, num));
+  }
+  
+  
+  /**
+   * Fold the case of a character, so that characters that
+   * are equal ignoring case give the same result.
+   * 
+   * @param ch the character
+   * @return the folded character
+   */
+  private static char fold(final char ch)
+  {
+    return Character.toLowerCase(Character.toUpperCase(ch));
+  }
+  
+  
+  /**
+   * Return the key for three characters.  Most characters
+   * fit in ten bits, so the key is exact; otherwise, the
+   * characters are hashed, and different trigrams can share
+   * a key.  That only adds names to check.
+   * 
+   * @param c1 the first character
+   * @param c2 the second character
+   * @param c3 the third character
+   * @return the key
+   */
+  private static int getKey(final char c1, final char c2, final char c3)
+  {
+    if ((c1 < EXACT_LIMIT) && (c2 < EXACT_LIMIT) && (c3 < EXACT_LIMIT))
+    {
+      return ((c1 << 20) | (c2 << 10) | c3);
+    }
+    
+    final int hash = (((c1 * 31) + c2) * 31) + c3;
+    return (HASHED | ((hash ^ (hash >>> 15)) & (HASHED - 1)));
+  }
+  
+  
+  /**
+   * Return the names that might be accepted by a filter.
+   * 
+   * @param filter the filter
+   * @return the candidate names, or null if the index can't
+   *         narrow the search for this filter
+   */
+  public BitSet findCandidates(final TermFilter filter)
+  {
+    if (!(filter instanceof LiteralFilter))
+    {
+      return null;
+    }
+    
+    return findCandidates(((LiteralFilter) filter).getLiterals());
+  }
+  
+  
+  /**
+   * Return the names that might contain all of the strings,
+   * ignoring case.  Strings shorter than three characters
+   * don't narrow the search.
+   * 
+   * @param literals the strings each name must contain
+   * @return the candidate names, or null if the index can't
+   *         narrow the search
+   */
+  public BitSet findCandidates(final List<String> literals)
+  {
+    // Find the list of names for each trigram
+    List<int[]> ranges = new ArrayList<int[]>(16);
+    boolean missing = false;
+    for (String literal : literals)
+    {
+      int[] grams = ((literal == null) ? null : getTrigrams(literal));
+      if (grams == null)
+      {
+        continue;
+      }
+      
+      for (int gram : grams)
+      {
+        final int pos = Arrays.binarySearch(keys, gram);
+        if (pos < 0)
+        {
+          // No name contains this trigram
+          missing = true;
+        }
+        else
+        {
+          ranges.add(new int[] {starts[pos], starts[pos + 1]});
+        }
+      }
+    }
+    
+    if ((ranges.isEmpty()) && (!missing))
+    {
+      return null;
+    }
+    
+    // Intersect the lists, starting with the shortest
+    BitSet result = new BitSet(nameCount);
+    if (!missing)
+    {
+      Collections.sort(ranges, new Comparator<int[]>()
+      {
+        public int compare(final int[] o1, final int[] o2)
+        {
+          final int len1 = o1[1] - o1[0];
+          final int len2 = o2[1] - o2[0];
+          return ((len1 < len2) ? -1 : ((len1 == len2) ? 0 : 1));
+        }
+      });
+      
+      int[] names = Arrays.copyOfRange(postings, ranges.get(0)[0], ranges.get(0)[1]);
+      int num = names.length;
+      for (int i = 1; (i < ranges.size()) && (num > 0); ++i)
+      {
+        num = intersect(names, num, ranges.get(i)[0], ranges.get(i)[1]);
+      }
+      
+      for (int i = 0; i < num; ++i)
+      {
+        result.set(names[i]);
+      }
+    }
+    
+    // The names that aren't indexed are always checked
+    for (int name : irregular)
+    {
+      result.set(name);
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * Keep the names that are also in a range of postings.
+   * 
+   * @param names the names, in ascending order
+   * @param num the number of names
+   * @param start the start of the range
+   * @param end the end of the range
+   * @return the number of names kept
+   */
+  private int intersect(final int[] names,
+                        final int num,
+                        final int start,
+                        final int end)
+  {
+    int kept = 0;
+    int pos = start;
+    for (int i = 0; (i < num) && (pos < end); ++i)
+    {
+      // Skip ahead in the range with a binary search
+      final int found = Arrays.binarySearch(postings, pos, end, names[i]);
+      if (found >= 0)
+      {
+        names[kept++] = names[i];
+        pos = found + 1;
+      }
+      else
+      {
+        pos = -(found + 1);
+      }
+    }
+    
+    return kept;
+  }
+  
+  
+  /**
+   * Return the number of distinct names in the store.
+   * 
+   * @return the number of names
+   */
+  public int getNameCount()
+  {
+    return nameCount;
+  }
+  
+  
+  /**
+   * Return the number of nodes in the store.
+   * 
+   * @return the number of nodes
+   */
+  public int getNodeCount()
+  {
+    return nodeCount;
+  }
+  
+  
+  /**
+   * Estimate the number of bytes used by this index.
+   * 
+   * @return the estimated size, in bytes
+   */
+  public long estimateSize()
+  {
+    return 4L * (keys.length + starts.length + postings.length + irregular.length);
+  }
+  
+  
+  /**
+   * Write the index to a file.
+   * 
+   * @param file the output file
+   * @throws IOException error writing the file
+   */
+  public void write(final File file) throws IOException
+  {
+    FileOutputStream out = null;
+    try
+    {
+      out = new FileOutputStream(Utility.getTempFile(file));
+      IndexOutput output = new IndexOutput(out.getChannel());
+      
+      // Write the header
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeVarInt(nameCount);
+      output.writeVarInt(nodeCount);
+      
+      // Write each key and its names, as differences from the
+      // previous value
+      output.writeVarInt(keys.length);
+      int prevKey = 0;
+      for (int i = 0; i < keys.length; ++i)
+      {
+        output.writeVarInt(keys[i] - prevKey);
+        prevKey = keys[i];
+        writeNames(output, postings, starts[i], starts[i + 1]);
+      }
+      
+      // Write the names that aren't indexed
+      writeNames(output, irregular, 0, irregular.length);
+      
+      // Write the footer
+      output.writeInt(MAGIC);
+      output.flush();
+      
+      Utility.replaceFile(out, file);
+      out = null;
+    }
+    finally
+    {
+      Utility.discardTempFile(out, file);
+    }
+  }
+  
+  
+  /**
+   * Write a sorted list of names.
+   * 
+   * @param output the output file
+   * @param names the array of names
+   * @param start the start of the list
+   * @param end the end of the list
+   * @throws IOException error writing the file
+   */
+  private static void writeNames(final IndexOutput output,
+                                 final int[] names,
+                                 final int start,
+                                 final int end) throws IOException
+  {
+    output.writeVarInt(end - start);
+    int prev = 0;
+    for (int i = start; i < end; ++i)
+    {
+      output.writeVarInt(names[i] - prev);
+      prev = names[i];
+    }
+  }
+  
+  
+  /**
+   * Read an index from a file.
+   * 
+   * @param file the input file
+   * @return the index
+   * @throws IOException error reading the file
+   */
+  public static TrigramIndex read(final File file) throws IOException
+  {
+    FileInputStream in = null;
+    TrigramIndex index = null;
+    try
+    {
+      in = new FileInputStream(file);
+      IndexInput input = new IndexInput(in.getChannel());
+      
+      // Read the header
+      if (input.readInt() != MAGIC)
+      {
+        throw new IOException("Not a trigram index file: " + file.getName());
+      }
+      final int version = input.readInt();
+      if (version > VERSION)
+      {
+        throw new IOException("Unsupported trigram index version: " + version);
+      }
+      final int names = input.readVarInt();
+      final int nodes = input.readVarInt();
+      
+      // Read the keys and their names
+      final int keyCount = input.readVarInt();
+      int[] keys = new int[keyCount];
+      int[] starts = new int[keyCount + 1];
+      int[] postings = new int[Math.max(16, keyCount * 4)];
+      int prevKey = 0;
+      for (int i = 0; i < keyCount; ++i)
+      {
+        prevKey += input.readVarInt();
+        keys[i] = prevKey;
+        
+        final int num = input.readVarInt();
+        if (starts[i] + num > postings.length)
+        {
+          postings = Arrays.copyOf(postings, Math.max(postings.length * 2, starts[i] + num));
+        }
+        readNames(input, postings, starts[i], num);
+        starts[i + 1] = starts[i] + num;
+      }
+      postings = Arrays.copyOf(postings, starts[keyCount]);
+      
+      // Read the names that aren't indexed
+      int[] irregular = new int[input.readVarInt()];
+      readNames(input, irregular, 0, irregular.length);
+      
+      // Check the footer
+      if (input.readInt() != MAGIC)
+      {
+        throw new IOException("The trigram index file is incomplete");
+      }
+      
+      index = new TrigramIndex(names, nodes, keys, starts, postings, irregular);
+      in.close();
+      in = null;
+    }
+    finally
+    {
+      Utility.closeQuietly(in);
+    }
+    
+    return index;
+  }
+  
+  
+  /**
+   * Read a sorted list of names, after the number of names.
+   * 
+   * @param input the input file
+   * @param names the array to fill in
+   * @param start the position of the first name in the array
+   * @param num the number of names
+   * @throws IOException error reading the file
+   */
+  private static void readNames(final IndexInput input,
+                                final int[] names,
+                                final int start,
+                                final int num) throws IOException
+  {
+    int prev = 0;
+    for (int i = 0; i < num; ++i)
+    {
+      prev += input.readVarInt();
+      names[start + i] = prev;
+    }
+  }
+  
+  
+  /**
+   * Load the trigram index for a store's index file.  The
+   * trigram index is only used if it was written after the
+   * store's index file, and for the same number of names
+   * and nodes.
+   * 
+   * @param indexFile the store's index file
+   * @param nNameCount the number of distinct names in the store
+   * @param nNodeCount the number of nodes in the store
+   * @return the trigram index, or null if it is missing or out of date
+   */
+  public static TrigramIndex load(final File indexFile,
+                                  final int nNameCount,
+                                  final int nNodeCount)
+  {
+    // Check the file
+    File file = Utility.getCurrentSidecarFile(indexFile, EXTENSION);
+    if (file == null)
+    {
+      return null;
+    }
+    
+    // Read the file, and check that it matches the store
+    TrigramIndex index = null;
+    try
+    {
+      index = read(file);
+      if ((index.nameCount != nNameCount) || (index.nodeCount != nNodeCount))
+      {
+        index = null;
+      }
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("IOException reading the trigram index: " + ioe.getMessage());
+      index = null;
+    }
+    
+    return index;
+  }
+}
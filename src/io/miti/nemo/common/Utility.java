@@ -32,13 +32,19 @@ import java.awt.Desktop;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
@@ -247,6 +253,131 @@ public final class Utility
   }
   
   
+  /**
+   * Return the file stored next to a store's index file,
+   * with the same name and a different extension.
+   * 
+   * @param indexFile the store's index file
+   * @param extension the extension of the other file, with the dot
+   * @return the other file
+   */
+  public static File getSidecarFile(final File indexFile, final String extension)
+  {
+    // Remove the extension of the index file
+    String name = indexFile.getName();
+    final int dot = name.lastIndexOf('.');
+    if (dot > 0)
+    {
+      name = name.substring(0, dot);
+    }
+    
+    return new File(indexFile.getParentFile(), name + extension);
+  }
+  
+  
+  /**
+   * Return the file stored next to a store's index file, if
+   * it exists and was written after the index file.
+   * 
+   * @param indexFile the store's index file
+   * @param extension the extension of the other file, with the dot
+   * @return the other file, or null if it is missing or out of date
+   */
+  public static File getCurrentSidecarFile(final File indexFile, final String extension)
+  {
+    File file = getSidecarFile(indexFile, extension);
+    if ((!file.isFile()) || (file.lastModified() < indexFile.lastModified()))
+    {
+      return null;
+    }
+    
+    return file;
+  }
+  
+  
+  /**
+   * Return the temporary file that a file is written to
+   * before replaceFile() moves it in place of the file.
+   * 
+   * @param file the file being written
+   * @return the temporary file, in the same folder
+   */
+  public static File getTempFile(final File file)
+  {
+    return new File(file.getPath() + ".tmp");
+  }
+  
+  
+  /**
+   * Finish writing the temporary file for a file, and move
+   * it in place of the file.  The stream is forced to the
+   * disk and closed first, so after a crash or an error the
+   * file holds either its old contents or all of the new
+   * ones, and readers never see it partly written.
+   * 
+   * @param out the stream writing the temporary file
+   * @param file the file to replace
+   * @throws IOException error writing or moving the file
+   */
+  public static void replaceFile(final FileOutputStream out, final File file)
+    throws IOException
+  {
+    out.getChannel().force(true);
+    out.close();
+    
+    // Rename the file, if the file system allows it
+    Path temp = getTempFile(file).toPath();
+    try
+    {
+      Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                 StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (AtomicMoveNotSupportedException amnse)
+    {
+      Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+  
+  
+  /**
+   * Close and delete the temporary file for a file, if it
+   * wasn't moved in place of the file.
+   * 
+   * @param out the stream writing the temporary file, or
+   *        null if the file was replaced
+   * @param file the file being written
+   */
+  public static void discardTempFile(final Closeable out, final File file)
+  {
+    if (out != null)
+    {
+      closeQuietly(out);
+      deleteFile(getTempFile(file));
+    }
+  }
+  
+  
+  /**
+   * Close a stream, ignoring any errors.
+   * 
+   * @param stream the stream to close, or null
+   */
+  public static void closeQuietly(final Closeable stream)
+  {
+    if (stream != null)
+    {
+      try
+      {
+        stream.close();
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("IOException: " + ioe.getMessage());
+      }
+    }
+  }
+  
+  
   /**
    * Generate the name of the index file, and return it
    * as a File object.
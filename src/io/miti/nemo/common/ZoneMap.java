@@ -0,0 +1,223 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.AttributeFilter;
+
+import java.util.Arrays;
+
+/**
+ * The smallest and largest size and last-modified time of the
+ * nodes under each directory in a table of nodes.  A search
+ * that checks the size or time can skip a directory's whole
+ * subtree when no node in it can match.  Since the nodes are
+ * in depth-first order, the subtree of a directory is the
+ * nodes after it, up to the end saved here.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class ZoneMap
+{
+  /**
+   * The value used for a node that isn't a directory.
+   */
+  private static final int NONE = -1;
+  
+  /**
+   * The number of each directory, by node index.
+   */
+  private final int[] dirNumber;
+  
+  /**
+   * The index after the last node under each directory.
+   */
+  private final int[] end;
+  
+  /**
+   * The smallest size under each directory.
+   */
+  private final long[] minSize;
+  
+  /**
+   * The largest size under each directory.
+   */
+  private final long[] maxSize;
+  
+  /**
+   * The earliest time under each directory.
+   */
+  private final long[] minTime;
+  
+  /**
+   * The latest time under each directory.
+   */
+  private final long[] maxTime;
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param nodeCount the number of nodes
+   * @param dirCount the number of directories
+   */
+  private ZoneMap(final int nodeCount, final int dirCount)
+  {
+    super();
+    dirNumber = new int[nodeCount];
+    end = new int[dirCount];
+    minSize = new long[dirCount];
+    maxSize = new long[dirCount];
+    minTime = new long[dirCount];
+    maxTime = new long[dirCount];
+  }
+  
+  
+  /**
+   * Build the zones for a table of nodes.
+   * 
+   * @param table the table of nodes
+   * @return the zones
+   */
+  public static ZoneMap build(final NodeTable table)
+  {
+    // Number the directories, and any other node with children
+    final int count = table.getNodeCount();
+    int dirCount = 0;
+    int[] numbers = new int[count];
+    for (int i = 0; i < count; ++i)
+    {
+      final boolean isParent = (table.isDirectory(i) ||
+                                (table.getFirstChild(i) != NodeTable.NONE));
+      numbers[i] = (isParent ? dirCount++ : NONE);
+    }
+    
+    // Start with empty zones
+    ZoneMap zones = new ZoneMap(count, dirCount);
+    System.arraycopy(numbers, 0, zones.dirNumber, 0, count);
+    Arrays.fill(zones.minSize, Long.MAX_VALUE);
+    Arrays.fill(zones.maxSize, Long.MIN_VALUE);
+    Arrays.fill(zones.minTime, Long.MAX_VALUE);
+    Arrays.fill(zones.maxTime, Long.MIN_VALUE);
+    for (int i = 0; i < count; ++i)
+    {
+      if (numbers[i] != NONE)
+      {
+        zones.end[numbers[i]] = i + 1;
+      }
+    }
+    
+    // Add each node to its parent's zone, from the last node
+    // back, so each directory's zone is complete before it's
+    // added to its parent's
+    for (int i = count - 1; i > 0; --i)
+    {
+      final int p = numbers[table.getParent(i)];
+      final long size = table.getFileSize(i);
+      final long time = table.getLastModified(i);
+      zones.minSize[p] = Math.min(zones.minSize[p], size);
+      zones.maxSize[p] = Math.max(zones.maxSize[p], size);
+      zones.minTime[p] = Math.min(zones.minTime[p], time);
+      zones.maxTime[p] = Math.max(zones.maxTime[p], time);
+      
+      final int d = numbers[i];
+      if (d == NONE)
+      {
+        zones.end[p] = Math.max(zones.end[p], i + 1);
+      }
+      else
+      {
+        zones.end[p] = Math.max(zones.end[p], zones.end[d]);
+        zones.minSize[p] = Math.min(zones.minSize[p], zones.minSize[d]);
+        zones.maxSize[p] = Math.max(zones.maxSize[p], zones.maxSize[d]);
+        zones.minTime[p] = Math.min(zones.minTime[p], zones.minTime[d]);
+        zones.maxTime[p] = Math.max(zones.maxTime[p], zones.maxTime[d]);
+      }
+    }
+    
+    return zones;
+  }
+  
+  
+  /**
+   * Return the index of the next node to visit after a node.
+   * If the node is a directory and none of the nodes under it
+   * can match the filter, this is the first node after its
+   * subtree.
+   * 
+   * @param index the node index
+   * @param filter the filter for the size and time
+   * @return the index of the next node to visit
+   */
+  public int next(final int index, final AttributeFilter filter)
+  {
+    final int d = dirNumber[index];
+    if ((d == NONE) || (end[d] == index + 1) ||
+        filter.acceptRanges(minSize[d], maxSize[d], minTime[d], maxTime[d]))
+    {
+      return index + 1;
+    }
+    
+    return end[d];
+  }
+  
+  
+  /**
+   * Return the first node to visit, starting at a node that
+   * may be in the middle of a subtree.  If any directory above
+   * the node can't match the filter, this is the first node
+   * after its subtree.
+   * 
+   * @param table the table of nodes
+   * @param index the node index
+   * @param filter the filter for the size and time
+   * @return the index of the first node to visit
+   */
+  public int first(final NodeTable table, final int index, final AttributeFilter filter)
+  {
+    int start = index;
+    for (int p = table.getParent(index); p != NodeTable.NONE; p = table.getParent(p))
+    {
+      start = Math.max(start, next(p, filter));
+    }
+    
+    return start;
+  }
+  
+  
+  /**
+   * Estimate the number of bytes used by the zones.
+   * 
+   * @return the estimated size, in bytes
+   */
+  public long estimateSize()
+  {
+    return (4L * dirNumber.length) + (36L * end.length);
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.filter;
+
+/**
+ * A filter that also checks the size, last-modified time and
+ * folder of each file.  The search checks the size and time
+ * before the name, so the filter isn't called on the names of
+ * files that a size or date check would reject.  The path of
+ * the folder is checked last, since it has to be built.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public interface AttributeFilter extends TermFilter
+{
+  /**
+   * Determines if the size and time of a file match.
+   * 
+   * @param size the size of the file
+   * @param lastModified the last-modified time of the file
+   * @return whether the file matches
+   */
+  boolean acceptAttributes(long size, long lastModified);
+  
+  
+  /**
+   * Determines if a file with a size and time in the ranges
+   * might match.  If not, the search skips the files in a
+   * directory without checking them.
+   * 
+   * @param minSize the smallest size
+   * @param maxSize the largest size
+   * @param minModified the earliest last-modified time
+   * @param maxModified the latest last-modified time
+   * @return whether a file in the ranges might match
+   */
+  boolean acceptRanges(long minSize, long maxSize, long minModified, long maxModified);
+  
+  
+  /**
+   * Determines if the path of the folder holding a file
+   * matches.  This is only called for files whose size, time
+   * and name match.
+   * 
+   * @param path the path of the folder, the same as SearchResult.getPath()
+   * @return whether the path matches
+   */
+  boolean acceptPath(String path);
+}
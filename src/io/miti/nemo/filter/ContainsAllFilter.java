@@ -28,8 +28,10 @@
 
 package io.miti.nemo.filter;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provide a filter for search terms that only
@@ -45,7 +47,7 @@ import java.util.List;
  * @author mwallace
  * @version 1.0
  */
-public final class ContainsAllFilter implements TermFilter
+public final class ContainsAllFilter implements LiteralFilter, FoldedFilter
 {
   /**
    * Whether to ignore the case.
@@ -53,9 +55,20 @@ public final class ContainsAllFilter implements TermFilter
   private final boolean ignoreCase;
   
   /**
-   * The list of terms.
+   * The distinct phrases, in upper case if the case is ignored.
    */
-  private final HashMap<String, Integer> terms;
+  private final String[] terms;
+  
+  /**
+   * The number of times each phrase must occur.
+   */
+  private final int[] counts;
+  
+  /**
+   * Finds the phrases in a single pass over a word, or null
+   * if the counts add up to more than it can check.
+   */
+  private final PhraseMatcher matcher;
   
   
   /**
@@ -66,7 +79,9 @@ public final class ContainsAllFilter implements TermFilter
   {
     super();
     ignoreCase = false;
-    terms = new HashMap<String, Integer>(0);
+    terms = new String[0];
+    counts = new int[0];
+    matcher = null;
   }
   
   
@@ -85,32 +100,44 @@ public final class ContainsAllFilter implements TermFilter
     // Save whether to ignore the case
     ignoreCase = bIgnoreCase;
     
-    // See if we need to ignore case
-    final String target = ((ignoreCase) ? word.toLowerCase() : word);
-    
     // Save the String parameter, after processing
-    final List<String> strings = FilterUtility.parseIntoPhrases(target);
+    final List<String> strings = FilterUtility.parseIntoPhrases(word);
     final int size = strings.size();
     
-    // Build the hashmap
-    terms = new HashMap<String, Integer>(size);
+    // Count each phrase, in upper case if we need to ignore case
+    Map<String, Integer> map = new LinkedHashMap<String, Integer>(size);
     for (int i = 0; i < size; ++i)
     {
       // Save the current string
-      final String term = strings.get(i);
+      final String term = ((ignoreCase) ? strings.get(i).toUpperCase() : strings.get(i));
       
       // See if the hashmap contains the string
-      if (!terms.containsKey(term))
+      if (!map.containsKey(term))
       {
-        terms.put(term, Integer.valueOf(1));
+        map.put(term, Integer.valueOf(1));
       }
       else
       {
         // Increment the count
-        Integer count = Integer.valueOf(terms.get(term).intValue() + 1);
-        terms.put(term, count);
+        Integer count = Integer.valueOf(map.get(term).intValue() + 1);
+        map.put(term, count);
       }
     }
+    
+    // Save the phrases and counts in arrays, so accept()
+    // doesn't create an iterator
+    terms = new String[map.size()];
+    counts = new int[map.size()];
+    int index = 0;
+    for (Map.Entry<String, Integer> entry : map.entrySet())
+    {
+      terms[index] = entry.getKey();
+      counts[index] = entry.getValue().intValue();
+      ++index;
+    }
+    
+    // Build the automaton for the phrases, if it can count them
+    matcher = ((size <= PhraseMatcher.MAX_SLOTS) ? new PhraseMatcher(terms, counts) : null);
   }
   
   
@@ -129,19 +156,74 @@ public final class ContainsAllFilter implements TermFilter
       return false;
     }
     
-    // See if we need to ignore case
-    final String target = ((ignoreCase) ? word.toLowerCase() : word);
+    // See if we need to ignore case.  Words with characters
+    // with a special upper case are converted; the rest are
+    // compared one character at a time.
+    if (!ignoreCase)
+    {
+      return containsAll(word, false);
+    }
+    else if (FilterUtility.hasSimpleUpperCase(word))
+    {
+      return containsAll(word, true);
+    }
+    
+    return acceptFolded(word.toUpperCase());
+  }
+  
+  
+  /**
+   * Determines if a word matches the source term, when the
+   * word is already in upper case.
+   * 
+   * @param upperWord the word to check, in upper case
+   * @return whether the word matches
+   */
+  @Override
+  public boolean acceptFolded(final String upperWord)
+  {
+    return ((upperWord != null) && containsAll(upperWord, false));
+  }
+  
+  
+  /**
+   * Return whether the case is ignored.
+   * 
+   * @return whether the case is ignored
+   */
+  @Override
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Return whether the target contains all of the phrases.
+   * 
+   * @param target the word to check
+   * @param fold whether to convert the word to upper case
+   * @return whether the word contains all of the phrases
+   */
+  private boolean containsAll(final String target, final boolean fold)
+  {
+    // Look for all of the phrases in one pass, if we can
+    if (matcher != null)
+    {
+      return matcher.containsAll(target, fold);
+    }
     
     // Iterate over the list of phrases to see if target
     // contains all of them
     boolean found = true;
-    for (String key : terms.keySet())
+    for (int n = 0; n < terms.length; ++n)
     {
       // Get the number of occurrences
-      final int count = terms.get(key);
+      final String key = terms[n];
+      final int count = counts[n];
       
       // See if it exists
-      int index = target.indexOf(key);
+      int index = indexOf(target, key, 0, fold);
       if (index < 0)
       {
         // The string was not found
@@ -153,7 +235,7 @@ public final class ContainsAllFilter implements TermFilter
       for (int i = 1; (i < count) && (found); ++i)
       {
         // See if it exists after the previous occurrence
-        index = target.indexOf(key, index + 1);
+        index = indexOf(target, key, index + 1, fold);
         if (index < 0)
         {
           // Not found, so update the status and break
@@ -172,4 +254,45 @@ public final class ContainsAllFilter implements TermFilter
     // Return whether we found one of the strings
     return found;
   }
+  
+  
+  /**
+   * Return the index of a phrase in a word.
+   * 
+   * @param word the word to search
+   * @param key the phrase to find
+   * @param fromIndex the index to start from
+   * @param fold whether to convert the word to upper case
+   * @return the index of the phrase, or -1 if it's not found
+   */
+  private static int indexOf(final String word,
+                             final String key,
+                             final int fromIndex,
+                             final boolean fold)
+  {
+    if (fold)
+    {
+      return FilterUtility.indexOfUpper(word, key, fromIndex);
+    }
+    
+    return word.indexOf(key, fromIndex);
+  }
+  
+  
+  /**
+   * Return the strings that every accepted word must contain.
+   * 
+   * @return the phrases
+   */
+  @Override
+  public List<String> getLiterals()
+  {
+    List<String> list = new ArrayList<String>(terms.length);
+    for (String term : terms)
+    {
+      list.add(term);
+    }
+    
+    return list;
+  }
 }
@@ -28,6 +28,9 @@
 
 package io.miti.nemo.filter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Provide a filter for search terms that only
  * accepts matches where the parameter to accept()
@@ -37,7 +40,7 @@ package io.miti.nemo.filter;
  * @author mwallace
  * @version 1.0
  */
-public final class ContainsFilter implements TermFilter
+public final class ContainsFilter implements LiteralFilter, FoldedFilter
 {
   /**
    * The source term.
@@ -49,6 +52,11 @@ public final class ContainsFilter implements TermFilter
    */
   private boolean ignoreCase = false;
   
+  /**
+   * The source term in upper case, if the case is ignored.
+   */
+  private String upperTerm = null;
+  
   
   /**
    * Default constructor.
@@ -71,6 +79,10 @@ public final class ContainsFilter implements TermFilter
   {
     term = word;
     ignoreCase = bIgnoreCase;
+    if (ignoreCase && (term != null))
+    {
+      upperTerm = term.toUpperCase();
+    }
   }
   
   
@@ -97,8 +109,14 @@ public final class ContainsFilter implements TermFilter
     // Neither is null, so check how to compare the strings
     if (ignoreCase)
     {
-      // Ignore the case
-      return (word.toUpperCase().indexOf(term.toUpperCase()) >= 0);
+      // Ignore the case, comparing one character at a time
+      // unless the word has characters with a special upper case
+      if (FilterUtility.hasSimpleUpperCase(word))
+      {
+        return (FilterUtility.indexOfUpper(word, upperTerm, 0) >= 0);
+      }
+      
+      return acceptFolded(word.toUpperCase());
     }
     else
     {
@@ -106,4 +124,46 @@ public final class ContainsFilter implements TermFilter
       return (word.indexOf(term) >= 0);
     }
   }
+  
+  
+  /**
+   * Return the strings that every accepted word must contain.
+   * 
+   * @return the source term
+   */
+  public List<String> getLiterals()
+  {
+    List<String> list = new ArrayList<String>(1);
+    if (term != null)
+    {
+      list.add(term);
+    }
+    
+    return list;
+  }
+  
+  
+  /**
+   * Return whether the case is ignored.
+   * 
+   * @return whether the case is ignored
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if a word matches the source term, when the
+   * word is already in upper case.
+   * 
+   * @param upperWord the word to check, in upper case
+   * @return whether the word matches
+   */
+  public boolean acceptFolded(final String upperWord)
+  {
+    return ((upperWord != null) && (upperTerm != null) &&
+            (upperWord.indexOf(upperTerm) >= 0));
+  }
 }
@@ -42,7 +42,7 @@ import java.util.List;
  * @author mwallace
  * @version 1.0
  */
-public final class ContainsSomeFilter implements TermFilter
+public final class ContainsSomeFilter implements FoldedFilter
 {
   /**
    * Whether to ignore the case.
@@ -54,6 +54,11 @@ public final class ContainsSomeFilter implements TermFilter
    */
   private final List<String> terms;
   
+  /**
+   * Finds the phrases in a single pass over a word.
+   */
+  private final PhraseMatcher matcher;
+  
   
   /**
    * Default constructor.
@@ -64,6 +69,7 @@ public final class ContainsSomeFilter implements TermFilter
     super();
     ignoreCase = false;
     terms = new ArrayList<String>(0);
+    matcher = new PhraseMatcher(new String[0], null);
   }
   
   
@@ -82,8 +88,19 @@ public final class ContainsSomeFilter implements TermFilter
     // Save whether to ignore the case
     ignoreCase = bIgnoreCase;
     
-    // Save the String parameter, after processing
+    // Save the String parameter, after processing, in upper
+    // case if we need to ignore case
     terms = FilterUtility.parseIntoPhrases(word);
+    if (ignoreCase)
+    {
+      for (int i = 0; i < terms.size(); ++i)
+      {
+        terms.set(i, terms.get(i).toUpperCase());
+      }
+    }
+    
+    // Build the automaton for the phrases
+    matcher = new PhraseMatcher(terms.toArray(new String[terms.size()]), null);
   }
   
   
@@ -102,23 +119,58 @@ public final class ContainsSomeFilter implements TermFilter
       return false;
     }
     
-    // See if we need to ignore case
-    final String target = ((ignoreCase) ? word.toLowerCase() : word);
-    
-    // Iterate over the list of phrases to see if target
-    // contains any of them
-    boolean found = false;
-    final int size = terms.size();
-    for (int i = 0; (i < size) && (!found); ++i)
+    // See if we need to ignore case.  Words with characters
+    // with a special upper case are converted; the rest are
+    // compared one character at a time.
+    if (!ignoreCase)
     {
-      // See if the current array element contains target
-      if (target.indexOf(terms.get(i)) >= 0)
-      {
-        found = true;
-      }
+      return containsSome(word, false);
+    }
+    else if (FilterUtility.hasSimpleUpperCase(word))
+    {
+      return containsSome(word, true);
     }
     
-    // Return whether we found one of the strings
-    return found;
+    return acceptFolded(word.toUpperCase());
+  }
+  
+  
+  /**
+   * Determines if a word matches the source term, when the
+   * word is already in upper case.
+   * 
+   * @param upperWord the word to check, in upper case
+   * @return whether the word matches
+   */
+  @Override
+  public boolean acceptFolded(final String upperWord)
+  {
+    return ((upperWord != null) && containsSome(upperWord, false));
+  }
+  
+  
+  /**
+   * Return whether the case is ignored.
+   * 
+   * @return whether the case is ignored
+   */
+  @Override
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Return whether the target contains any of the phrases.
+   * 
+   * @param target the word to check
+   * @param fold whether to convert the word to upper case
+   * @return whether the word contains any of the phrases
+   */
+  private boolean containsSome(final String target, final boolean fold)
+  {
+    // Look for all of the phrases in one pass
+    return matcher.containsAny(target, fold);
   }
 }
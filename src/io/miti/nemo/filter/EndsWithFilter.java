@@ -37,7 +37,7 @@ package io.miti.nemo.filter;
  * @author mwallace
  * @version 1.0
  */
-public final class EndsWithFilter implements TermFilter
+public final class EndsWithFilter implements FoldedFilter, DictionaryFilter
 {
   /**
    * The source term.
@@ -49,6 +49,11 @@ public final class EndsWithFilter implements TermFilter
    */
   private boolean ignoreCase = false;
   
+  /**
+   * The source term in upper case, if the case is ignored.
+   */
+  private String upperTerm = null;
+  
   
   /**
    * Default constructor.
@@ -71,6 +76,10 @@ public final class EndsWithFilter implements TermFilter
   {
     term = word;
     ignoreCase = bIgnoreCase;
+    if (ignoreCase && (term != null))
+    {
+      upperTerm = term.toUpperCase();
+    }
   }
   
   
@@ -97,8 +106,15 @@ public final class EndsWithFilter implements TermFilter
     // Neither is null, so check how to compare the strings
     if (ignoreCase)
     {
-      // Ignore the case
-      return (word.toUpperCase().endsWith(term.toUpperCase()));
+      // Ignore the case, comparing one character at a time
+      // unless the word has characters with a special upper case
+      if (FilterUtility.hasSimpleUpperCase(word))
+      {
+        return (FilterUtility.regionMatchesUpper(word, word.length() - upperTerm.length(),
+                                                 upperTerm));
+      }
+      
+      return acceptFolded(word.toUpperCase());
     }
     else
     {
@@ -106,4 +122,62 @@ public final class EndsWithFilter implements TermFilter
       return (word.endsWith(term));
     }
   }
+  
+  
+  /**
+   * Return whether the case is ignored.
+   * 
+   * @return whether the case is ignored
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if a word matches the source term, when the
+   * word is already in upper case.
+   * 
+   * @param upperWord the word to check, in upper case
+   * @return whether the word matches
+   */
+  public boolean acceptFolded(final String upperWord)
+  {
+    return ((upperWord != null) && (upperTerm != null) &&
+            upperWord.endsWith(upperTerm));
+  }
+  
+  
+  /**
+   * Return the source term.
+   * 
+   * @return the source term
+   */
+  public String getTerm()
+  {
+    return term;
+  }
+  
+  
+  /**
+   * Return whether accepted words start with the term.
+   * 
+   * @return false
+   */
+  public boolean isPrefix()
+  {
+    return false;
+  }
+  
+  
+  /**
+   * Return whether accepted words end with the term.
+   * 
+   * @return true
+   */
+  public boolean isSuffix()
+  {
+    return true;
+  }
 }
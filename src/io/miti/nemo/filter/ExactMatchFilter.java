@@ -35,7 +35,7 @@ package io.miti.nemo.filter;
  * @author mwallace
  * @version 1.0
  */
-public final class ExactMatchFilter implements TermFilter
+public final class ExactMatchFilter implements DictionaryFilter
 {
   /**
    * The source term.
@@ -104,4 +104,48 @@ public final class ExactMatchFilter implements TermFilter
       return (term.equals(word));
     }
   }
+  
+  
+  /**
+   * Return whether the case is ignored.
+   * 
+   * @return whether the case is ignored
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Return the source term.
+   * 
+   * @return the source term
+   */
+  public String getTerm()
+  {
+    return term;
+  }
+  
+  
+  /**
+   * Return whether accepted words start with the term.
+   * 
+   * @return true
+   */
+  public boolean isPrefix()
+  {
+    return true;
+  }
+  
+  
+  /**
+   * Return whether accepted words end with the term.
+   * 
+   * @return true
+   */
+  public boolean isSuffix()
+  {
+    return true;
+  }
 }
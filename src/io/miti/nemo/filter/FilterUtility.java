@@ -29,6 +29,7 @@
 package io.miti.nemo.filter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 
@@ -40,6 +41,15 @@ import java.util.List;
  */
 public final class FilterUtility
 {
+  /**
+   * The characters that String.toUpperCase() doesn't convert to
+   * Character.toUpperCase(), such as the German sharp s (which
+   * becomes "SS"), letters that depend on the locale, and the
+   * halves of surrogate pairs.
+   */
+  private static final BitSet SPECIAL_UPPER_CASE = findSpecialUpperCase();
+  
+  
   /**
    * Default constructor.
    */
@@ -49,6 +59,152 @@ public final class FilterUtility
   }
   
   
+  /**
+   * Find the characters with a special upper case, using the
+   * default locale.
+   * 
+   * @return the set of characters
+   */
+  private static BitSet findSpecialUpperCase()
+  {
+    BitSet special = new BitSet(65536);
+    for (int i = 0; i < 65536; ++i)
+    {
+      final char ch = (char) i;
+      if (Character.isSurrogate(ch))
+      {
+        special.set(i);
+        continue;
+      }
+      
+      final String upper = String.valueOf(ch).toUpperCase();
+      if ((upper.length() != 1) || (upper.charAt(0) != Character.toUpperCase(ch)))
+      {
+        special.set(i);
+      }
+    }
+    
+    return special;
+  }
+  
+  
+  /**
+   * Return whether converting each character of a word with
+   * Character.toUpperCase() gives the same result as
+   * String.toUpperCase(), so the word can be compared without
+   * creating a new string.
+   * 
+   * @param word the word to check
+   * @return whether every character has a simple upper case
+   */
+  public static boolean hasSimpleUpperCase(final String word)
+  {
+    final int len = word.length();
+    for (int i = 0; i < len; ++i)
+    {
+      if (SPECIAL_UPPER_CASE.get(word.charAt(i)))
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Return the upper case of a character, the same as
+   * Character.toUpperCase(), with a fast path for ASCII.
+   * 
+   * @param ch the character
+   * @return the upper case of the character
+   */
+  static char toUpperCase(final char ch)
+  {
+    if (ch < 128)
+    {
+      return (((ch >= 'a') && (ch <= 'z')) ? (char) (ch - ('a' - 'A')) : ch);
+    }
+    
+    return Character.toUpperCase(ch);
+  }
+  
+  
+  /**
+   * Return whether part of a word, converted to upper case one
+   * character at a time, equals a term that's already in upper
+   * case.  The word should pass hasSimpleUpperCase(), so the
+   * result is the same as comparing with String.toUpperCase(),
+   * without creating a new string.
+   * 
+   * @param word the word to check
+   * @param offset the index in the word to compare from
+   * @param upperTerm the term, in upper case
+   * @return whether the part of the word matches the term
+   */
+  static boolean regionMatchesUpper(final String word,
+                                    final int offset,
+                                    final String upperTerm)
+  {
+    // Check the bounds
+    final int len = upperTerm.length();
+    if ((offset < 0) || (offset > (word.length() - len)))
+    {
+      return false;
+    }
+    
+    // Compare each character
+    for (int i = 0; i < len; ++i)
+    {
+      if (toUpperCase(word.charAt(offset + i)) != upperTerm.charAt(i))
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Return the index of a term that's already in upper case
+   * in a word, converting the word to upper case one character
+   * at a time.  This works like String.indexOf() on the word in
+   * upper case, for words that pass hasSimpleUpperCase().
+   * 
+   * @param word the word to search
+   * @param upperTerm the term, in upper case
+   * @param fromIndex the index in the word to start from
+   * @return the index of the term, or -1 if it's not found
+   */
+  static int indexOfUpper(final String word,
+                          final String upperTerm,
+                          final int fromIndex)
+  {
+    // An empty term is found at the starting index
+    final int start = Math.max(fromIndex, 0);
+    final int len = upperTerm.length();
+    if (len == 0)
+    {
+      return Math.min(start, word.length());
+    }
+    
+    // Look for the first character, and then check the rest
+    final char first = upperTerm.charAt(0);
+    final int last = word.length() - len;
+    for (int i = start; i <= last; ++i)
+    {
+      if ((toUpperCase(word.charAt(i)) == first) &&
+          regionMatchesUpper(word, i, upperTerm))
+      {
+        return i;
+      }
+    }
+    
+    return -1;
+  }
+  
+  
   /**
    * Write out the strings in a list.
    * 
@@ -0,0 +1,64 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.filter;
+
+/**
+ * A filter that only accepts words within a maximum Levenshtein
+ * distance of a term.  An index of the names can use the term to
+ * skip the names that are too far away, before the filter is
+ * called on the rest.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public interface FuzzyFilter extends TermFilter
+{
+  /**
+   * Return the term that words are compared to.
+   * 
+   * @return the term
+   */
+  String getTerm();
+  
+  /**
+   * Return the maximum distance between the term and an
+   * accepted word.
+   * 
+   * @return the maximum distance
+   */
+  int getMaxDistance();
+  
+  /**
+   * Return whether the case is ignored when comparing words
+   * to the term.
+   * 
+   * @return whether the case is ignored
+   */
+  boolean isIgnoreCase();
+}
@@ -0,0 +1,316 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.filter;
+
+import java.util.Arrays;
+
+/**
+ * Computes the Levenshtein distance between a pattern and other
+ * strings.  The pattern is saved as bit masks, one bit for each
+ * of its characters, and the distance is computed with Myers'
+ * bit-vector algorithm, which handles a whole column of the
+ * distance matrix with a few operations on one long.  Patterns
+ * longer than 64 characters use a banded version of the usual
+ * matrix instead.  The computation stops as soon as the distance
+ * is known to be over the maximum.
+ * 
+ * The pattern can be changed with setPattern(), so one instance
+ * can be reused.  An instance that isn't changed can be shared
+ * by several threads.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class Levenshtein
+{
+  /**
+   * The longest pattern handled by the bit-vector algorithm.
+   */
+  private static final int MAX_BITS = 64;
+  
+  /**
+   * The pattern.
+   */
+  private String pattern = "";
+  
+  /**
+   * For each character below 256, the positions in the
+   * pattern where it occurs, as bits.
+   */
+  private final long[] lowMasks = new long[256];
+  
+  /**
+   * The other characters in the pattern, sorted.
+   */
+  private char[] highChars = new char[0];
+  
+  /**
+   * The positions of each of the other characters, as bits.
+   */
+  private long[] highMasks = new long[0];
+  
+  
+  /**
+   * Constructor.
+   * 
+   * @param sPattern the pattern
+   */
+  public Levenshtein(final String sPattern)
+  {
+    super();
+    setPattern(sPattern);
+  }
+  
+  
+  /**
+   * Set the pattern that strings are compared to.
+   * 
+   * @param sPattern the pattern
+   */
+  public void setPattern(final String sPattern)
+  {
+    // Clear the bits of the old pattern
+    final int oldLen = Math.min(pattern.length(), MAX_BITS);
+    for (int i = 0; i < oldLen; ++i)
+    {
+      final char ch = pattern.charAt(i);
+      if (ch < 256)
+      {
+        lowMasks[ch] = 0L;
+      }
+    }
+    
+    // Save the distinct characters above 255
+    pattern = sPattern;
+    final int len = Math.min(pattern.length(), MAX_BITS);
+    char[] chars = new char[len];
+    int numHigh = 0;
+    for (int i = 0; i < len; ++i)
+    {
+      if (pattern.charAt(i) > 255)
+      {
+        chars[numHigh++] = pattern.charAt(i);
+      }
+    }
+    Arrays.sort(chars, 0, numHigh);
+    
+    int numDistinct = 0;
+    for (int i = 0; i < numHigh; ++i)
+    {
+      if ((numDistinct == 0) || (chars[numDistinct - 1] != chars[i]))
+      {
+        chars[numDistinct++] = chars[i];
+      }
+    }
+    highChars = Arrays.copyOf(chars, numDistinct);
+    highMasks = new long[numDistinct];
+    
+    // Set the bit for each position
+    for (int i = 0; i < len; ++i)
+    {
+      final char ch = pattern.charAt(i);
+      if (ch < 256)
+      {
+        lowMasks[ch] |= (1L << i);
+      }
+      else
+      {
+        highMasks[Arrays.binarySearch(highChars, ch)] |= (1L << i);
+      }
+    }
+  }
+  
+  
+  /**
+   * Return the pattern.
+   * 
+   * @return the pattern
+   */
+  public String getPattern()
+  {
+    return pattern;
+  }
+  
+  
+  /**
+   * Return the positions in the pattern of a character, as bits.
+   * 
+   * @param ch the character
+   * @return the bits for the positions of the character
+   */
+  private long getMask(final char ch)
+  {
+    if (ch < 256)
+    {
+      return lowMasks[ch];
+    }
+    
+    final int index = Arrays.binarySearch(highChars, ch);
+    return ((index < 0) ? 0L : highMasks[index]);
+  }
+  
+  
+  /**
+   * Return the Levenshtein distance between the pattern and a
+   * string, if it's at most the maximum.
+   * 
+   * @param text the string to compare to the pattern
+   * @param upper whether to convert the string's characters to upper case
+   * @param max the maximum distance wanted
+   * @return the distance, or a number greater than max
+   */
+  public int distance(final CharSequence text,
+                      final boolean upper,
+                      final int max)
+  {
+    // The distance is at least the difference in length, and
+    // at most the longer length
+    final int m = pattern.length();
+    final int n = text.length();
+    final int limit = Math.min(max, Math.max(m, n));
+    if (Math.abs(n - m) > limit)
+    {
+      return (limit + 1);
+    }
+    else if (m == 0)
+    {
+      return n;
+    }
+    else if (m > MAX_BITS)
+    {
+      return distanceBanded(text, upper, limit);
+    }
+    
+    // Each bit of the vertical deltas is for one character of
+    // the pattern.  The score is the distance between the whole
+    // pattern and the part of the string read so far.
+    final long last = 1L << (m - 1);
+    long pv = -1L;
+    long mv = 0L;
+    int score = m;
+    for (int j = 0; j < n; ++j)
+    {
+      final char ch = (upper ? Character.toUpperCase(text.charAt(j)) : text.charAt(j));
+      final long eq = getMask(ch);
+      final long xv = eq | mv;
+      final long xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv);
+      long mh = pv & xh;
+      if ((ph & last) != 0)
+      {
+        ++score;
+      }
+      else if ((mh & last) != 0)
+      {
+        --score;
+      }
+      
+      // Each character left can only lower the score by one
+      if ((score - (n - j - 1)) > limit)
+      {
+        return (limit + 1);
+      }
+      
+      ph = (ph << 1) | 1L;
+      mh = mh << 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
+    }
+    
+    return score;
+  }
+  
+  
+  /**
+   * Return the Levenshtein distance between the pattern and a
+   * string, for patterns too long for the bit-vector algorithm.
+   * Only the cells within the maximum distance of the diagonal
+   * are computed, and this stops when a whole row is over the
+   * maximum.
+   * 
+   * @param text the string to compare to the pattern
+   * @param upper whether to convert the string's characters to upper case
+   * @param limit the maximum distance wanted
+   * @return the distance, or a number greater than limit
+   */
+  private int distanceBanded(final CharSequence text,
+                             final boolean upper,
+                             final int limit)
+  {
+    final int m = pattern.length();
+    final int n = text.length();
+    final int over = limit + 1;
+    
+    // The first row is the distance from the empty string
+    int[] prev = new int[n + 1];
+    int[] cur = new int[n + 1];
+    for (int j = 0; j <= n; ++j)
+    {
+      prev[j] = Math.min(j, over);
+    }
+    
+    for (int i = 1; i <= m; ++i)
+    {
+      // The range of columns in the band
+      final int lo = Math.max(1, i - limit);
+      final int hi = Math.min(n, i + limit);
+      cur[lo - 1] = ((lo == 1) ? Math.min(i, over) : over);
+      int rowMin = cur[lo - 1];
+      
+      final char pc = pattern.charAt(i - 1);
+      for (int j = lo; j <= hi; ++j)
+      {
+        final char ch = (upper ? Character.toUpperCase(text.charAt(j - 1))
+                               : text.charAt(j - 1));
+        final int cost = ((pc == ch) ? 0 : 1);
+        int value = Math.min(prev[j - 1] + cost, cur[j - 1] + 1);
+        value = Math.min(value, prev[j] + 1);
+        cur[j] = Math.min(value, over);
+        rowMin = Math.min(rowMin, cur[j]);
+      }
+      
+      // The cell after the band is out of range for the next row
+      if (hi < n)
+      {
+        cur[hi + 1] = over;
+      }
+      
+      if (rowMin > limit)
+      {
+        return over;
+      }
+      
+      int[] temp = prev;
+      prev = cur;
+      cur = temp;
+    }
+    
+    return prev[n];
+  }
+}
@@ -0,0 +1,377 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.filter;
+
+import java.util.Arrays;
+
+/**
+ * An Aho-Corasick automaton that finds a set of phrases in a
+ * word with a single pass over the word, however many phrases
+ * there are.  The transitions for each state are saved in one
+ * table, with the failure links already followed, so each
+ * character of the word is one table lookup.  The characters
+ * used in the phrases are mapped to columns of the table, and
+ * every other character goes to the first column.
+ * 
+ * To check that each phrase occurs enough times, each phrase
+ * gets one bit in a mask for each time it must occur, so the
+ * counts fit in a long and a word can be checked without
+ * creating any objects.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class PhraseMatcher
+{
+  /**
+   * The largest total of the counts that can be checked.
+   */
+  public static final int MAX_SLOTS = 64;
+  
+  /**
+   * The column for each ASCII character, or zero.
+   */
+  private final int[] asciiColumns = new int[128];
+  
+  /**
+   * The other characters in the phrases, sorted.  The column
+   * for each one is its index plus the number of ASCII columns.
+   */
+  private final char[] otherChars;
+  
+  /**
+   * The number of columns for ASCII characters, plus one.
+   */
+  private final int asciiCount;
+  
+  /**
+   * The number of columns.
+   */
+  private final int columns;
+  
+  /**
+   * The next state for each state and column.
+   */
+  private final int[] next;
+  
+  /**
+   * The offset of each state's phrases in outputs, plus the end.
+   */
+  private final int[] outStarts;
+  
+  /**
+   * The phrases that end at each state.
+   */
+  private final int[] outputs;
+  
+  /**
+   * The first bit of each phrase in the mask.
+   */
+  private final int[] slotBase;
+  
+  /**
+   * The bits for each phrase's count, starting at bit zero.
+   */
+  private final long[] slotBits;
+  
+  /**
+   * The mask when every phrase occurs enough times.
+   */
+  private final long fullMask;
+  
+  /**
+   * Whether one of the phrases is empty.
+   */
+  private final boolean hasEmpty;
+  
+  
+  /**
+   * Build the automaton.  The counts must add up to no more
+   * than MAX_SLOTS, or be null if the phrases only need to be
+   * found once each.
+   * 
+   * @param phrases the phrases
+   * @param counts the number of times each phrase must occur, or null
+   */
+  public PhraseMatcher(final String[] phrases, final int[] counts)
+  {
+    super();
+    
+    // Give each character in the phrases a column
+    int total = 0;
+    int ascii = 1;
+    char[] others = new char[16];
+    int numOthers = 0;
+    for (String phrase : phrases)
+    {
+      total += phrase.length();
+      for (int i = 0; i < phrase.length(); ++i)
+      {
+        final char ch = phrase.charAt(i);
+        if (ch < 128)
+        {
+          if (asciiColumns[ch] == 0)
+          {
+            asciiColumns[ch] = ascii++;
+          }
+        }
+        else
+        {
+          if (numOthers == others.length)
+          {
+            others = Arrays.copyOf(others, numOthers * 2);
+          }
+          others[numOthers++] = ch;
+        }
+      }
+    }
+    
+    // Sort the other characters, and remove the duplicates
+    Arrays.sort(others, 0, numOthers);
+    int unique = 0;
+    for (int i = 0; i < numOthers; ++i)
+    {
+      if ((unique == 0) || (others[i] != others[unique - 1]))
+      {
+        others[unique++] = others[i];
+      }
+    }
+    otherChars = Arrays.copyOf(others, unique);
+    asciiCount = ascii;
+    columns = ascii + unique;
+    
+    // Build the trie of the phrases
+    int[] table = new int[(total + 1) * columns];
+    Arrays.fill(table, -1);
+    int[] ends = new int[phrases.length];
+    int states = 1;
+    boolean empty = false;
+    for (int p = 0; p < phrases.length; ++p)
+    {
+      final String phrase = phrases[p];
+      int state = 0;
+      for (int i = 0; i < phrase.length(); ++i)
+      {
+        final int cell = (state * columns) + getColumn(phrase.charAt(i));
+        if (table[cell] < 0)
+        {
+          table[cell] = states++;
+        }
+        state = table[cell];
+      }
+      
+      ends[p] = state;
+      empty = (empty || (state == 0));
+    }
+    
+    // Follow the failure links, in breadth-first order, so
+    // each state's failure state is finished before it
+    int[] fail = new int[states];
+    int[] queue = new int[states];
+    int head = 0;
+    int tail = 0;
+    for (int c = 0; c < columns; ++c)
+    {
+      if (table[c] < 0)
+      {
+        table[c] = 0;
+      }
+      else
+      {
+        fail[table[c]] = 0;
+        queue[tail++] = table[c];
+      }
+    }
+    
+    while (head < tail)
+    {
+      final int state = queue[head++];
+      for (int c = 0; c < columns; ++c)
+      {
+        final int cell = (state * columns) + c;
+        final int target = table[(fail[state] * columns) + c];
+        if (table[cell] < 0)
+        {
+          table[cell] = target;
+        }
+        else
+        {
+          fail[table[cell]] = target;
+          queue[tail++] = table[cell];
+        }
+      }
+    }
+    next = Arrays.copyOf(table, states * columns);
+    
+    // Save the phrases that end at each state, including the
+    // ones that end at its failure states
+    int[][] lists = new int[states][];
+    int[] own = new int[states];
+    for (int p = 0; p < phrases.length; ++p)
+    {
+      if (ends[p] != 0)
+      {
+        ++own[ends[p]];
+      }
+    }
+    
+    lists[0] = new int[0];
+    for (int i = 0; i < tail; ++i)
+    {
+      final int state = queue[i];
+      int[] inherited = lists[fail[state]];
+      int[] list = Arrays.copyOf(inherited, inherited.length + own[state]);
+      int pos = inherited.length;
+      for (int p = 0; (p < phrases.length) && (pos < list.length); ++p)
+      {
+        if (ends[p] == state)
+        {
+          list[pos++] = p;
+        }
+      }
+      lists[state] = list;
+    }
+    
+    outStarts = new int[states + 1];
+    for (int s = 0; s < states; ++s)
+    {
+      outStarts[s + 1] = outStarts[s] + lists[s].length;
+    }
+    outputs = new int[outStarts[states]];
+    for (int s = 0; s < states; ++s)
+    {
+      System.arraycopy(lists[s], 0, outputs, outStarts[s], lists[s].length);
+    }
+    
+    // Give each phrase its bits in the mask
+    slotBase = new int[phrases.length];
+    slotBits = new long[phrases.length];
+    long full = 0L;
+    int base = 0;
+    for (int p = 0; p < phrases.length; ++p)
+    {
+      final int count = ((counts == null) ? 1 : counts[p]);
+      if ((ends[p] == 0) || (count < 1))
+      {
+        continue;
+      }
+      
+      slotBase[p] = base;
+      slotBits[p] = ((count >= MAX_SLOTS) ? -1L : ((1L << count) - 1L));
+      full |= (slotBits[p] << base);
+      base += count;
+    }
+    fullMask = full;
+    hasEmpty = empty;
+  }
+  
+  
+  /**
+   * Return the column for a character.
+   * 
+   * @param ch the character
+   * @return the column
+   */
+  private int getColumn(final char ch)
+  {
+    if (ch < 128)
+    {
+      return asciiColumns[ch];
+    }
+    
+    final int index = Arrays.binarySearch(otherChars, ch);
+    return ((index < 0) ? 0 : (asciiCount + index));
+  }
+  
+  
+  /**
+   * Return whether the word contains any of the phrases.
+   * 
+   * @param word the word to check
+   * @param fold whether to convert the word to upper case,
+   *        one character at a time
+   * @return whether any phrase was found
+   */
+  public boolean containsAny(final String word, final boolean fold)
+  {
+    // The empty phrase is in every word
+    if (hasEmpty)
+    {
+      return true;
+    }
+    
+    int state = 0;
+    final int len = word.length();
+    for (int i = 0; i < len; ++i)
+    {
+      final char ch = word.charAt(i);
+      state = next[(state * columns) + getColumn(fold ? FilterUtility.toUpperCase(ch) : ch)];
+      if (outStarts[state] < outStarts[state + 1])
+      {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  
+  /**
+   * Return whether the word contains every phrase at least as
+   * many times as its count.  Occurrences can overlap, the same
+   * as counting them with String.indexOf().  The empty phrase
+   * is found any number of times, as String.indexOf() finds it
+   * at the end of every word.
+   * 
+   * @param word the word to check
+   * @param fold whether to convert the word to upper case,
+   *        one character at a time
+   * @return whether every phrase was found enough times
+   */
+  public boolean containsAll(final String word, final boolean fold)
+  {
+    final int len = word.length();
+    long mask = 0L;
+    int state = 0;
+    for (int i = 0; (i < len) && (mask != fullMask); ++i)
+    {
+      final char ch = word.charAt(i);
+      state = next[(state * columns) + getColumn(fold ? FilterUtility.toUpperCase(ch) : ch)];
+      for (int o = outStarts[state]; o < outStarts[state + 1]; ++o)
+      {
+        // Set the lowest bit of the phrase that isn't set yet
+        final int phrase = outputs[o];
+        final long bits = (mask >>> slotBase[phrase]) & slotBits[phrase];
+        mask |= ((bits + 1L) & ~bits & slotBits[phrase]) << slotBase[phrase];
+      }
+    }
+    
+    return (mask == fullMask);
+  }
+}
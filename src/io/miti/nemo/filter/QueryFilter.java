@@ -0,0 +1,891 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.filter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Provide a filter for a query made of several conditions,
+ * all of which must match.  The conditions are separated by
+ * spaces, and each one can be negated with a leading minus
+ * sign:
+ * <ul>
+ * <li>word - the name contains the word, or matches it as a
+ *     wildcard pattern if it has a '*' or '?'</li>
+ * <li>"some words" - the name contains the phrase</li>
+ * <li>ext:pdf - the name ends with ".pdf"</li>
+ * <li>regex:pattern - the name matches the regular expression</li>
+ * <li>sounds:word - the name sounds like the word</li>
+ * <li>similar:word - the name is similar to the word</li>
+ * <li>path:text - the path of the folder holding the file
+ *     contains the text</li>
+ * <li>size&gt;10M - the size compares to the number, with an
+ *     optional K, M, G or T suffix; the operators are &lt;,
+ *     &lt;=, =, &gt;= and &gt;</li>
+ * <li>modified&lt;2024-01-01 - the last-modified time compares
+ *     to the day, with the same operators</li>
+ * </ul>
+ * For example: ext:pdf size&gt;10M modified&lt;2024-01-01
+ * "annual report" -draft path:projects.
+ * 
+ * A condition on the size or time must not have spaces
+ * around the operator.  If its number or day isn't valid, the
+ * constructor throws an IllegalArgumentException with a
+ * message for the user, instead of searching for the text.
+ * A size with a fraction of a byte is compared exactly, so
+ * size&lt;1.5 matches 1 byte.
+ * 
+ * The size and time are checked first, through
+ * AttributeFilter, and then the conditions on the name in
+ * order of their cost, so the expensive ones (such as regular
+ * expressions and similar names) are only checked on names
+ * that passed the rest.  The path is checked last, since the
+ * search has to build it.  The literal text of the conditions
+ * lets the trigram index skip names that can't match.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class QueryFilter implements LiteralFilter, AttributeFilter
+{
+  /**
+   * The cost of checking the end of a name.
+   */
+  private static final int COST_SUFFIX = 1;
+  
+  /**
+   * The cost of checking if a name contains a string.
+   */
+  private static final int COST_CONTAINS = 2;
+  
+  /**
+   * The cost of matching a wildcard pattern.
+   */
+  private static final int COST_WILDCARD = 3;
+  
+  /**
+   * The cost of comparing the sound of a name.
+   */
+  private static final int COST_SOUNDS = 4;
+  
+  /**
+   * The cost of matching a regular expression.
+   */
+  private static final int COST_REGEX = 5;
+  
+  /**
+   * The cost of finding the distance to a name.
+   */
+  private static final int COST_SIMILAR = 6;
+  
+  /**
+   * The largest number of edits for similar names, the same
+   * as the Similar search.
+   */
+  private static final int MAX_EDITS = 3;
+  
+  /**
+   * The largest long.
+   */
+  private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+  
+  /**
+   * The smallest long.
+   */
+  private static final BigDecimal MIN_LONG = BigDecimal.valueOf(Long.MIN_VALUE);
+  
+  /**
+   * The pattern for a size or time condition.
+   */
+  private static final Pattern COMPARE_PATTERN =
+    Pattern.compile("(size|modified)(<=|>=|<|>|=)(.*)", Pattern.CASE_INSENSITIVE);
+  
+  /**
+   * The pattern for the keyword of a size or time condition.
+   */
+  private static final Pattern KEYWORD_PATTERN =
+    Pattern.compile("size|modified", Pattern.CASE_INSENSITIVE);
+  
+  /**
+   * The pattern for the start of a condition that begins with
+   * an operator.
+   */
+  private static final Pattern OPERATOR_PATTERN = Pattern.compile("[<>=].*");
+  
+  /**
+   * The pattern for a size, with an optional unit.
+   */
+  private static final Pattern SIZE_PATTERN =
+    Pattern.compile("(\\d+(?:\\.\\d+)?)([KMGT]?)B?", Pattern.CASE_INSENSITIVE);
+  
+  /**
+   * The conditions on the name, in the order they're checked.
+   */
+  private final Clause[] clauses;
+  
+  /**
+   * The conditions on the size and time.
+   */
+  private final Range[] ranges;
+  
+  /**
+   * The conditions on the path of the folder.
+   */
+  private final Clause[] paths;
+  
+  
+  /**
+   * Default constructor.
+   */
+  @SuppressWarnings("unused")
+  private QueryFilter()
+  {
+    super();
+    clauses = new Clause[0];
+    ranges = new Range[0];
+    paths = new Clause[0];
+  }
+  
+  
+  /**
+   * Initializes the filter with the query and whether to
+   * ignore case on searches.
+   * 
+   * @param query the query
+   * @param bIgnoreCase whether to ignore the case of string comparisons
+   * @throws IllegalArgumentException if a condition on the size
+   *         or time isn't valid
+   */
+  public QueryFilter(final String query, final boolean bIgnoreCase)
+  {
+    super();
+    
+    // Parse each condition
+    List<Clause> listClauses = new ArrayList<Clause>(10);
+    List<Range> listRanges = new ArrayList<Range>(4);
+    List<Clause> listPaths = new ArrayList<Clause>(2);
+    List<Token> tokens = tokenize(query);
+    for (int i = 0; i < tokens.size(); ++i)
+    {
+      Token token = tokens.get(i);
+      checkSpacing(token, ((i + 1 < tokens.size()) ? tokens.get(i + 1) : null));
+      Range range = parseRange(token);
+      Clause path = ((range == null) ? parsePath(token, bIgnoreCase) : null);
+      if (range != null)
+      {
+        listRanges.add(range);
+      }
+      else if (path != null)
+      {
+        listPaths.add(path);
+      }
+      else
+      {
+        listClauses.add(parseClause(token, bIgnoreCase));
+      }
+    }
+    
+    // Check the cheapest conditions first.  The sort is
+    // stable, so conditions with the same cost are checked
+    // in the order of the query.
+    Collections.sort(listClauses, new Comparator<Clause>()
+    {
+      public int compare(final Clause o1, final Clause o2)
+      {
+        return (o1.cost - o2.cost);
+      }
+    });
+    
+    clauses = listClauses.toArray(new Clause[listClauses.size()]);
+    ranges = listRanges.toArray(new Range[listRanges.size()]);
+    paths = listPaths.toArray(new Clause[listPaths.size()]);
+  }
+  
+  
+  /**
+   * Split the query into conditions, separated by spaces
+   * outside of quotes.  The quotes are removed.
+   * 
+   * @param query the query
+   * @return the conditions
+   */
+  private static List<Token> tokenize(final String query)
+  {
+    List<Token> list = new ArrayList<Token>(10);
+    if (query == null)
+    {
+      return list;
+    }
+    
+    // Build each token
+    final int len = query.length();
+    boolean inQuote = false;
+    Token token = null;
+    for (int i = 0; i < len; ++i)
+    {
+      final char ch = query.charAt(i);
+      if (!inQuote && Character.isWhitespace(ch))
+      {
+        // End the current token
+        token = null;
+        continue;
+      }
+      
+      // Start a new token
+      if (token == null)
+      {
+        token = new Token();
+        list.add(token);
+      }
+      
+      if (ch == '"')
+      {
+        // Save where the first quote was
+        if (token.firstQuote < 0)
+        {
+          token.firstQuote = token.text.length();
+        }
+        inQuote = !inQuote;
+      }
+      else
+      {
+        token.text.append(ch);
+      }
+    }
+    
+    // Get the negation of each token
+    for (Token t : list)
+    {
+      if ((t.text.length() > 0) && (t.text.charAt(0) == '-') &&
+          ((t.text.length() > 1) || (t.firstQuote > 0)))
+      {
+        t.negated = true;
+        t.text.deleteCharAt(0);
+        --t.firstQuote;
+      }
+    }
+    
+    return list;
+  }
+  
+  
+  /**
+   * Parse a condition on the name.
+   * 
+   * @param token the condition
+   * @param ignoreCase whether to ignore case
+   * @return the condition
+   */
+  private static Clause parseClause(final Token token, final boolean ignoreCase)
+  {
+    final String text = token.text.toString();
+    
+    // Check for a quoted phrase
+    if (token.firstQuote == 0)
+    {
+      return new Clause(new ContainsFilter(text, ignoreCase), token.negated, COST_CONTAINS);
+    }
+    
+    // Check for a keyword before a colon, outside of quotes
+    final int colon = text.indexOf(':');
+    if ((colon > 0) && ((token.firstQuote < 0) || (colon < token.firstQuote)))
+    {
+      final String key = text.substring(0, colon).toLowerCase(Locale.ENGLISH);
+      final String value = text.substring(colon + 1);
+      if (key.equals("ext"))
+      {
+        // Match the extension, with or without the dot
+        final String suffix = (value.startsWith(".") ? value : ("." + value));
+        return new Clause(new EndsWithFilter(suffix, ignoreCase), token.negated,
+                          COST_SUFFIX, suffix);
+      }
+      else if (key.equals("regex"))
+      {
+        return new Clause(buildRegex(value, ignoreCase), token.negated, COST_REGEX);
+      }
+      else if (key.equals("sounds"))
+      {
+        return new Clause(new SoundFilter(value, ignoreCase), token.negated, COST_SOUNDS);
+      }
+      else if (key.equals("similar"))
+      {
+        return new Clause(new SimilarFilter(value, ignoreCase, MAX_EDITS), token.negated,
+                          COST_SIMILAR);
+      }
+    }
+    
+    // Check for a wildcard pattern
+    if ((text.indexOf('*') >= 0) || (text.indexOf('?') >= 0))
+    {
+      return new Clause(new WildcardFilter(text, ignoreCase), token.negated, COST_WILDCARD);
+    }
+    
+    return new Clause(new ContainsFilter(text, ignoreCase), token.negated, COST_CONTAINS);
+  }
+  
+  
+  /**
+   * Parse a condition on the path of the folder.
+   * 
+   * @param token the condition
+   * @param ignoreCase whether to ignore case
+   * @return the condition, or null if it isn't a condition
+   *         on the path
+   */
+  private static Clause parsePath(final Token token, final boolean ignoreCase)
+  {
+    // Check for the keyword before a colon, outside of quotes
+    final String text = token.text.toString();
+    final int colon = text.indexOf(':');
+    if ((colon < 1) || ((token.firstQuote >= 0) && (colon > token.firstQuote)) ||
+        !text.substring(0, colon).equalsIgnoreCase("path"))
+    {
+      return null;
+    }
+    
+    return new Clause(new ContainsFilter(text.substring(colon + 1), ignoreCase),
+                      token.negated, COST_CONTAINS);
+  }
+  
+  
+  /**
+   * Build the filter for a regular expression.  A pattern
+   * that isn't valid (such as one that's still being typed)
+   * doesn't match any name.
+   * 
+   * @param pattern the regular expression
+   * @param ignoreCase whether to ignore case
+   * @return the filter
+   */
+  private static TermFilter buildRegex(final String pattern, final boolean ignoreCase)
+  {
+    TermFilter filter = null;
+    try
+    {
+      filter = new RegexFilter(pattern, ignoreCase);
+    }
+    catch (PatternSyntaxException pse)
+    {
+      filter = new RegexFilter(null, ignoreCase);
+    }
+    
+    return filter;
+  }
+  
+  
+  /**
+   * Check for a condition on the size or time split by spaces,
+   * such as "size &gt; 10M", which would otherwise search for
+   * the words.
+   * 
+   * @param token the condition
+   * @param next the condition after it, or null
+   * @throws IllegalArgumentException if the keyword is followed
+   *         by an operator
+   */
+  private static void checkSpacing(final Token token, final Token next)
+  {
+    if ((next != null) && (token.firstQuote < 0) && (next.firstQuote != 0) &&
+        KEYWORD_PATTERN.matcher(token.text).matches() &&
+        OPERATOR_PATTERN.matcher(next.text).matches())
+    {
+      throw new IllegalArgumentException("Invalid condition: " + token.text + " " +
+                                         next.text + " (leave out the spaces, such as " +
+                                         "size>10M)");
+    }
+  }
+  
+  
+  /**
+   * Parse a condition on the size or time.
+   * 
+   * @param token the condition
+   * @return the condition, or null if it isn't a condition on
+   *         the size or time
+   * @throws IllegalArgumentException if the number or day in
+   *         the condition isn't valid
+   */
+  private static Range parseRange(final Token token)
+  {
+    // Check the form of the condition, outside of quotes
+    if (token.firstQuote >= 0)
+    {
+      return null;
+    }
+    Matcher matcher = COMPARE_PATTERN.matcher(token.text);
+    if (!matcher.matches())
+    {
+      return null;
+    }
+    
+    // Get the first and last value the number or day stands for
+    final boolean isTime = matcher.group(1).equalsIgnoreCase("modified");
+    BigDecimal[] bounds = null;
+    if (isTime)
+    {
+      bounds = parseDay(matcher.group(3));
+      if (bounds == null)
+      {
+        throw new IllegalArgumentException("Invalid date condition: " + token.text +
+                                           " (use a day in the form yyyy-MM-dd, such as " +
+                                           "modified<2024-01-01)");
+      }
+    }
+    else
+    {
+      bounds = parseSize(matcher.group(3));
+      if (bounds == null)
+      {
+        throw new IllegalArgumentException("Invalid size condition: " + token.text +
+                                           " (use a number with an optional K, M, G or " +
+                                           "T, such as size>10M)");
+      }
+    }
+    
+    // Convert the operator to the range of whole values that
+    // match, rounding the bounds toward the matching values.
+    // A null bound means there is no limit.
+    final String op = matcher.group(2);
+    BigDecimal low = null;
+    BigDecimal high = null;
+    if (op.equals("<"))
+    {
+      high = bounds[0].setScale(0, RoundingMode.CEILING).subtract(BigDecimal.ONE);
+    }
+    else if (op.equals("<="))
+    {
+      high = bounds[1].setScale(0, RoundingMode.FLOOR);
+    }
+    else if (op.equals(">"))
+    {
+      low = bounds[1].setScale(0, RoundingMode.FLOOR).add(BigDecimal.ONE);
+    }
+    else if (op.equals(">="))
+    {
+      low = bounds[0].setScale(0, RoundingMode.CEILING);
+    }
+    else
+    {
+      low = bounds[0].setScale(0, RoundingMode.CEILING);
+      high = bounds[1].setScale(0, RoundingMode.FLOOR);
+    }
+    
+    // Nothing is below the smallest long or above the largest,
+    // so bounds past them give an empty range, as does an
+    // equal fraction
+    if (((low != null) && (low.compareTo(MAX_LONG) > 0)) ||
+        ((high != null) && (high.compareTo(MIN_LONG) < 0)) ||
+        ((low != null) && (high != null) && (low.compareTo(high) > 0)))
+    {
+      return new Range(isTime, Long.MAX_VALUE, Long.MIN_VALUE, token.negated);
+    }
+    
+    final long lLow = (((low == null) || (low.compareTo(MIN_LONG) < 0)) ? Long.MIN_VALUE
+                                                                         : low.longValue());
+    final long lHigh = (((high == null) || (high.compareTo(MAX_LONG) > 0)) ? Long.MAX_VALUE
+                                                                            : high.longValue());
+    return new Range(isTime, lLow, lHigh, token.negated);
+  }
+  
+  
+  /**
+   * Parse a size, with an optional unit.  The size is exact,
+   * and may have a fraction of a byte or be too large for a
+   * long.
+   * 
+   * @param str the size
+   * @return the size, twice, or null if it isn't valid
+   */
+  private static BigDecimal[] parseSize(final String str)
+  {
+    Matcher matcher = SIZE_PATTERN.matcher(str);
+    if (!matcher.matches())
+    {
+      return null;
+    }
+    
+    // Get the multiplier for the unit
+    final String unit = matcher.group(2).toUpperCase(Locale.ENGLISH);
+    final int shift = (unit.length() == 0) ? 0 : (10 * ("KMGT".indexOf(unit.charAt(0)) + 1));
+    
+    final BigDecimal size =
+      new BigDecimal(matcher.group(1)).multiply(BigDecimal.valueOf(1L << shift));
+    return new BigDecimal[] {size, size};
+  }
+  
+  
+  /**
+   * Parse a day, in the form yyyy-MM-dd, in the local time zone.
+   * 
+   * @param str the day
+   * @return the first and last millisecond of the day, or
+   *         null if it isn't valid
+   */
+  private static BigDecimal[] parseDay(final String str)
+  {
+    // Parse the whole string
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
+    format.setLenient(false);
+    ParsePosition pos = new ParsePosition(0);
+    Date date = format.parse(str, pos);
+    if ((date == null) || (pos.getIndex() != str.length()))
+    {
+      return null;
+    }
+    
+    // Find the start of the next day
+    Calendar cal = Calendar.getInstance();
+    cal.setTime(date);
+    cal.add(Calendar.DAY_OF_MONTH, 1);
+    return new BigDecimal[] {BigDecimal.valueOf(date.getTime()),
+                             BigDecimal.valueOf(cal.getTimeInMillis() - 1L)};
+  }
+  
+  
+  /**
+   * Determines if the size and time of a file match.
+   * 
+   * @param size the size of the file
+   * @param lastModified the last-modified time of the file
+   * @return whether the file matches
+   */
+  public boolean acceptAttributes(final long size, final long lastModified)
+  {
+    for (Range range : ranges)
+    {
+      if (!range.accept(size, lastModified))
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Determines if a file with a size and time in the ranges
+   * might match.
+   * 
+   * @param minSize the smallest size
+   * @param maxSize the largest size
+   * @param minModified the earliest last-modified time
+   * @param maxModified the latest last-modified time
+   * @return whether a file in the ranges might match
+   */
+  public boolean acceptRanges(final long minSize,
+                              final long maxSize,
+                              final long minModified,
+                              final long maxModified)
+  {
+    for (Range range : ranges)
+    {
+      if (!range.overlaps(minSize, maxSize, minModified, maxModified))
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Determines if the path of the folder holding a file
+   * matches.
+   * 
+   * @param path the path of the folder
+   * @return whether the path matches
+   */
+  public boolean acceptPath(final String path)
+  {
+    final String str = ((path == null) ? "" : path);
+    for (Clause clause : paths)
+    {
+      if (clause.filter.accept(str) == clause.negated)
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Determines if the term matches the source term.  The size
+   * and time are checked by acceptAttributes(), and the path
+   * by acceptPath().
+   * 
+   * @param word the term to compare to the source term
+   * @return whether the terms match
+   */
+  public boolean accept(final String word)
+  {
+    // Check the input
+    if (word == null)
+    {
+      return false;
+    }
+    
+    // Stop at the first condition that fails
+    for (Clause clause : clauses)
+    {
+      if (clause.filter.accept(word) == clause.negated)
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Return the strings that every accepted word must contain,
+   * ignoring case.
+   * 
+   * @return the required strings
+   */
+  public List<String> getLiterals()
+  {
+    List<String> list = new ArrayList<String>(clauses.length);
+    for (Clause clause : clauses)
+    {
+      if (!clause.negated)
+      {
+        list.addAll(clause.literals);
+      }
+    }
+    
+    return list;
+  }
+  
+  
+  /**
+   * A condition in the query, before it is parsed.
+   */
+  private static final class Token
+  {
+    /**
+     * The text of the condition, without quotes.
+     */
+    private final StringBuilder text = new StringBuilder(20);
+    
+    /**
+     * The position in the text of the first quote, or -1.
+     */
+    private int firstQuote = -1;
+    
+    /**
+     * Whether the condition is negated.
+     */
+    private boolean negated = false;
+    
+    
+    /**
+     * Default constructor.
+     */
+    public Token()
+    {
+      super();
+    }
+  }
+  
+  
+  /**
+   * A condition on the name.
+   */
+  private static final class Clause
+  {
+    /**
+     * The filter for the name.
+     */
+    private final TermFilter filter;
+    
+    /**
+     * Whether the condition is negated.
+     */
+    private final boolean negated;
+    
+    /**
+     * The cost of checking the condition.
+     */
+    private final int cost;
+    
+    /**
+     * The strings each name matching the filter contains.
+     */
+    private final List<String> literals;
+    
+    
+    /**
+     * Constructor.  The literals are taken from the filter.
+     * 
+     * @param pFilter the filter for the name
+     * @param bNegated whether the condition is negated
+     * @param nCost the cost of checking the condition
+     */
+    public Clause(final TermFilter pFilter,
+                  final boolean bNegated,
+                  final int nCost)
+    {
+      super();
+      filter = pFilter;
+      negated = bNegated;
+      cost = nCost;
+      literals = ((pFilter instanceof LiteralFilter) ? ((LiteralFilter) pFilter).getLiterals()
+                                                     : new ArrayList<String>(0));
+    }
+    
+    
+    /**
+     * Constructor, with a string the names must contain.
+     * 
+     * @param pFilter the filter for the name
+     * @param bNegated whether the condition is negated
+     * @param nCost the cost of checking the condition
+     * @param literal the string each name matching the filter contains
+     */
+    public Clause(final TermFilter pFilter,
+                  final boolean bNegated,
+                  final int nCost,
+                  final String literal)
+    {
+      super();
+      filter = pFilter;
+      negated = bNegated;
+      cost = nCost;
+      literals = new ArrayList<String>(1);
+      literals.add(literal);
+    }
+  }
+  
+  
+  /**
+   * A condition on the size or time.
+   */
+  private static final class Range
+  {
+    /**
+     * Whether this checks the time, instead of the size.
+     */
+    private final boolean isTime;
+    
+    /**
+     * The lowest matching value.
+     */
+    private final long low;
+    
+    /**
+     * The highest matching value.
+     */
+    private final long high;
+    
+    /**
+     * Whether the condition is negated.
+     */
+    private final boolean negated;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param bIsTime whether this checks the time
+     * @param lLow the lowest matching value
+     * @param lHigh the highest matching value
+     * @param bNegated whether the condition is negated
+     */
+    public Range(final boolean bIsTime,
+                 final long lLow,
+                 final long lHigh,
+                 final boolean bNegated)
+    {
+      super();
+      isTime = bIsTime;
+      low = lLow;
+      high = lHigh;
+      negated = bNegated;
+    }
+    
+    
+    /**
+     * Determines if the size and time of a file match.
+     * 
+     * @param size the size of the file
+     * @param lastModified the last-modified time of the file
+     * @return whether the file matches
+     */
+    public boolean accept(final long size, final long lastModified)
+    {
+      final long value = (isTime ? lastModified : size);
+      return (((value >= low) && (value <= high)) != negated);
+    }
+    
+    
+    /**
+     * Determines if a file with a size and time in the ranges
+     * might match.
+     * 
+     * @param minSize the smallest size
+     * @param maxSize the largest size
+     * @param minModified the earliest last-modified time
+     * @param maxModified the latest last-modified time
+     * @return whether a file in the ranges might match
+     */
+    public boolean overlaps(final long minSize,
+                            final long maxSize,
+                            final long minModified,
+                            final long maxModified)
+    {
+      final long min = (isTime ? minModified : minSize);
+      final long max = (isTime ? maxModified : maxSize);
+      if (negated)
+      {
+        // Some value must be outside of the range
+        return ((min < low) || (max > high));
+      }
+      
+      return ((max >= low) && (min <= high));
+    }
+  }
+}
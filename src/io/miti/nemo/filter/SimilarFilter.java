@@ -32,12 +32,14 @@ package io.miti.nemo.filter;
  * Provide a filter for search terms that only
  * accepts matches where the term passed to accept()
  * is similar to the string passed in the
- * constructor.
+ * constructor.  The Levenshtein distance is computed
+ * with Myers' bit-vector algorithm, and stops as soon
+ * as the distance can't be within the maximum.
  * 
  * @author mwallace
  * @version 1.0
  */
-public final class SimilarFilter implements TermFilter
+public final class SimilarFilter implements FuzzyFilter, FoldedFilter
 {
   /**
    * The source term.
@@ -54,6 +56,12 @@ public final class SimilarFilter implements TermFilter
    */
   private int maxScore = 0;
   
+  /**
+   * Compares names to the term, in upper case if the case
+   * is ignored.
+   */
+  private Levenshtein matcher = null;
+  
   
   /**
    * Default constructor.
@@ -80,6 +88,10 @@ public final class SimilarFilter implements TermFilter
     term = word;
     ignoreCase = bIgnoreCase;
     maxScore = maxDistance;
+    if (term != null)
+    {
+      matcher = new Levenshtein(ignoreCase ? term.toUpperCase() : term);
+    }
   }
   
   
@@ -103,17 +115,21 @@ public final class SimilarFilter implements TermFilter
       return false;
     }
     
-    // Neither is null, so check how to compare the strings
+    // Neither is null, so check how to compare the strings.
+    // The characters of the word are converted one at a time,
+    // unless one of them has a special upper case.
     int score = 0;
-    if (ignoreCase)
+    if (!ignoreCase)
     {
-      // Ignore the case
-      score = getScore(term.toUpperCase(), word.toUpperCase());
+      score = matcher.distance(word, false, maxScore);
+    }
+    else if (FilterUtility.hasSimpleUpperCase(word))
+    {
+      score = matcher.distance(word, true, maxScore);
     }
     else
     {
-      // Consider the case
-      score = getScore(term, word);
+      return acceptFolded(word.toUpperCase());
     }
     
     // Return whether the computed score is at or below the threshold
@@ -122,89 +138,49 @@ public final class SimilarFilter implements TermFilter
   
   
   /**
-   * Returns the minimum of three integers.
+   * Determines if a word is similar to the source term, when
+   * the word is already in upper case.
    * 
-   * @param a the first number
-   * @param b the second number
-   * @param c the third number
-   * @return the minimum of three numbers
+   * @param upperWord the word to check, in upper case
+   * @return whether the word is similar to the term
    */
-  private static int minimum(final int a, final int b, final int c)
+  public boolean acceptFolded(final String upperWord)
   {
-    return (Math.min(a, Math.min(b, c)));
+    return ((upperWord != null) && (term != null) &&
+            (matcher.distance(upperWord, false, maxScore) <= maxScore));
   }
   
   
   /**
-   * Computes and returns the Levenshtein score to indicate
-   * how similar the two strings are.
+   * Return the term that names are compared to.
    * 
-   * @param s First string to compare
-   * @param t Second string to compare
-   * @return the Levenshtein rating
+   * @return the term
    */
-  private int getScore(final String s, final String t)
+  public String getTerm()
   {
-    // Return the Levenshtein rating
-    int[][] d; // matrix
-    int n; // length of s
-    int m; // length of t
-    int i; // iterates through s
-    int j; // iterates through t
-    char s_i; // ith character of s
-    char t_j; // jth character of t
-    int cost; // cost
-    
-    // Step 1
-    n = s.length();
-    m = t.length();
-    if (n == 0)
-    {
-      return m;
-    }
-    if (m == 0)
-    {
-      return n;
-    }
-    d = new int[n+1][m+1];
-    
-    // Step 2
-    for (i = 0; i <= n; i++)
-    {
-      d[i][0] = i;
-    }
-    
-    for (j = 0; j <= m; j++)
-    {
-      d[0][j] = j;
-    }
-    
-    // Step 3
-    for (i = 1; i <= n; i++)
-    {
-      s_i = s.charAt(i - 1);
-      
-      // Step 4
-      for (j = 1; j <= m; j++)
-      {
-        t_j = t.charAt(j - 1);
-        
-        // Step 5
-        if (s_i == t_j)
-        {
-          cost = 0;
-        }
-        else
-        {
-          cost = 1;
-        }
-        
-        // Step 6
-        d[i][j] = minimum(d[i-1][j]+1, d[i][j-1]+1, d[i-1][j-1] + cost);
-      }
-    }
-    
-    // Step 7
-    return d[n][m];
+    return term;
+  }
+  
+  
+  /**
+   * Return the maximum distance between the term and an
+   * accepted name.
+   * 
+   * @return the maximum distance
+   */
+  public int getMaxDistance()
+  {
+    return maxScore;
+  }
+  
+  
+  /**
+   * Return whether the case is ignored.
+   * 
+   * @return whether the case is ignored
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
   }
 }
@@ -36,8 +36,13 @@ package io.miti.nemo.filter;
  * @author mwallace
  * @version 1.0
  */
-public final class SoundFilter implements TermFilter
+public final class SoundFilter implements PhoneticFilter
 {
+  /**
+   * The encoder for the Soundex codes.
+   */
+  private static final Soundex SOUNDEX = new Soundex();
+  
   /**
    * The soundex code for source term.
    */
@@ -68,7 +73,7 @@ public final class SoundFilter implements TermFilter
    */
   public SoundFilter(final String word, final boolean bIgnoreCase)
   {
-    termCode = getSoundexCode(word);
+    termCode = SOUNDEX.encode(word);
     ignoreCase = bIgnoreCase;
   }
   
@@ -82,7 +87,7 @@ public final class SoundFilter implements TermFilter
   public boolean accept(final String word)
   {
     // Compute the soundex code
-    final String wordCode = getSoundexCode(word);
+    final String wordCode = SOUNDEX.encode(word);
     
     // Neither is null, so check how to compare the strings
     if (ignoreCase)
@@ -99,139 +104,34 @@ public final class SoundFilter implements TermFilter
   
   
   /**
-   * Returns the integer value for a character.
+   * Return the encoder used for the codes.
    * 
-   * @param ch the character to get the value for
-   * @return the value for the specified character
+   * @return the encoder
    */
-  private static int getIntValue(final char ch)
+  public PhoneticEncoder getEncoder()
   {
-    int n = 0;
-    
-    switch (ch)
-    {
-      case 'b':
-      case 'f':
-      case 'p':
-      case 'v':
-      {
-        n = 1;
-        break;
-      }
-    
-      case 'c':
-      case 'g':
-      case 'j':
-      case 'k':
-      case 'q':
-      case 's':
-      case 'x':
-      case 'z':
-      {
-        n = 2;
-        break;
-      }
-    
-      case 'd':
-      case 't':
-      {
-        n = 3;
-        break;
-      }
-    
-      case 'l':
-      {
-        n = 4;
-        break;
-      }
-    
-      case 'm':
-      case 'n':
-      {
-        n = 5;
-        break;
-      }
-    
-      case 'r':
-      {
-        n = 6;
-        break;
-      }
-    
-      default:
-        n = 0;
-    }
-    
-    return n;
+    return SOUNDEX;
   }
   
   
   /**
-   * Calculates the Soundex code for a string.
+   * Return the code for the term.
    * 
-   * @param sInput the input string
-   * @return the Soundex code for the string
+   * @return the code for the term
    */
-  private static String getSoundexCode(final String sInput)
+  public String getTermCode()
   {
-    // Check the input
-    if ((sInput == null) || (sInput.length() < 1))
-    {
-      return "";
-    }
-    
-    // Declare our string variable to hold the soundex code
-    StringBuilder buf = new StringBuilder(10);
-    
-    // The first character of the string is the start
-    // of the soundex code
-    buf.append(sInput.charAt(0));
-    
-    // Convert the string to lower case
-    final String sWord = sInput.toLowerCase();
-    
-    // Save the value of the first character, to check
-    // for duplicates later
-    int nPrevValue = getIntValue(sWord.charAt(0));
-    
-    // Initialize this variable
-    int nCurrValue = -1;
-    
-    // Save the length of the string
-    final int nLen = sWord.length();
-    
-    // Iterate over each character in the word, until
-    // we have enough to fill the soundex code (the
-    // form is A999 - a character followed by 3 digits).
-    for (int i = 1; (i < nLen) && (buf.length() < 4); ++i)
-    {
-      // Get the integer value for the current character
-      nCurrValue = getIntValue(sWord.charAt(i));
-      
-      // Make sure the current value is not a duplicate of
-      // the previous value, and the current value is non-zero
-      if ((nCurrValue != nPrevValue) && (nCurrValue != 0))
-      {
-        buf.append(Integer.toString(nCurrValue));
-      }
-      
-      // Save the current value as the previous value
-      nPrevValue = nCurrValue;
-    }
-    
-    // Check the length of the string
-    int nSize = buf.length() - 4;
-    if (nSize < 0)
-    {
-      // The string is too short, so append zeros
-      while (nSize < 0)
-      {
-        buf.append("0");
-        ++nSize;
-      }
-    }
-    
-    // Return the generated soundex code for the input string
-    return buf.toString();
+    return termCode;
+  }
+  
+  
+  /**
+   * Return whether the case is ignored when comparing codes.
+   * 
+   * @return whether the case is ignored
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
   }
 }
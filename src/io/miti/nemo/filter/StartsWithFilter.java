@@ -37,7 +37,7 @@ package io.miti.nemo.filter;
  * @author mwallace
  * @version 1.0
  */
-public final class StartsWithFilter implements TermFilter
+public final class StartsWithFilter implements FoldedFilter, DictionaryFilter
 {
   /**
    * The source term.
@@ -49,6 +49,11 @@ public final class StartsWithFilter implements TermFilter
    */
   private boolean ignoreCase = false;
   
+  /**
+   * The source term in upper case, if the case is ignored.
+   */
+  private String upperTerm = null;
+  
   
   /**
    * Default constructor.
@@ -71,6 +76,10 @@ public final class StartsWithFilter implements TermFilter
   {
     term = word;
     ignoreCase = bIgnoreCase;
+    if (ignoreCase && (term != null))
+    {
+      upperTerm = term.toUpperCase();
+    }
   }
   
   
@@ -97,8 +106,14 @@ public final class StartsWithFilter implements TermFilter
     // Neither is null, so check how to compare the strings
     if (ignoreCase)
     {
-      // Ignore the case
-      return (word.toUpperCase().startsWith(term.toUpperCase()));
+      // Ignore the case, comparing one character at a time
+      // unless the word has characters with a special upper case
+      if (FilterUtility.hasSimpleUpperCase(word))
+      {
+        return (FilterUtility.regionMatchesUpper(word, 0, upperTerm));
+      }
+      
+      return acceptFolded(word.toUpperCase());
     }
     else
     {
@@ -106,4 +121,62 @@ public final class StartsWithFilter implements TermFilter
       return (word.startsWith(term));
     }
   }
+  
+  
+  /**
+   * Return whether the case is ignored.
+   * 
+   * @return whether the case is ignored
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if a word matches the source term, when the
+   * word is already in upper case.
+   * 
+   * @param upperWord the word to check, in upper case
+   * @return whether the word matches
+   */
+  public boolean acceptFolded(final String upperWord)
+  {
+    return ((upperWord != null) && (upperTerm != null) &&
+            upperWord.startsWith(upperTerm));
+  }
+  
+  
+  /**
+   * Return the source term.
+   * 
+   * @return the source term
+   */
+  public String getTerm()
+  {
+    return term;
+  }
+  
+  
+  /**
+   * Return whether accepted words start with the term.
+   * 
+   * @return true
+   */
+  public boolean isPrefix()
+  {
+    return true;
+  }
+  
+  
+  /**
+   * Return whether accepted words end with the term.
+   * 
+   * @return false
+   */
+  public boolean isSuffix()
+  {
+    return false;
+  }
 }
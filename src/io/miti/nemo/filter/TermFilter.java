@@ -30,7 +30,9 @@ package io.miti.nemo.filter;
 
 /**
  * This defines the TermFilter interface, used to provide a
- * filter for terms returned by the search.
+ * filter for terms returned by the search.  Stores are searched
+ * in parallel with the same filter, so accept() must not change
+ * the state of the filter.
  * 
  * @author mwallace
  * @version 1.0
@@ -41,13 +41,28 @@ import java.util.StringTokenizer;
  * @author mwallace
  * @version 1.0
  */
-public final class WildcardFilter implements TermFilter
+public final class WildcardFilter implements LiteralFilter, FoldedFilter
 {
   /**
    * The list of substrings in the string with wildcards.
    */
   private List<String> fields = new ArrayList<String>(8);
   
+  /**
+   * The parts of the pattern between the '*' characters.
+   */
+  private String[] parts = new String[0];
+  
+  /**
+   * Whether the first part must be at the start of the target.
+   */
+  private boolean anchorStart = false;
+  
+  /**
+   * Whether the last part must be at the end of the target.
+   */
+  private boolean anchorEnd = false;
+  
   /**
    * Whether to ignore the case.
    */
@@ -75,6 +90,20 @@ public final class WildcardFilter implements TermFilter
   {
     ignoreCase = bIgnoreCase;
     parsePattern(word);
+    
+    // Save the parts between the '*' characters, and whether
+    // the pattern starts or ends with one
+    List<String> list = new ArrayList<String>(fields.size());
+    for (String field : fields)
+    {
+      if (field != null)
+      {
+        list.add(field);
+      }
+    }
+    parts = list.toArray(new String[list.size()]);
+    anchorStart = ((fields.size() > 0) && (fields.get(0) != null));
+    anchorEnd = ((fields.size() > 0) && (fields.get(fields.size() - 1) != null));
   }
   
   
@@ -103,6 +132,32 @@ public final class WildcardFilter implements TermFilter
   }
   
   
+  /**
+   * Return the strings that every accepted word must contain.
+   * These are the parts of the pattern between the wildcards.
+   * 
+   * @return the parts of the pattern without wildcards
+   */
+  public List<String> getLiterals()
+  {
+    List<String> list = new ArrayList<String>(8);
+    for (String field : fields)
+    {
+      // Skip the '*' fields, and split the rest on '?'
+      if (field != null)
+      {
+        StringTokenizer tokenizer = new StringTokenizer(field, "?");
+        while (tokenizer.hasMoreTokens())
+        {
+          list.add(tokenizer.nextToken());
+        }
+      }
+    }
+    
+    return list;
+  }
+  
+  
   /**
    * Returns whether target fits the pattern in pat.
    *
@@ -126,337 +181,196 @@ public final class WildcardFilter implements TermFilter
         {
           return false;
         }
+        else if (FilterUtility.hasSimpleUpperCase(target))
+        {
+          // Compare the characters in upper case, one at a time
+          return matchString(target, true);
+        }
         else
         {
-          return matchString(target.toUpperCase());
+          // Some characters have a special upper case, so
+          // convert the whole string
+          return acceptFolded(target.toUpperCase());
         }
       }
     }
     else
     {
-      return matchString(target);
+      return matchString(target, false);
     }
   }
   
   
   /**
-   * Returns whether target fits the pattern in pat.  This
-   * method assumes a match should be case-sensitive.
+   * Returns whether target fits the pattern in pat.  If the
+   * case is ignored, the pattern is already in upper case,
+   * and each character of target is converted if fold is set.
+   * The first part of the pattern must match at the start of
+   * target (unless the pattern starts with a '*'), and the
+   * last part at the end (unless the pattern ends with a '*').
+   * The parts in between are found in order, each as far to
+   * the left as it can go, which finds a match if there is
+   * one, without going back to try other positions.
    *
    * @param target The target string to compare against the pattern
+   * @param fold whether to convert target to upper case
    * @return whether target fits the pattern in pat
    */
-  private boolean matchString(final String target)
+  private boolean matchString(final String target, final boolean fold)
   {
-    // Store whether a match was found.  The initial value
-    // doesn't matter since we handle all cases below.
-    boolean match = false;
-    
     // Check the inputs.  If no pattern, assume it's a match.
-    if ((fields == null) || (fields.size() == 0))
+    if (fields.size() == 0)
     {
-      match = true;
-    }
-    else
-    {
-      // If we reach here, pattern is non-null and non-empty.  If target
-      // is null or empty, consider it a non-match.
-      if ((target == null) || (target.length() == 0))
-      {
-        match = false;
-      }
-      else
-      {
-        // Check for just a *, or no * at all
-        if (fields.size() == 1)
-        {
-          // Just one element in the list, meaning pat was either '*' or had
-          // no wildcards.
-          final String pat = fields.get(0);
-          if (null == pat)
-          {
-            // Just a * in the input, so it matches
-            match = true;
-          }
-          else
-          {
-            // No *, so return whether they're equal
-            match = equalsWild(target, pat);
-          }
-        }
-        else
-        {
-          // OK, call the pattern finder
-          match = findMatch(0, target, 0);
-        }
-      }
+      return true;
     }
     
-    // Return whether a match was found
-    return match;
-  }
-  
-  
-  /**
-   * This is a recursive method that does the work
-   * of checking for a match.  In the unoptimized
-   * version, this should only be called by the method
-   * matchFound.
-   *
-   * @param nCurrPart The current part of the list we're checking
-   * @param target The string to compare against
-   * @param nCurrIndex The current index of target
-   * @return whether the pattern matches the target string
-   */
-  private boolean findMatch(final int nCurrPart,
-                            final String target,
-                            final int nCurrIndex)
-  {
-    // Default return value
-    boolean found = false;
-    
-    // Check if we're looking past the end of the list
-    if (nCurrPart >= fields.size())
+    // If we reach here, pattern is non-null and non-empty.  If target
+    // is null or empty, consider it a non-match.
+    if ((target == null) || (target.length() == 0))
     {
-      // We hit the end, so return.  I don't think this code
-      // is ever reached, but it's here just in case.
-      return true;
+      return false;
     }
     
-    // Save the current string in its own variable
-    String part = fields.get(nCurrPart);
+    // The range of target left to match, and the parts of the
+    // pattern left to find in it
+    int start = 0;
+    int end = target.length();
+    int first = 0;
+    int last = parts.length;
     
-    // Check if we're trying to find a match past the end of target
-    if (nCurrIndex >= target.length())
+    // Check the start of target
+    if (anchorStart)
     {
-      // If 'part' is * (null), return true; else, no match.
-      return (part == null);
+      if (!regionMatchesWild(target, 0, end, parts[0], fold))
+      {
+        return false;
+      }
+      
+      start = parts[0].length();
+      ++first;
     }
-    else
+    
+    // Check the end of target, after the start
+    if (anchorEnd)
     {
-      // Check if we're on a *
-      if (part == null)
+      if (first == last)
       {
-        // We hit a *, so we're either at the start of the string, or at the end
-        if (nCurrPart == 0)
-        {
-          // It starts with *, so start looking with the next element of list
-          return (findMatch(1, target, 0)); 
-        }
-        else
-        {
-          // We're at the end of the list, so assume it matches
-          // (pattern ends with '*')
-          return true;
-        }
+        // There are no wildcards, so the start must be all of it
+        return (start == end);
       }
-      else
+      
+      end -= parts[last - 1].length();
+      if ((end < start) ||
+          !regionMatchesWild(target, end, target.length(), parts[last - 1], fold))
       {
-        // See if we're looking at the last field
-        if (nCurrPart == (fields.size() - 1))
-        {
-          // We are, so return whether the target string ends with this string
-          return (endsWithWild(target, part));
-        }
-        
-        // Save the length
-        final int nLen = part.length();
-        
-        // Find the next occurrence of s[nCurrPart], starting after
-        // the current index
-        int foundIndex = indexOfWild(target, part, nCurrIndex);
-        
-        // Keep looking until the subsequent s partitions are all found
-        while ((foundIndex >= 0) && (!found))
-        {
-          // If there was no wildcard before 'part' (nCurrPart = 0), and
-          // the string was found after the point we started looking, then
-          // return false.
-          if ((foundIndex > nCurrIndex) && (nCurrPart == 0))
-          {
-            return false;
-          }
-          
-          // Find the next occurrence of the next s elements, starting after
-          // the end of the current match
-          found = findMatch((nCurrPart + 1), target, (foundIndex + nLen));
-          
-          // If no match found, find the next occurrence of part in target
-          if (!found)
-          {
-            // Store where it was found (if at all)
-            foundIndex = indexOfWild(target, part, ++foundIndex);
-          }
-        }
+        return false;
       }
+      
+      --last;
     }
     
-    // Return whether a match was found (in target) for the current element
-    // of list and all subsequent elements of list.
-    return found;
-  }
-  
-  
-  /**
-   * This method determines whether two strings are equal.
-   * The 'part' argument is allowed to have a '?', which
-   * is interpreted to mean any single character.
-   *
-   * @param target The target string to compare with
-   * @param part The string with zero or more '?' characters
-   * @return whether the two strings match
-   */
-  private boolean equalsWild(final String target,
-                             final String part)
-  {
-    boolean bEquals = true;
-    
-    // Check the input strings
-    if ((target == null) || (part == null))
-    {
-      return false;
-    }
-    
-    // Check if part has a wildcard
-    if (part.indexOf("?") < 0)
-    {
-      // No wildcard, so call the String::indexOf() function
-      return target.equals(part);
-    }
-    
-    // part has a wildcard
-    // Check the length
-    if (target.length() != part.length())
-    {
-      // Lengths are different
-      return false;
-    }
-    
-    // The lengths are the same, so check each character
-    final int nLen = target.length();
-    for (int nIndex = 0; (nIndex < nLen) && (bEquals); ++nIndex)
+    // Find the parts in between, in order
+    for (int i = first; i < last; ++i)
     {
-      // Save the current character in each string
-      char targetChar = target.charAt(nIndex);
-      char partChar = part.charAt(nIndex);
-      
-      // Check for a mismatch
-      if ((partChar != '?') && (partChar != targetChar))
+      final int index = indexOfWild(target, parts[i], start, end, fold);
+      if (index < 0)
       {
-        // The characters don't match, and the current part character
-        // is not a question mark, so the strings don't match
-        bEquals = false;
+        return false;
       }
+      
+      start = index + parts[i].length();
     }
     
-    // Return whether the strings are equal
-    return bEquals;
+    // Every part was found
+    return true;
   }
   
   
   /**
-   * This method determines whether 'target' ends with 'part'.
+   * This method checks for the existence of the string 'part'
+   * within the string 'target', between fromIndex and toIndex.
    * The 'part' argument is allowed to have a '?', which is
    * interpreted to mean any single character.
    *
    * @param target The target string to compare with
    * @param part The string with zero or more '?' characters
-   * @return whether target ends with part
+   * @param fromIndex the starting index of target
+   * @param toIndex the index in target that part must end by
+   * @param fold whether to convert target to upper case
+   * @return the index at which part exists within target, or -1
    */
-  private boolean endsWithWild(final String target,
-                               final String part)
+  private static int indexOfWild(final String target,
+                                 final String part,
+                                 final int fromIndex,
+                                 final int toIndex,
+                                 final boolean fold)
   {
-    // Check the input strings
-    if ((target == null) || (part == null))
-    {
-      return false;
-    }
-    
-    // Check if part has a wildcard
-    if (part.indexOf("?") < 0)
-    {
-      // No wildcard, so call the String::indexOf() function
-      return target.endsWith(part);
-    }
-    
-    // part has a wildcard
-    // Check the length
-    if (target.length() < part.length())
+    // Check for the existence of part as a substring in target
+    final int nLast = toIndex - part.length();
+    for (int nIndex = fromIndex; nIndex <= nLast; ++nIndex)
     {
-      // The string isn't long enough
-      return false;
+      if (regionMatchesWild(target, nIndex, toIndex, part, fold))
+      {
+        return nIndex;
+      }
     }
     
-    // Get the end of the target string
-    String targetEnd = target.substring(target.length() - part.length());
-    
-    // Return whether targetEnd equals part
-    return equalsWild(targetEnd, part);
+    // Not found
+    return -1;
   }
   
   
   /**
-   * This method checks for the existence of the string 'part'
-   * within the string 'target', starting at target[fromIndex].
-   * The 'part' argument is allowed to have a '?', which is
-   * interpreted to mean any single character.
-   *
+   * This method determines whether the characters of 'target'
+   * starting at 'offset' match 'part', without creating a
+   * substring.  The 'part' argument is allowed to have a '?',
+   * which is interpreted to mean any single character.
+   * 
    * @param target The target string to compare with
+   * @param offset the starting index of target
+   * @param toIndex the index in target that part must end by
    * @param part The string with zero or more '?' characters
-   * @param fromIndex the starting index of target
-   * @return the index at which part exists within target
+   * @param fold whether to convert target to upper case
+   * @return whether the characters match
    */
-  private int indexOfWild(final String target,
-                          final String part,
-                          final int fromIndex)
+  private static boolean regionMatchesWild(final String target,
+                                           final int offset,
+                                           final int toIndex,
+                                           final String part,
+                                           final boolean fold)
   {
-    // Declare needed variables
-    boolean bFound = false;
-    int nFoundIndex = fromIndex;
-    
-    // Check the input strings
-    if ((target == null) || (part == null) || (fromIndex < 0))
-    {
-      return -1;
-    }
-    
-    // Check if part has a wildcard
-    if (part.indexOf("?") < 0)
-    {
-      // No wildcard, so call the String::indexOf() function
-      return target.indexOf(part, fromIndex);
-    }
-    
-    // part has a wildcard
-    // Check the starting index
-    final int nTargetLen = target.length();
-    final int nPartLen = part.length();
-    if ((nPartLen + fromIndex) > nTargetLen)
+    // Check the length
+    final int nLen = part.length();
+    if ((offset + nLen) > toIndex)
     {
-      // The starting index is too high
-      return -1;
+      return false;
     }
     
-    // Check for the existence of part as a substring in target
-    for (int nIndex = fromIndex; (!bFound) &&
-         ((nPartLen + nIndex) <= nTargetLen); ++nIndex)
+    // Check each character
+    for (int nIndex = 0; nIndex < nLen; ++nIndex)
     {
-      String targetSub = target.substring(nIndex, (nIndex + nPartLen));
-      if (equalsWild(targetSub, part))
+      // Save the current character in each string
+      final char partChar = part.charAt(nIndex);
+      if (partChar == '?')
       {
-        nFoundIndex = nIndex;
-        bFound = true;
+        continue;
+      }
+      
+      char targetChar = target.charAt(offset + nIndex);
+      if (fold)
+      {
+        targetChar = FilterUtility.toUpperCase(targetChar);
+      }
+      
+      // Check for a mismatch
+      if (partChar != targetChar)
+      {
+        return false;
       }
     }
     
-    // Check if not found
-    if (!bFound)
-    {
-      return -1;
-    }
-    
-    // Return the index that part was found at in target
-    return nFoundIndex;
+    // The strings match
+    return true;
   }
   
   
@@ -511,4 +425,28 @@ public final class WildcardFilter implements TermFilter
       }
     }
   }
+  
+  
+  /**
+   * Return whether the case is ignored.
+   * 
+   * @return whether the case is ignored
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if a word matches the source term, when the
+   * word is already in upper case.
+   * 
+   * @param upperWord the word to check, in upper case
+   * @return whether the word matches
+   */
+  public boolean acceptFolded(final String upperWord)
+  {
+    return ((upperWord != null) && matchString(upperWord, false));
+  }
 }
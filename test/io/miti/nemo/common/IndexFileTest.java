@@ -0,0 +1,801 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.ContainsFilter;
+import io.miti.nemo.test.TestCase;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for IndexFile, IndexInput and IndexOutput.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class IndexFileTest extends TestCase
+{
+  /**
+   * The ints written by the round-trip tests.
+   */
+  private static final int[] INTS = {0, 1, 127, 128, 255, 16383, 16384,
+    Integer.MAX_VALUE, Integer.MIN_VALUE, -1};
+  
+  /**
+   * The longs written by the round-trip tests.
+   */
+  private static final long[] LONGS = {0L, 1L, 127L, 128L, (1L << 35), (1L << 56),
+    Long.MAX_VALUE, Long.MIN_VALUE, -1L, -128L};
+  
+  /**
+   * The strings written by the round-trip tests.
+   */
+  private static final String[] STRINGS = {"", "a", "readme.txt",
+    "stra\u00dfe \u0130stanbul \u65e5\u672c", "\ud83d\ude00.png"};
+  
+  
+  /**
+   * Default constructor.
+   */
+  public IndexFileTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check that every type of value reads back the same,
+   * through a file channel.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testChannelRoundTrip() throws IOException
+  {
+    File file = createTempFile();
+    try
+    {
+      final long end = writeValues(file);
+      assertEquals("file length", end, file.length());
+      
+      FileInputStream in = new FileInputStream(file);
+      try
+      {
+        checkValues(new IndexInput(in.getChannel()), end);
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that every type of value reads back the same,
+   * through a memory-mapped buffer.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testBufferRoundTrip() throws IOException
+  {
+    File file = createTempFile();
+    try
+    {
+      final long end = writeValues(file);
+      
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try
+      {
+        ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0L, end);
+        checkValues(new IndexInput(buffer), end);
+      }
+      finally
+      {
+        raf.close();
+      }
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that values and strings larger than the buffers
+   * are read back the same, and that seek() moves to an
+   * offset in a part of the file that isn't buffered.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testLargeValuesAndSeek() throws IOException
+  {
+    // Build a string and a byte array longer than the buffers
+    StringBuilder sb = new StringBuilder(100000);
+    for (int i = 0; i < 100000; ++i)
+    {
+      sb.append((char) ('a' + (i % 26)));
+    }
+    final String longString = sb.toString();
+    byte[] data = new byte[150000];
+    for (int i = 0; i < data.length; ++i)
+    {
+      data[i] = (byte) (i * 31);
+    }
+    
+    File file = createTempFile();
+    try
+    {
+      // Write the values, saving the offset of each one
+      long[] offsets = new long[4];
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+        IndexOutput output = new IndexOutput(out.getChannel());
+        offsets[0] = output.getOffset();
+        output.writeString(longString);
+        offsets[1] = output.getOffset();
+        output.writeBytes(data, 0, data.length);
+        offsets[2] = output.getOffset();
+        output.writeLong(Long.MIN_VALUE);
+        offsets[3] = output.getOffset();
+        output.writeVarInt(12345);
+        output.flush();
+      }
+      finally
+      {
+        out.close();
+      }
+      
+      // Read them back out of order
+      FileInputStream in = new FileInputStream(file);
+      try
+      {
+        IndexInput input = new IndexInput(in.getChannel());
+        input.seek(offsets[3]);
+        assertEquals("var int after seek", 12345, input.readVarInt());
+        input.seek(offsets[1]);
+        byte[] read = new byte[data.length];
+        input.readBytes(read, 0, read.length);
+        assertTrue("bytes", Arrays.equals(data, read));
+        assertEquals("offset after bytes", offsets[2], input.getOffset());
+        assertEquals("long", Long.MIN_VALUE, input.readLong());
+        input.seek(offsets[0]);
+        assertEquals("long string", longString, input.readString());
+        assertEquals("offset after string", offsets[1], input.getOffset());
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that reading past the end of the file fails.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testReadPastEnd() throws IOException
+  {
+    File file = createTempFile();
+    try
+    {
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+        IndexOutput output = new IndexOutput(out.getChannel());
+        output.writeByte(1);
+        output.writeByte(2);
+        output.flush();
+      }
+      finally
+      {
+        out.close();
+      }
+      
+      FileInputStream in = new FileInputStream(file);
+      try
+      {
+        IndexInput input = new IndexInput(in.getChannel());
+        input.readByte();
+        input.readByte();
+        input.readInt();
+        fail("Read past the end of the file");
+      }
+      catch (EOFException eofe)
+      {
+        // Expected
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that a store reads back with the same nodes.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testStoreRoundTrip() throws IOException
+  {
+    Store store = new Store("volume \u00e9t\u00e9", "/data/\u65e5\u672c");
+    Node root = buildTree();
+    store.setDataStore(root);
+    NodeTable expected = NodeTable.fromNode(root);
+    
+    File file = createTempFile();
+    try
+    {
+      IndexFile.write(file, store);
+      assertTrue("isBinary", IndexFile.isBinary(file));
+      
+      Store read = IndexFile.read(file);
+      assertEquals("name", store.getName(), read.getName());
+      assertEquals("directory", store.getDirectory(), read.getDirectory());
+      checkTable(expected, read.getNodeTable());
+      
+      // Writing the table that was read gives the same file
+      File copy = createTempFile();
+      try
+      {
+        IndexFile.write(copy, read);
+        assertTrue("rewritten file", Arrays.equals(readFile(file), readFile(copy)));
+      }
+      finally
+      {
+        copy.delete();
+      }
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that a store with only a root reads back the same.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testSingleNode() throws IOException
+  {
+    Node root = createNode("root", true, 0L, 1000L);
+    Store store = new Store("one", "/one");
+    store.setDataStore(root);
+    
+    File file = createTempFile();
+    try
+    {
+      IndexFile.write(file, store);
+      checkTable(NodeTable.fromNode(root), IndexFile.read(file).getNodeTable());
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that a file is only replaced once the new contents
+   * are complete, and that no temporary file is left behind.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testReplaceFile() throws IOException
+  {
+    Store store = new Store("old", "/old");
+    store.setDataStore(buildTree());
+    
+    File file = createTempFile();
+    try
+    {
+      IndexFile.write(file, store);
+      final byte[] data = readFile(file);
+      assertFalse("temporary file", Utility.getTempFile(file).exists());
+      
+      // A store without a name fails partway through the header
+      Store bad = new Store(null, "/bad");
+      bad.setDataStore(buildTree());
+      try
+      {
+        IndexFile.write(file, bad);
+        fail("Wrote a store without a name");
+      }
+      catch (RuntimeException re)
+      {
+        // Expected
+      }
+      
+      assertTrue("old contents", Arrays.equals(data, readFile(file)));
+      assertFalse("failed temporary file", Utility.getTempFile(file).exists());
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check reading the number of nodes from the header.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testReadNodeCount() throws IOException
+  {
+    Store store = new Store("count", "/count");
+    Node root = buildTree();
+    store.setDataStore(root);
+    
+    File file = createTempFile();
+    try
+    {
+      IndexFile.write(file, store);
+      assertEquals("node count", NodeTable.fromNode(root).getNodeCount(),
+                   IndexFile.readNodeCount(file));
+      
+      writeFile(file, "not an index file\n".getBytes("UTF-8"));
+      try
+      {
+        IndexFile.readNodeCount(file);
+        fail("Read the node count of a text file");
+      }
+      catch (IOException ioe)
+      {
+        // Expected
+      }
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that a mapped index finds the same names as the
+   * loaded store, and that once it is closed it can't be
+   * searched and the file can be replaced.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testMappedIndex() throws IOException
+  {
+    Store store = new Store("mapped", "/mapped");
+    store.setDataStore(buildTree());
+    
+    File file = createTempFile();
+    try
+    {
+      IndexFile.write(file, store);
+      List<SearchResult> results = new ArrayList<SearchResult>(10);
+      MappedIndex mapped = MappedIndex.open(file);
+      try
+      {
+        mapped.search(true, true, new ContainsFilter("README", true), new ListSink(results));
+      }
+      finally
+      {
+        mapped.close();
+      }
+      assertEquals("results", 2, results.size());
+      assertEquals("name", "readme.txt", results.get(0).getName());
+      
+      // The file can be replaced, and the index can't be searched
+      IndexFile.write(file, store);
+      try
+      {
+        mapped.search(true, true, new ContainsFilter("README", true), new ListSink(results));
+        fail("Searched a closed index");
+      }
+      catch (IOException ioe)
+      {
+        // Expected
+      }
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that files that aren't complete binary indexes
+   * are rejected.
+   * 
+   * @throws IOException error with the temporary file
+   */
+  public void testInvalidFiles() throws IOException
+  {
+    Store store = new Store("bad", "/bad");
+    store.setDataStore(buildTree());
+    
+    File file = createTempFile();
+    try
+    {
+      // An empty file and a text file aren't binary
+      assertFalse("empty file", IndexFile.isBinary(file));
+      writeFile(file, "not an index file\n".getBytes("UTF-8"));
+      assertFalse("text file", IndexFile.isBinary(file));
+      assertFalse("missing file", IndexFile.isBinary(new File(file.getPath() + ".none")));
+      checkReadFails(file);
+      
+      // A file without its footer is incomplete
+      IndexFile.write(file, store);
+      byte[] data = readFile(file);
+      writeFile(file, Arrays.copyOf(data, data.length - 4));
+      assertTrue("truncated file header", IndexFile.isBinary(file));
+      checkReadFails(file);
+      
+      // A newer version can't be read
+      data[7] = (byte) (IndexFile.VERSION + 1);
+      writeFile(file, data);
+      checkReadFails(file);
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that reading a file throws an IOException.
+   * 
+   * @param file the file to read
+   */
+  private static void checkReadFails(final File file)
+  {
+    try
+    {
+      IndexFile.read(file);
+      fail("Read an invalid file");
+    }
+    catch (IOException ioe)
+    {
+      // Expected
+    }
+  }
+  
+  
+  /**
+   * Write each type of value to a file.
+   * 
+   * @param file the file to write
+   * @return the offset of the end of the file
+   * @throws IOException error writing the file
+   */
+  private static long writeValues(final File file) throws IOException
+  {
+    FileOutputStream out = new FileOutputStream(file);
+    long end = 0L;
+    try
+    {
+      IndexOutput output = new IndexOutput(out.getChannel());
+      for (int i = 0; i < 256; ++i)
+      {
+        output.writeByte(i);
+      }
+      for (int value : INTS)
+      {
+        output.writeInt(value);
+        output.writeVarInt(value);
+      }
+      for (long value : LONGS)
+      {
+        output.writeLong(value);
+        output.writeVarLong(value);
+        output.writeSignedVarLong(value);
+      }
+      for (String str : STRINGS)
+      {
+        output.writeString(str);
+      }
+      
+      byte[] data = {1, 2, 3, 4, 5, 6, 7, 8};
+      output.writeBytes(data, 2, 4);
+      end = output.getOffset();
+      output.flush();
+      assertEquals("offset after flush", end, output.getOffset());
+    }
+    finally
+    {
+      out.close();
+    }
+    
+    return end;
+  }
+  
+  
+  /**
+   * Check the values written by writeValues().
+   * 
+   * @param input the input to read
+   * @param end the offset of the end of the file
+   * @throws IOException error reading the file
+   */
+  private static void checkValues(final IndexInput input, final long end)
+    throws IOException
+  {
+    for (int i = 0; i < 256; ++i)
+    {
+      assertEquals("byte", i, input.readByte());
+    }
+    for (int value : INTS)
+    {
+      assertEquals("int", value, input.readInt());
+      assertEquals("var int", value, input.readVarInt());
+    }
+    for (long value : LONGS)
+    {
+      assertEquals("long", value, input.readLong());
+      assertEquals("var long", value, input.readVarLong());
+      assertEquals("signed var long", value, input.readSignedVarLong());
+    }
+    for (String str : STRINGS)
+    {
+      assertEquals("string", str, input.readString());
+    }
+    
+    byte[] data = new byte[6];
+    input.readBytes(data, 1, 4);
+    assertEquals("bytes", new byte[] {0, 3, 4, 5, 6, 0}, data);
+    assertEquals("end offset", end, input.getOffset());
+  }
+  
+  
+  /**
+   * Check that two node tables hold the same nodes.
+   * 
+   * @param expected the expected table
+   * @param actual the table read from the file
+   */
+  private static void checkTable(final NodeTable expected, final NodeTable actual)
+  {
+    assertEquals("node count", expected.getNodeCount(), actual.getNodeCount());
+    assertEquals("name count", expected.getNameCount(), actual.getNameCount());
+    for (int i = 0; i < expected.getNodeCount(); ++i)
+    {
+      final String node = "node " + i + " ";
+      assertEquals(node + "name", expected.getNodeName(i), actual.getNodeName(i));
+      assertEquals(node + "directory", expected.isDirectory(i), actual.isDirectory(i));
+      assertEquals(node + "children", expected.getNumChildren(i), actual.getNumChildren(i));
+      assertEquals(node + "size", expected.getFileSize(i), actual.getFileSize(i));
+      assertEquals(node + "time", expected.getLastModified(i), actual.getLastModified(i));
+      assertEquals(node + "parent", expected.getParent(i), actual.getParent(i));
+      assertEquals(node + "path", expected.getPath(i), actual.getPath(i));
+    }
+  }
+  
+  
+  /**
+   * Build a tree of nodes with repeated and non-ASCII names,
+   * empty folders, extreme sizes and times, and a path
+   * deeper than the reader's initial stack of folders.
+   * 
+   * @return the root of the tree
+   */
+  private static Node buildTree()
+  {
+    Node root = createNode("root", true, 0L, 1700000000000L);
+    addChild(root, createNode("readme.txt", false, 1234L, 1600000000000L));
+    addChild(root, createNode("empty", true, 0L, 0L));
+    
+    Node sub = addChild(root, createNode("stra\u00dfe", true, 0L, -86400000L));
+    addChild(sub, createNode("readme.txt", false, Long.MAX_VALUE, Long.MAX_VALUE));
+    addChild(sub, createNode("\u65e5\u672c.doc", false, 0L, Long.MIN_VALUE));
+    addChild(sub, createNode("", false, 1L, 1L));
+    
+    // A chain of folders, with a file in each one
+    Node parent = root;
+    for (int i = 0; i < 40; ++i)
+    {
+      Node dir = addChild(parent, createNode("level" + (i % 3), true, 0L, i * 1000L));
+      addChild(dir, createNode("file" + i, false, i, 1600000000000L - i));
+      parent = dir;
+    }
+    addChild(root, createNode("last.txt", false, 99L, 1650000000000L));
+    
+    return root;
+  }
+  
+  
+  /**
+   * Create a node.
+   * 
+   * @param name the name of the node
+   * @param isDir whether the node is a folder
+   * @param size the size
+   * @param time the last-modified time
+   * @return the node
+   */
+  private static Node createNode(final String name,
+                                 final boolean isDir,
+                                 final long size,
+                                 final long time)
+  {
+    Node node = new Node();
+    node.setName(name);
+    node.setDirectory(isDir);
+    node.setFileSize(size);
+    node.setLastModified(time);
+    return node;
+  }
+  
+  
+  /**
+   * Add a child to a node.
+   * 
+   * @param parent the parent node
+   * @param child the child node
+   * @return the child node
+   */
+  private static Node addChild(final Node parent, final Node child)
+  {
+    parent.addChild(child);
+    child.setParent(parent);
+    return child;
+  }
+  
+  
+  /**
+   * Create an empty temporary file.
+   * 
+   * @return the file
+   * @throws IOException error creating the file
+   */
+  private static File createTempFile() throws IOException
+  {
+    File file = File.createTempFile("nemo", ".idx");
+    file.deleteOnExit();
+    return file;
+  }
+  
+  
+  /**
+   * Read the contents of a file.
+   * 
+   * @param file the file
+   * @return the contents
+   * @throws IOException error reading the file
+   */
+  private static byte[] readFile(final File file) throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    byte[] data = null;
+    try
+    {
+      data = new byte[(int) raf.length()];
+      raf.readFully(data);
+    }
+    finally
+    {
+      raf.close();
+    }
+    
+    return data;
+  }
+  
+  
+  /**
+   * Replace the contents of a file.
+   * 
+   * @param file the file
+   * @param data the new contents
+   * @throws IOException error writing the file
+   */
+  private static void writeFile(final File file, final byte[] data) throws IOException
+  {
+    FileOutputStream out = new FileOutputStream(file);
+    try
+    {
+      out.write(data);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+  
+  
+  /**
+   * A sink that adds the results to a list.
+   */
+  private static final class ListSink implements ResultSink
+  {
+    /**
+     * The list of results.
+     */
+    private final List<SearchResult> list;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param pList the list of results
+     */
+    public ListSink(final List<SearchResult> pList)
+    {
+      super();
+      list = pList;
+    }
+    
+    
+    /**
+     * Add a result to the list.
+     * 
+     * @param result the search result
+     */
+    public void add(final SearchResult result)
+    {
+      list.add(result);
+    }
+    
+    
+    /**
+     * The list is never full.
+     * 
+     * @return false
+     */
+    public boolean isFull()
+    {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.DictionaryFilter;
+import io.miti.nemo.filter.EndsWithFilter;
+import io.miti.nemo.filter.ExactMatchFilter;
+import io.miti.nemo.filter.FilterUtility;
+import io.miti.nemo.filter.StartsWithFilter;
+import io.miti.nemo.test.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Unit tests for NameDictionary.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class NameDictionaryTest extends TestCase
+{
+  /**
+   * The names in the test store.  Some have a character whose
+   * upper case isn't one character, so they are left out of
+   * the lists that ignore case.
+   */
+  private static final String[] NAMES = {"readme.txt", "README.TXT", "ReadMe.md",
+    "read", "Makefile", "makefile.am", "a", "A", "ab", "b", "ba", "", "x.y",
+    "z.txt", ".txt", "stra\u00dfe.txt", "STRASSE.txt", "\u0130stanbul", "istanbul",
+    "\u0131d", "\u01c5ungla", "\ufb01le.txt", "\u65e5\u672c.doc", "\ud83d\ude00.png",
+    "\u03a3\u03c3\u03c2.txt", "K\u212a", "\u00c5ngstr\u00f6m"};
+  
+  
+  /**
+   * Default constructor.
+   */
+  public NameDictionaryTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check that a search that matches case finds exactly the
+   * names each filter accepts, so each sorted list is in order.
+   */
+  public void testMatchCase()
+  {
+    NodeTable table = createTable();
+    NameDictionary dictionary = NameDictionary.build(table);
+    for (String term : getTerms())
+    {
+      for (DictionaryFilter filter : createFilters(term, false))
+      {
+        BitSet candidates = dictionary.findCandidates(filter);
+        for (int name = 0; name < table.getNameCount(); ++name)
+        {
+          final String message = filter.getClass().getSimpleName() + " '" + term +
+                                 "' for '" + table.getName(name) + "'";
+          assertEquals(message, filter.accept(table.getName(name)), candidates.get(name));
+        }
+      }
+    }
+  }
+  
+  
+  /**
+   * Check that a search that ignores case finds every name
+   * each filter accepts, and exactly those names when the
+   * name and the term are ASCII.  The names that can't be
+   * folded are always returned.
+   */
+  public void testIgnoreCase()
+  {
+    NodeTable table = createTable();
+    NameDictionary dictionary = NameDictionary.build(table);
+    for (String term : getTerms())
+    {
+      for (DictionaryFilter filter : createFilters(term, true))
+      {
+        BitSet candidates = dictionary.findCandidates(filter);
+        for (int name = 0; name < table.getNameCount(); ++name)
+        {
+          final String str = table.getName(name);
+          final String message = filter.getClass().getSimpleName() + " '" + term +
+                                 "' for '" + str + "'";
+          if (!FilterUtility.hasSimpleUpperCase(str))
+          {
+            assertTrue(message, candidates.get(name));
+          }
+          else if (isAscii(str) && isAscii(term))
+          {
+            assertEquals(message, filter.accept(str), candidates.get(name));
+          }
+          else if (filter.accept(str))
+          {
+            assertTrue(message, candidates.get(name));
+          }
+        }
+      }
+    }
+  }
+  
+  
+  /**
+   * Check that a dictionary reads back with the same sorted
+   * lists, and is only loaded for the same table while it is
+   * newer than the store's index file.
+   * 
+   * @throws IOException error with the temporary files
+   */
+  public void testRoundTrip() throws IOException
+  {
+    NodeTable table = createTable();
+    NameDictionary dictionary = NameDictionary.build(table);
+    
+    File indexFile = File.createTempFile("nemo", ".idx");
+    indexFile.deleteOnExit();
+    File file = NameDictionary.getFile(indexFile);
+    try
+    {
+      dictionary.write(file);
+      assertFalse("temporary file", Utility.getTempFile(file).exists());
+      
+      NameDictionary read = NameDictionary.read(file, table);
+      for (String term : getTerms())
+      {
+        for (int i = 0; i < 2; ++i)
+        {
+          for (DictionaryFilter filter : createFilters(term, (i == 0)))
+          {
+            assertEquals("candidates for " + term, dictionary.findCandidates(filter),
+                         read.findCandidates(filter));
+          }
+        }
+      }
+      
+      // The file must be for the same table
+      Node root = new Node();
+      root.setName("other");
+      root.setDirectory(true);
+      assertTrue("other table", NameDictionary.read(file, NodeTable.fromNode(root)) == null);
+      
+      // The file must be newer than the index file
+      final long time = (indexFile.lastModified() / 1000L) * 1000L;
+      assertTrue("set time", indexFile.setLastModified(time));
+      assertTrue("set time", file.setLastModified(time + 2000L));
+      assertTrue("current", NameDictionary.load(indexFile, table) != null);
+      assertTrue("set time", file.setLastModified(time - 2000L));
+      assertTrue("older", NameDictionary.load(indexFile, table) == null);
+    }
+    finally
+    {
+      file.delete();
+      indexFile.delete();
+    }
+  }
+  
+  
+  /**
+   * Return the filters that the dictionary can search for.
+   * 
+   * @param term the term
+   * @param ignoreCase whether to ignore case
+   * @return the filters
+   */
+  private static DictionaryFilter[] createFilters(final String term,
+                                                  final boolean ignoreCase)
+  {
+    return new DictionaryFilter[] {new StartsWithFilter(term, ignoreCase),
+      new EndsWithFilter(term, ignoreCase), new ExactMatchFilter(term, ignoreCase)};
+  }
+  
+  
+  /**
+   * Return the terms to search for: the start and end of each
+   * name, in its own case and in upper and lower case, and
+   * some that aren't in any name.
+   * 
+   * @return the terms
+   */
+  private static List<String> getTerms()
+  {
+    Set<String> terms = new LinkedHashSet<String>();
+    for (String name : NAMES)
+    {
+      for (int i = 0; i <= name.length(); ++i)
+      {
+        for (String term : new String[] {name.substring(0, i), name.substring(i)})
+        {
+          terms.add(term);
+          terms.add(term.toUpperCase(Locale.ROOT));
+          terms.add(term.toLowerCase(Locale.ROOT));
+        }
+      }
+    }
+    terms.add("zzz");
+    terms.add("strasse");
+    terms.add("STRA\u00dfE");
+    terms.add("FILE.TXT");
+    
+    return new ArrayList<String>(terms);
+  }
+  
+  
+  /**
+   * Return whether a string only has ASCII characters.
+   * 
+   * @param str the string
+   * @return whether the string is ASCII
+   */
+  private static boolean isAscii(final String str)
+  {
+    final int len = str.length();
+    for (int i = 0; i < len; ++i)
+    {
+      if (str.charAt(i) > 127)
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Build a table with each name in the root folder and again
+   * in a sub-folder.
+   * 
+   * @return the table of nodes
+   */
+  private static NodeTable createTable()
+  {
+    Node root = createNode("root", true);
+    Node sub = createNode("sub", true);
+    root.addChild(sub);
+    sub.setParent(root);
+    for (String name : NAMES)
+    {
+      Node node = createNode(name, false);
+      root.addChild(node);
+      node.setParent(root);
+      
+      node = createNode(name, false);
+      sub.addChild(node);
+      node.setParent(sub);
+    }
+    
+    return NodeTable.fromNode(root);
+  }
+  
+  
+  /**
+   * Create a node.
+   * 
+   * @param name the name of the node
+   * @param isDir whether the node is a folder
+   * @return the node
+   */
+  private static Node createNode(final String name, final boolean isDir)
+  {
+    Node node = new Node();
+    node.setName(name);
+    node.setDirectory(isDir);
+    return node;
+  }
+}
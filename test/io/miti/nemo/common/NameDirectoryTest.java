@@ -0,0 +1,393 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.ContainsFilter;
+import io.miti.nemo.filter.ExactMatchFilter;
+import io.miti.nemo.filter.StartsWithFilter;
+import io.miti.nemo.test.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Unit tests for NameDirectory.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class NameDirectoryTest extends TestCase
+{
+  /**
+   * The names in the test stores.
+   */
+  private static final String[] NAMES = {"readme.txt", "README.TXT", "Makefile",
+    "a", "docs", "stra\u00dfe.txt", "STRASSE.txt", "\u0130stanbul", "istanbul",
+    "\u65e5\u672c.doc", ""};
+  
+  
+  /**
+   * Default constructor.
+   */
+  public NameDirectoryTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check that searching the sections for an exact name gives
+   * the same results, in the same order, as searching the
+   * stores.
+   * 
+   * @throws IOException error with the temporary files
+   */
+  public void testSections() throws IOException
+  {
+    File dir = createTempDir();
+    try
+    {
+      Store[] stores = {createStore("one", 1), createStore("two", 2)};
+      File[] files = new File[stores.length];
+      for (int i = 0; i < stores.length; ++i)
+      {
+        files[i] = new File(dir, stores[i].getName() + ".idx");
+        saveStore(files[i], stores[i]);
+        assertTrue("section file", NameDirectory.getFile(files[i]).isFile());
+      }
+      
+      List<String> terms = new ArrayList<String>();
+      for (String name : NAMES)
+      {
+        terms.add(name);
+        terms.add(name.toUpperCase(Locale.ROOT));
+      }
+      terms.add("missing");
+      
+      int found = 0;
+      for (String term : terms)
+      {
+        for (int i = 0; i < 2; ++i)
+        {
+          ExactMatchFilter filter = new ExactMatchFilter(term, (i == 0));
+          NameDirectory.Lookup lookup = NameDirectory.find(dir, filter);
+          for (int include = 1; include < 4; ++include)
+          {
+            final boolean includeFiles = ((include & 1) != 0);
+            final boolean includeDirs = ((include & 2) != 0);
+            for (int s = 0; s < stores.length; ++s)
+            {
+              List<SearchResult> expected = new ArrayList<SearchResult>();
+              new Indexer().searchStore(stores[s], includeFiles, includeDirs, filter,
+                                        new ListSink(expected));
+              
+              List<SearchResult> actual = new ArrayList<SearchResult>();
+              assertTrue("section used", lookup.search(files[s], includeFiles, includeDirs,
+                                                       filter, new ListSink(actual)));
+              assertEquals("results for " + term, describe(expected), describe(actual));
+              found += actual.size();
+            }
+          }
+        }
+      }
+      
+      assertTrue("results found", found > 0);
+    }
+    finally
+    {
+      deleteDir(dir);
+    }
+  }
+  
+  
+  /**
+   * Check that a section is only used while the store's index
+   * file is unchanged, is replaced when the store is saved,
+   * and is dropped when the store is removed.
+   * 
+   * @throws IOException error with the temporary files
+   */
+  public void testIsCurrent() throws IOException
+  {
+    File dir = createTempDir();
+    try
+    {
+      Store store = createStore("one", 1);
+      File file = new File(dir, "one.idx");
+      saveStore(file, store);
+      
+      ExactMatchFilter filter = new ExactMatchFilter("makefile", true);
+      List<SearchResult> results = new ArrayList<SearchResult>();
+      assertTrue("current", NameDirectory.find(dir, filter).search(file, true, true, filter,
+                                                                   new ListSink(results)));
+      assertTrue("results", !results.isEmpty());
+      
+      // A changed index file isn't searched through its section
+      assertTrue("set time", file.setLastModified(file.lastModified() - 5000L));
+      results.clear();
+      assertFalse("stale", NameDirectory.find(dir, filter).search(file, true, true, filter,
+                                                                  new ListSink(results)));
+      assertTrue("no results", results.isEmpty());
+      
+      // Saving the store replaces the loaded section
+      saveStore(file, createStore("one", 3));
+      assertTrue("saved", NameDirectory.find(dir, filter).search(file, true, true, filter,
+                                                                 new ListSink(results)));
+      assertEquals("results", 3, results.size());
+      assertEquals("size", 6L, results.get(0).getFileSize());
+      
+      // Removing the store drops its section
+      NameDirectory.remove(file);
+      assertFalse("section file", NameDirectory.getFile(file).exists());
+      assertFalse("removed", NameDirectory.find(dir, filter).search(file, true, true, filter,
+                                                                    new ListSink(results)));
+    }
+    finally
+    {
+      deleteDir(dir);
+    }
+  }
+  
+  
+  /**
+   * Check that only a search for an exact name uses the
+   * directory.
+   * 
+   * @throws IOException error with the temporary files
+   */
+  public void testFind() throws IOException
+  {
+    File dir = createTempDir();
+    try
+    {
+      assertTrue("exact", NameDirectory.find(dir, new ExactMatchFilter("a", false)) != null);
+      assertTrue("starts with",
+                 NameDirectory.find(dir, new StartsWithFilter("a", false)) == null);
+      assertTrue("contains", NameDirectory.find(dir, new ContainsFilter("a", false)) == null);
+    }
+    finally
+    {
+      deleteDir(dir);
+    }
+  }
+  
+  
+  /**
+   * Write a store to its index file, and then its section.
+   * 
+   * @param file the index file
+   * @param store the store
+   * @throws IOException error writing the index file
+   */
+  private static void saveStore(final File file, final Store store) throws IOException
+  {
+    IndexFile.write(file, store);
+    NameDirectory.update(file, store);
+  }
+  
+  
+  /**
+   * Create a store with each name in the root folder, in a
+   * sub-folder and in a folder under that.  The sizes and
+   * times depend on the seed.
+   * 
+   * @param name the name of the store
+   * @param seed the value used for the sizes and times
+   * @return the store
+   */
+  private static Store createStore(final String name, final int seed)
+  {
+    Node root = createNode(name, true, 0L, 0L);
+    Node sub = addChild(root, createNode("docs", true, 0L, seed * 1000L));
+    Node deep = addChild(sub, createNode("a", true, 0L, seed * 2000L));
+    Node[] folders = {root, sub, deep};
+    for (int i = 0; i < NAMES.length; ++i)
+    {
+      for (Node folder : folders)
+      {
+        addChild(folder, createNode(NAMES[i], false, seed * i, 1600000000000L + i));
+      }
+    }
+    
+    Store store = new Store(name, "/" + name);
+    store.setDataStore(root);
+    return store;
+  }
+  
+  
+  /**
+   * Create a node.
+   * 
+   * @param name the name of the node
+   * @param isDir whether the node is a folder
+   * @param size the size
+   * @param time the last-modified time
+   * @return the node
+   */
+  private static Node createNode(final String name,
+                                 final boolean isDir,
+                                 final long size,
+                                 final long time)
+  {
+    Node node = new Node();
+    node.setName(name);
+    node.setDirectory(isDir);
+    node.setFileSize(size);
+    node.setLastModified(time);
+    return node;
+  }
+  
+  
+  /**
+   * Add a child to a node.
+   * 
+   * @param parent the parent node
+   * @param child the child node
+   * @return the child node
+   */
+  private static Node addChild(final Node parent, final Node child)
+  {
+    parent.addChild(child);
+    child.setParent(parent);
+    return child;
+  }
+  
+  
+  /**
+   * Describe each result, in order.
+   * 
+   * @param results the search results
+   * @return the description of each result
+   */
+  private static List<String> describe(final List<SearchResult> results)
+  {
+    List<String> list = new ArrayList<String>(results.size());
+    for (SearchResult result : results)
+    {
+      list.add(result.getVolume() + "|" + result.getPath() + "|" + result.getName() + "|" +
+               result.isDirectory() + "|" + result.getFileSize() + "|" +
+               result.getLastModified());
+    }
+    
+    return list;
+  }
+  
+  
+  /**
+   * Create an empty temporary folder.
+   * 
+   * @return the folder
+   * @throws IOException error creating the folder
+   */
+  private static File createTempDir() throws IOException
+  {
+    File dir = File.createTempFile("nemo", ".dir");
+    if (!dir.delete() || !dir.mkdir())
+    {
+      throw new IOException("Unable to create " + dir.getPath());
+    }
+    
+    return dir;
+  }
+  
+  
+  /**
+   * Delete a temporary folder and the files in it.  The
+   * sections of the stores are dropped first, so the memory
+   * they reserve from the StoreCache is given back.
+   * 
+   * @param dir the folder
+   */
+  private static void deleteDir(final File dir)
+  {
+    File[] files = dir.listFiles();
+    if (files != null)
+    {
+      for (File file : files)
+      {
+        if (file.getName().endsWith(".idx"))
+        {
+          NameDirectory.remove(file);
+        }
+        file.delete();
+      }
+    }
+    
+    dir.delete();
+  }
+  
+  
+  /**
+   * A sink that adds the results to a list.
+   */
+  private static final class ListSink implements ResultSink
+  {
+    /**
+     * The list of results.
+     */
+    private final List<SearchResult> list;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param pList the list of results
+     */
+    public ListSink(final List<SearchResult> pList)
+    {
+      super();
+      list = pList;
+    }
+    
+    
+    /**
+     * Add a result to the list.
+     * 
+     * @param result the search result
+     */
+    public void add(final SearchResult result)
+    {
+      list.add(result);
+    }
+    
+    
+    /**
+     * The list is never full.
+     * 
+     * @return false
+     */
+    public boolean isFull()
+    {
+      return false;
+    }
+  }
+}
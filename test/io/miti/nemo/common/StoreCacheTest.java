@@ -0,0 +1,143 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.test.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Unit tests for StoreCache.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class StoreCacheTest extends TestCase
+{
+  /**
+   * Default constructor.
+   */
+  public StoreCacheTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check that a store is charged for an index it builds
+   * after it's cached, and that this evicts the least-recently
+   * used store.
+   * 
+   * @throws IOException error with the temporary files
+   */
+  public void testRecharge() throws IOException
+  {
+    File file1 = File.createTempFile("nemo", ".ser");
+    File file2 = File.createTempFile("nemo", ".ser");
+    try
+    {
+      Store store1 = createStore("one", 200);
+      Store store2 = createStore("two", 200);
+      final long size1 = store1.estimateSize();
+      final long size2 = store2.estimateSize();
+      
+      // Both stores fit, until the second one builds its upper case names
+      StoreCache.setMemoryBudget(size1 + size2);
+      StoreCache.replace(file1, store1);
+      StoreCache.replace(file2, store2);
+      assertTrue("first cached", StoreCache.isCached(file1));
+      assertTrue("second cached", StoreCache.isCached(file2));
+      
+      store2.getFoldedNames();
+      assertTrue("larger", store2.estimateSize() > size2);
+      assertFalse("first evicted", StoreCache.isCached(file1));
+      assertTrue("second still cached", StoreCache.isCached(file2));
+      
+      // A store that no longer fits on its own is evicted
+      StoreCache.setMemoryBudget(store2.estimateSize());
+      store2.getNameDictionary();
+      assertFalse("second evicted", StoreCache.isCached(file2));
+    }
+    finally
+    {
+      StoreCache.clear();
+      StoreCache.setMemoryBudget(0L);
+      file1.delete();
+      file2.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that the estimated size counts the indexes built
+   * for the store.
+   */
+  public void testEstimateSize()
+  {
+    Store store = createStore("size", 100);
+    final long size = store.estimateSize();
+    assertEquals("table", store.getNodeTable().estimateSize(), size);
+    
+    final long folded = store.getFoldedNames().estimateSize();
+    assertEquals("upper case names", size + folded, store.estimateSize());
+    
+    final long fuzzy = store.getFuzzyIndex().estimateSize();
+    assertEquals("fuzzy index", size + folded + fuzzy, store.estimateSize());
+  }
+  
+  
+  /**
+   * Create a store with a folder of files.
+   * 
+   * @param name the name of the store
+   * @param count the number of files
+   * @return the store
+   */
+  private static Store createStore(final String name, final int count)
+  {
+    Node root = new Node();
+    root.setName(name);
+    root.setDirectory(true);
+    for (int i = 0; i < count; ++i)
+    {
+      Node child = new Node();
+      child.setName("File " + i + ".txt");
+      child.setFileSize(i);
+      child.setLastModified(1000L * i);
+      child.setParent(root);
+      root.addChild(child);
+    }
+    
+    Store store = new Store(name, "/" + name);
+    store.setDataStore(root);
+    store.getNodeTable();
+    return store;
+  }
+}
@@ -0,0 +1,292 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.ContainsFilter;
+import io.miti.nemo.test.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Unit tests for TrigramIndex.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class TrigramIndexTest extends TestCase
+{
+  /**
+   * The names in the test store.  Some can't be folded one
+   * character at a time, so they aren't indexed.
+   */
+  private static final String[] NAMES = {"readme.txt", "README.TXT", "ReadMe.md",
+    "Makefile", "makefile.am", "a", "ab", "abc", "abcabc", "x.y", "",
+    "stra\u00dfe.txt", "STRASSE.txt", "\u0130stanbul", "istanbul", "\u0131d",
+    "\u01c5ungla", "\ufb01le.txt", "\u65e5\u672c.doc", "\ud83d\ude00.png",
+    "\u03a3\u03c3\u03c2.txt", "K\u212a", "\u212bngstr\u00f6m", "\u212bngstr\u00f6m"};
+  
+  
+  /**
+   * Default constructor.
+   */
+  public TrigramIndexTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check that an index reads back with the same counts and
+   * gives the same candidates.
+   * 
+   * @throws IOException error with the temporary files
+   */
+  public void testRoundTrip() throws IOException
+  {
+    NodeTable table = createTable();
+    TrigramIndex index = TrigramIndex.build(table);
+    assertEquals("name count", table.getNameCount(), index.getNameCount());
+    assertEquals("node count", table.getNodeCount(), index.getNodeCount());
+    
+    File indexFile = createTempFile();
+    File file = TrigramIndex.getFile(indexFile);
+    try
+    {
+      index.write(file);
+      assertFalse("temporary file", Utility.getTempFile(file).exists());
+      
+      TrigramIndex read = TrigramIndex.read(file);
+      assertEquals("name count", index.getNameCount(), read.getNameCount());
+      assertEquals("node count", index.getNodeCount(), read.getNodeCount());
+      for (String term : getTerms())
+      {
+        for (int i = 0; i < 2; ++i)
+        {
+          ContainsFilter filter = new ContainsFilter(term, (i == 0));
+          assertEquals("candidates for " + term, index.findCandidates(filter),
+                       read.findCandidates(filter));
+        }
+      }
+    }
+    finally
+    {
+      file.delete();
+      indexFile.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that an index is only loaded if it is newer than
+   * the store's index file and has the same number of names
+   * and nodes.
+   * 
+   * @throws IOException error with the temporary files
+   */
+  public void testStaleness() throws IOException
+  {
+    NodeTable table = createTable();
+    final int names = table.getNameCount();
+    final int nodes = table.getNodeCount();
+    
+    File indexFile = createTempFile();
+    File file = TrigramIndex.getFile(indexFile);
+    try
+    {
+      // A missing index isn't loaded
+      assertTrue("missing", TrigramIndex.load(indexFile, names, nodes) == null);
+      
+      TrigramIndex.build(table).write(file);
+      final long time = (indexFile.lastModified() / 1000L) * 1000L;
+      assertTrue("set time", indexFile.setLastModified(time));
+      assertTrue("set time", file.setLastModified(time + 2000L));
+      assertTrue("current", TrigramIndex.load(indexFile, names, nodes) != null);
+      
+      // The counts must match the store
+      assertTrue("name count", TrigramIndex.load(indexFile, names + 1, nodes) == null);
+      assertTrue("node count", TrigramIndex.load(indexFile, names, nodes + 1) == null);
+      
+      // An index older than the store isn't loaded
+      assertTrue("set time", file.setLastModified(time - 2000L));
+      assertTrue("older", TrigramIndex.load(indexFile, names, nodes) == null);
+    }
+    finally
+    {
+      file.delete();
+      indexFile.delete();
+    }
+  }
+  
+  
+  /**
+   * Check that the candidates include every name that
+   * ContainsFilter accepts, with and without case, including
+   * the names that aren't indexed.
+   */
+  public void testCandidates()
+  {
+    NodeTable table = createTable();
+    TrigramIndex index = TrigramIndex.build(table);
+    int narrowed = 0;
+    for (String term : getTerms())
+    {
+      for (int i = 0; i < 2; ++i)
+      {
+        ContainsFilter filter = new ContainsFilter(term, (i == 0));
+        BitSet candidates = index.findCandidates(filter);
+        if (candidates == null)
+        {
+          // ASCII terms can be narrowed if they have a trigram
+          assertFalse("no candidates for " + term, (term.length() >= 3) &&
+                      term.matches("[\\x20-\\x7e]+"));
+          continue;
+        }
+        
+        ++narrowed;
+        for (int name = 0; name < table.getNameCount(); ++name)
+        {
+          if (filter.accept(table.getName(name)))
+          {
+            assertTrue("'" + term + "' in " + table.getName(name), candidates.get(name));
+          }
+        }
+      }
+    }
+    
+    assertTrue("narrowed", narrowed > 0);
+    
+    // The index rules out names without the trigrams
+    BitSet candidates = index.findCandidates(new ContainsFilter("readme", true));
+    for (int name = 0; name < table.getNameCount(); ++name)
+    {
+      if (table.getName(name).equals("Makefile"))
+      {
+        assertFalse("Makefile", candidates.get(name));
+      }
+    }
+  }
+  
+  
+  /**
+   * Return the terms to search for: every short substring of
+   * each name, in its own case and in upper and lower case,
+   * and some that aren't in any name.
+   * 
+   * @return the terms
+   */
+  private static List<String> getTerms()
+  {
+    Set<String> terms = new LinkedHashSet<String>();
+    for (String name : NAMES)
+    {
+      for (int start = 0; start < name.length(); ++start)
+      {
+        for (int end = start + 1; (end <= name.length()) && (end <= start + 5); ++end)
+        {
+          String term = name.substring(start, end);
+          terms.add(term);
+          terms.add(term.toUpperCase(Locale.ROOT));
+          terms.add(term.toLowerCase(Locale.ROOT));
+        }
+      }
+      terms.add(name);
+    }
+    terms.add("zzz");
+    terms.add("strasse");
+    terms.add("STRA\u00dfE");
+    terms.add("FILE");
+    
+    return new ArrayList<String>(terms);
+  }
+  
+  
+  /**
+   * Build a table with each name in the root folder and again
+   * in a sub-folder.
+   * 
+   * @return the table of nodes
+   */
+  private static NodeTable createTable()
+  {
+    Node root = createNode("root", true);
+    Node sub = createNode("sub", true);
+    root.addChild(sub);
+    sub.setParent(root);
+    for (String name : NAMES)
+    {
+      Node node = createNode(name, false);
+      root.addChild(node);
+      node.setParent(root);
+      
+      node = createNode(name, false);
+      sub.addChild(node);
+      node.setParent(sub);
+    }
+    
+    return NodeTable.fromNode(root);
+  }
+  
+  
+  /**
+   * Create a node.
+   * 
+   * @param name the name of the node
+   * @param isDir whether the node is a folder
+   * @return the node
+   */
+  private static Node createNode(final String name, final boolean isDir)
+  {
+    Node node = new Node();
+    node.setName(name);
+    node.setDirectory(isDir);
+    return node;
+  }
+  
+  
+  /**
+   * Create an empty temporary file, used as a store's index
+   * file.
+   * 
+   * @return the file
+   * @throws IOException error creating the file
+   */
+  private static File createTempFile() throws IOException
+  {
+    File file = File.createTempFile("nemo", ".idx");
+    file.deleteOnExit();
+    return file;
+  }
+}
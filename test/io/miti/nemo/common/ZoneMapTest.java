@@ -0,0 +1,391 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.common;
+
+import io.miti.nemo.filter.AttributeFilter;
+import io.miti.nemo.test.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for ZoneMap.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class ZoneMapTest extends TestCase
+{
+  /**
+   * The number of random filters checked on each tree.
+   */
+  private static final int FILTER_COUNT = 200;
+  
+  
+  /**
+   * Default constructor.
+   */
+  public ZoneMapTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check that visiting the nodes with first() and next()
+   * finds the same matches as checking every node, from every
+   * starting node, and that some subtrees are skipped.
+   */
+  public void testSkipping()
+  {
+    Random random = new Random(25L);
+    for (int tree = 0; tree < 5; ++tree)
+    {
+      // Give the root several folders, each with its own values
+      Node root = createNode("root", true, 0L, 0L);
+      for (int i = 0; i < 8; ++i)
+      {
+        final int base = random.nextInt(1000);
+        Node dir = addChild(root, createNode("top" + i, true, base, base * 2L));
+        addTree(random, dir, 1, base);
+      }
+      NodeTable table = NodeTable.fromNode(root);
+      ZoneMap zones = ZoneMap.build(table);
+      final int count = table.getNodeCount();
+      
+      int visited = 0;
+      int total = 0;
+      for (int i = 0; i < FILTER_COUNT; ++i)
+      {
+        RangeFilter filter = createFilter(random);
+        for (int from = 0; from < count; ++from)
+        {
+          final int to = ((i % 2 == 0) ? count : (from + random.nextInt(count - from + 1)));
+          List<Integer> expected = scan(table, from, to, filter);
+          List<Integer> actual = new ArrayList<Integer>();
+          int next = ((from >= to) ? from : zones.first(table, from, filter));
+          for (int index = next; index < to; index = next)
+          {
+            next = zones.next(index, filter);
+            assertTrue("next after " + index, next > index);
+            ++visited;
+            if (filter.acceptAttributes(table.getFileSize(index),
+                                        table.getLastModified(index)))
+            {
+              actual.add(Integer.valueOf(index));
+            }
+          }
+          
+          assertEquals("nodes " + from + " to " + to + " for " + filter, expected, actual);
+          total += (to - from);
+        }
+      }
+      
+      assertTrue("subtrees skipped", visited < total);
+    }
+  }
+  
+  
+  /**
+   * Check the zones of a table with only a root, and of
+   * empty folders.
+   */
+  public void testEmptyFolders()
+  {
+    Node root = createNode("root", true, 0L, 0L);
+    NodeTable table = NodeTable.fromNode(root);
+    ZoneMap zones = ZoneMap.build(table);
+    RangeFilter none = new RangeFilter(1L, 0L, 1L, 0L);
+    assertEquals("first", 0, zones.first(table, 0, none));
+    assertEquals("next", 1, zones.next(0, none));
+    
+    // An empty folder's subtree is only itself
+    addChild(root, createNode("empty", true, 5L, 5L));
+    addChild(root, createNode("file", false, 10L, 10L));
+    table = NodeTable.fromNode(root);
+    zones = ZoneMap.build(table);
+    assertEquals("root", 3, zones.next(0, none));
+    assertEquals("empty", 2, zones.next(1, none));
+    assertEquals("file", 3, zones.next(2, none));
+    
+    RangeFilter file = new RangeFilter(10L, 10L, 10L, 10L);
+    assertEquals("root matches", 1, zones.next(0, file));
+    assertEquals("first", 2, zones.first(table, 2, file));
+  }
+  
+  
+  /**
+   * Return the nodes in a range that a filter accepts, by
+   * checking every node.
+   * 
+   * @param table the table of nodes
+   * @param from the first node
+   * @param to the index after the last node
+   * @param filter the filter
+   * @return the accepted nodes
+   */
+  private static List<Integer> scan(final NodeTable table,
+                                    final int from,
+                                    final int to,
+                                    final AttributeFilter filter)
+  {
+    List<Integer> list = new ArrayList<Integer>();
+    for (int index = from; index < to; ++index)
+    {
+      if (filter.acceptAttributes(table.getFileSize(index), table.getLastModified(index)))
+      {
+        list.add(Integer.valueOf(index));
+      }
+    }
+    
+    return list;
+  }
+  
+  
+  /**
+   * Add a random subtree under a folder.  The sizes and times
+   * in each folder are close to a value picked for the
+   * folder, so whole folders can be skipped.
+   * 
+   * @param random the random number generator
+   * @param parent the folder
+   * @param depth the depth of the folder
+   * @param base the value the sizes and times are close to
+   */
+  private static void addTree(final Random random,
+                              final Node parent,
+                              final int depth,
+                              final int base)
+  {
+    final int children = random.nextInt(6);
+    for (int i = 0; i < children; ++i)
+    {
+      final long size = base + random.nextInt(20);
+      final long time = (base * 2L) + random.nextInt(40);
+      if ((depth < 5) && (random.nextInt(3) == 0))
+      {
+        Node dir = addChild(parent, createNode("dir" + i, true, size, time));
+        addTree(random, dir, depth + 1, (random.nextInt(4) == 0) ? random.nextInt(1000) : base);
+      }
+      else
+      {
+        addChild(parent, createNode("file" + i, false, size, time));
+      }
+    }
+  }
+  
+  
+  /**
+   * Create a filter with random ranges, some of them empty or
+   * unbounded.
+   * 
+   * @param random the random number generator
+   * @return the filter
+   */
+  private static RangeFilter createFilter(final Random random)
+  {
+    long minSize = random.nextInt(1100) - 50;
+    long maxSize = minSize + random.nextInt(200) - 10;
+    long minTime = random.nextInt(2200) - 100;
+    long maxTime = minTime + random.nextInt(400) - 20;
+    switch (random.nextInt(4))
+    {
+      case 0:
+        minSize = Long.MIN_VALUE;
+        maxSize = Long.MAX_VALUE;
+        break;
+      
+      case 1:
+        minTime = Long.MIN_VALUE;
+        maxTime = Long.MAX_VALUE;
+        break;
+      
+      default:
+        break;
+    }
+    
+    return new RangeFilter(minSize, maxSize, minTime, maxTime);
+  }
+  
+  
+  /**
+   * Create a node.
+   * 
+   * @param name the name of the node
+   * @param isDir whether the node is a folder
+   * @param size the size
+   * @param time the last-modified time
+   * @return the node
+   */
+  private static Node createNode(final String name,
+                                 final boolean isDir,
+                                 final long size,
+                                 final long time)
+  {
+    Node node = new Node();
+    node.setName(name);
+    node.setDirectory(isDir);
+    node.setFileSize(size);
+    node.setLastModified(time);
+    return node;
+  }
+  
+  
+  /**
+   * Add a child to a node.
+   * 
+   * @param parent the parent node
+   * @param child the child node
+   * @return the child node
+   */
+  private static Node addChild(final Node parent, final Node child)
+  {
+    parent.addChild(child);
+    child.setParent(parent);
+    return child;
+  }
+  
+  
+  /**
+   * A filter that accepts sizes and times in a range.
+   */
+  private static final class RangeFilter implements AttributeFilter
+  {
+    /**
+     * The smallest size.
+     */
+    private final long minSize;
+    
+    /**
+     * The largest size.
+     */
+    private final long maxSize;
+    
+    /**
+     * The earliest time.
+     */
+    private final long minTime;
+    
+    /**
+     * The latest time.
+     */
+    private final long maxTime;
+    
+    
+    /**
+     * Constructor.
+     * 
+     * @param lMinSize the smallest size
+     * @param lMaxSize the largest size
+     * @param lMinTime the earliest time
+     * @param lMaxTime the latest time
+     */
+    public RangeFilter(final long lMinSize,
+                       final long lMaxSize,
+                       final long lMinTime,
+                       final long lMaxTime)
+    {
+      super();
+      minSize = lMinSize;
+      maxSize = lMaxSize;
+      minTime = lMinTime;
+      maxTime = lMaxTime;
+    }
+    
+    
+    /**
+     * Every name matches.
+     * 
+     * @param word the name
+     * @return true
+     */
+    public boolean accept(final String word)
+    {
+      return true;
+    }
+    
+    
+    /**
+     * Determines if the size and time are in the ranges.
+     * 
+     * @param size the size of the file
+     * @param lastModified the last-modified time of the file
+     * @return whether the file matches
+     */
+    public boolean acceptAttributes(final long size, final long lastModified)
+    {
+      return ((size >= minSize) && (size <= maxSize) &&
+              (lastModified >= minTime) && (lastModified <= maxTime));
+    }
+    
+    
+    /**
+     * Determines if the ranges overlap the filter's ranges.
+     * 
+     * @param lMinSize the smallest size
+     * @param lMaxSize the largest size
+     * @param lMinModified the earliest last-modified time
+     * @param lMaxModified the latest last-modified time
+     * @return whether a file in the ranges might match
+     */
+    public boolean acceptRanges(final long lMinSize,
+                                final long lMaxSize,
+                                final long lMinModified,
+                                final long lMaxModified)
+    {
+      return ((lMaxSize >= minSize) && (lMinSize <= maxSize) &&
+              (lMaxModified >= minTime) && (lMinModified <= maxTime));
+    }
+    
+    
+    /**
+     * Every folder matches.
+     * 
+     * @param path the path of the folder
+     * @return true
+     */
+    public boolean acceptPath(final String path)
+    {
+      return true;
+    }
+    
+    
+    /**
+     * Return the ranges, for the test messages.
+     * 
+     * @return the ranges
+     */
+    @Override
+    public String toString()
+    {
+      return "size " + minSize + ".." + maxSize + ", time " + minTime + ".." + maxTime;
+    }
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.filter;
+
+import io.miti.nemo.test.TestCase;
+
+import java.util.Random;
+
+/**
+ * Unit tests for Levenshtein.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class LevenshteinTest extends TestCase
+{
+  /**
+   * The characters used in the random strings, including some
+   * above 255 and one with a different upper case.
+   */
+  private static final String ALPHABET = "abcAB\u00e9\u0130\u65e5";
+  
+  
+  /**
+   * Default constructor.
+   */
+  public LevenshteinTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check some well-known distances.
+   */
+  public void testKnownDistances()
+  {
+    assertEquals("kitten", 3, new Levenshtein("kitten").distance("sitting", false, 10));
+    assertEquals("flaw", 2, new Levenshtein("flaw").distance("lawn", false, 10));
+    assertEquals("same", 0, new Levenshtein("readme").distance("readme", false, 0));
+    assertEquals("empty pattern", 4, new Levenshtein("").distance("abcd", false, 10));
+    assertEquals("empty text", 4, new Levenshtein("abcd").distance("", false, 10));
+    assertEquals("both empty", 0, new Levenshtein("").distance("", false, 0));
+  }
+  
+  
+  /**
+   * Check that a distance over the maximum is reported as
+   * more than the maximum.
+   */
+  public void testMaximum()
+  {
+    Levenshtein lev = new Levenshtein("kitten");
+    assertTrue("at the maximum", lev.distance("sitting", false, 3) == 3);
+    assertTrue("over the maximum", lev.distance("sitting", false, 2) > 2);
+    assertTrue("length difference", lev.distance("kittenishly", false, 4) > 4);
+    assertTrue("zero maximum", lev.distance("kitted", false, 0) > 0);
+  }
+  
+  
+  /**
+   * Check that the text is converted to upper case, and the
+   * pattern is not.
+   */
+  public void testUpperCase()
+  {
+    Levenshtein lev = new Levenshtein("README");
+    assertEquals("upper", 0, lev.distance("readme", true, 3));
+    assertEquals("not upper", 6, lev.distance("readme", false, 10));
+    assertEquals("lower pattern", 6, new Levenshtein("readme").distance("readme", true, 10));
+  }
+  
+  
+  /**
+   * Check that changing the pattern clears the old one.
+   */
+  public void testSetPattern()
+  {
+    Levenshtein lev = new Levenshtein("abc\u65e5");
+    lev.setPattern("xyz");
+    assertEquals("pattern", "xyz", lev.getPattern());
+    assertEquals("new pattern", 0, lev.distance("xyz", false, 3));
+    assertEquals("old pattern", 3, lev.distance("abc", false, 3));
+    assertEquals("old high character", 1, lev.distance("\u65e5xyz", false, 3));
+  }
+  
+  
+  /**
+   * Compare the distances of random strings to the usual
+   * matrix computation, for patterns shorter than, equal to
+   * and longer than the limit of the bit-vector algorithm.
+   */
+  public void testRandomStrings()
+  {
+    Random random = new Random(42L);
+    final int[] lengths = {1, 2, 5, 17, 63, 64, 65, 100};
+    for (int len : lengths)
+    {
+      for (int i = 0; i < 200; ++i)
+      {
+        final String pattern = randomString(random, len);
+        final String text = mutate(random, pattern);
+        final boolean upper = random.nextBoolean();
+        final int max = random.nextInt(8);
+        
+        final int expected = referenceDistance(pattern, upper ? text.toUpperCase() : text);
+        final int actual = new Levenshtein(pattern).distance(text, upper, max);
+        final String message = "'" + pattern + "' to '" + text + "' (max " + max + ")";
+        if (expected <= max)
+        {
+          assertEquals(message, expected, actual);
+        }
+        else
+        {
+          assertTrue(message + " is over the maximum", actual > max);
+        }
+      }
+    }
+  }
+  
+  
+  /**
+   * Return a random string.
+   * 
+   * @param random the random number generator
+   * @param len the length of the string
+   * @return the string
+   */
+  private static String randomString(final Random random, final int len)
+  {
+    StringBuilder sb = new StringBuilder(len);
+    for (int i = 0; i < len; ++i)
+    {
+      sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Make a few random edits to a string.
+   * 
+   * @param random the random number generator
+   * @param str the string
+   * @return the edited string
+   */
+  private static String mutate(final Random random, final String str)
+  {
+    StringBuilder sb = new StringBuilder(str);
+    final int edits = random.nextInt(10);
+    for (int i = 0; i < edits; ++i)
+    {
+      final int pos = random.nextInt(sb.length() + 1);
+      final char ch = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+      final int op = random.nextInt(3);
+      if ((op == 0) || (sb.length() == 0))
+      {
+        sb.insert(pos, ch);
+      }
+      else if (op == 1)
+      {
+        sb.deleteCharAt(Math.min(pos, sb.length() - 1));
+      }
+      else
+      {
+        sb.setCharAt(Math.min(pos, sb.length() - 1), ch);
+      }
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Compute the distance with the full matrix.
+   * 
+   * @param s1 the first string
+   * @param s2 the second string
+   * @return the distance
+   */
+  private static int referenceDistance(final String s1, final String s2)
+  {
+    int[][] d = new int[s1.length() + 1][s2.length() + 1];
+    for (int i = 0; i <= s1.length(); ++i)
+    {
+      d[i][0] = i;
+    }
+    for (int j = 0; j <= s2.length(); ++j)
+    {
+      d[0][j] = j;
+    }
+    
+    for (int i = 1; i <= s1.length(); ++i)
+    {
+      for (int j = 1; j <= s2.length(); ++j)
+      {
+        final int cost = ((s1.charAt(i - 1) == s2.charAt(j - 1)) ? 0 : 1);
+        d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                           d[i - 1][j - 1] + cost);
+      }
+    }
+    
+    return d[s1.length()][s2.length()];
+  }
+}
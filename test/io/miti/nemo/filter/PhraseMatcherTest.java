@@ -0,0 +1,213 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.filter;
+
+import io.miti.nemo.test.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for PhraseMatcher.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class PhraseMatcherTest extends TestCase
+{
+  /**
+   * The characters used in the random words and phrases.
+   */
+  private static final String ALPHABET = "abAB.\u00e9\u65e5";
+  
+  
+  /**
+   * Default constructor.
+   */
+  public PhraseMatcherTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check finding any of the phrases.
+   */
+  public void testContainsAny()
+  {
+    PhraseMatcher matcher = new PhraseMatcher(new String[] {"he", "she", "hers"}, null);
+    assertTrue("first", matcher.containsAny("ahead", false));
+    assertTrue("suffix of another", matcher.containsAny("ushers", false));
+    assertFalse("none", matcher.containsAny("hollow", false));
+    assertFalse("empty word", matcher.containsAny("", false));
+    assertFalse("case", matcher.containsAny("HEAD", false));
+  }
+  
+  
+  /**
+   * Check finding all of the phrases.
+   */
+  public void testContainsAll()
+  {
+    PhraseMatcher matcher = new PhraseMatcher(new String[] {"he", "she", "hers"}, null);
+    assertTrue("all", matcher.containsAll("ushers", false));
+    assertFalse("missing one", matcher.containsAll("she", false));
+    assertFalse("empty word", matcher.containsAll("", false));
+  }
+  
+  
+  /**
+   * Check that the counts are needed, and that overlapping
+   * occurrences are counted.
+   */
+  public void testCounts()
+  {
+    PhraseMatcher matcher = new PhraseMatcher(new String[] {"aa", "b"}, new int[] {2, 1});
+    assertTrue("overlapping", matcher.containsAll("aaab", false));
+    assertFalse("one occurrence", matcher.containsAll("aab", false));
+    assertTrue("separate", matcher.containsAll("aabaa", false));
+    assertFalse("missing phrase", matcher.containsAll("aaaa", false));
+    
+    // The same phrase twice needs both counts
+    matcher = new PhraseMatcher(new String[] {"x", "x"}, new int[] {1, 2});
+    assertTrue("repeated phrase", matcher.containsAll("x.x", false));
+    assertFalse("repeated phrase, once", matcher.containsAll("x..", false));
+  }
+  
+  
+  /**
+   * Check that the empty phrase is in every word.
+   */
+  public void testEmptyPhrase()
+  {
+    PhraseMatcher matcher = new PhraseMatcher(new String[] {""}, null);
+    assertTrue("any", matcher.containsAny("", false));
+    assertTrue("all", matcher.containsAll("abc", false));
+    
+    matcher = new PhraseMatcher(new String[] {"", "q"}, new int[] {3, 1});
+    assertTrue("all with q", matcher.containsAll("q", false));
+    assertFalse("all without q", matcher.containsAll("abc", false));
+  }
+  
+  
+  /**
+   * Check that the word is converted to upper case when the
+   * phrases are in upper case.
+   */
+  public void testFold()
+  {
+    PhraseMatcher matcher = new PhraseMatcher(new String[] {"READ", "\u00c9T\u00c9"}, null);
+    assertTrue("any", matcher.containsAny("readme", true));
+    assertFalse("any, not folded", matcher.containsAny("readme", false));
+    assertTrue("all", matcher.containsAll("Read \u00e9t\u00e9", true));
+    assertFalse("all, not folded", matcher.containsAll("Read \u00e9t\u00e9", false));
+  }
+  
+  
+  /**
+   * Compare random words and phrases to counting the
+   * occurrences with String.indexOf().
+   */
+  public void testRandomPhrases()
+  {
+    Random random = new Random(7L);
+    for (int i = 0; i < 2000; ++i)
+    {
+      // Build the phrases and the counts
+      final int num = 1 + random.nextInt(4);
+      String[] phrases = new String[num];
+      int[] counts = new int[num];
+      for (int p = 0; p < num; ++p)
+      {
+        phrases[p] = randomString(random, 1 + random.nextInt(3)).toUpperCase();
+        counts[p] = 1 + random.nextInt(3);
+      }
+      final boolean useCounts = random.nextBoolean();
+      PhraseMatcher matcher = new PhraseMatcher(phrases, useCounts ? counts : null);
+      
+      // Check a random word
+      final String word = randomString(random, random.nextInt(12));
+      final boolean fold = random.nextBoolean();
+      final String target = (fold ? word.toUpperCase() : word);
+      boolean any = false;
+      boolean all = true;
+      for (int p = 0; p < num; ++p)
+      {
+        final int found = countOccurrences(target, phrases[p]);
+        any = (any || (found > 0));
+        all = (all && (found >= (useCounts ? counts[p] : 1)));
+      }
+      
+      final String message = "'" + word + "' with " + Arrays.toString(phrases);
+      assertEquals(message + " any", any, matcher.containsAny(word, fold));
+      assertEquals(message + " all", all, matcher.containsAll(word, fold));
+    }
+  }
+  
+  
+  /**
+   * Count the occurrences of a phrase in a word, including
+   * ones that overlap.
+   * 
+   * @param word the word
+   * @param phrase the phrase
+   * @return the number of occurrences
+   */
+  private static int countOccurrences(final String word, final String phrase)
+  {
+    int count = 0;
+    int pos = word.indexOf(phrase);
+    while (pos >= 0)
+    {
+      ++count;
+      pos = word.indexOf(phrase, pos + 1);
+    }
+    
+    return count;
+  }
+  
+  
+  /**
+   * Return a random string.
+   * 
+   * @param random the random number generator
+   * @param len the length of the string
+   * @return the string
+   */
+  private static String randomString(final Random random, final int len)
+  {
+    StringBuilder sb = new StringBuilder(len);
+    for (int i = 0; i < len; ++i)
+    {
+      sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+    
+    return sb.toString();
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.filter;
+
+import io.miti.nemo.test.TestCase;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * Unit tests for QueryFilter.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class QueryFilterTest extends TestCase
+{
+  /**
+   * One megabyte.
+   */
+  private static final long MEGABYTE = 1024L * 1024L;
+  
+  
+  /**
+   * Default constructor.
+   */
+  public QueryFilterTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check that every word must be in the name.
+   */
+  public void testWords()
+  {
+    QueryFilter filter = new QueryFilter("report  PDF", true);
+    assertTrue("both words", filter.accept("Annual Report.pdf"));
+    assertFalse("one word", filter.accept("Annual Report.doc"));
+    assertFalse("null name", filter.accept(null));
+    assertFalse("match case", new QueryFilter("report", false).accept("Report.pdf"));
+    assertTrue("empty query", new QueryFilter("", true).accept("anything"));
+    assertTrue("null query", new QueryFilter(null, true).accept("anything"));
+  }
+  
+  
+  /**
+   * Check negated conditions, and that a minus sign on its
+   * own is a word.
+   */
+  public void testNegation()
+  {
+    QueryFilter filter = new QueryFilter("report -draft", true);
+    assertTrue("without draft", filter.accept("report.pdf"));
+    assertFalse("with draft", filter.accept("report draft.pdf"));
+    assertTrue("minus sign", new QueryFilter("-", true).accept("a-b"));
+    assertFalse("minus sign missing", new QueryFilter("-", true).accept("ab"));
+    assertFalse("negated phrase", new QueryFilter("-\"a b\"", true).accept("xa by"));
+  }
+  
+  
+  /**
+   * Check quoted phrases, which keep their spaces and
+   * aren't keywords or wildcard patterns.
+   */
+  public void testQuotes()
+  {
+    QueryFilter filter = new QueryFilter("\"annual report\"", true);
+    assertTrue("phrase", filter.accept("2024 Annual Report.pdf"));
+    assertFalse("words apart", filter.accept("annual-report.pdf"));
+    assertTrue("quoted wildcard", new QueryFilter("\"a*b\"", true).accept("xa*by"));
+    assertFalse("quoted wildcard as pattern", new QueryFilter("\"a*b\"", true).accept("axxb"));
+    assertTrue("quoted keyword", new QueryFilter("\"ext:pdf\"", true).accept("ext:pdf"));
+    assertFalse("quoted keyword as condition", new QueryFilter("\"ext:pdf\"", true).accept("a.pdf"));
+  }
+  
+  
+  /**
+   * Check the keywords for conditions on the name.
+   */
+  public void testKeywords()
+  {
+    // Extensions, with or without the dot
+    assertTrue("ext", new QueryFilter("ext:pdf", true).accept("a.PDF"));
+    assertTrue("ext with dot", new QueryFilter("EXT:.pdf", true).accept("a.pdf"));
+    assertFalse("ext elsewhere", new QueryFilter("ext:pdf", true).accept("pdf.txt"));
+    
+    // Wildcard patterns
+    assertTrue("wildcard", new QueryFilter("rep*.pdf", true).accept("Report.pdf"));
+    assertFalse("wildcard anchored", new QueryFilter("rep*.pdf", true).accept("a report.pdf"));
+    
+    // Regular expressions, where one that isn't valid matches nothing
+    assertTrue("regex", new QueryFilter("regex:^a\\d+$", false).accept("a123"));
+    assertFalse("regex mismatch", new QueryFilter("regex:^a\\d+$", false).accept("a12b"));
+    assertFalse("invalid regex", new QueryFilter("regex:[", false).accept("["));
+    assertTrue("negated invalid regex", new QueryFilter("-regex:[", false).accept("["));
+    
+    // Sounds and similar names
+    assertTrue("sounds", new QueryFilter("sounds:robert", true).accept("Rupert.txt"));
+    assertFalse("sounds different", new QueryFilter("sounds:robert", true).accept("alice"));
+    assertTrue("similar", new QueryFilter("similar:report", true).accept("REPORTS"));
+    assertFalse("not similar", new QueryFilter("similar:report", true).accept("xyz"));
+    
+    // Unknown keywords are words
+    assertTrue("unknown keyword", new QueryFilter("key:value", true).accept("a key:value"));
+  }
+  
+  
+  /**
+   * Check the conditions on the size, with each operator
+   * and unit.
+   */
+  public void testSize()
+  {
+    final long ten = 10L * MEGABYTE;
+    checkSize("size>10M", ten + 1L, ten);
+    checkSize("size>=10M", ten, ten - 1L);
+    checkSize("size<10M", ten - 1L, ten);
+    checkSize("size<=10MB", ten, ten + 1L);
+    checkSize("size=10m", ten, ten + 1L);
+    checkSize("SIZE=1.5K", 1536L, 1535L);
+    checkSize("size=2T", 2L << 40, (2L << 40) - 1L);
+    checkSize("size>0", 1L, 0L);
+    checkSize("-size>1G", MEGABYTE, (1L << 30) + 1L);
+    
+    // The size doesn't affect the name
+    assertTrue("name", new QueryFilter("size>10M", true).accept("anything"));
+  }
+  
+  
+  /**
+   * Check that sizes too large for a long are still
+   * conditions, and that nothing is above the largest long.
+   */
+  public void testSizeOverflow()
+  {
+    // Nothing is larger than a size that doesn't fit
+    QueryFilter filter = new QueryFilter("size>9999999999T", true);
+    assertFalse("too large", filter.acceptAttributes(Long.MAX_VALUE, 0L));
+    assertTrue("too large isn't a word", filter.accept("big"));
+    filter = new QueryFilter("size<=9999999999T", true);
+    assertTrue("smaller than too large", filter.acceptAttributes(Long.MAX_VALUE, 0L));
+    
+    // The largest long is still a condition
+    final String max = String.valueOf(Long.MAX_VALUE);
+    filter = new QueryFilter("size>" + max, true);
+    assertFalse("above the largest", filter.acceptAttributes(Long.MAX_VALUE, 0L));
+    assertFalse("above the largest", filter.acceptAttributes(0L, 0L));
+    filter = new QueryFilter("size>=" + max, true);
+    assertTrue("the largest", filter.acceptAttributes(Long.MAX_VALUE, 0L));
+    assertFalse("below the largest", filter.acceptAttributes(Long.MAX_VALUE - 1L, 0L));
+    filter = new QueryFilter("-size>" + max, true);
+    assertTrue("negated, above the largest", filter.acceptAttributes(Long.MAX_VALUE, 0L));
+    
+    // 8388608T is 2^63 bytes, one more than the largest long
+    filter = new QueryFilter("size<8388608T", true);
+    assertTrue("one over the largest", filter.acceptAttributes(Long.MAX_VALUE, 0L));
+    assertTrue("one over the largest isn't a word", filter.accept("big"));
+    filter = new QueryFilter("size=8388608T", true);
+    assertFalse("equal to one over the largest", filter.acceptAttributes(Long.MAX_VALUE, 0L));
+  }
+  
+  
+  /**
+   * Check that a size with a fraction of a byte is compared
+   * exactly, rounding toward the matching sizes.
+   */
+  public void testSizeFraction()
+  {
+    checkSize("size<1.5", 1L, 2L);
+    checkSize("size<=1.5", 1L, 2L);
+    checkSize("size>1.5", 2L, 1L);
+    checkSize("size>=1.5", 2L, 1L);
+    checkSize("size<1.001K", 1025L, 1026L);
+    checkSize("size>1.001K", 1026L, 1025L);
+    
+    // No whole size is equal to a fraction
+    QueryFilter filter = new QueryFilter("size=1.001K", true);
+    assertFalse("equal to a fraction", filter.acceptAttributes(1025L, 0L));
+    assertFalse("equal to a fraction", filter.acceptAttributes(1026L, 0L));
+    assertFalse("equal to a fraction", filter.acceptRanges(0L, 2048L, 0L, 0L));
+    filter = new QueryFilter("-size=1.5", true);
+    assertTrue("not equal to a fraction", filter.acceptAttributes(1L, 0L));
+    assertTrue("not equal to a fraction", filter.acceptAttributes(2L, 0L));
+  }
+  
+  
+  /**
+   * Check the conditions on the last-modified day.
+   */
+  public void testModified()
+  {
+    final long start = getDay(2024, Calendar.JANUARY, 1);
+    final long next = getDay(2024, Calendar.JANUARY, 2);
+    checkTime("modified<2024-01-01", start - 1L, start);
+    checkTime("modified<=2024-01-01", next - 1L, next);
+    checkTime("modified>2024-01-01", next, next - 1L);
+    checkTime("modified>=2024-01-01", start, start - 1L);
+    checkTime("modified=2024-01-01", start, next);
+    checkTime("modified=2024-01-01", next - 1L, start - 1L);
+    
+    // A day that isn't valid is an error
+    checkInvalid("modified<2024-13-01");
+    checkInvalid("modified=2024-01-01x");
+    checkInvalid("modified>yesterday");
+  }
+  
+  
+  /**
+   * Check that a condition on the size or time that can't be
+   * parsed is an error, instead of a word.
+   */
+  public void testInvalid()
+  {
+    checkInvalid("size>abc");
+    checkInvalid("-size>abc");
+    checkInvalid("report SIZE<=10X");
+    checkInvalid("size>");
+    checkInvalid("size=-1");
+    checkInvalid("size > 10M");
+    checkInvalid("size >10M");
+    checkInvalid("size> 10M");
+    checkInvalid("modified < 2024-01-01");
+    
+    // The keywords on their own, or quoted, are words
+    assertTrue("keyword", new QueryFilter("size", true).accept("size.txt"));
+    assertTrue("keyword before a word", new QueryFilter("size big", true).accept("big size"));
+    assertTrue("quoted", new QueryFilter("\"size>abc\"", true).accept("size>abc"));
+    assertTrue("quoted operator", new QueryFilter("size \">\"", true).accept("size>"));
+    assertTrue("longer keyword", new QueryFilter("sizes>abc", true).accept("sizes>abc"));
+  }
+  
+  
+  /**
+   * Check whether ranges of sizes and times might match.
+   */
+  public void testRanges()
+  {
+    QueryFilter filter = new QueryFilter("size>10M modified<2024-01-01", true);
+    final long start = getDay(2024, Calendar.JANUARY, 1);
+    assertTrue("both overlap", filter.acceptRanges(0L, 20L * MEGABYTE, 0L, start));
+    assertFalse("sizes too small", filter.acceptRanges(0L, 10L * MEGABYTE, 0L, start));
+    assertFalse("times too late", filter.acceptRanges(0L, 20L * MEGABYTE, start, start * 2L));
+    assertTrue("no ranges", new QueryFilter("a", true).acceptRanges(0L, 0L, 0L, 0L));
+  }
+  
+  
+  /**
+   * Check the conditions on the path of the folder.
+   */
+  public void testPath()
+  {
+    QueryFilter filter = new QueryFilter("path:projects -path:tmp report", true);
+    assertTrue("path", filter.acceptPath("/home/me/Projects/2024"));
+    assertFalse("negated path", filter.acceptPath("/tmp/projects"));
+    assertFalse("missing path", filter.acceptPath("/home/me"));
+    assertFalse("null path", filter.acceptPath(null));
+    assertTrue("name", filter.accept("report.pdf"));
+    assertFalse("path isn't a word", filter.accept("projects.pdf"));
+    
+    assertTrue("quoted path", new QueryFilter("path:\"my docs\"", true).acceptPath("/My Docs"));
+    assertFalse("match case", new QueryFilter("path:Docs", false).acceptPath("/docs"));
+    assertTrue("no path", new QueryFilter("report", true).acceptPath(null));
+  }
+  
+  
+  /**
+   * Check the strings every accepted name must contain.
+   */
+  public void testLiterals()
+  {
+    assertEquals("literals", Arrays.asList(".pdf", "Report"),
+                 new QueryFilter("Report -draft ext:pdf path:docs size>1K", true).getLiterals());
+    assertEquals("wildcard literals", Arrays.asList("REP", ".PDF"),
+                 new QueryFilter("rep*.pdf regex:abc", true).getLiterals());
+  }
+  
+  
+  /**
+   * Check a condition on the size.
+   * 
+   * @param query the query
+   * @param match a size that matches
+   * @param noMatch a size that doesn't match
+   */
+  private static void checkSize(final String query, final long match, final long noMatch)
+  {
+    QueryFilter filter = new QueryFilter(query, true);
+    assertTrue(query + " on " + match, filter.acceptAttributes(match, 0L));
+    assertFalse(query + " on " + noMatch, filter.acceptAttributes(noMatch, 0L));
+  }
+  
+  
+  /**
+   * Check that a query is rejected.
+   * 
+   * @param query the query
+   */
+  private static void checkInvalid(final String query)
+  {
+    try
+    {
+      new QueryFilter(query, true);
+      fail("accepted " + query);
+    }
+    catch (IllegalArgumentException iae)
+    {
+      assertTrue("message for " + query, iae.getMessage().length() > 0);
+    }
+  }
+  
+  
+  /**
+   * Check a condition on the last-modified time.
+   * 
+   * @param query the query
+   * @param match a time that matches
+   * @param noMatch a time that doesn't match
+   */
+  private static void checkTime(final String query, final long match, final long noMatch)
+  {
+    QueryFilter filter = new QueryFilter(query, true);
+    assertTrue(query + " on " + match, filter.acceptAttributes(0L, match));
+    assertFalse(query + " on " + noMatch, filter.acceptAttributes(0L, noMatch));
+  }
+  
+  
+  /**
+   * Return the start of a day in the local time zone.
+   * 
+   * @param year the year
+   * @param month the month
+   * @param day the day of the month
+   * @return the start of the day
+   */
+  private static long getDay(final int year, final int month, final int day)
+  {
+    Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(year, month, day);
+    return cal.getTimeInMillis();
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.filter;
+
+import io.miti.nemo.test.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Unit tests for WildcardFilter.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class WildcardFilterTest extends TestCase
+{
+  /**
+   * The characters used in the random words and patterns.
+   */
+  private static final String ALPHABET = "abAB.\u00e9\u65e5";
+  
+  
+  /**
+   * Default constructor.
+   */
+  public WildcardFilterTest()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Check patterns with and without wildcards at each end.
+   */
+  public void testAnchors()
+  {
+    checkMatch("abc", "abc", true);
+    checkMatch("abc", "abcd", false);
+    checkMatch("abc*", "abcd", true);
+    checkMatch("abc*", "xabc", false);
+    checkMatch("*abc", "xabc", true);
+    checkMatch("*abc", "abcx", false);
+    checkMatch("*abc*", "xabcx", true);
+    checkMatch("*", "anything", true);
+    checkMatch("**", "anything", true);
+  }
+  
+  
+  /**
+   * Check the parts between the wildcards, including ones
+   * that would overlap the anchored parts.
+   */
+  public void testMiddleParts()
+  {
+    checkMatch("a*b*c", "aXbYc", true);
+    checkMatch("a*b*c", "acb", false);
+    checkMatch("ab*ba", "aba", false);
+    checkMatch("ab*ba", "abba", true);
+    checkMatch("a*a*a", "aaa", true);
+    checkMatch("a*a*a", "aa", false);
+    checkMatch("*.txt", "notes.txt.bak", false);
+    checkMatch("*.txt*", "notes.txt.bak", true);
+  }
+  
+  
+  /**
+   * Check that '?' matches exactly one character.
+   */
+  public void testQuestionMark()
+  {
+    checkMatch("a?c", "abc", true);
+    checkMatch("a?c", "ac", false);
+    checkMatch("a?c", "abbc", false);
+    checkMatch("*?", "x", true);
+    checkMatch("??", "x", false);
+    checkMatch("*b?d*", "abcde", true);
+  }
+  
+  
+  /**
+   * Check the empty pattern and the empty word.
+   */
+  public void testEmpty()
+  {
+    assertTrue("empty pattern", new WildcardFilter("", false).accept("abc"));
+    assertTrue("empty pattern, empty word", new WildcardFilter("", true).accept(""));
+    assertFalse("empty word", new WildcardFilter("*", false).accept(""));
+    assertFalse("empty word, ignoring case", new WildcardFilter("*", true).accept(""));
+    assertFalse("null word", new WildcardFilter("a*", false).accept(null));
+  }
+  
+  
+  /**
+   * Check ignoring the case, including a character whose
+   * upper case is two characters.
+   */
+  public void testIgnoreCase()
+  {
+    assertTrue("ignore case", new WildcardFilter("READ*", true).accept("readme.txt"));
+    assertTrue("pattern case", new WildcardFilter("read*", true).accept("README.TXT"));
+    assertFalse("match case", new WildcardFilter("READ*", false).accept("readme.txt"));
+    assertTrue("special upper case", new WildcardFilter("stra*e", true).accept("stra\u00dfe"));
+    assertTrue("special upper case, folded",
+               new WildcardFilter("STRASSE*", true).acceptFolded("STRASSE.TXT"));
+    assertFalse("folded", new WildcardFilter("a*", true).acceptFolded("abc"));
+  }
+  
+  
+  /**
+   * Check the literal parts of the pattern.
+   */
+  public void testLiterals()
+  {
+    assertEquals("literals", Arrays.asList("ab", "c", "d"),
+                 new WildcardFilter("*ab*c?d*", false).getLiterals());
+    assertEquals("upper case literals", Arrays.asList("AB"),
+                 new WildcardFilter("ab*", true).getLiterals());
+    assertEquals("no literals", Arrays.asList(new String[0]),
+                 new WildcardFilter("*??*", false).getLiterals());
+  }
+  
+  
+  /**
+   * Compare random words and patterns to matching the
+   * pattern as a regular expression.
+   */
+  public void testRandomPatterns()
+  {
+    Random random = new Random(11L);
+    final String patternChars = ALPHABET + "**?";
+    for (int i = 0; i < 5000; ++i)
+    {
+      final String pattern = randomString(random, patternChars, 1 + random.nextInt(6));
+      final String word = randomString(random, ALPHABET, 1 + random.nextInt(8));
+      final boolean ignoreCase = random.nextBoolean();
+      
+      final boolean expected = (ignoreCase
+          ? toRegex(pattern.toUpperCase()).matcher(word.toUpperCase()).matches()
+          : toRegex(pattern).matcher(word).matches());
+      assertEquals("'" + pattern + "' on '" + word + "' (ignoring case " + ignoreCase + ")",
+                   expected, new WildcardFilter(pattern, ignoreCase).accept(word));
+    }
+  }
+  
+  
+  /**
+   * Check that a word matches a pattern, or doesn't, with
+   * and without ignoring the case.
+   * 
+   * @param pattern the pattern
+   * @param word the word
+   * @param expected whether the word should match
+   */
+  private static void checkMatch(final String pattern,
+                                 final String word,
+                                 final boolean expected)
+  {
+    final String message = "'" + pattern + "' on '" + word + "'";
+    assertEquals(message, expected, new WildcardFilter(pattern, false).accept(word));
+    assertEquals(message + " ignoring case", expected,
+                 new WildcardFilter(pattern.toUpperCase(), true).accept(word));
+  }
+  
+  
+  /**
+   * Convert a wildcard pattern to a regular expression.
+   * 
+   * @param pattern the wildcard pattern
+   * @return the regular expression
+   */
+  private static Pattern toRegex(final String pattern)
+  {
+    StringBuilder sb = new StringBuilder(pattern.length() * 4);
+    for (int i = 0; i < pattern.length(); ++i)
+    {
+      final char ch = pattern.charAt(i);
+      if (ch == '*')
+      {
+        sb.append(".*");
+      }
+      else if (ch == '?')
+      {
+        sb.append('.');
+      }
+      else
+      {
+        sb.append(Pattern.quote(String.valueOf(ch)));
+      }
+    }
+    
+    return Pattern.compile(sb.toString(), Pattern.DOTALL);
+  }
+  
+  
+  /**
+   * Return a random string.
+   * 
+   * @param random the random number generator
+   * @param chars the characters to use
+   * @param len the length of the string
+   * @return the string
+   */
+  private static String randomString(final Random random,
+                                     final String chars,
+                                     final int len)
+  {
+    StringBuilder sb = new StringBuilder(len);
+    for (int i = 0; i < len; ++i)
+    {
+      sb.append(chars.charAt(random.nextInt(chars.length())));
+    }
+    
+    return sb.toString();
+  }
+}
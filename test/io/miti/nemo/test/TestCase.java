@@ -0,0 +1,148 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.test;
+
+import java.util.Arrays;
+
+/**
+ * The base class for the unit tests.  Each public method
+ * whose name starts with "test" and takes no arguments is
+ * one test, run by TestRunner on a new instance of the class.
+ * A test fails if it throws an exception, including the
+ * AssertionError thrown by the assert methods here.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public abstract class TestCase
+{
+  /**
+   * Default constructor.
+   */
+  public TestCase()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Fail the test.
+   * 
+   * @param message the reason for the failure
+   */
+  protected static void fail(final String message)
+  {
+    throw new AssertionError(message);
+  }
+  
+  
+  /**
+   * Fail the test if the condition is false.
+   * 
+   * @param message the reason for the failure
+   * @param condition the condition to check
+   */
+  protected static void assertTrue(final String message, final boolean condition)
+  {
+    if (!condition)
+    {
+      fail(message);
+    }
+  }
+  
+  
+  /**
+   * Fail the test if the condition is true.
+   * 
+   * @param message the reason for the failure
+   * @param condition the condition to check
+   */
+  protected static void assertFalse(final String message, final boolean condition)
+  {
+    if (condition)
+    {
+      fail(message);
+    }
+  }
+  
+  
+  /**
+   * Fail the test if two longs are not equal.
+   * 
+   * @param message the value being checked
+   * @param expected the expected value
+   * @param actual the actual value
+   */
+  protected static void assertEquals(final String message,
+                                     final long expected,
+                                     final long actual)
+  {
+    if (expected != actual)
+    {
+      fail(message + ": expected <" + expected + "> but was <" + actual + ">");
+    }
+  }
+  
+  
+  /**
+   * Fail the test if two objects are not equal.  Arrays are
+   * compared by their contents.
+   * 
+   * @param message the value being checked
+   * @param expected the expected value
+   * @param actual the actual value
+   */
+  protected static void assertEquals(final String message,
+                                     final Object expected,
+                                     final Object actual)
+  {
+    // Compare the arrays by their contents
+    final boolean equal = Arrays.deepEquals(new Object[] {expected},
+                                            new Object[] {actual});
+    if (!equal)
+    {
+      fail(message + ": expected <" + toString(expected) +
+           "> but was <" + toString(actual) + ">");
+    }
+  }
+  
+  
+  /**
+   * Return a value as a string, including the contents
+   * of arrays.
+   * 
+   * @param value the value
+   * @return the value as a string
+   */
+  private static String toString(final Object value)
+  {
+    final String str = Arrays.deepToString(new Object[] {value});
+    return str.substring(1, str.length() - 1);
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Written by Mike Wallace (mfwallace at gmail.com).  Available
+ * on the web site http://mfwallace.googlepages.com/.
+ * 
+ * Copyright (c) 2006 Mike Wallace.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom
+ * the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.miti.nemo.test;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs the unit tests.  Every class under the directory
+ * passed on the command line whose name ends with "Test"
+ * and extends TestCase is run, and the program exits with
+ * a status of 1 if any test fails.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class TestRunner
+{
+  /**
+   * The number of tests run.
+   */
+  private int runCount = 0;
+  
+  /**
+   * The number of tests that failed.
+   */
+  private int failCount = 0;
+  
+  
+  /**
+   * Default constructor.
+   */
+  private TestRunner()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Run the tests.
+   * 
+   * @param args the directory holding the compiled tests
+   */
+  public static void main(final String[] args)
+  {
+    // Check the arguments
+    if (args.length != 1)
+    {
+      System.err.println("Usage: TestRunner <test classes directory>");
+      System.exit(2);
+    }
+    
+    // Find the test classes
+    List<String> names = new ArrayList<String>(20);
+    findClasses(new File(args[0]), "", names);
+    Collections.sort(names);
+    
+    // Run each one
+    TestRunner runner = new TestRunner();
+    for (String name : names)
+    {
+      runner.runClass(name);
+    }
+    
+    System.out.println("Tests run: " + runner.runCount + ", Failures: " + runner.failCount);
+    if (runner.failCount > 0)
+    {
+      System.exit(1);
+    }
+  }
+  
+  
+  /**
+   * Find the names of the test classes under a directory.
+   * 
+   * @param dir the directory
+   * @param pkg the package of the classes in the directory,
+   *        with a trailing dot
+   * @param names the list of class names to add to
+   */
+  private static void findClasses(final File dir,
+                                  final String pkg,
+                                  final List<String> names)
+  {
+    File[] files = dir.listFiles();
+    if (files == null)
+    {
+      return;
+    }
+    
+    for (File file : files)
+    {
+      final String name = file.getName();
+      if (file.isDirectory())
+      {
+        findClasses(file, pkg + name + ".", names);
+      }
+      else if (name.endsWith("Test.class") && (name.indexOf('$') < 0))
+      {
+        names.add(pkg + name.substring(0, name.length() - 6));
+      }
+    }
+  }
+  
+  
+  /**
+   * Run the tests in a class.
+   * 
+   * @param name the name of the class
+   */
+  private void runClass(final String name)
+  {
+    // Load the class
+    Class<?> cls = null;
+    try
+    {
+      cls = Class.forName(name);
+    }
+    catch (ClassNotFoundException cnfe)
+    {
+      System.err.println("ClassNotFoundException: " + cnfe.getMessage());
+      ++failCount;
+      return;
+    }
+    
+    if (!TestCase.class.isAssignableFrom(cls) || Modifier.isAbstract(cls.getModifiers()))
+    {
+      return;
+    }
+    
+    // Run the methods in order of their names
+    Method[] methods = cls.getMethods();
+    Arrays.sort(methods, new Comparator<Method>()
+    {
+      public int compare(final Method m1, final Method m2)
+      {
+        return m1.getName().compareTo(m2.getName());
+      }
+    });
+    
+    for (Method method : methods)
+    {
+      if (method.getName().startsWith("test") && (method.getParameterTypes().length == 0) &&
+          !Modifier.isStatic(method.getModifiers()))
+      {
+        runTest(cls, method);
+      }
+    }
+  }
+  
+  
+  /**
+   * Run one test, on a new instance of its class.
+   * 
+   * @param cls the test class
+   * @param method the test method
+   */
+  private void runTest(final Class<?> cls, final Method method)
+  {
+    ++runCount;
+    Throwable error = null;
+    try
+    {
+      method.invoke(cls.getDeclaredConstructor().newInstance());
+    }
+    catch (InvocationTargetException ite)
+    {
+      error = ite.getCause();
+    }
+    catch (Exception e)
+    {
+      error = e;
+    }
+    
+    // Report the failure
+    if (error != null)
+    {
+      ++failCount;
+      System.err.println("FAILED: " + cls.getName() + "." + method.getName());
+      error.printStackTrace();
+    }
+  }
+}